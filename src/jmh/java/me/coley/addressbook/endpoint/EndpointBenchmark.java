@@ -0,0 +1,171 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.metrics.Metrics;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.Phone;
+import me.coley.addressbook.util.ResponseWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of {@link Endpoint} dispatch around a trivial route, for successful routes
+ * and routes that fail with an exception, and the cost of streaming the result with {@link StreamingEndpoint}.
+ * The instrumented variant adds the cost of recording {@link Metrics} with {@link InstrumentedRoute}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EndpointBenchmark {
+	private final Contact contact = new Contact("Bob",
+			Collections.singletonList(new Phone("555-123-4567", Phone.Type.MOBILE)), "Earth");
+	private Endpoint success;
+	private Endpoint failure;
+	private Endpoint streaming;
+	private InstrumentedRoute instrumented;
+	private Request request;
+	private Response response;
+
+	@Setup
+	public void setup(Blackhole blackhole) {
+		success = new Endpoint((req, res) -> ResponseWrapper.success(contact));
+		failure = new Endpoint((req, res) -> {
+			throw new MissingContactException("Bob", "Cannot retrieve due to no matching contact");
+		});
+		streaming = new StreamingEndpoint((req, res) -> ResponseWrapper.success(contact));
+		instrumented = new InstrumentedRoute(success, new Metrics());
+		request = new StubRequest();
+		response = new StubResponse(blackhole);
+	}
+
+	@Benchmark
+	public Object handleSuccess() {
+		return success.handle(request, response);
+	}
+
+	@Benchmark
+	public Object handleFailure() {
+		return failure.handle(request, response);
+	}
+
+	@Benchmark
+	public Object handleStreaming() {
+		return streaming.handle(request, response);
+	}
+
+	@Benchmark
+	public Object handleInstrumented() throws Exception {
+		return instrumented.handle(request, response);
+	}
+
+	/**
+	 * Request without parameters or attributes, that is never suspended.
+	 */
+	private static class StubRequest extends Request {
+		private final HttpServletRequest raw = (HttpServletRequest) Proxy.newProxyInstance(
+				getClass().getClassLoader(), new Class<?>[]{HttpServletRequest.class},
+				(proxy, method, args) -> method.getName().equals("isAsyncStarted") ? false : null);
+
+		@Override
+		public String queryParams(String queryParam) {
+			return null;
+		}
+
+		@Override
+		public void attribute(String attribute, Object value) {}
+
+		@Override
+		public <T> T attribute(String attribute) {
+			return null;
+		}
+
+		@Override
+		public String requestMethod() {
+			return "GET";
+		}
+
+		@Override
+		public String matchedPath() {
+			return "/contact/:name";
+		}
+
+		@Override
+		public HttpServletRequest raw() {
+			return raw;
+		}
+	}
+
+	/**
+	 * Response that discards what is written to it, into a blackhole so the writes are not optimized away.
+	 */
+	private static class StubResponse extends Response {
+		private final HttpServletResponse raw;
+
+		private StubResponse(Blackhole blackhole) {
+			ServletOutputStream out = new ServletOutputStream() {
+				@Override
+				public boolean isReady() {
+					return true;
+				}
+
+				@Override
+				public void setWriteListener(WriteListener listener) {}
+
+				@Override
+				public void write(int b) {
+					blackhole.consume(b);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) {
+					blackhole.consume(b);
+				}
+			};
+			raw = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(),
+					new Class<?>[]{HttpServletResponse.class},
+					(proxy, method, args) -> {
+						switch(method.getName()) {
+							case "getOutputStream":
+								return out;
+							case "getStatus":
+								return 200;
+							default:
+								return null;
+						}
+					});
+		}
+
+		@Override
+		public void status(int statusCode) {}
+
+		@Override
+		public void type(String contentType) {}
+
+		@Override
+		public HttpServletResponse raw() {
+			return raw;
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.Phone;
+import me.coley.addressbook.service.ContactService;
+import me.coley.addressbook.service.ForwardingContactService;
+import me.coley.addressbook.service.impl.InMemoryContactService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import spark.Service;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static me.coley.addressbook.util.ResponseWrapper.success;
+
+/**
+ * Load test for the request thread modes. Each operation sends {@code concurrency} simultaneous requests
+ * to a server whose contact service blocks for {@code latency} milliseconds, like ElasticSearch under a
+ * slowdown, and waits for all responses.
+ * <br>
+ * With {@code POOLED} threads the requests queue for one of {@code poolThreads} threads, so an operation
+ * takes about {@code concurrency / poolThreads * latency}. With {@code VIRTUAL} threads every request
+ * blocks on its own virtual thread, so an operation takes about {@code latency}. Run with {@code -prof gc}
+ * to compare allocation as well. {@code VIRTUAL} requires Java 21 or newer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+// Keep client connections open between operations, so connecting does not dominate
+@Fork(value = 1, jvmArgsAppend = "-Dhttp.maxConnections=4000")
+public class ServerLoadBenchmark {
+	@Param({"POOLED", "VIRTUAL"})
+	private String mode;
+	@Param({"1000"})
+	private int concurrency;
+	@Param({"50"})
+	private int latency;
+	@Param({"200"})
+	private int poolThreads;
+	private Service http;
+	private ExecutorService clients;
+	private List<Callable<Integer>> requests;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		EmbeddedJettyFactory jetty = new EmbeddedJettyFactory(new AsyncJettyServerFactory());
+		if (mode.equals("VIRTUAL"))
+			jetty.withThreadPool(new VirtualThreadPool());
+		EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY, jetty);
+		ContactService service = new SlowContactService(latency);
+		service.add(new Contact("Bob", Collections.singletonList(new Phone("555-123-4567", Phone.Type.MOBILE)),
+				"Earth"));
+		http = Service.ignite().port(0);
+		if (mode.equals("POOLED"))
+			http.threadPool(poolThreads);
+		http.get("/contact/:name", new AsyncEndpoint((req, res) ->
+				service.getAsync(req.params(":name")).thenApply(contact -> Reply.of(success(contact)))));
+		http.awaitInitialization();
+		URL url = new URL("http://localhost:" + http.port() + "/contact/Bob");
+		clients = Executors.newFixedThreadPool(concurrency);
+		requests = new ArrayList<>(concurrency);
+		for(int i = 0; i < concurrency; i++)
+			requests.add(() -> fetch(url));
+	}
+
+	@TearDown(Level.Trial)
+	public void teardown() {
+		clients.shutdownNow();
+		http.stop();
+	}
+
+	@Benchmark
+	public int concurrentGets() throws Exception {
+		int bytes = 0;
+		for(Future<Integer> response : clients.invokeAll(requests))
+			bytes += response.get();
+		return bytes;
+	}
+
+	private static int fetch(URL url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		if (connection.getResponseCode() != 200)
+			throw new IOException("Unexpected response: " + connection.getResponseCode());
+		int bytes = 0;
+		byte[] buffer = new byte[1024];
+		try (InputStream in = connection.getInputStream()) {
+			for(int read; (read = in.read(buffer)) != -1; )
+				bytes += read;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Contact service that blocks on every fetch.
+	 */
+	private static class SlowContactService extends ForwardingContactService {
+		private final long latency;
+
+		private SlowContactService(long latency) {
+			super(new InMemoryContactService());
+			this.latency = latency;
+		}
+
+		@Override
+		public CompletableFuture<Contact> getAsync(String name) {
+			// Blocks the request thread, as a blocking client would
+			try {
+				Thread.sleep(latency);
+			} catch(InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			return super.getAsync(name);
+		}
+	}
+}
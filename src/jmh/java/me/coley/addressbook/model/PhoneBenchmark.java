@@ -0,0 +1,71 @@
+package me.coley.addressbook.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures phone number validation and normalization, which runs for every number read from a request
+ * or from ElasticSearch. The {@code regex} benchmarks reproduce the former {@code String.matches} based
+ * normalization as a baseline.
+ * <br>
+ * Run with {@code -prof gc}: {@code normalizeFormatted} should allocate only the {@link Phone} itself,
+ * and {@code normalizeDigits} only the phone and its formatted number. No pattern is compiled per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PhoneBenchmark {
+	// Not final, so the JIT cannot fold the constructor calls
+	private String formatted = "555-123-4567";
+	private String digits = "5551234567";
+	private String invalid = "555-123-456";
+
+	@Benchmark
+	public Phone normalizeFormatted() {
+		return new Phone(formatted, Phone.Type.MOBILE);
+	}
+
+	@Benchmark
+	public Phone normalizeDigits() {
+		return new Phone(digits, Phone.Type.MOBILE);
+	}
+
+	@Benchmark
+	public Object rejectInvalid() {
+		try {
+			return new Phone(invalid, Phone.Type.MOBILE);
+		} catch(IllegalArgumentException ex) {
+			return ex;
+		}
+	}
+
+	@Benchmark
+	public String regexFormatted() {
+		return normalizeRegex(formatted);
+	}
+
+	@Benchmark
+	public String regexDigits() {
+		return normalizeRegex(digits);
+	}
+
+	private static String normalizeRegex(String number) {
+		if(number.matches("[2-9]\\d{2}-\\d{3}-\\d{4}"))
+			return number;
+		if(number.matches("[2-9]\\d{9}"))
+			return number.substring(0, 3) + "-" + number.substring(3, 6) + "-" + number.substring(6);
+		throw new IllegalArgumentException("Invalid phone format: " + number);
+	}
+}
@@ -0,0 +1,95 @@
+package me.coley.addressbook.service;
+
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactPage;
+import me.coley.addressbook.model.Phone;
+import me.coley.addressbook.service.impl.InMemoryContactService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ContactService} operations against {@link InMemoryContactService}, so the cost of the
+ * service contract and the layers around it can be tracked without an ElasticSearch server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContactServiceBenchmark {
+	@Param({"10000"})
+	private int contacts;
+	private ContactService service;
+
+	@Setup
+	public void setup() {
+		service = new InMemoryContactService();
+		List<Contact> list = new ArrayList<>(contacts);
+		for(int i = 0; i < contacts; i++)
+			list.add(new Contact(name(i), Collections.singletonList(
+					new Phone(String.format("555-%03d-%04d", i % 1000, i % 10000), Phone.Type.values()[i % 3])),
+					i + " Main Street"));
+		service.addAll(list);
+	}
+
+	@Benchmark
+	public Contact get() throws MissingContactException {
+		return service.get(name(ThreadLocalRandom.current().nextInt(contacts)));
+	}
+
+	@Benchmark
+	public Object getMissing() {
+		try {
+			return service.get("Nobody");
+		} catch(MissingContactException ex) {
+			return ex;
+		}
+	}
+
+	@Benchmark
+	public boolean exists() {
+		return service.exists(name(ThreadLocalRandom.current().nextInt(contacts)));
+	}
+
+	@Benchmark
+	public Collection<Contact> firstPage() {
+		return service.contacts(1, 20, null);
+	}
+
+	@Benchmark
+	public Collection<Contact> searchName() {
+		return service.contacts(1, 20, "name:" + ThreadLocalRandom.current().nextInt(contacts));
+	}
+
+	@Benchmark
+	public Collection<Contact> searchType() {
+		return service.contacts(1, 20, "numbers.type:home");
+	}
+
+	@Benchmark
+	public ContactPage cursorPage() {
+		return service.contactsAfter(null, 20, "street");
+	}
+
+	private static String name(int i) {
+		return "Contact " + i;
+	}
+}
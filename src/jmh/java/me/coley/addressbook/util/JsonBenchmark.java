@@ -0,0 +1,99 @@
+package me.coley.addressbook.util;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonObject;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.Phone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures converting contact lists to and from JSON. Reading is compared between the streaming adapters
+ * in {@link Json} and the tree-model deserializers they replaced.
+ * <br>
+ * Run with {@code -prof gc} to compare the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+	@Param({"10", "1000"})
+	private int contacts;
+	private List<Contact> list;
+	private String payload;
+	private Gson treeGson;
+
+	@Setup
+	public void setup() {
+		list = new ArrayList<>(contacts);
+		for(int i = 0; i < contacts; i++)
+			list.add(new Contact("Contact " + i, Arrays.asList(
+					new Phone(String.format("555-%03d-%04d", i % 1000, i % 10000), Phone.Type.MOBILE),
+					new Phone(String.format("555%03d%04d", i % 1000, i % 10000), Phone.Type.HOME)),
+					i + " Main Street"));
+		payload = Json.toJson(list);
+		treeGson = createTreeGson();
+	}
+
+	@Benchmark
+	public String write() {
+		return Json.toJson(list);
+	}
+
+	@Benchmark
+	public Contact[] readStreaming() {
+		return Json.fromJson(payload, Contact[].class);
+	}
+
+	@Benchmark
+	public Contact[] readTree() {
+		return treeGson.fromJson(payload, Contact[].class);
+	}
+
+	/**
+	 * @return Gson using the tree-model deserializers that {@link Json} used before the streaming adapters,
+	 * where each phone number is converted back to text and parsed again.
+	 */
+	private static Gson createTreeGson() {
+		GsonBuilder builder = new GsonBuilder();
+		builder.registerTypeAdapter(Phone.class, (JsonDeserializer<Phone>) (json, type, context) -> {
+			JsonObject jsonObject = json.getAsJsonObject();
+			String phoneType   = jsonObject.has("type")   ? jsonObject.get("type").getAsString()   : null;
+			String phoneNumber = jsonObject.has("number") ? jsonObject.get("number").getAsString() : null;
+			return new Phone(phoneNumber, Phone.Type.valueOf(phoneType));
+		});
+		Gson[] self = new Gson[1];
+		builder.registerTypeAdapter(Contact.class, (JsonDeserializer<Contact>) (json, type, context) -> {
+			JsonObject jsonObject = json.getAsJsonObject();
+			String contactName = jsonObject.has("name") ? jsonObject.get("name").getAsString() : null;
+			String contactAddress = jsonObject.has("address") ? jsonObject.get("address").getAsString() : null;
+			List<Phone> contactNumbers = new ArrayList<>();
+			if (jsonObject.has("numbers")) {
+				jsonObject.get("numbers").getAsJsonArray()
+						.forEach(element -> contactNumbers.add(self[0].fromJson(element.toString(), Phone.class)));
+			}
+			return new Contact(contactName, contactNumbers, contactAddress);
+		});
+		self[0] = builder.create();
+		return self[0];
+	}
+}
@@ -0,0 +1,79 @@
+package me.coley.addressbook.util;
+
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.Phone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the ways a {@link ResponseWrapper} can be turned into response bytes:
+ * Spark's default of {@code toString()} followed by encoding, and streaming with
+ * {@link ResponseWrapper#writeTo(java.io.OutputStream, boolean)}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseWrapperBenchmark {
+	@Param({"1", "100"})
+	private int contacts;
+	private final ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+	private ResponseWrapper page;
+	private ResponseWrapper failure;
+
+	@Setup
+	public void setup() {
+		List<Contact> list = new ArrayList<>(contacts);
+		for(int i = 0; i < contacts; i++)
+			list.add(new Contact("Contact " + i,
+					Collections.singletonList(new Phone("555-123-4567", Phone.Type.MOBILE)), "Earth"));
+		page = ResponseWrapper.success(list, "cursor");
+		failure = ResponseWrapper.failure(new MissingContactException("Bob", "Cannot retrieve due to no matching contact"));
+	}
+
+	@Benchmark
+	public byte[] pageToString() {
+		return page.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public int pageWriteTo() throws IOException {
+		out.reset();
+		page.writeTo(out, false);
+		return out.size();
+	}
+
+	@Benchmark
+	public int pageWriteToPretty() throws IOException {
+		out.reset();
+		page.writeTo(out, true);
+		return out.size();
+	}
+
+	@Benchmark
+	public int failureWriteTo() throws IOException {
+		out.reset();
+		failure.writeTo(out, false);
+		return out.size();
+	}
+}
@@ -2,6 +2,9 @@ package me.coley.addressbook;
 
 import picocli.CommandLine;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Launch arguments.
  */
@@ -21,11 +24,229 @@ public class Options {
 			description = "ElasticSearch version",
 			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
 	private String elasticVersion = "6.8.6";
+	@CommandLine.Option(
+			names = "-ehosts",
+			split = ",",
+			description = "ElasticSearch nodes as host:port or scheme://host:port, comma separated. " +
+					"Defaults to localhost on the ElasticSearch port and the port after it")
+	private List<String> elasticHosts = new ArrayList<>();
+	@CommandLine.Option(
+			names = "-econns",
+			description = "Maximum number of open ElasticSearch connections",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int elasticMaxConnections = 30;
+	@CommandLine.Option(
+			names = "-econnsnode",
+			description = "Maximum number of open ElasticSearch connections to each node",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int elasticMaxConnectionsPerNode = 10;
+	@CommandLine.Option(
+			names = "-econnecttimeout",
+			description = "Time in milliseconds to wait for an ElasticSearch connection to open",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int elasticConnectTimeout = 1_000;
+	@CommandLine.Option(
+			names = "-esockettimeout",
+			description = "Time in milliseconds to wait for data from an ElasticSearch node",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int elasticSocketTimeout = 10_000;
+	@CommandLine.Option(
+			names = "-ekeepalive",
+			description = "Time in milliseconds to keep idle ElasticSearch connections open, " +
+					"0 to follow the node's keep-alive header",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private long elasticKeepAlive;
+	@CommandLine.Option(
+			names = "-esniff",
+			description = "Time in milliseconds between refreshing ElasticSearch nodes from the cluster, 0 to disable",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int elasticSniffInterval;
+	@CommandLine.Option(
+			names = "-eshards",
+			description = "Number of primary shards of the ElasticSearch index, when it is created",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int elasticShards = 1;
+	@CommandLine.Option(
+			names = "-ereplicas",
+			description = "Number of replicas of each ElasticSearch index shard, when it is created",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int elasticReplicas = 1;
+	@CommandLine.Option(
+			names = "-erefresh",
+			description = "Refresh interval of the ElasticSearch index, when it is created, -1 to disable",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private String elasticRefreshInterval = "1s";
 	@CommandLine.Option(
 			names = "-existing",
 			description = "Use an currently running ElasticSearch server",
 			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
 	private boolean useExisting;
+	@CommandLine.Option(
+			names = "-vthreads",
+			description = "Handle requests on virtual threads, when the JVM supports them",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private boolean virtualThreads;
+	@CommandLine.Option(
+			names = "-backend",
+			description = "Storage backend for contacts: ${COMPLETION-CANDIDATES}",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private Backend backend = Backend.ELASTIC;
+	@CommandLine.Option(
+			names = "-bulksize",
+			description = "Maximum number of contacts per ElasticSearch bulk request",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int bulkSize = 1000;
+	@CommandLine.Option(
+			names = "-bulkbytes",
+			description = "Maximum size in bytes of an ElasticSearch bulk request",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private long bulkBytes = 5 * 1024 * 1024;
+	@CommandLine.Option(
+			names = "-cachesize",
+			description = "Maximum number of contacts to cache in memory, 0 to disable caching",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int cacheSize;
+	@CommandLine.Option(
+			names = "-cachebytes",
+			description = "Maximum estimated size in bytes of cached contacts",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private long cacheBytes = 64 * 1024 * 1024;
+	@CommandLine.Option(
+			names = "-cachettl",
+			description = "Time in milliseconds that contacts are cached for",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private long cacheTtl = 30_000;
+	@CommandLine.Option(
+			names = "-cachemissttl",
+			description = "Time in milliseconds that missing contacts are cached for",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private long cacheMissTtl = 1_000;
+	@CommandLine.Option(
+			names = "-suggestcachesize",
+			description = "Maximum number of prefixes to cache suggestions for, 0 to disable caching",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int suggestCacheSize = 1000;
+	@CommandLine.Option(
+			names = "-suggestcachebytes",
+			description = "Maximum estimated size in bytes of cached suggestions",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private long suggestCacheBytes = 4 * 1024 * 1024;
+	@CommandLine.Option(
+			names = "-suggestcachettl",
+			description = "Time in milliseconds that suggestions are cached for",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private long suggestCacheTtl = 5_000;
+	@CommandLine.Option(
+			names = "-coalesce",
+			arity = "1",
+			description = "Share one ElasticSearch request between concurrent lookups of the same contact",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private boolean coalesce = true;
+	@CommandLine.Option(
+			names = "-mgetwindow",
+			description = "Time in milliseconds to gather ElasticSearch lookups into one multi-get, 0 to disable",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private long multiGetWindow;
+	@CommandLine.Option(
+			names = "-mgetsize",
+			description = "Maximum number of lookups per ElasticSearch multi-get",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int multiGetSize = 100;
+	@CommandLine.Option(
+			names = "-admission",
+			arity = "1",
+			description = "Limit requests in flight, refusing expensive requests first when over capacity",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private boolean admission = true;
+	@CommandLine.Option(
+			names = "-admissionlimit",
+			description = "Requests in flight allowed at startup, the limit adapts to latency from there",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int admissionLimit = 50;
+	@CommandLine.Option(
+			names = "-admissionmax",
+			description = "Upper bound on the requests in flight",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int admissionMaxLimit = 500;
+	@CommandLine.Option(
+			names = "-admissionlatency",
+			description = "Time in milliseconds a request may take before the limit is lowered",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private long admissionLatency = 1_000;
+	@CommandLine.Option(
+			names = "-admissionqueue",
+			description = "Maximum number of requests waiting for capacity, each holds a server thread while it waits",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	// Well below the 200 threads of the default Jetty pool, so waiting requests cannot starve the ones admitted
+	private int admissionQueue = 20;
+	@CommandLine.Option(
+			names = "-admissionwait",
+			description = "Time in milliseconds a request may wait for capacity",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private long admissionWait = 100;
+	@CommandLine.Option(
+			names = "-breaker",
+			arity = "1",
+			description = "Stop calling ElasticSearch while it is failing, answering lookups from stale copies",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private boolean breaker = true;
+	@CommandLine.Option(
+			names = "-breakerwindow",
+			description = "Number of recent ElasticSearch calls the breaker's failure rates are taken over",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int breakerWindow = 20;
+	@CommandLine.Option(
+			names = "-breakerfailurerate",
+			description = "Percentage of failed ElasticSearch calls that opens the breaker",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int breakerFailureRate = 50;
+	@CommandLine.Option(
+			names = "-breakerslowcall",
+			description = "Time in milliseconds after which an ElasticSearch call counts as slow",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private long breakerSlowCall = 5_000;
+	@CommandLine.Option(
+			names = "-breakerslowrate",
+			description = "Percentage of slow ElasticSearch calls that opens the breaker",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int breakerSlowRate = 80;
+	@CommandLine.Option(
+			names = "-breakeropen",
+			description = "Time in milliseconds the breaker stays open before probing ElasticSearch again",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private long breakerOpenTime = 5_000;
+	@CommandLine.Option(
+			names = "-stalesize",
+			description = "Maximum number of stale contact copies kept for when ElasticSearch is unavailable",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int staleSize = 10_000;
+	@CommandLine.Option(
+			names = "-stalettl",
+			description = "Time in milliseconds that stale contact copies are kept for",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private long staleTtl = 3_600_000;
+	@CommandLine.Option(
+			names = "-compression",
+			arity = "1",
+			description = "Compress responses with gzip for clients that accept it",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private boolean compression = true;
+	@CommandLine.Option(
+			names = "-compressionmin",
+			description = "Size in bytes below which responses are sent uncompressed",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int compressionMinSize = 1024;
+	@CommandLine.Option(
+			names = "-compressionlevel",
+			description = "Compression level, from 1 for the fastest to 9 for the smallest",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private int compressionLevel = 6;
+	@CommandLine.Option(
+			names = "-metrics",
+			arity = "1",
+			description = "Record request and backend metrics, exported on /metrics",
+			showDefaultValue = CommandLine.Help.Visibility.ALWAYS)
+	private boolean metrics = true;
 	@CommandLine.Option(
 			names = "-help",
 			usageHelp = true, hidden = true)
@@ -76,6 +297,161 @@ public class Options {
 		this.elasticVersion = elasticVersion;
 	}
 
+	/**
+	 * @return ElasticSearch nodes as {@code host:port} or {@code scheme://host:port}.
+	 * Empty to use localhost on the {@link #getElasticPort() ElasticSearch port} and the port after it.
+	 */
+	public List<String> getElasticHosts() {
+		return elasticHosts;
+	}
+
+	/**
+	 * @param elasticHosts
+	 * 		ElasticSearch nodes as {@code host:port} or {@code scheme://host:port}.
+	 */
+	public void setElasticHosts(List<String> elasticHosts) {
+		this.elasticHosts = elasticHosts;
+	}
+
+	/**
+	 * @return Maximum number of open ElasticSearch connections.
+	 */
+	public int getElasticMaxConnections() {
+		return elasticMaxConnections;
+	}
+
+	/**
+	 * @param elasticMaxConnections
+	 * 		Maximum number of open ElasticSearch connections.
+	 */
+	public void setElasticMaxConnections(int elasticMaxConnections) {
+		this.elasticMaxConnections = elasticMaxConnections;
+	}
+
+	/**
+	 * @return Maximum number of open ElasticSearch connections to each node.
+	 */
+	public int getElasticMaxConnectionsPerNode() {
+		return elasticMaxConnectionsPerNode;
+	}
+
+	/**
+	 * @param elasticMaxConnectionsPerNode
+	 * 		Maximum number of open ElasticSearch connections to each node.
+	 */
+	public void setElasticMaxConnectionsPerNode(int elasticMaxConnectionsPerNode) {
+		this.elasticMaxConnectionsPerNode = elasticMaxConnectionsPerNode;
+	}
+
+	/**
+	 * @return Time in milliseconds to wait for an ElasticSearch connection to open.
+	 */
+	public int getElasticConnectTimeout() {
+		return elasticConnectTimeout;
+	}
+
+	/**
+	 * @param elasticConnectTimeout
+	 * 		Time in milliseconds to wait for an ElasticSearch connection to open.
+	 */
+	public void setElasticConnectTimeout(int elasticConnectTimeout) {
+		this.elasticConnectTimeout = elasticConnectTimeout;
+	}
+
+	/**
+	 * @return Time in milliseconds to wait for data from an ElasticSearch node.
+	 */
+	public int getElasticSocketTimeout() {
+		return elasticSocketTimeout;
+	}
+
+	/**
+	 * @param elasticSocketTimeout
+	 * 		Time in milliseconds to wait for data from an ElasticSearch node.
+	 */
+	public void setElasticSocketTimeout(int elasticSocketTimeout) {
+		this.elasticSocketTimeout = elasticSocketTimeout;
+	}
+
+	/**
+	 * @return Time in milliseconds to keep idle ElasticSearch connections open.
+	 * {@code 0} to follow the node's keep-alive header.
+	 */
+	public long getElasticKeepAlive() {
+		return elasticKeepAlive;
+	}
+
+	/**
+	 * @param elasticKeepAlive
+	 * 		Time in milliseconds to keep idle ElasticSearch connections open.
+	 * 		{@code 0} to follow the node's keep-alive header.
+	 */
+	public void setElasticKeepAlive(long elasticKeepAlive) {
+		this.elasticKeepAlive = elasticKeepAlive;
+	}
+
+	/**
+	 * @return Time in milliseconds between refreshing ElasticSearch nodes from the cluster.
+	 * {@code 0} when disabled.
+	 */
+	public int getElasticSniffInterval() {
+		return elasticSniffInterval;
+	}
+
+	/**
+	 * @param elasticSniffInterval
+	 * 		Time in milliseconds between refreshing ElasticSearch nodes from the cluster.
+	 * 		{@code 0} to disable.
+	 */
+	public void setElasticSniffInterval(int elasticSniffInterval) {
+		this.elasticSniffInterval = elasticSniffInterval;
+	}
+
+	/**
+	 * @return Number of primary shards of the ElasticSearch index.
+	 */
+	public int getElasticShards() {
+		return elasticShards;
+	}
+
+	/**
+	 * @param elasticShards
+	 * 		Number of primary shards of the ElasticSearch index.
+	 */
+	public void setElasticShards(int elasticShards) {
+		this.elasticShards = elasticShards;
+	}
+
+	/**
+	 * @return Number of replicas of each ElasticSearch index shard.
+	 */
+	public int getElasticReplicas() {
+		return elasticReplicas;
+	}
+
+	/**
+	 * @param elasticReplicas
+	 * 		Number of replicas of each ElasticSearch index shard.
+	 */
+	public void setElasticReplicas(int elasticReplicas) {
+		this.elasticReplicas = elasticReplicas;
+	}
+
+	/**
+	 * @return Refresh interval of the ElasticSearch index, such as {@code 1s}. {@code -1} when disabled.
+	 */
+	public String getElasticRefreshInterval() {
+		return elasticRefreshInterval;
+	}
+
+	/**
+	 * @param elasticRefreshInterval
+	 * 		Refresh interval of the ElasticSearch index, such as {@code 1s}. {@code -1} to disable.
+	 */
+	public void setElasticRefreshInterval(String elasticRefreshInterval) {
+		this.elasticRefreshInterval = elasticRefreshInterval;
+	}
+
 	/**
 	 * @return {@code true} if the server should use an currently running ElasticSearch server.
 	 * {@code false} otherwise.
@@ -93,10 +469,507 @@ public class Options {
 		this.useExisting = useExisting;
 	}
 
+	/**
+	 * @return {@code true} when requests should be handled on virtual threads.
+	 */
+	public boolean useVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * @param virtualThreads
+	 * 		Handle requests on virtual threads, when the JVM supports them.
+	 */
+	public void setUseVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * @return Storage backend for contacts.
+	 */
+	public Backend getBackend() {
+		return backend;
+	}
+
+	/**
+	 * @param backend
+	 * 		Storage backend for contacts.
+	 */
+	public void setBackend(Backend backend) {
+		this.backend = backend;
+	}
+
+	/**
+	 * @return Maximum number of contacts per ElasticSearch bulk request.
+	 */
+	public int getBulkSize() {
+		return bulkSize;
+	}
+
+	/**
+	 * @param bulkSize
+	 * 		Maximum number of contacts per ElasticSearch bulk request.
+	 */
+	public void setBulkSize(int bulkSize) {
+		this.bulkSize = bulkSize;
+	}
+
+	/**
+	 * @return Maximum size in bytes of an ElasticSearch bulk request.
+	 */
+	public long getBulkBytes() {
+		return bulkBytes;
+	}
+
+	/**
+	 * @param bulkBytes
+	 * 		Maximum size in bytes of an ElasticSearch bulk request.
+	 */
+	public void setBulkBytes(long bulkBytes) {
+		this.bulkBytes = bulkBytes;
+	}
+
+	/**
+	 * @return Maximum number of contacts to cache in memory. {@code 0} when caching is disabled.
+	 */
+	public int getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * @param cacheSize
+	 * 		Maximum number of contacts to cache in memory. {@code 0} to disable caching.
+	 */
+	public void setCacheSize(int cacheSize) {
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * @return Maximum estimated size in bytes of cached contacts.
+	 */
+	public long getCacheBytes() {
+		return cacheBytes;
+	}
+
+	/**
+	 * @param cacheBytes
+	 * 		Maximum estimated size in bytes of cached contacts.
+	 */
+	public void setCacheBytes(long cacheBytes) {
+		this.cacheBytes = cacheBytes;
+	}
+
+	/**
+	 * @return Time in milliseconds that contacts are cached for.
+	 */
+	public long getCacheTtl() {
+		return cacheTtl;
+	}
+
+	/**
+	 * @param cacheTtl
+	 * 		Time in milliseconds that contacts are cached for.
+	 */
+	public void setCacheTtl(long cacheTtl) {
+		this.cacheTtl = cacheTtl;
+	}
+
+	/**
+	 * @return Time in milliseconds that missing contacts are cached for.
+	 */
+	public long getCacheMissTtl() {
+		return cacheMissTtl;
+	}
+
+	/**
+	 * @param cacheMissTtl
+	 * 		Time in milliseconds that missing contacts are cached for.
+	 */
+	public void setCacheMissTtl(long cacheMissTtl) {
+		this.cacheMissTtl = cacheMissTtl;
+	}
+
+	/**
+	 * @return Maximum number of prefixes to cache suggestions for, 0 to disable caching.
+	 */
+	public int getSuggestCacheSize() {
+		return suggestCacheSize;
+	}
+
+	/**
+	 * @param suggestCacheSize
+	 * 		Maximum number of prefixes to cache suggestions for, 0 to disable caching.
+	 */
+	public void setSuggestCacheSize(int suggestCacheSize) {
+		this.suggestCacheSize = suggestCacheSize;
+	}
+
+	/**
+	 * @return Maximum estimated size in bytes of cached suggestions.
+	 */
+	public long getSuggestCacheBytes() {
+		return suggestCacheBytes;
+	}
+
+	/**
+	 * @param suggestCacheBytes
+	 * 		Maximum estimated size in bytes of cached suggestions.
+	 */
+	public void setSuggestCacheBytes(long suggestCacheBytes) {
+		this.suggestCacheBytes = suggestCacheBytes;
+	}
+
+	/**
+	 * @return Time in milliseconds that suggestions are cached for.
+	 */
+	public long getSuggestCacheTtl() {
+		return suggestCacheTtl;
+	}
+
+	/**
+	 * @param suggestCacheTtl
+	 * 		Time in milliseconds that suggestions are cached for.
+	 */
+	public void setSuggestCacheTtl(long suggestCacheTtl) {
+		this.suggestCacheTtl = suggestCacheTtl;
+	}
+
+	/**
+	 * @return {@code true} if concurrent lookups of the same contact should share one request.
+	 */
+	public boolean useCoalescing() {
+		return coalesce;
+	}
+
+	/**
+	 * @param coalesce
+	 * 		{@code true} if concurrent lookups of the same contact should share one request.
+	 */
+	public void setUseCoalescing(boolean coalesce) {
+		this.coalesce = coalesce;
+	}
+
+	/**
+	 * @return Time in milliseconds to gather ElasticSearch lookups into one multi-get.
+	 * {@code 0} when disabled.
+	 */
+	public long getMultiGetWindow() {
+		return multiGetWindow;
+	}
+
+	/**
+	 * @param multiGetWindow
+	 * 		Time in milliseconds to gather ElasticSearch lookups into one multi-get.
+	 * 		{@code 0} to disable.
+	 */
+	public void setMultiGetWindow(long multiGetWindow) {
+		this.multiGetWindow = multiGetWindow;
+	}
+
+	/**
+	 * @return Maximum number of lookups per ElasticSearch multi-get.
+	 */
+	public int getMultiGetSize() {
+		return multiGetSize;
+	}
+
+	/**
+	 * @param multiGetSize
+	 * 		Maximum number of lookups per ElasticSearch multi-get.
+	 */
+	public void setMultiGetSize(int multiGetSize) {
+		this.multiGetSize = multiGetSize;
+	}
+
+	/**
+	 * @return {@code true} if requests in flight should be limited.
+	 */
+	public boolean useAdmissionControl() {
+		return admission;
+	}
+
+	/**
+	 * @param admission
+	 * 		{@code true} if requests in flight should be limited.
+	 */
+	public void setUseAdmissionControl(boolean admission) {
+		this.admission = admission;
+	}
+
+	/**
+	 * @return Requests in flight allowed at startup.
+	 */
+	public int getAdmissionLimit() {
+		return admissionLimit;
+	}
+
+	/**
+	 * @param admissionLimit
+	 * 		Requests in flight allowed at startup.
+	 */
+	public void setAdmissionLimit(int admissionLimit) {
+		this.admissionLimit = admissionLimit;
+	}
+
+	/**
+	 * @return Upper bound on the requests in flight.
+	 */
+	public int getAdmissionMaxLimit() {
+		return admissionMaxLimit;
+	}
+
+	/**
+	 * @param admissionMaxLimit
+	 * 		Upper bound on the requests in flight.
+	 */
+	public void setAdmissionMaxLimit(int admissionMaxLimit) {
+		this.admissionMaxLimit = admissionMaxLimit;
+	}
+
+	/**
+	 * @return Time in milliseconds a request may take before the limit is lowered.
+	 */
+	public long getAdmissionLatency() {
+		return admissionLatency;
+	}
+
+	/**
+	 * @param admissionLatency
+	 * 		Time in milliseconds a request may take before the limit is lowered.
+	 */
+	public void setAdmissionLatency(long admissionLatency) {
+		this.admissionLatency = admissionLatency;
+	}
+
+	/**
+	 * @return Maximum number of requests waiting for capacity.
+	 */
+	public int getAdmissionQueue() {
+		return admissionQueue;
+	}
+
+	/**
+	 * @param admissionQueue
+	 * 		Maximum number of requests waiting for capacity.
+	 */
+	public void setAdmissionQueue(int admissionQueue) {
+		this.admissionQueue = admissionQueue;
+	}
+
+	/**
+	 * @return Time in milliseconds a request may wait for capacity.
+	 */
+	public long getAdmissionWait() {
+		return admissionWait;
+	}
+
+	/**
+	 * @param admissionWait
+	 * 		Time in milliseconds a request may wait for capacity.
+	 */
+	public void setAdmissionWait(long admissionWait) {
+		this.admissionWait = admissionWait;
+	}
+
+	/**
+	 * @return {@code true} if calls to ElasticSearch should stop while it is failing.
+	 */
+	public boolean useCircuitBreaker() {
+		return breaker;
+	}
+
+	/**
+	 * @param breaker
+	 * 		{@code true} if calls to ElasticSearch should stop while it is failing.
+	 */
+	public void setUseCircuitBreaker(boolean breaker) {
+		this.breaker = breaker;
+	}
+
+	/**
+	 * @return Number of recent ElasticSearch calls the breaker's failure rates are taken over.
+	 */
+	public int getBreakerWindow() {
+		return breakerWindow;
+	}
+
+	/**
+	 * @param breakerWindow
+	 * 		Number of recent ElasticSearch calls the breaker's failure rates are taken over.
+	 */
+	public void setBreakerWindow(int breakerWindow) {
+		this.breakerWindow = breakerWindow;
+	}
+
+	/**
+	 * @return Percentage of failed ElasticSearch calls that opens the breaker.
+	 */
+	public int getBreakerFailureRate() {
+		return breakerFailureRate;
+	}
+
+	/**
+	 * @param breakerFailureRate
+	 * 		Percentage of failed ElasticSearch calls that opens the breaker.
+	 */
+	public void setBreakerFailureRate(int breakerFailureRate) {
+		this.breakerFailureRate = breakerFailureRate;
+	}
+
+	/**
+	 * @return Time in milliseconds after which an ElasticSearch call counts as slow.
+	 */
+	public long getBreakerSlowCall() {
+		return breakerSlowCall;
+	}
+
+	/**
+	 * @param breakerSlowCall
+	 * 		Time in milliseconds after which an ElasticSearch call counts as slow.
+	 */
+	public void setBreakerSlowCall(long breakerSlowCall) {
+		this.breakerSlowCall = breakerSlowCall;
+	}
+
+	/**
+	 * @return Percentage of slow ElasticSearch calls that opens the breaker.
+	 */
+	public int getBreakerSlowRate() {
+		return breakerSlowRate;
+	}
+
+	/**
+	 * @param breakerSlowRate
+	 * 		Percentage of slow ElasticSearch calls that opens the breaker.
+	 */
+	public void setBreakerSlowRate(int breakerSlowRate) {
+		this.breakerSlowRate = breakerSlowRate;
+	}
+
+	/**
+	 * @return Time in milliseconds the breaker stays open before probing ElasticSearch again.
+	 */
+	public long getBreakerOpenTime() {
+		return breakerOpenTime;
+	}
+
+	/**
+	 * @param breakerOpenTime
+	 * 		Time in milliseconds the breaker stays open before probing ElasticSearch again.
+	 */
+	public void setBreakerOpenTime(long breakerOpenTime) {
+		this.breakerOpenTime = breakerOpenTime;
+	}
+
+	/**
+	 * @return Maximum number of stale contact copies kept for when ElasticSearch is unavailable.
+	 */
+	public int getStaleSize() {
+		return staleSize;
+	}
+
+	/**
+	 * @param staleSize
+	 * 		Maximum number of stale contact copies kept for when ElasticSearch is unavailable.
+	 */
+	public void setStaleSize(int staleSize) {
+		this.staleSize = staleSize;
+	}
+
+	/**
+	 * @return Time in milliseconds that stale contact copies are kept for.
+	 */
+	public long getStaleTtl() {
+		return staleTtl;
+	}
+
+	/**
+	 * @param staleTtl
+	 * 		Time in milliseconds that stale contact copies are kept for.
+	 */
+	public void setStaleTtl(long staleTtl) {
+		this.staleTtl = staleTtl;
+	}
+
+	/**
+	 * @return {@code true} if responses should be compressed for clients that accept it.
+	 */
+	public boolean useCompression() {
+		return compression;
+	}
+
+	/**
+	 * @param compression
+	 * 		{@code true} if responses should be compressed for clients that accept it.
+	 */
+	public void setUseCompression(boolean compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * @return Size in bytes below which responses are sent uncompressed.
+	 */
+	public int getCompressionMinSize() {
+		return compressionMinSize;
+	}
+
+	/**
+	 * @param compressionMinSize
+	 * 		Size in bytes below which responses are sent uncompressed.
+	 */
+	public void setCompressionMinSize(int compressionMinSize) {
+		this.compressionMinSize = compressionMinSize;
+	}
+
+	/**
+	 * @return Compression level, from 1 for the fastest to 9 for the smallest.
+	 */
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	/**
+	 * @param compressionLevel
+	 * 		Compression level, from 1 for the fastest to 9 for the smallest.
+	 */
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * @return {@code true} if request and backend metrics should be recorded.
+	 */
+	public boolean useMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @param metrics
+	 * 		{@code true} if request and backend metrics should be recorded.
+	 */
+	public void setUseMetrics(boolean metrics) {
+		this.metrics = metrics;
+	}
+
 	/**
 	 * @return {@code true} if user requested command info, {@code false} otherwise.
 	 */
 	public boolean wasHelpRequested() {
 		return help;
 	}
+
+	/**
+	 * Storage backends for contacts.
+	 */
+	public enum Backend {
+		/**
+		 * ElasticSearch server, see {@link me.coley.addressbook.service.impl.ElasticContactService}.
+		 */
+		ELASTIC,
+		/**
+		 * Process memory, see {@link me.coley.addressbook.service.impl.InMemoryContactService}.
+		 * Contacts are lost when the server stops.
+		 */
+		MEMORY
+	}
 }
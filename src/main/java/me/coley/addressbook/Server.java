@@ -1,19 +1,62 @@
 package me.coley.addressbook;
 
+import me.coley.addressbook.endpoint.AdmissionRoute;
+import me.coley.addressbook.endpoint.AsyncEndpoint;
+import me.coley.addressbook.endpoint.AsyncJettyServerFactory;
+import me.coley.addressbook.endpoint.ETags;
 import me.coley.addressbook.endpoint.Endpoint;
+import me.coley.addressbook.endpoint.InstrumentedRoute;
+import me.coley.addressbook.endpoint.LineWriter;
+import me.coley.addressbook.endpoint.Reply;
+import me.coley.addressbook.endpoint.StreamingEndpoint;
+import me.coley.addressbook.endpoint.VirtualThreadPool;
+import me.coley.addressbook.metrics.Metrics;
+import me.coley.addressbook.metrics.PrometheusWriter;
 import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactBatch;
+import me.coley.addressbook.model.ContactQuery;
+import me.coley.addressbook.model.Phone;
+import me.coley.addressbook.service.BulkImporter;
 import me.coley.addressbook.service.ContactService;
+import me.coley.addressbook.service.impl.BatchingContactService;
+import me.coley.addressbook.service.impl.CachingContactService;
+import me.coley.addressbook.service.impl.CircuitBreakingContactService;
+import me.coley.addressbook.service.impl.CoalescingContactService;
 import me.coley.addressbook.service.impl.ElasticContactService;
+import me.coley.addressbook.service.impl.InMemoryContactService;
+import me.coley.addressbook.service.impl.InstrumentedContactService;
+import me.coley.addressbook.service.impl.SuggestionCachingContactService;
+import me.coley.addressbook.util.BoundedCache;
+import me.coley.addressbook.util.CircuitBreaker;
+import me.coley.addressbook.util.ConcurrencyLimiter;
+import me.coley.addressbook.util.ConcurrencyLimiter.Priority;
+import me.coley.addressbook.util.Json;
+import me.coley.addressbook.util.MicroBatcher;
+import me.coley.addressbook.util.WireFormat;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
 import pl.allegro.tech.embeddedelasticsearch.EmbeddedElastic;
 import pl.allegro.tech.embeddedelasticsearch.PopularProperties;
+import spark.Request;
+import spark.Route;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import static spark.Spark.*;
-import static me.coley.addressbook.util.Json.fromJson;
+import static me.coley.addressbook.endpoint.ETags.conditional;
 import static me.coley.addressbook.util.ResponseWrapper.success;
 
 /**
@@ -22,7 +65,17 @@ import static me.coley.addressbook.util.ResponseWrapper.success;
 public class Server {
 	private static final Logger LOG = LoggerFactory.getLogger(Server.class);
 	private static final String INDEX = "book";
+	// Upper bound on the names in one multi-get request
+	private static final int MAX_MGET_NAMES = 1000;
+	// Suggestions per request when no limit is given, and upper bound on the limit
+	private static final int DEFAULT_SUGGESTIONS = 10;
+	private static final int MAX_SUGGESTIONS = 50;
+	// Longest prefix to suggest for, anything longer is no longer being typed
+	private static final int MAX_PREFIX_LENGTH = 100;
 	private static final Options options = new Options();
+	private static final Metrics metrics = new Metrics();
+	// Breaker in front of ElasticSearch, holding the stale copies lookups fall back to. May be null
+	private static CircuitBreakingContactService breaker;
 
 	/**
 	 * Read arguments and start the server.
@@ -53,71 +106,416 @@ public class Server {
 	 * 		Options to use for running the server.
 	 *
 	 * @return ElasticSearch wrapper. Will be {@code null} if the {@link #options} specify
-	 * {@link Options#useExisting()}.
+	 * {@link Options#useExisting()}, or the {@link Options.Backend#MEMORY memory backend}.
 	 *
 	 * @throws Exception
 	 * 		When the ElasticServer instance could not be started.
 	 */
 	public static EmbeddedElastic start(Options options) throws Exception {
-		// Setup directory for ElasticSearch
-		File downloadDir = new File("elasticsearch-server");
-		if (!downloadDir.exists())
-			downloadDir.mkdir();
 		// Spin up ElasticSearch
 		EmbeddedElastic embeddedElastic = null;
-		if (!options.useExisting()) {
+		if (options.getBackend() == Options.Backend.ELASTIC && !options.useExisting()) {
+			// Setup directory for ElasticSearch
+			File downloadDir = new File("elasticsearch-server");
+			if (!downloadDir.exists())
+				downloadDir.mkdir();
 			embeddedElastic = EmbeddedElastic.builder()
 					.withElasticVersion(options.getElasticVersion())
 					.withSetting(PopularProperties.HTTP_PORT, options.getElasticPort())
 					.withDownloadDirectory(downloadDir).build();
 			embeddedElastic.start();
 		}
-		// Ignite SparkJava
+		// Ignite SparkJava, with a Jetty server that lets async endpoints respond after their route returns
+		GzipHandler compression = options.useCompression() ?
+				AsyncJettyServerFactory.compression(options.getCompressionMinSize(), options.getCompressionLevel()) :
+				null;
+		EmbeddedJettyFactory jetty = new EmbeddedJettyFactory(new AsyncJettyServerFactory(compression));
+		if (options.useVirtualThreads()) {
+			if (VirtualThreadPool.isSupported())
+				jetty.withThreadPool(new VirtualThreadPool());
+			else
+				LOG.warn("Virtual threads are not supported by this JVM, using the default thread pool");
+		}
+		EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY, jetty);
 		port(options.getSparkPort());
 		return embeddedElastic;
 	}
 
+	/**
+	 * @return Contact service, wrapped with the layers enabled by the {@link #options}.
+	 */
+	private static ContactService createService() {
+		ContactService service;
+		switch(options.getBackend()) {
+			case MEMORY:
+				service = instrument(new InMemoryContactService());
+				break;
+			case ELASTIC:
+			default:
+				ElasticContactService elastic = new ElasticContactService(INDEX, options);
+				try {
+					elastic.bootstrap();
+				} catch(IOException | RuntimeException ex) {
+					LOG.error("Failed to create index '{}', it will be created on first write without the explicit mapping",
+							INDEX, ex);
+				}
+				ContactService backend = instrument(elastic);
+				if (options.useCircuitBreaker()) {
+					breaker = new CircuitBreakingContactService(backend, options);
+					if (options.useMetrics()) {
+						CircuitBreaker circuit = breaker.getBreaker();
+						metrics.gauge("breaker_state", "ElasticSearch breaker state, 0 closed, 1 open, 2 half-open",
+								() -> circuit.getState().ordinal());
+						metrics.counter("breaker_rejected", "ElasticSearch calls refused by the open breaker",
+								circuit::getRejectedCount);
+						metrics.counter("stale_responses", "Lookups answered from stale copies",
+								breaker::getStaleServedCount);
+					}
+					backend = breaker;
+				}
+				service = backend;
+				if (options.getMultiGetWindow() > 0) {
+					BatchingContactService batching = new BatchingContactService(backend, backend::getAllAsync, options);
+					if (options.useMetrics()) {
+						MicroBatcher<String, Contact> batcher = batching.getBatcher();
+						metrics.sizes("mget_batch_size", "Lookups per ElasticSearch multi-get",
+								batcher::getBatchSizeCounts, batcher::getKeyCount);
+					}
+					service = batching;
+				}
+				break;
+		}
+		// Coalesce below the cache, so only cache misses are coalesced
+		if (options.useCoalescing()) {
+			CoalescingContactService coalescing = new CoalescingContactService(service);
+			if (options.useMetrics())
+				metrics.counter("coalesced_lookups", "Lookups that shared the result of a lookup in flight",
+						coalescing::getCoalescedCount);
+			service = coalescing;
+		}
+		if (options.getCacheSize() > 0) {
+			CachingContactService caching = new CachingContactService(service, options);
+			if (options.useMetrics()) {
+				BoundedCache<String, ?> cache = caching.getCache();
+				metrics.counter("cache_hits", "Lookups served from the cache", cache::getHitCount);
+				metrics.counter("cache_misses", "Lookups not found in the cache", cache::getMissCount);
+				metrics.counter("cache_evictions", "Contacts evicted to keep the cache in bounds",
+						cache::getEvictionCount);
+				metrics.gauge("cache_entries", "Contacts in the cache", cache::size);
+			}
+			service = caching;
+		}
+		if (options.getSuggestCacheSize() > 0) {
+			SuggestionCachingContactService caching = new SuggestionCachingContactService(service, options);
+			if (options.useMetrics()) {
+				BoundedCache<String, ?> cache = caching.getCache();
+				metrics.counter("suggest_cache_hits", "Suggestions served from the cache", cache::getHitCount);
+				metrics.counter("suggest_cache_misses", "Suggestions not found in the cache", cache::getMissCount);
+				metrics.gauge("suggest_cache_entries", "Prefixes in the suggestion cache", cache::size);
+			}
+			service = caching;
+		}
+		return service;
+	}
+
+	/**
+	 * @return Limiter shared by all routes, or {@code null} if admission control is disabled.
+	 */
+	private static ConcurrencyLimiter createLimiter() {
+		if (!options.useAdmissionControl())
+			return null;
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(options.getAdmissionLimit(), options.getAdmissionMaxLimit(),
+				options.getAdmissionLatency(), options.getAdmissionQueue(), options.getAdmissionWait());
+		if (options.useMetrics()) {
+			metrics.gauge("admission_limit", "Requests in flight allowed by admission control", limiter::getLimit);
+			metrics.gauge("admission_in_flight", "Requests admitted and in flight", limiter::getInFlight);
+			metrics.gauge("admission_queued", "Requests waiting for capacity", limiter::getQueued);
+			metrics.counter("admission_rejected", "Requests refused for being over capacity",
+					limiter::getRejectedCount);
+		}
+		return limiter;
+	}
+
+	/**
+	 * @param backend
+	 * 		Backend contact service.
+	 *
+	 * @return Backend with its calls timed, when metrics are enabled.
+	 */
+	private static ContactService instrument(ContactService backend) {
+		return options.useMetrics() ? new InstrumentedContactService(backend, metrics) : backend;
+	}
+
+	/**
+	 * @param route
+	 * 		Route to register.
+	 *
+	 * @return Route with its requests recorded, when metrics are enabled.
+	 */
+	private static Route instrument(Route route) {
+		return options.useMetrics() ? new InstrumentedRoute(route, metrics) : route;
+	}
+
+	/**
+	 * @param route
+	 * 		Route to register.
+	 * @param limiter
+	 * 		Limiter shared by all routes. May be {@code null} to admit every request.
+	 * @param priority
+	 * 		Priority of the route's requests. Expensive routes are given {@link Priority#LOW},
+	 * 		so they are refused before cheap lookups when over capacity.
+	 *
+	 * @return Route with its requests admitted by the limiter.
+	 */
+	private static Route limit(Route route, ConcurrencyLimiter limiter, Priority priority) {
+		return limiter == null ? route : new AdmissionRoute(route, limiter, priority);
+	}
+
+	/**
+	 * @param route
+	 * 		Streaming route to register.
+	 * @param limiter
+	 * 		Limiter shared by all routes. May be {@code null} to admit every request.
+	 *
+	 * @return Route with its requests admitted by the limiter at {@link Priority#LOW low priority}.
+	 * Streams take as long as their data does, so their duration does not adapt the limit.
+	 */
+	private static Route limitStream(Route route, ConcurrencyLimiter limiter) {
+		return limiter == null ? route : new AdmissionRoute(route, limiter, Priority.LOW, false);
+	}
+
 	/**
 	 * Spark server setup.
 	 */
 	private static void setup() {
 		initExceptionHandler((ex) -> LOG.error("Failed to initialize spark server", ex));
 		// Create service
-		ContactService service = new ElasticContactService(INDEX, options);
+		ContactService service = createService();
+		ConcurrencyLimiter limiter = createLimiter();
 		// Add contact
-		post("/contact", new Endpoint((req, res)-> {
-			Contact contact = fromJson(req.body(), Contact.class);
-			service.add(contact);
-			return success(contact);
-		}));
+		post("/contact", instrument(limit(new AsyncEndpoint((req, res)-> {
+			Contact contact = parseBody(req, Contact.class);
+			return service.addAsync(contact).thenApply(ignored -> Reply.of(success(contact)));
+		}), limiter, Priority.HIGH)));
+		// Add many contacts
+		post("/contacts/_bulk", instrument(limitStream(new StreamingEndpoint((req, res) -> {
+			BulkImporter importer = new BulkImporter(service, options.getBulkSize());
+			try (Reader reader = new InputStreamReader(req.raw().getInputStream(), StandardCharsets.UTF_8)) {
+				return success(importer.run(reader));
+			}
+		}), limiter)));
+		// Fetch many contacts by name
+		//  - one lookup for all names, names with no matching contact are listed rather than failing the call
+		post("/contact/_mget", instrument(limit(new AsyncEndpoint((req, res) -> {
+			Set<String> names = parseNames(parseBody(req, String[].class));
+			CompletableFuture<Map<String, Contact>> lookup = service.getAllAsync(names);
+			Reply reply = new Reply();
+			if (breaker != null)
+				lookup = breaker.withStaleFallback(lookup, names, age -> markStale(reply, age));
+			return lookup.thenApply(found -> reply.content(success(ContactBatch.of(names, found))));
+		}), limiter, Priority.HIGH)));
 		// Delete contact
-		delete("/contact/:name", new Endpoint((req, res) -> {
-			service.delete(req.params(":name"));
-			return success(null);
-		}));
+		delete("/contact/:name", instrument(limit(new AsyncEndpoint((req, res) ->
+				service.deleteAsync(req.params(":name")).thenApply(ignored -> Reply.of(success(null)))),
+				limiter, Priority.HIGH)));
 		// List contacts
-		get("/contact", new Endpoint((req, res) -> {
-			String pageSizeStr = req.queryParams("pageSize");
-			if (pageSizeStr == null || !pageSizeStr.matches("\\d+"))
-				throw new NullPointerException("Missing page size parameter");
-			String pageStr = req.queryParams("page");
-			if (pageStr == null || !pageStr.matches("\\d+"))
-				throw new NullPointerException("Missing page parameter");
+		//  - by cursor when one is given (empty for the first page), otherwise by page number
+		//  - answered with 304 and no body when If-None-Match holds the page's tag
+		get("/contact", instrument(limit(new AsyncEndpoint((req, res) -> {
+			int pageSize = parseCount(req.queryParams("pageSize"), "Missing page size parameter");
 			String queryStr = req.queryParams("query");
-			int pageSize = Integer.parseInt(pageSizeStr);
-			int page = Integer.parseInt(pageStr);
-			return success(service.contacts(page, pageSize, queryStr));
-		}));
+			String cursor = req.queryParams("cursor");
+			if (cursor != null)
+				return service.contactsAfterAsync(cursor.isEmpty() ? null : cursor, pageSize, queryStr)
+						.thenApply(page -> conditional(req, new Reply(), ETags.of(page.getContacts(), page.getNext()),
+								success(page.getContacts(), page.getNext())));
+			int page = parseCount(req.queryParams("page"), "Missing page parameter");
+			return service.contactsAsync(page, pageSize, queryStr)
+					.thenApply(contacts -> conditional(req, new Reply(), ETags.of(contacts, null), success(contacts)));
+		}), limiter, Priority.LOW)));
 		// Update contact
-		put("/contact", new Endpoint((req, res) -> {
-			Contact contact = fromJson(req.body(), Contact.class);
-			Contact old = service.update(contact);
-			return success(old);
-		}));
+		//  - only if the stored contact still has the tag given by If-Match, when one is given
+		put("/contact", instrument(limit(new AsyncEndpoint((req, res) -> {
+			Contact contact = parseBody(req, Contact.class);
+			String ifMatch = req.headers("If-Match");
+			return service.updateAsync(contact, current -> ETags.ifMatch(ifMatch, ETags.of(current)))
+					.thenApply(old -> {
+						Reply reply = Reply.of(success(old));
+						ETags.tag(req, reply, ETags.of(contact));
+						return reply;
+					});
+		}), limiter, Priority.HIGH)));
+		// Search contacts with structured filters, by cursor
+		//  - must be registered before the fetch route, otherwise "_search" is taken as a name
+		get("/contact/_search", instrument(limit(new AsyncEndpoint((req, res) -> {
+			int pageSize = parseCount(req.queryParams("pageSize"), "Missing page size parameter");
+			String cursor = req.queryParams("cursor");
+			ContactQuery query = new ContactQuery(req.queryParams("name"), req.queryParams("prefix"),
+					req.queryParams("number"), parseType(req.queryParams("type")), req.queryParams("address"));
+			return service.searchAsync(query, cursor == null || cursor.isEmpty() ? null : cursor, pageSize)
+					.thenApply(page -> Reply.of(success(page.getContacts(), page.getNext())));
+		}), limiter, Priority.LOW)));
+		// Suggest contact names while a name or address is typed
+		//  - must be registered before the fetch route, otherwise "_suggest" is taken as a name
+		get("/contact/_suggest", instrument(limit(new AsyncEndpoint((req, res) -> {
+			String prefix = parsePrefix(req.queryParams("prefix"));
+			String limit = req.queryParams("limit");
+			int max = limit == null ? DEFAULT_SUGGESTIONS : parseCount(limit, "Invalid limit parameter");
+			if (max > MAX_SUGGESTIONS)
+				throw new IllegalArgumentException("Too many suggestions, at most " + MAX_SUGGESTIONS + " may be requested");
+			return service.suggestAsync(prefix, max).thenApply(names -> Reply.of(success(names)));
+		}), limiter, Priority.LOW)));
+		// Export all contacts, one JSON document per line
+		//  - must be registered before the fetch route, otherwise "_export" is taken as a name
+		//  - failures before the first line are answered with their status, later ones abort the connection
+		get("/contact/_export", instrument(limitStream(new Endpoint((req, res) -> {
+			LineWriter lines = new LineWriter(req, res);
+			try {
+				service.forEach(req.queryParams("query"), lines::write);
+			} catch(RuntimeException ex) {
+				if (!lines.isStarted())
+					throw ex;
+				LOG.warn("Export failed after it started, aborting the response", ex);
+				lines.abort(ex);
+				return "";
+			}
+			lines.close();
+			return "";
+		}), limiter)));
 		// Fetch contact
-		get("/contact/:name", new Endpoint((req, res) -> {
-			Contact contact = service.get(req.params(":name"));
-			return success(contact);
-		}));
+		//  - answered from a stale copy while ElasticSearch is unavailable, marked by the Age and Warning headers
+		//  - answered with 304 and no body when If-None-Match holds the contact's tag
+		get("/contact/:name", instrument(limit(new AsyncEndpoint((req, res) -> {
+			String name = req.params(":name");
+			CompletableFuture<Contact> lookup = service.getAsync(name);
+			Reply reply = new Reply();
+			if (breaker != null)
+				lookup = breaker.withStaleFallback(lookup, name, age -> markStale(reply, age));
+			return lookup.thenApply(contact -> conditional(req, reply, ETags.of(contact), success(contact)));
+		}), limiter, Priority.HIGH)));
+		// Metrics, in the Prometheus text format
+		if (options.useMetrics())
+			get("/metrics", (req, res) -> {
+				res.type(PrometheusWriter.CONTENT_TYPE);
+				StringWriter writer = new StringWriter();
+				metrics.writeTo(writer);
+				return writer.toString();
+			});
+	}
+
+	/**
+	 * Mark a reply as answered from stale copies, with the
+	 * <a href="https://www.rfc-editor.org/rfc/rfc7234#section-5.5.1">stale response warning</a>.
+	 *
+	 * @param reply
+	 * 		Reply to mark.
+	 * @param age
+	 * 		Age in seconds of the oldest copy in the reply.
+	 */
+	private static void markStale(Reply reply, long age) {
+		reply.header("Age", Long.toString(age));
+		reply.header("Warning", "110 - \"Response is Stale\"");
+	}
+
+	/**
+	 * @param req
+	 * 		Request with a body in one of the {@link WireFormat wire formats}, given by its content type.
+	 * @param type
+	 * 		Class type of the body.
+	 * @param <T>
+	 * 		Generic type of the body.
+	 *
+	 * @return Instance read from the body.
+	 */
+	private static <T> T parseBody(Request req, Class<T> type) {
+		return Json.read(req.bodyAsBytes(), WireFormat.of(req.contentType()), type);
+	}
+
+	/**
+	 * @param names
+	 * 		Names from a multi-get request body.
+	 *
+	 * @return Distinct names, in the order given.
+	 *
+	 * @throws NullPointerException
+	 * 		When the names are absent.
+	 * @throws IllegalArgumentException
+	 * 		When a name is absent, or there are too many names.
+	 */
+	private static Set<String> parseNames(String[] names) {
+		if (names == null)
+			throw new NullPointerException("Missing names");
+		if (names.length > MAX_MGET_NAMES)
+			throw new IllegalArgumentException("Too many names, at most " + MAX_MGET_NAMES + " may be fetched at once");
+		Set<String> distinct = new LinkedHashSet<>();
+		for(String name : names) {
+			if (name == null)
+				throw new IllegalArgumentException("Names must not be null");
+			distinct.add(name);
+		}
+		return distinct;
+	}
+
+	/**
+	 * @param value
+	 * 		Query parameter value.
+	 *
+	 * @return Prefix to suggest contacts for.
+	 *
+	 * @throws NullPointerException
+	 * 		When the value is absent or blank.
+	 * @throws IllegalArgumentException
+	 * 		When the value is too long.
+	 */
+	private static String parsePrefix(String value) {
+		if (value == null || value.trim().isEmpty())
+			throw new NullPointerException("Missing prefix parameter");
+		if (value.length() > MAX_PREFIX_LENGTH)
+			throw new IllegalArgumentException("Prefix is too long, at most " + MAX_PREFIX_LENGTH +
+					" characters are allowed");
+		return value;
+	}
+
+	/**
+	 * @param value
+	 * 		Query parameter value.
+	 *
+	 * @return Phone type by the value, ignoring case, or {@code null} if the value is absent.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the value is not a phone type.
+	 */
+	private static Phone.Type parseType(String value) {
+		if (value == null)
+			return null;
+		for(Phone.Type type : Phone.Type.values())
+			if (type.name().equalsIgnoreCase(value))
+				return type;
+		throw new IllegalArgumentException("Unknown phone type: " + value);
+	}
+
+	/**
+	 * @param value
+	 * 		Query parameter value.
+	 * @param missingMessage
+	 * 		Message for when the value is absent or not a number.
+	 *
+	 * @return Parsed value.
+	 *
+	 * @throws NullPointerException
+	 * 		When the value is absent or not a number.
+	 * @throws NumberFormatException
+	 * 		When the value is a number, but too large for an {@code int}.
+	 */
+	private static int parseCount(String value, String missingMessage) {
+		// Checked by hand rather than with a regular expression, since this runs for every list request
+		if (value == null || value.isEmpty())
+			throw new NullPointerException(missingMessage);
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9')
+				throw new NullPointerException(missingMessage);
+		}
+		return Integer.parseInt(value);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.exception.ServiceUnavailableException;
+import me.coley.addressbook.util.ConcurrencyLimiter;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Route wrapper that only runs requests admitted by a {@link ConcurrencyLimiter}. Refused requests are
+ * answered right away with {@link Endpoint#SERVICE_UNAVAILABLE} and a {@code Retry-After} header.
+ * <br>
+ * Requests suspended by an {@link AsyncEndpoint} hold their place until their response completes.
+ * Server errors, such as backend failures and timeouts, count as signs of overload.
+ * Streaming routes take as long as their data does, so they only hold a place, and do not adapt the limit.
+ * <br>
+ * Admission happens before the route runs, so a queued request holds its server thread while it waits,
+ * even for routes that are later suspended.
+ */
+public class AdmissionRoute implements Route {
+	private final Route wrapped;
+	private final ConcurrencyLimiter limiter;
+	private final ConcurrencyLimiter.Priority priority;
+	private final boolean adaptive;
+
+	/**
+	 * Constructs an admission controlled route.
+	 *
+	 * @param wrapped
+	 * 		Route to limit.
+	 * @param limiter
+	 * 		Limiter to admit requests with, shared by all routes using the same backend.
+	 * @param priority
+	 * 		Priority of the route's requests.
+	 */
+	public AdmissionRoute(Route wrapped, ConcurrencyLimiter limiter, ConcurrencyLimiter.Priority priority) {
+		this(wrapped, limiter, priority, true);
+	}
+
+	/**
+	 * Constructs an admission controlled route.
+	 *
+	 * @param wrapped
+	 * 		Route to limit.
+	 * @param limiter
+	 * 		Limiter to admit requests with, shared by all routes using the same backend.
+	 * @param priority
+	 * 		Priority of the route's requests.
+	 * @param adaptive
+	 * 		{@code false} for streaming routes, whose latency and failures are not signs of overload.
+	 */
+	public AdmissionRoute(Route wrapped, ConcurrencyLimiter limiter, ConcurrencyLimiter.Priority priority,
+						  boolean adaptive) {
+		this.wrapped = wrapped;
+		this.limiter = limiter;
+		this.priority = priority;
+		this.adaptive = adaptive;
+	}
+
+	@Override
+	public Object handle(Request request, Response response) throws Exception {
+		long start;
+		try {
+			start = limiter.start(priority);
+		} catch(ServiceUnavailableException ex) {
+			response.type("application/json");
+			return Endpoint.failure(request, response, ex);
+		}
+		Throwable thrown = null;
+		try {
+			return wrapped.handle(request, response);
+		} catch(Exception | Error ex) {
+			thrown = ex;
+			throw ex;
+		} finally {
+			HttpServletRequest raw = request.raw();
+			if (thrown == null && raw.isAsyncStarted())
+				raw.getAsyncContext().addListener(new CompletionListener(this, start, response));
+			else
+				stop(start, response, thrown);
+		}
+	}
+
+	private void stop(long start, Response response, Throwable thrown) {
+		if (adaptive)
+			limiter.stop(start, thrown != null || response.raw().getStatus() >= Endpoint.INTERNAL_ERROR);
+		else
+			limiter.release();
+	}
+
+	/**
+	 * Releases a suspended request's place once its response completes.
+	 */
+	private static class CompletionListener implements AsyncListener {
+		private final AdmissionRoute route;
+		private final long start;
+		private final Response response;
+
+		private CompletionListener(AdmissionRoute route, long start, Response response) {
+			this.route = route;
+			this.start = start;
+			this.response = response;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			route.stop(start, response, null);
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {}
+
+		@Override
+		public void onError(AsyncEvent event) {}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {}
+	}
+}
@@ -0,0 +1,237 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.exception.ServiceUnavailableException;
+import me.coley.addressbook.util.Futures;
+import me.coley.addressbook.util.ResponseWrapper;
+import me.coley.addressbook.util.WireFormat;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Endpoint that completes the HTTP response when the future of its {@link AsyncRoute} completes.
+ * While waiting, the request is suspended with servlet async, so the request thread is free to serve others.
+ * <br>
+ * Content is written directly to the response stream, like {@link StreamingEndpoint}. It is UTF-8 JSON, unless
+ * the {@code Accept} header prefers a binary {@link WireFormat}.
+ * A reply with {@code null} content leaves the body empty, as for {@link ETags#conditional}. The status and headers
+ * of the reply are only applied by the thread that writes it, so a reply that completes too late cannot change a
+ * response that has already timed out.
+ * The server must use {@link AsyncJettyServerFactory}, otherwise Spark closes the response stream
+ * before the future completes.
+ */
+public class AsyncEndpoint implements Route {
+	public static final int SERVICE_UNAVAILABLE = Endpoint.SERVICE_UNAVAILABLE;
+	// Default time to wait on a route's future, in milliseconds
+	public static final long DEFAULT_TIMEOUT = 30_000;
+	// Seconds a client should wait before retrying a request that timed out
+	private static final long TIMEOUT_RETRY_AFTER = 1;
+	// Wrapped route
+	private final AsyncRoute wrapped;
+	private final long timeout;
+
+	/**
+	 * Constructs an async endpoint with the {@link #DEFAULT_TIMEOUT default timeout}.
+	 *
+	 * @param wrapped
+	 * 		Route logic to wrap.
+	 */
+	public AsyncEndpoint(AsyncRoute wrapped) {
+		this(wrapped, DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * Constructs an async endpoint.
+	 *
+	 * @param wrapped
+	 * 		Route logic to wrap.
+	 * @param timeout
+	 * 		Milliseconds to wait on the route's future before responding with {@link #SERVICE_UNAVAILABLE}.
+	 */
+	public AsyncEndpoint(AsyncRoute wrapped, long timeout) {
+		this.wrapped = wrapped;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Invokes the wrapped route. If its future is already complete the response is written immediately,
+	 * otherwise the request is suspended until the future completes or the timeout passes, and then written
+	 * on a server thread.
+	 *
+	 * @param request
+	 * 		The request object providing information about the HTTP request
+	 * @param response
+	 * 		The response object providing functionality for modifying the response
+	 *
+	 * @return Empty content, the response content is written to the response stream.
+	 *
+	 * @throws UncheckedIOException
+	 * 		When the response stream could not be written to, such as when the client disconnects.
+	 */
+	@Override
+	public Object handle(Request request, Response response) throws UncheckedIOException {
+		// Set response type, regardless of status this will be the response type.
+		WireFormat format = Endpoint.format(request);
+		response.type(format.getContentType());
+		response.raw().addHeader("Vary", "Accept");
+		boolean pretty = request.queryParams("pretty") != null;
+		CompletableFuture<Reply> future = invoke(request, response);
+		if (future.isDone()) {
+			write(response, content(request, response, future), format, pretty);
+			// Spark still needs a non-null body, otherwise it responds as if no route matched
+			return "";
+		}
+		// Suspend the request until the future completes, whichever of the two completes first responds
+		AtomicBoolean responded = new AtomicBoolean();
+		AsyncContext context = request.raw().startAsync();
+		context.setTimeout(timeout);
+		context.addListener(new AsyncListener() {
+			@Override
+			public void onTimeout(AsyncEvent event) {
+				if (responded.compareAndSet(false, true))
+					respond(context, response, timeout(request, response), format, pretty);
+			}
+
+			@Override
+			public void onComplete(AsyncEvent event) {}
+
+			@Override
+			public void onError(AsyncEvent event) {
+				// Client went away, nothing left to respond to
+				responded.set(true);
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) {}
+		});
+		// Respond on a server thread rather than the thread completing the future. That may be the ElasticSearch
+		// client's I/O thread, which every other call waits on while the content is encoded, compressed and written
+		future.whenComplete((content, error) -> {
+			if (responded.get())
+				return;
+			try {
+				context.start(() -> {
+					if (responded.compareAndSet(false, true))
+						respond(context, response, content(request, response, future), format, pretty);
+				});
+			} catch(IllegalStateException ex) {
+				// Completed by a timeout or error in the meantime
+			}
+		});
+		return "";
+	}
+
+	/**
+	 * @param request
+	 * 		The request object providing information about the HTTP request
+	 * @param response
+	 * 		The response object providing functionality for modifying the response
+	 *
+	 * @return Future of the wrapped route, or a failed future if the route threw instead.
+	 */
+	private CompletableFuture<Reply> invoke(Request request, Response response) {
+		try {
+			return wrapped.handle(request, response);
+		} catch(Exception ex) {
+			return Futures.failed(ex);
+		}
+	}
+
+	/**
+	 * @param request
+	 * 		The request object providing information about the HTTP request
+	 * @param response
+	 * 		The response object providing functionality for modifying the response
+	 * @param future
+	 * 		Completed future of the route.
+	 *
+	 * @return Response content of the future, with its status and headers applied, or outlining its failure.
+	 */
+	private static ResponseWrapper content(Request request, Response response, CompletableFuture<Reply> future) {
+		Reply reply;
+		try {
+			reply = future.get();
+		} catch(ExecutionException ex) {
+			Throwable cause = Futures.unwrap(ex);
+			return Endpoint.failure(request, response, cause instanceof Exception ? (Exception) cause : ex);
+		} catch(Exception ex) {
+			return Endpoint.failure(request, response, ex);
+		}
+		reply.applyTo(response);
+		return reply.getContent();
+	}
+
+	/**
+	 * @param request
+	 * 		The request object providing information about the HTTP request
+	 * @param response
+	 * 		The response object providing functionality for modifying the response
+	 *
+	 * @return Response content outlining the timeout.
+	 */
+	private ResponseWrapper timeout(Request request, Response response) {
+		// Refused like any other request the server is too busy for, so clients get the same retry guidance
+		return Endpoint.failure(request, response,
+				new ServiceUnavailableException("No response within " + timeout + "ms", TIMEOUT_RETRY_AFTER));
+	}
+
+	private static void respond(AsyncContext context, Response response, ResponseWrapper content, WireFormat format,
+								boolean pretty) {
+		try {
+			write(response, content, format, pretty);
+		} finally {
+			context.complete();
+		}
+	}
+
+	/**
+	 * Writes content to the response stream, and closes it.
+	 * <br>
+	 * The stream is not flushed before it is closed, so content that fits the response buffer is sent
+	 * as a whole. This lets compression see that small content is below its threshold, while larger
+	 * content is still sent, and compressed, as it is written.
+	 *
+	 * @param response
+	 * 		The response object providing functionality for modifying the response
+	 * @param content
+	 * 		Response content. May be {@code null} to send no body, such as for a 304, without serializing anything.
+	 * @param format
+	 * 		Format to write the content in.
+	 * @param pretty
+	 *        {@code true} to indent the JSON, {@code false} for compact JSON.
+	 *
+	 * @throws UncheckedIOException
+	 * 		When the response stream could not be written to, such as when the client disconnects.
+	 */
+	static void write(Response response, ResponseWrapper content, WireFormat format, boolean pretty)
+			throws UncheckedIOException {
+		if (content == null)
+			return;
+		try {
+			OutputStream out = response.raw().getOutputStream();
+			content.writeTo(new FilterOutputStream(out) {
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					out.write(b, off, len);
+				}
+
+				@Override
+				public void flush() {}
+			}, format, pretty);
+			out.close();
+		} catch(IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+}
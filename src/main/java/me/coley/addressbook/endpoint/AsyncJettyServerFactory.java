@@ -0,0 +1,128 @@
+package me.coley.addressbook.endpoint;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import spark.embeddedserver.jetty.JettyServerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+
+/**
+ * Jetty server factory that lets {@link AsyncEndpoint} complete responses after the route returns.
+ * <br>
+ * After a route returns, Spark writes the route's content and closes the response stream unless the
+ * response is already committed. Here the response reports itself committed once async processing has
+ * started, so the stream stays open for the async endpoint to complete.
+ * <br>
+ * Thread pools are created the same way as Spark's default factory.
+ * <br>
+ * Responses may also be compressed, see {@link #AsyncJettyServerFactory(GzipHandler)}.
+ */
+public class AsyncJettyServerFactory implements JettyServerFactory {
+	// Compression of responses, may be null
+	private final GzipHandler compression;
+
+	/**
+	 * Constructs a factory for servers that do not compress responses.
+	 */
+	public AsyncJettyServerFactory() {
+		this(null);
+	}
+
+	/**
+	 * Constructs a factory for servers that compress responses.
+	 * <br>
+	 * Compression happens as content is written, so large responses such as exports are compressed
+	 * as a stream rather than buffered. Tags set by {@link ETags} are suffixed for compressed responses,
+	 * and the suffix is removed from conditional request headers before they reach the routes.
+	 *
+	 * @param compression
+	 * 		Handler compressing responses for clients that accept it. May be {@code null} for no compression.
+	 */
+	public AsyncJettyServerFactory(GzipHandler compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * @param minSize
+	 * 		Size in bytes below which responses are sent uncompressed.
+	 * @param level
+	 * 		Compression level, from 1 for the fastest to 9 for the smallest.
+	 *
+	 * @return Handler compressing responses to requests of any method.
+	 */
+	public static GzipHandler compression(int minSize, int level) {
+		if (level < 1 || level > 9)
+			throw new IllegalArgumentException("Compression level must be from 1 to 9");
+		GzipHandler handler = new GzipHandler();
+		handler.setMinGzipSize(minSize);
+		handler.setCompressionLevel(level);
+		// Multi-gets and bulk imports are posted, but respond with as much JSON as listings
+		handler.setIncludedMethods("GET", "POST", "PUT", "DELETE");
+		return handler;
+	}
+
+	@Override
+	public Server create(int maxThreads, int minThreads, int threadTimeoutMillis) {
+		if (maxThreads > 0) {
+			int min = minThreads > 0 ? minThreads : 8;
+			int idleTimeout = threadTimeoutMillis > 0 ? threadTimeoutMillis : 60_000;
+			return create(new QueuedThreadPool(maxThreads, min, idleTimeout));
+		}
+		return new AsyncServer(null, compression);
+	}
+
+	@Override
+	public Server create(ThreadPool threadPool) {
+		return new AsyncServer(threadPool, compression);
+	}
+
+	/**
+	 * Server that wraps the handler Spark gives it in an {@link AsyncHandler}, and the compression handler if any.
+	 */
+	private static class AsyncServer extends Server {
+		private final GzipHandler compression;
+
+		private AsyncServer(ThreadPool threadPool, GzipHandler compression) {
+			super(threadPool);
+			this.compression = compression;
+		}
+
+		@Override
+		public void setHandler(Handler handler) {
+			AsyncHandler wrapper = new AsyncHandler();
+			wrapper.setHandler(handler);
+			if (compression == null) {
+				super.setHandler(wrapper);
+				return;
+			}
+			// Outermost, so it sees the same response the connector writes
+			compression.setHandler(wrapper);
+			super.setHandler(compression);
+		}
+	}
+
+	/**
+	 * Handler that passes on responses which count as committed once async processing has started.
+	 */
+	private static class AsyncHandler extends HandlerWrapper {
+		@Override
+		public void handle(String target, Request baseRequest, HttpServletRequest request,
+						   HttpServletResponse response) throws IOException, ServletException {
+			super.handle(target, baseRequest, request, new HttpServletResponseWrapper(response) {
+				@Override
+				public boolean isCommitted() {
+					return request.isAsyncStarted() || super.isCommitted();
+				}
+			});
+		}
+	}
+}
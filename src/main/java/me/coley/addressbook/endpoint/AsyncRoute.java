@@ -0,0 +1,27 @@
+package me.coley.addressbook.endpoint;
+
+import spark.Request;
+import spark.Response;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Route that produces its response content without waiting for it.
+ * The response must not be changed once the future is returned, status and headers are given by the {@link Reply}.
+ */
+@FunctionalInterface
+public interface AsyncRoute {
+	/**
+	 * @param request
+	 * 		The request object providing information about the HTTP request
+	 * @param response
+	 * 		The response object, only to be modified before the future is returned
+	 *
+	 * @return Future of the response content, status and headers.
+	 *
+	 * @throws Exception
+	 * 		When the request cannot be handled at all. Failures after the future is returned
+	 * 		complete it exceptionally instead.
+	 */
+	CompletableFuture<Reply> handle(Request request, Response response) throws Exception;
+}
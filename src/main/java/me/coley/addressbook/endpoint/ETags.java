@@ -0,0 +1,166 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.Phone;
+import me.coley.addressbook.util.ResponseWrapper;
+import me.coley.addressbook.util.WireFormat;
+import spark.Request;
+
+import java.util.Collection;
+
+/**
+ * Entity tags for <a href="https://www.rfc-editor.org/rfc/rfc7232">conditional requests</a>.
+ * <br>
+ * Tags are a hash of the contact fields, rather than of the JSON, so a tag can be compared without serializing
+ * the content. Equal contents have equal tags on every backend and every server, so the tag of a cached or stale
+ * copy still validates against the tag of the stored contact.
+ */
+public class ETags {
+	// 64-bit FNV-1a parameters
+	private static final long OFFSET = 0xcbf29ce484222325L;
+	private static final long PRIME = 0x100000001b3L;
+
+	/**
+	 * @param contact
+	 * 		Contact to tag.
+	 *
+	 * @return Strong tag of the contact.
+	 */
+	public static String of(Contact contact) {
+		return format(hash(OFFSET, contact));
+	}
+
+	/**
+	 * @param contacts
+	 * 		Page of contacts to tag.
+	 * @param next
+	 * 		Cursor to the following page. May be {@code null}.
+	 *
+	 * @return Strong tag of the page.
+	 */
+	public static String of(Collection<Contact> contacts, String next) {
+		long hash = hash(OFFSET, contacts.size());
+		for(Contact contact : contacts)
+			hash = hash(hash, contact);
+		return format(hash(hash, next));
+	}
+
+	/**
+	 * Tags a reply, and answers {@code 304 Not Modified} when the client already holds the tagged content.
+	 *
+	 * @param request
+	 * 		The request object providing information about the HTTP request
+	 * @param reply
+	 * 		Reply to tag.
+	 * @param tag
+	 * 		Tag of the content.
+	 * @param content
+	 * 		Response content.
+	 *
+	 * @return The reply, with the content, or without content when the client's copy is current,
+	 * so nothing is written.
+	 */
+	public static Reply conditional(Request request, Reply reply, String tag, ResponseWrapper content) {
+		tag = tag(request, reply, tag);
+		if (matchesAny(request.headers("If-None-Match"), tag, false))
+			return reply.status(Endpoint.NOT_MODIFIED).content(null);
+		return reply.content(content);
+	}
+
+	/**
+	 * Tags a reply with the tag of the representation the client accepts. Each {@link WireFormat} of the same
+	 * content has its own tag, since a strong tag must differ between representations.
+	 *
+	 * @param request
+	 * 		The request object providing information about the HTTP request
+	 * @param reply
+	 * 		Reply to tag.
+	 * @param tag
+	 * 		Tag of the content.
+	 *
+	 * @return Tag of the representation.
+	 */
+	public static String tag(Request request, Reply reply, String tag) {
+		tag = represent(tag, Endpoint.format(request));
+		reply.header("ETag", tag);
+		return tag;
+	}
+
+	/**
+	 * @param header
+	 * 		Value of an {@code If-Match} header. May be {@code null}.
+	 * @param tag
+	 * 		Current tag.
+	 *
+	 * @return {@code true} when there is no header, or the header lists the tag of any representation.
+	 * Weak tags never match.
+	 */
+	public static boolean ifMatch(String header, String tag) {
+		if (header == null)
+			return true;
+		for(WireFormat format : WireFormat.values())
+			if (matchesAny(header, represent(tag, format), true))
+				return true;
+		return false;
+	}
+
+	private static String represent(String tag, WireFormat format) {
+		if (format == WireFormat.JSON)
+			return tag;
+		return tag.substring(0, tag.length() - 1) + '-' + format.name().toLowerCase() + '"';
+	}
+
+	private static boolean matchesAny(String header, String tag, boolean strong) {
+		if (header == null)
+			return false;
+		for(String candidate : header.split(",")) {
+			candidate = candidate.trim();
+			if (candidate.equals("*"))
+				return true;
+			if (candidate.startsWith("W/")) {
+				if (strong)
+					continue;
+				candidate = candidate.substring(2);
+			}
+			if (candidate.equals(tag))
+				return true;
+		}
+		return false;
+	}
+
+	private static long hash(long hash, Contact contact) {
+		hash = hash(hash, contact.getName());
+		hash = hash(hash, contact.getAddress());
+		if (contact.getNumbers() == null)
+			return hash(hash, -1);
+		hash = hash(hash, contact.getNumbers().size());
+		for(Phone phone : contact.getNumbers()) {
+			hash = hash(hash, phone.getNumber());
+			hash = hash(hash, phone.getType() == null ? -1 : phone.getType().ordinal());
+		}
+		return hash;
+	}
+
+	private static long hash(long hash, String value) {
+		// Length first, so adjacent values cannot run into each other
+		if (value == null)
+			return hash(hash, -1);
+		hash = hash(hash, value.length());
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			hash = (hash ^ (c & 0xFF)) * PRIME;
+			hash = (hash ^ (c >>> 8)) * PRIME;
+		}
+		return hash;
+	}
+
+	private static long hash(long hash, int value) {
+		for(int shift = 0; shift < 32; shift += 8)
+			hash = (hash ^ ((value >>> shift) & 0xFF)) * PRIME;
+		return hash;
+	}
+
+	private static String format(long hash) {
+		return '"' + Long.toHexString(hash) + '"';
+	}
+}
@@ -2,21 +2,29 @@ package me.coley.addressbook.endpoint;
 
 import me.coley.addressbook.exception.DuplicateContactException;
 import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.exception.PreconditionFailedException;
+import me.coley.addressbook.exception.ServiceUnavailableException;
+import me.coley.addressbook.util.ResponseWrapper;
+import me.coley.addressbook.util.WireFormat;
 import spark.Request;
 import spark.Response;
 import spark.Route;
 
-import static me.coley.addressbook.util.ResponseWrapper.failure;
-
 /**
  * Route wrapper that adds common response data and error handling.
  */
 public class Endpoint implements Route {
+	// Status of a conditional request whose content the client already holds
+	public static final int NOT_MODIFIED = 304;
 	// Error codes for responses to bad requests
 	public static final int BAD_REQUEST = 400;
 	public static final int NOT_FOUND = 404;
 	public static final int CONFLICT = 409;
+	public static final int PRECONDITION_FAILED = 412;
 	public static final int INTERNAL_ERROR = 500;
+	public static final int SERVICE_UNAVAILABLE = 503;
+	// Request attribute holding the exception a route failed with
+	public static final String FAILURE_ATTRIBUTE = "addressbook.failure";
 	// Wrapped route
 	private final Route wrapped;
 
@@ -49,26 +57,70 @@ public class Endpoint implements Route {
 		try {
 			// Handle wrapped route
 			return wrapped.handle(request, response);
+		} catch(Exception ex) {
+			return failure(request, response, ex);
+		}
+		// NOTE:
+		// Spark has exception handling capabilities, but you cannot control what is returned in
+		// the response if you choose to use them. The end-user gets no feedback on what went wrong.
+		// So instead we handle it this way, which allows us to specify response codes and messages.
+	}
+
+	/**
+	 * @param request
+	 * 		The request object providing information about the HTTP request
+	 *
+	 * @return Format the client accepts for response content.
+	 */
+	static WireFormat format(Request request) {
+		return WireFormat.negotiate(request.headers("Accept"));
+	}
+
+	/**
+	 * Sets the response code for a failed route, and records the failure in the {@link #FAILURE_ATTRIBUTE}.
+	 *
+	 * @param request
+	 * 		The request object providing information about the HTTP request
+	 * @param response
+	 * 		The response object providing functionality for modifying the response
+	 * @param failure
+	 * 		Exception thrown by the route.
+	 *
+	 * @return Response content outlining the failure.
+	 */
+	static ResponseWrapper failure(Request request, Response response, Exception failure) {
+		request.attribute(FAILURE_ATTRIBUTE, failure);
+		try {
+			throw failure;
 		} catch(NullPointerException ex) {
 			// Bad request, NPE caused by missing/null parameters in model types and requests
 			response.status(BAD_REQUEST);
-			return failure(ex);
+			return ResponseWrapper.failure(ex);
+		} catch(IllegalArgumentException ex) {
+			// Bad request, IAE caused by malformed parameters, such as phone numbers or cursors
+			response.status(BAD_REQUEST);
+			return ResponseWrapper.failure(ex);
 		} catch(MissingContactException ex) {
 			// Bad request, MCE caused when the existing contact cannot be found
 			response.status(NOT_FOUND);
-			return failure(ex);
+			return ResponseWrapper.failure(ex);
 		} catch(DuplicateContactException ex) {
 			// Bad request, DCE caused by existing contact when none were expected
 			response.status(CONFLICT);
-			return failure(ex);
+			return ResponseWrapper.failure(ex);
+		} catch(PreconditionFailedException ex) {
+			// Bad request, PFE caused by the contact changing since the client read it
+			response.status(PRECONDITION_FAILED);
+			return ResponseWrapper.failure(ex);
+		} catch(ServiceUnavailableException ex) {
+			// Refused, SUE caused by the server being over capacity
+			response.status(SERVICE_UNAVAILABLE);
+			response.header("Retry-After", Long.toString(ex.getRetryAfter()));
+			return ResponseWrapper.failure(ex);
 		} catch(Exception ex) {
 			// Catch for any other issue, such as ElasticException
 			response.status(INTERNAL_ERROR);
-			return failure(ex);
+			return ResponseWrapper.failure(ex);
 		}
-		// NOTE:
-		// Spark has exception handling capabilities, but you cannot control what is returned in
-		// the response if you choose to use them. The end-user gets no feedback on what went wrong.
-		// So instead we handle it this way, which allows us to specify response codes and messages.
 	}
 }
@@ -0,0 +1,96 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.metrics.Metrics;
+import me.coley.addressbook.metrics.RouteMetrics;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Route wrapper that records the count, latency, response status and failure type of each request.
+ * Requests suspended by an {@link AsyncEndpoint} are recorded once their response completes.
+ * <br>
+ * Failures are taken from the {@link Endpoint#FAILURE_ATTRIBUTE}, or from the exception the route throws.
+ */
+public class InstrumentedRoute implements Route {
+	private final Route wrapped;
+	private final Metrics metrics;
+	// Looked up on the first request, each instance is registered for a single route
+	private volatile RouteMetrics route;
+
+	/**
+	 * Constructs an instrumented route.
+	 *
+	 * @param wrapped
+	 * 		Route to instrument.
+	 * @param metrics
+	 * 		Registry to record the route's metrics in.
+	 */
+	public InstrumentedRoute(Route wrapped, Metrics metrics) {
+		this.wrapped = wrapped;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public Object handle(Request request, Response response) throws Exception {
+		RouteMetrics route = this.route;
+		if (route == null)
+			this.route = route = metrics.route(request.requestMethod(), request.matchedPath());
+		long start = route.start();
+		Throwable thrown = null;
+		try {
+			return wrapped.handle(request, response);
+		} catch(Exception | Error ex) {
+			thrown = ex;
+			throw ex;
+		} finally {
+			HttpServletRequest raw = request.raw();
+			if (thrown == null && raw.isAsyncStarted())
+				raw.getAsyncContext().addListener(new CompletionListener(route, start, request, response));
+			else
+				stop(route, start, request, response, thrown);
+		}
+	}
+
+	private static void stop(RouteMetrics route, long start, Request request, Response response, Throwable thrown) {
+		Throwable failure = request.attribute(Endpoint.FAILURE_ATTRIBUTE);
+		// An exception escaping the route is answered by Spark with an internal error
+		int status = thrown != null ? Endpoint.INTERNAL_ERROR : response.raw().getStatus();
+		route.stop(start, status, thrown != null ? thrown : failure);
+	}
+
+	/**
+	 * Records a suspended request once its response completes.
+	 */
+	private static class CompletionListener implements AsyncListener {
+		private final RouteMetrics route;
+		private final long start;
+		private final Request request;
+		private final Response response;
+
+		private CompletionListener(RouteMetrics route, long start, Request request, Response response) {
+			this.route = route;
+			this.start = start;
+			this.request = request;
+			this.response = response;
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			stop(route, start, request, response, null);
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {}
+
+		@Override
+		public void onError(AsyncEvent event) {}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {}
+	}
+}
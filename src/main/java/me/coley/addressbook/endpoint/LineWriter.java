@@ -0,0 +1,93 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.util.Json;
+import spark.Request;
+import spark.Response;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a response as newline delimited JSON, one document per line, as the lines are produced.
+ * <br>
+ * The response stream is only opened by the first line, so a failure before it can still be answered
+ * with its own status by an {@link Endpoint}. Once a line is written the status is on its way to the client,
+ * so a failure must {@link #abort(Exception) abort} the response instead. The client then sees the connection
+ * end before the response does, rather than a complete response that is missing lines.
+ */
+public class LineWriter implements Closeable {
+	public static final String CONTENT_TYPE = "application/x-ndjson";
+	private final Request request;
+	private final Response response;
+	private Writer writer;
+
+	/**
+	 * @param request
+	 * 		The request object providing information about the HTTP request
+	 * @param response
+	 * 		The response object providing functionality for modifying the response
+	 */
+	public LineWriter(Request request, Response response) {
+		this.request = request;
+		this.response = response;
+	}
+
+	/**
+	 * @param object
+	 * 		Object to write as a line of JSON.
+	 *
+	 * @throws UncheckedIOException
+	 * 		When the response stream could not be written to, such as when the client disconnects.
+	 */
+	public void write(Object object) throws UncheckedIOException {
+		try {
+			if (writer == null) {
+				response.type(CONTENT_TYPE);
+				writer = new BufferedWriter(
+						new OutputStreamWriter(response.raw().getOutputStream(), StandardCharsets.UTF_8));
+			}
+			Json.writeLine(object, writer);
+		} catch(IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/**
+	 * @return {@code true} once a line has been written, after which the response can no longer report a failure.
+	 */
+	public boolean isStarted() {
+		return writer != null;
+	}
+
+	/**
+	 * Ends the connection without completing the response, after a failure part way through.
+	 *
+	 * @param failure
+	 * 		Reason the response could not be completed, recorded in the {@link Endpoint#FAILURE_ATTRIBUTE}.
+	 */
+	public void abort(Exception failure) {
+		request.attribute(Endpoint.FAILURE_ATTRIBUTE, failure);
+		org.eclipse.jetty.server.Request base = org.eclipse.jetty.server.Request.getBaseRequest(request.raw());
+		if (base != null)
+			base.getHttpChannel().abort(failure);
+	}
+
+	/**
+	 * Completes the response, which is empty if no line was written.
+	 *
+	 * @throws IOException
+	 * 		When the response stream could not be written to.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (writer == null)
+			response.type(CONTENT_TYPE);
+		else
+			writer.close();
+	}
+}
@@ -0,0 +1,101 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.util.ResponseWrapper;
+import spark.Response;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Content of an {@link AsyncRoute}, along with the status and headers to respond with.
+ * <br>
+ * The route's future may complete on any thread, such as the ElasticSearch client's I/O thread, while the request
+ * may be timed out in the meantime. So routes describe the response here rather than changing it, and the
+ * {@link AsyncEndpoint} applies the reply on a server thread, once it knows the reply is the one to send.
+ */
+public class Reply {
+	private final Map<String, String> headers = new LinkedHashMap<>();
+	private ResponseWrapper content;
+	private int status;
+
+	/**
+	 * @param content
+	 * 		Response content.
+	 *
+	 * @return Reply with the content, and the status left as is.
+	 */
+	public static Reply of(ResponseWrapper content) {
+		return new Reply().content(content);
+	}
+
+	/**
+	 * @param content
+	 * 		Response content. May be {@code null} to send no body, such as for a 304.
+	 *
+	 * @return This reply.
+	 */
+	public Reply content(ResponseWrapper content) {
+		this.content = content;
+		return this;
+	}
+
+	/**
+	 * @param status
+	 * 		Status to respond with.
+	 *
+	 * @return This reply.
+	 */
+	public Reply status(int status) {
+		this.status = status;
+		return this;
+	}
+
+	/**
+	 * @param name
+	 * 		Header name.
+	 * @param value
+	 * 		Header value, replacing any value given before.
+	 *
+	 * @return This reply.
+	 */
+	public Reply header(String name, String value) {
+		headers.put(name, value);
+		return this;
+	}
+
+	/**
+	 * @return Response content. May be {@code null} to send no body.
+	 */
+	public ResponseWrapper getContent() {
+		return content;
+	}
+
+	/**
+	 * @return Status to respond with, or {@code 0} to leave the status as is.
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * @param name
+	 * 		Header name.
+	 *
+	 * @return Header value, or {@code null} when the reply does not set the header.
+	 */
+	public String getHeader(String name) {
+		return headers.get(name);
+	}
+
+	/**
+	 * Sets the status and headers of the reply on a response.
+	 *
+	 * @param response
+	 * 		The response object providing functionality for modifying the response
+	 */
+	void applyTo(Response response) {
+		if (status != 0)
+			response.status(status);
+		headers.forEach(response::header);
+	}
+}
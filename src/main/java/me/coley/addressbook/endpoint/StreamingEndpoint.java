@@ -0,0 +1,56 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.util.ResponseWrapper;
+import me.coley.addressbook.util.WireFormat;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.io.UncheckedIOException;
+
+/**
+ * Endpoint that writes its {@link ResponseWrapper} directly to the response stream, as UTF-8 JSON
+ * unless the {@code Accept} header prefers a binary {@link WireFormat}.
+ * This skips the intermediate {@code String} that Spark would otherwise create from
+ * {@link ResponseWrapper#toString()}, and then copy into bytes.
+ * <br>
+ * The JSON is compact unless the request has a {@code pretty} query parameter.
+ */
+public class StreamingEndpoint extends Endpoint {
+	/**
+	 * Constructs a streaming endpoint.
+	 *
+	 * @param wrapped
+	 * 		Route logic to wrap.
+	 */
+	public StreamingEndpoint(Route wrapped) {
+		super(wrapped);
+	}
+
+	/**
+	 * Invokes the wrapped route, and writes the response content to the response stream.
+	 *
+	 * @param request
+	 * 		The request object providing information about the HTTP request
+	 * @param response
+	 * 		The response object providing functionality for modifying the response
+	 *
+	 * @return Empty content if it was written to the response stream.
+	 * Otherwise the content returned by the wrapped route.
+	 *
+	 * @throws UncheckedIOException
+	 * 		When the response stream could not be written to, such as when the client disconnects.
+	 */
+	@Override
+	public Object handle(Request request, Response response) throws UncheckedIOException {
+		Object content = super.handle(request, response);
+		if (!(content instanceof ResponseWrapper))
+			return content;
+		WireFormat format = format(request);
+		response.type(format.getContentType());
+		response.raw().addHeader("Vary", "Accept");
+		AsyncEndpoint.write(response, (ResponseWrapper) content, format, request.queryParams("pretty") != null);
+		// Spark still needs a non-null body, otherwise it responds as if no route matched
+		return "";
+	}
+}
@@ -0,0 +1,138 @@
+package me.coley.addressbook.endpoint;
+
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.util.thread.Invocable;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import java.lang.reflect.Method;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Jetty thread pool that handles requests on virtual threads. Requests that block, such as on ElasticSearch,
+ * then park a virtual thread instead of holding a platform thread, so thousands of them can wait at
+ * the cost of a few kilobytes each.
+ * <br>
+ * Selectors and acceptors stay on the platform threads of the underlying pool. They run for the life of the
+ * server, and block in native calls that would pin the carrier of a virtual thread. Only blocking tasks, which
+ * is how Jetty marks the tasks that call the handlers, are moved to virtual threads. Reserved threads are
+ * turned off, so a selector hands each such task to the pool rather than running it itself.
+ * <br>
+ * Virtual threads are looked up reflectively, so this compiles for older JVMs. Check {@link #isSupported()}
+ * before constructing one.
+ */
+public class VirtualThreadPool extends QueuedThreadPool {
+	// Default cap on concurrent virtual threads, each is cheap but an unbounded pool hides overload
+	public static final int DEFAULT_MAX_THREADS = 10_000;
+	// Thread.ofVirtual(), Thread.Builder.name(String, long) and Thread.Builder.factory(),
+	// or null when the JVM does not support virtual threads
+	private static final Method OF_VIRTUAL;
+	private static final Method NAME;
+	private static final Method FACTORY;
+	private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+	private final Semaphore permits;
+	private ThreadFactory factory;
+
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method factory = null;
+		try {
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			name = builder.getMethod("name", String.class, long.class);
+			factory = builder.getMethod("factory");
+			// Also fails on Java 19 and 20 when preview features are not enabled
+			ofVirtual.invoke(null);
+		} catch(ReflectiveOperationException ex) {
+			// Not supported before Java 21
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		FACTORY = factory;
+	}
+
+	/**
+	 * Constructs a pool with the {@link #DEFAULT_MAX_THREADS default maximum}.
+	 */
+	public VirtualThreadPool() {
+		this(DEFAULT_MAX_THREADS);
+	}
+
+	/**
+	 * Constructs a pool. The platform threads for selectors and acceptors use Jetty's default bounds.
+	 *
+	 * @param maxThreads
+	 * 		Maximum number of concurrent virtual threads. Further requests wait until one finishes.
+	 *
+	 * @throws UnsupportedOperationException
+	 * 		When the JVM does not support virtual threads.
+	 */
+	public VirtualThreadPool(int maxThreads) {
+		if (!isSupported())
+			throw new UnsupportedOperationException("Virtual threads require Java 21 or newer");
+		this.permits = new Semaphore(maxThreads);
+		setName("vqtp" + hashCode());
+		setReservedThreads(0);
+	}
+
+	/**
+	 * @return {@code true} when the JVM supports virtual threads.
+	 */
+	public static boolean isSupported() {
+		return OF_VIRTUAL != null;
+	}
+
+	@Override
+	protected void doStart() throws Exception {
+		factory = (ThreadFactory) FACTORY.invoke(NAME.invoke(OF_VIRTUAL.invoke(null), getName() + "-virtual-", 0L));
+		super.doStart();
+	}
+
+	@Override
+	public void execute(Runnable job) {
+		if (!isVirtual(job)) {
+			super.execute(job);
+			return;
+		}
+		if (!isRunning())
+			throw new RejectedExecutionException(job.toString());
+		waiting.add(job);
+		drain();
+	}
+
+	/**
+	 * @param job
+	 * 		Task given to the pool.
+	 *
+	 * @return {@code true} when the task may block, and so runs on a virtual thread.
+	 */
+	static boolean isVirtual(Runnable job) {
+		// Channels are dispatched again when async requests are resumed, and then call the handlers too
+		return job instanceof HttpChannel ||
+				(job instanceof Invocable && Invocable.getInvocationType(job) == Invocable.InvocationType.BLOCKING);
+	}
+
+	private void drain() {
+		// Whoever adds a job or frees a permit drains, so no job is left waiting while a permit is free
+		while(!waiting.isEmpty() && permits.tryAcquire()) {
+			Runnable job = waiting.poll();
+			if (job == null) {
+				permits.release();
+				continue;
+			}
+			factory.newThread(() -> {
+				try {
+					job.run();
+				} finally {
+					permits.release();
+					drain();
+				}
+			}).start();
+		}
+	}
+}
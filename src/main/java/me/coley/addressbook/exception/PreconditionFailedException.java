@@ -0,0 +1,16 @@
+package me.coley.addressbook.exception;
+
+/**
+ * Exception to manage conditional writes refused because the contact changed since the client read it.
+ */
+public class PreconditionFailedException extends RuntimeException {
+	/**
+	 * Construct an exception for a refused conditional write.
+	 *
+	 * @param message
+	 * 		Message outlining the exception cause.
+	 */
+	public PreconditionFailedException(String message) {
+		super(message);
+	}
+}
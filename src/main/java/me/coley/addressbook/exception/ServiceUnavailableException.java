@@ -0,0 +1,28 @@
+package me.coley.addressbook.exception;
+
+/**
+ * Exception to manage requests refused because the server is over capacity.
+ */
+public class ServiceUnavailableException extends RuntimeException {
+	private final long retryAfter;
+
+	/**
+	 * Construct an exception for a refused request.
+	 *
+	 * @param message
+	 * 		Message outlining the exception cause.
+	 * @param retryAfter
+	 * 		Seconds the client should wait before retrying.
+	 */
+	public ServiceUnavailableException(String message, long retryAfter) {
+		super(message);
+		this.retryAfter = retryAfter;
+	}
+
+	/**
+	 * @return Seconds the client should wait before retrying.
+	 */
+	public long getRetryAfter() {
+		return retryAfter;
+	}
+}
@@ -0,0 +1,47 @@
+package me.coley.addressbook.metrics;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency distribution backed by an HDR histogram. Recording does not lock or allocate, so it can be
+ * done on every request. Values are tracked in microseconds, up to one minute, with two significant digits.
+ */
+public class LatencyHistogram {
+	private static final long MAX_MICROS = TimeUnit.MINUTES.toMicros(1);
+	private static final int DIGITS = 2;
+	private final Recorder recorder = new Recorder(MAX_MICROS, DIGITS);
+	private final LongAdder sumNanos = new LongAdder();
+	// Totals since creation, merged from the recorder when read, guarded by this
+	private final Histogram total = new Histogram(MAX_MICROS, DIGITS);
+	private Histogram interval;
+
+	/**
+	 * @param nanos
+	 * 		Latency to record, in nanoseconds.
+	 */
+	public void record(long nanos) {
+		sumNanos.add(nanos);
+		// Out of range values would be rejected, so they are clamped to the tracked range instead
+		recorder.recordValue(Math.max(1, Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_MICROS)));
+	}
+
+	/**
+	 * @return Copy of all latencies recorded so far, in microseconds.
+	 */
+	public synchronized Histogram snapshot() {
+		interval = recorder.getIntervalHistogram(interval);
+		total.add(interval);
+		return total.copy();
+	}
+
+	/**
+	 * @return Sum of all latencies recorded so far, in seconds.
+	 */
+	public double getSumSeconds() {
+		return sumNanos.sum() / 1e9;
+	}
+}
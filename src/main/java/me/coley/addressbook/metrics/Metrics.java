@@ -0,0 +1,176 @@
+package me.coley.addressbook.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registry of the server's metrics: HTTP routes, backend calls, and any other values registered as
+ * {@link Collector collectors}. Everything is exported in the Prometheus text format by {@link #writeTo(Writer)}.
+ */
+public class Metrics {
+	private static final String PREFIX = "addressbook_";
+	// Sorted, so the export lists routes and operations in a stable order
+	private final ConcurrentMap<String, RouteMetrics> routes = new ConcurrentSkipListMap<>();
+	private final ConcurrentMap<String, OperationMetrics> backend = new ConcurrentSkipListMap<>();
+	private final List<Collector> collectors = new CopyOnWriteArrayList<>();
+
+	/**
+	 * @param method
+	 * 		HTTP method of the route.
+	 * @param path
+	 * 		Path pattern of the route, such as {@code /contact/:name}.
+	 *
+	 * @return Metrics of the route.
+	 */
+	public RouteMetrics route(String method, String path) {
+		return routes.computeIfAbsent(method + " " + path, route -> new RouteMetrics());
+	}
+
+	/**
+	 * @param operation
+	 * 		Name of the backend operation.
+	 *
+	 * @return Metrics of the backend operation.
+	 */
+	public OperationMetrics backend(String operation) {
+		return backend.computeIfAbsent(operation, op -> new OperationMetrics());
+	}
+
+	/**
+	 * @param collector
+	 * 		Writes additional metrics on each export.
+	 */
+	public void register(Collector collector) {
+		collectors.add(collector);
+	}
+
+	/**
+	 * @param name
+	 * 		Metric name, without the common prefix.
+	 * @param help
+	 * 		Description of the metric.
+	 * @param value
+	 * 		Current value of the metric.
+	 */
+	public void gauge(String name, String help, LongSupplier value) {
+		register(out -> {
+			out.header(PREFIX + name, "gauge", help);
+			out.sample(PREFIX + name, new String[0], value.getAsLong());
+		});
+	}
+
+	/**
+	 * @param name
+	 * 		Metric name, without the common prefix.
+	 * @param help
+	 * 		Description of the metric.
+	 * @param value
+	 * 		Current value of the metric, which only ever increases.
+	 */
+	public void counter(String name, String help, LongSupplier value) {
+		register(out -> {
+			out.header(PREFIX + name + "_total", "counter", help);
+			out.sample(PREFIX + name + "_total", new String[0], value.getAsLong());
+		});
+	}
+
+	/**
+	 * @param name
+	 * 		Metric name, without the common prefix.
+	 * @param help
+	 * 		Description of the metric.
+	 * @param counts
+	 * 		Current distribution of sizes. The value at index {@code i} is the number of sizes from
+	 * 		{@code 2^i} up to {@code 2^(i+1) - 1}.
+	 * @param sum
+	 * 		Current sum of all sizes.
+	 */
+	public void sizes(String name, String help, Supplier<long[]> counts, LongSupplier sum) {
+		register(out -> {
+			out.header(PREFIX + name, "histogram", help);
+			long[] values = counts.get();
+			// Trailing empty buckets are left out, they only repeat the total
+			int last = values.length - 1;
+			while(last > 0 && values[last] == 0)
+				last--;
+			long total = 0;
+			for(int i = 0; i <= last; i++) {
+				total += values[i];
+				out.sample(PREFIX + name + "_bucket", new String[]{"le", Long.toString((2L << i) - 1)}, total);
+			}
+			out.sample(PREFIX + name + "_bucket", new String[]{"le", "+Inf"}, total);
+			out.sample(PREFIX + name + "_sum", new String[0], sum.getAsLong());
+			out.sample(PREFIX + name + "_count", new String[0], total);
+		});
+	}
+
+	/**
+	 * Write all metrics in the Prometheus text format.
+	 *
+	 * @param writer
+	 * 		Destination of the metrics text.
+	 *
+	 * @throws IOException
+	 * 		When the text could not be written.
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		PrometheusWriter out = new PrometheusWriter(writer);
+		if (!routes.isEmpty()) {
+			writeOperations(out, "requests_in_flight", "request", "route", routes,
+					"Requests being handled", "Time taken to respond to requests",
+					"Requests that failed, by exception type");
+			String name = PREFIX + "requests_total";
+			out.header(name, "counter", "Requests handled, by response status");
+			for(Map.Entry<String, RouteMetrics> e : routes.entrySet())
+				for(int status : e.getValue().getStatuses())
+					out.sample(name, new String[]{"route", e.getKey(), "status", Integer.toString(status)},
+							e.getValue().getStatusCount(status));
+		}
+		if (!backend.isEmpty())
+			writeOperations(out, "backend_calls_in_flight", "backend", "operation", backend,
+					"Backend calls in progress", "Time taken by backend calls",
+					"Backend calls that failed, by exception type");
+		for(Collector collector : collectors)
+			collector.collect(out);
+	}
+
+	private static void writeOperations(PrometheusWriter out, String inFlightName, String kind, String label,
+										Map<String, ? extends OperationMetrics> operations,
+										String inFlightHelp, String durationHelp, String errorsHelp) throws IOException {
+		String name = PREFIX + inFlightName;
+		out.header(name, "gauge", inFlightHelp);
+		for(Map.Entry<String, ? extends OperationMetrics> e : operations.entrySet())
+			out.sample(name, new String[]{label, e.getKey()}, e.getValue().getInFlight());
+		name = PREFIX + kind + "_duration_seconds";
+		out.header(name, "histogram", durationHelp);
+		for(Map.Entry<String, ? extends OperationMetrics> e : operations.entrySet())
+			out.histogram(name, new String[]{label, e.getKey()}, e.getValue().getLatency());
+		name = PREFIX + kind + "_errors_total";
+		out.header(name, "counter", errorsHelp);
+		for(Map.Entry<String, ? extends OperationMetrics> e : operations.entrySet())
+			for(Map.Entry<String, LongAdder> error : e.getValue().getErrors().entrySet())
+				out.sample(name, new String[]{label, e.getKey(), "exception", error.getKey()}, error.getValue().sum());
+	}
+
+	/**
+	 * Source of metrics outside of the registry, written on each export.
+	 */
+	public interface Collector {
+		/**
+		 * @param out
+		 * 		Writer to write the metrics to.
+		 *
+		 * @throws IOException
+		 * 		When the metrics could not be written.
+		 */
+		void collect(PrometheusWriter out) throws IOException;
+	}
+}
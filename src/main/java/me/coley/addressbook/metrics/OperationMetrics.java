@@ -0,0 +1,62 @@
+package me.coley.addressbook.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one kind of operation: the number in flight, their latencies,
+ * and the types of exceptions they failed with.
+ */
+public class OperationMetrics {
+	private final LongAdder inFlight = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+	private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+	/**
+	 * Mark an operation as started.
+	 *
+	 * @return Start time, to pass to {@link #stop(long, Throwable)}.
+	 */
+	public long start() {
+		inFlight.increment();
+		return System.nanoTime();
+	}
+
+	/**
+	 * Mark an operation as finished.
+	 *
+	 * @param start
+	 * 		Start time given by {@link #start()}.
+	 * @param error
+	 * 		Failure of the operation, or {@code null} if it succeeded.
+	 */
+	public void stop(long start, Throwable error) {
+		latency.record(System.nanoTime() - start);
+		inFlight.decrement();
+		if (error != null)
+			errors.computeIfAbsent(error.getClass().getName(), type -> new LongAdder()).increment();
+	}
+
+	/**
+	 * @return Number of operations in flight.
+	 */
+	public long getInFlight() {
+		return inFlight.sum();
+	}
+
+	/**
+	 * @return Latencies of finished operations.
+	 */
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return Number of failed operations, by exception class name.
+	 */
+	public Map<String, LongAdder> getErrors() {
+		return errors;
+	}
+}
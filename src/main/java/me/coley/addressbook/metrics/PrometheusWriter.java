@@ -0,0 +1,145 @@
+package me.coley.addressbook.metrics;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes metrics in the Prometheus text exposition format.
+ */
+public class PrometheusWriter {
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	// Histogram bucket bounds, in seconds and in microseconds
+	private static final String[] BOUNDS = {
+			"0.0005", "0.001", "0.0025", "0.005", "0.01", "0.025", "0.05", "0.1", "0.25", "0.5", "1", "2.5", "5", "10"
+	};
+	private static final long[] BOUND_MICROS = {
+			500, 1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+			1_000_000, 2_500_000, 5_000_000, 10_000_000
+	};
+	private final Writer out;
+
+	/**
+	 * @param out
+	 * 		Destination of the metrics text.
+	 */
+	public PrometheusWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * Write the help and type lines of a metric, which must precede its samples.
+	 *
+	 * @param name
+	 * 		Metric name.
+	 * @param type
+	 * 		Metric type, such as {@code counter}, {@code gauge} or {@code histogram}.
+	 * @param help
+	 * 		Description of the metric.
+	 *
+	 * @throws IOException
+	 * 		When the text could not be written.
+	 */
+	public void header(String name, String type, String help) throws IOException {
+		out.write("# HELP ");
+		out.write(name);
+		out.write(' ');
+		out.write(help);
+		out.write("\n# TYPE ");
+		out.write(name);
+		out.write(' ');
+		out.write(type);
+		out.write('\n');
+	}
+
+	/**
+	 * @param name
+	 * 		Metric name.
+	 * @param labels
+	 * 		Alternating label names and values.
+	 * @param value
+	 * 		Sample value.
+	 *
+	 * @throws IOException
+	 * 		When the text could not be written.
+	 */
+	public void sample(String name, String[] labels, long value) throws IOException {
+		sample(name, labels, Long.toString(value));
+	}
+
+	/**
+	 * @param name
+	 * 		Metric name.
+	 * @param labels
+	 * 		Alternating label names and values.
+	 * @param value
+	 * 		Sample value.
+	 *
+	 * @throws IOException
+	 * 		When the text could not be written.
+	 */
+	public void sample(String name, String[] labels, double value) throws IOException {
+		sample(name, labels, Double.toString(value));
+	}
+
+	/**
+	 * Write the samples of a latency histogram, in seconds.
+	 *
+	 * @param name
+	 * 		Metric name.
+	 * @param labels
+	 * 		Alternating label names and values.
+	 * @param latency
+	 * 		Latencies to write.
+	 *
+	 * @throws IOException
+	 * 		When the text could not be written.
+	 */
+	public void histogram(String name, String[] labels, LatencyHistogram latency) throws IOException {
+		Histogram histogram = latency.snapshot();
+		String[] bucketLabels = new String[labels.length + 2];
+		System.arraycopy(labels, 0, bucketLabels, 0, labels.length);
+		bucketLabels[labels.length] = "le";
+		for(int i = 0; i < BOUNDS.length; i++) {
+			bucketLabels[labels.length + 1] = BOUNDS[i];
+			sample(name + "_bucket", bucketLabels, histogram.getCountBetweenValues(0, BOUND_MICROS[i]));
+		}
+		bucketLabels[labels.length + 1] = "+Inf";
+		sample(name + "_bucket", bucketLabels, histogram.getTotalCount());
+		sample(name + "_sum", labels, latency.getSumSeconds());
+		sample(name + "_count", labels, histogram.getTotalCount());
+	}
+
+	private void sample(String name, String[] labels, String value) throws IOException {
+		out.write(name);
+		if (labels.length > 0) {
+			out.write('{');
+			for(int i = 0; i < labels.length; i += 2) {
+				if (i > 0)
+					out.write(',');
+				out.write(labels[i]);
+				out.write("=\"");
+				escape(labels[i + 1]);
+				out.write('"');
+			}
+			out.write('}');
+		}
+		out.write(' ');
+		out.write(value);
+		out.write('\n');
+	}
+
+	private void escape(String value) throws IOException {
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' || c == '"')
+				out.write('\\');
+			else if (c == '\n') {
+				out.write("\\n");
+				continue;
+			}
+			out.write(c);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package me.coley.addressbook.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one HTTP route, adding counts by response status to those of any operation.
+ */
+public class RouteMetrics extends OperationMetrics {
+	// Statuses are counted by index, anything outside the standard range is counted as 0
+	private static final int STATUSES = 600;
+	private final AtomicReferenceArray<LongAdder> statuses = new AtomicReferenceArray<>(STATUSES);
+
+	/**
+	 * Mark a request as finished.
+	 *
+	 * @param start
+	 * 		Start time given by {@link #start()}.
+	 * @param status
+	 * 		Response status.
+	 * @param error
+	 * 		Failure of the request, or {@code null} if it succeeded.
+	 */
+	public void stop(long start, int status, Throwable error) {
+		stop(start, error);
+		int index = status > 0 && status < STATUSES ? status : 0;
+		LongAdder count = statuses.get(index);
+		if (count == null) {
+			statuses.compareAndSet(index, null, new LongAdder());
+			count = statuses.get(index);
+		}
+		count.increment();
+	}
+
+	/**
+	 * @param status
+	 * 		Response status.
+	 *
+	 * @return Number of requests finished with the status.
+	 */
+	public long getStatusCount(int status) {
+		LongAdder count = statuses.get(status > 0 && status < STATUSES ? status : 0);
+		return count == null ? 0 : count.sum();
+	}
+
+	/**
+	 * @return Response statuses that requests have finished with.
+	 */
+	int[] getStatuses() {
+		int found = 0;
+		int[] statuses = new int[STATUSES];
+		for(int i = 0; i < STATUSES; i++)
+			if (this.statuses.get(i) != null)
+				statuses[found++] = i;
+		return Arrays.copyOf(statuses, found);
+	}
+}
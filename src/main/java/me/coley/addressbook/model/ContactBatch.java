@@ -0,0 +1,64 @@
+package me.coley.addressbook.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Contacts fetched by name in one call, with the names that had no matching contact.
+ */
+public class ContactBatch {
+	private final List<Contact> contacts;
+	private final List<String> missing;
+
+	/**
+	 * Constructs a batch of fetched contacts.
+	 *
+	 * @param contacts
+	 * 		Contacts that were found.
+	 * @param missing
+	 * 		Names with no matching contact.
+	 */
+	public ContactBatch(List<Contact> contacts, List<String> missing) {
+		this.contacts = contacts;
+		this.missing = missing;
+	}
+
+	/**
+	 * Constructs a batch of fetched contacts, in the order they were requested.
+	 *
+	 * @param names
+	 * 		Names that were requested.
+	 * @param found
+	 * 		Contacts that were found, by name.
+	 *
+	 * @return Batch of the found contacts, and the names absent from the found contacts.
+	 */
+	public static ContactBatch of(Collection<String> names, Map<String, Contact> found) {
+		List<Contact> contacts = new ArrayList<>(found.size());
+		List<String> missing = new ArrayList<>();
+		for(String name : names) {
+			Contact contact = found.get(name);
+			if (contact != null)
+				contacts.add(contact);
+			else
+				missing.add(name);
+		}
+		return new ContactBatch(contacts, missing);
+	}
+
+	/**
+	 * @return Contacts that were found.
+	 */
+	public List<Contact> getContacts() {
+		return contacts;
+	}
+
+	/**
+	 * @return Names with no matching contact.
+	 */
+	public List<String> getMissing() {
+		return missing;
+	}
+}
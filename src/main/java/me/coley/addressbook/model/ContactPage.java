@@ -0,0 +1,38 @@
+package me.coley.addressbook.model;
+
+import java.util.List;
+
+/**
+ * A page of contacts, with a cursor to the following page.
+ */
+public class ContactPage {
+	private final List<Contact> contacts;
+	private final String next;
+
+	/**
+	 * Constructs a page of contacts.
+	 *
+	 * @param contacts
+	 * 		Contacts on the page.
+	 * @param next
+	 * 		Cursor to the following page. {@code null} when there are no more contacts.
+	 */
+	public ContactPage(List<Contact> contacts, String next) {
+		this.contacts = contacts;
+		this.next = next;
+	}
+
+	/**
+	 * @return Contacts on the page.
+	 */
+	public List<Contact> getContacts() {
+		return contacts;
+	}
+
+	/**
+	 * @return Cursor to the following page. {@code null} when there are no more contacts.
+	 */
+	public String getNext() {
+		return next;
+	}
+}
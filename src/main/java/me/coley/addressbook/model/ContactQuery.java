@@ -0,0 +1,114 @@
+package me.coley.addressbook.model;
+
+/**
+ * Structured contact search. Each filter is optional, and a contact must match all given filters.
+ * <br>
+ * Unlike query strings, filters are never parsed for wildcards or regular expressions, so every filter
+ * maps to a cheap lookup: exact and prefix matches on the name, exact matches on phone numbers and types,
+ * and word prefix matches on the address.
+ */
+public class ContactQuery {
+	// Longest value of any filter, the same as the longest keyword ElasticSearch indexes by default
+	private static final int MAX_LENGTH = 256;
+	// Most words of the address filter, each one is a separate lookup
+	private static final int MAX_ADDRESS_TERMS = 10;
+	private final String name;
+	private final String namePrefix;
+	private final String number;
+	private final Phone.Type type;
+	private final String address;
+
+	/**
+	 * Constructs a structured search.
+	 *
+	 * @param name
+	 * 		Exact name of the contact. May be {@code null}.
+	 * @param namePrefix
+	 * 		Start of the name of the contact. May be {@code null}.
+	 * @param number
+	 * 		Phone number of the contact, in any of the formats accepted by {@link Phone}. May be {@code null}.
+	 * @param type
+	 * 		Type of one of the contact's phone numbers. May be {@code null}.
+	 * @param address
+	 * 		Words in the contact's address. Each word matches address words starting with it.
+	 * 		May be {@code null}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When a filter is empty or too long, the address has too many words,
+	 * 		or the number is not in an accepted format.
+	 */
+	public ContactQuery(String name, String namePrefix, String number, Phone.Type type, String address)
+			throws IllegalArgumentException {
+		this.name = check(name, "name");
+		this.namePrefix = check(namePrefix, "name prefix");
+		this.number = number == null ? null : Phone.normalize(number);
+		this.type = type;
+		this.address = check(address, "address");
+		if (address != null && address.trim().split("\\s+").length > MAX_ADDRESS_TERMS)
+			throw new IllegalArgumentException("Too many address words, at most " + MAX_ADDRESS_TERMS +
+					" may be searched at once");
+	}
+
+	/**
+	 * @return Exact name of the contact, or {@code null} to match any name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return Start of the name of the contact, or {@code null} to match any name.
+	 */
+	public String getNamePrefix() {
+		return namePrefix;
+	}
+
+	/**
+	 * @return Phone number in the format: {@code NNN-NNN-NNNN}, or {@code null} to match any number.
+	 */
+	public String getNumber() {
+		return number;
+	}
+
+	/**
+	 * @return Type of one of the contact's phone numbers, or {@code null} to match any type.
+	 */
+	public Phone.Type getType() {
+		return type;
+	}
+
+	/**
+	 * @return Words in the contact's address, or {@code null} to match any address.
+	 */
+	public String getAddress() {
+		return address;
+	}
+
+	@Override
+	public String toString() {
+		return "name=" + name + ", namePrefix=" + namePrefix + ", number=" + number +
+				", type=" + type + ", address=" + address;
+	}
+
+	/**
+	 * @param value
+	 * 		Filter value.
+	 * @param filter
+	 * 		Name of the filter, for error messages.
+	 *
+	 * @return The value.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the value is blank or too long.
+	 */
+	private static String check(String value, String filter) {
+		if (value == null)
+			return null;
+		if (value.trim().isEmpty())
+			throw new IllegalArgumentException("Search " + filter + " must not be empty");
+		if (value.length() > MAX_LENGTH)
+			throw new IllegalArgumentException("Search " + filter + " is too long, at most " + MAX_LENGTH +
+					" characters are allowed");
+		return value;
+	}
+}
@@ -0,0 +1,79 @@
+package me.coley.addressbook.model;
+
+/**
+ * Outcome of a single contact within a batch operation.
+ */
+public class ContactResult {
+	private final String name;
+	private final boolean success;
+	private final Exception failCause;
+
+	/**
+	 * Constructs a result for a single contact of a batch.
+	 *
+	 * @param name
+	 * 		Contact identifier. May be {@code null} if the contact could not be read.
+	 * @param success
+	 *        {@code true} if the operation on the contact succeeded. {@code false} otherwise.
+	 * @param failCause
+	 * 		Reason for failure, will be {@code null} if the operation was a success.
+	 */
+	private ContactResult(String name, boolean success, Exception failCause) {
+		this.name = name;
+		this.success = success;
+		this.failCause = failCause;
+	}
+
+	/**
+	 * Create a success result.
+	 *
+	 * @param name
+	 * 		Contact identifier.
+	 *
+	 * @return Success result.
+	 */
+	public static ContactResult success(String name) {
+		return new ContactResult(name, true, null);
+	}
+
+	/**
+	 * Create a failure result.
+	 *
+	 * @param name
+	 * 		Contact identifier. May be {@code null} if the contact could not be read.
+	 * @param reason
+	 * 		Failure reason.
+	 *
+	 * @return Failure result.
+	 */
+	public static ContactResult failure(String name, Exception reason) {
+		return new ContactResult(name, false, reason);
+	}
+
+	/**
+	 * @return Contact identifier. May be {@code null} if the contact could not be read.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return {@code true} if the operation on the contact succeeded. {@code false} otherwise.
+	 */
+	public boolean isSuccess() {
+		return success;
+	}
+
+	/**
+	 * @return Reason for failure, will be {@code null} if the operation was a success.
+	 * See {@link #isSuccess()}.
+	 */
+	public Exception getFailCause() {
+		return failCause;
+	}
+
+	@Override
+	public String toString() {
+		return name + ":" + (success ? "OK" : failCause);
+	}
+}
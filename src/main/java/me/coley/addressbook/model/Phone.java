@@ -69,20 +69,64 @@ public class Phone {
 	 * 		Potential phone number.
 	 *
 	 * @return Number formatted in the style {@code NNN-NNN-NNNN}.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the number is not in one of the formats accepted by {@link #Phone(String, Type)}.
 	 */
-	private static String normalize(String number) {
-		if(number.matches("[2-9]\\d{2}-\\d{3}-\\d{4}")) {
+	static String normalize(String number) throws IllegalArgumentException {
+		// Scanned by hand rather than with regular expressions, since this runs for every number
+		// in every request and every search hit.
+		if(number.length() == 12 && isAreaCode(number, 0) && isDigits(number, 1, 3) && number.charAt(3) == '-'
+				&& isDigits(number, 4, 7) && number.charAt(7) == '-' && isDigits(number, 8, 12)) {
 			// Number already matches expected format.
 			return number;
 		}
-		if(number.matches("[2-9]\\d{9}")) {
+		if(number.length() == 10 && isAreaCode(number, 0) && isDigits(number, 1, 10)) {
 			// Number is valid, but missing '-' splitters.
-			return number.substring(0, 3) + "-" + number.substring(3, 6) + "-" + number.substring(6);
+			char[] formatted = new char[12];
+			number.getChars(0, 3, formatted, 0);
+			formatted[3] = '-';
+			number.getChars(3, 6, formatted, 4);
+			formatted[7] = '-';
+			number.getChars(6, 10, formatted, 8);
+			return new String(formatted);
 		}
 		// Number is not in one of the allowed formats.
 		throw new IllegalArgumentException("Invalid phone format: " + number);
 	}
 
+	/**
+	 * @param text
+	 * 		Text to check.
+	 * @param index
+	 * 		Index of character to check.
+	 *
+	 * @return {@code true} if the character is a valid first digit of an area code, {@code 2-9}.
+	 */
+	private static boolean isAreaCode(String text, int index) {
+		char c = text.charAt(index);
+		return c >= '2' && c <= '9';
+	}
+
+	/**
+	 * @param text
+	 * 		Text to check.
+	 * @param start
+	 * 		First index to check, inclusive.
+	 * @param end
+	 * 		Last index to check, exclusive.
+	 *
+	 * @return {@code true} if all characters in the range are ASCII digits.
+	 */
+	private static boolean isDigits(String text, int start, int end) {
+		for(int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if(c < '0' || c > '9')
+				return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Phone contact type.
 	 */
@@ -0,0 +1,163 @@
+package me.coley.addressbook.service;
+
+import me.coley.addressbook.exception.DuplicateContactException;
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.exception.PreconditionFailedException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactPage;
+import me.coley.addressbook.model.ContactQuery;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+/**
+ * Non-blocking contact functionality outline. Each call mirrors one of {@link ContactService}, but returns
+ * immediately with a future of the result. Failures complete the future exceptionally, with the same
+ * exceptions the blocking calls throw.
+ */
+public interface AsyncContactService {
+	/**
+	 * Add a contact.
+	 *
+	 * @param contact
+	 * 		Contact to add.
+	 *
+	 * @return Future completed once the contact is added,
+	 * or completed with a {@link DuplicateContactException} if a contact with the same identifier exists.
+	 */
+	CompletableFuture<Void> addAsync(Contact contact);
+
+	/**
+	 * Delete an existing contact.
+	 *
+	 * @param name
+	 * 		Name of contact to remove.
+	 *
+	 * @return Future completed once the contact is removed,
+	 * or completed with a {@link MissingContactException} if no contact by the given name exists.
+	 */
+	CompletableFuture<Void> deleteAsync(String name);
+
+	/**
+	 * Check if a contact exists by looking up their identifier.
+	 *
+	 * @param name
+	 * 		Name of contact to lookup.
+	 *
+	 * @return Future of {@code true} when the contact is found. {@code false} otherwise.
+	 */
+	CompletableFuture<Boolean> existsAsync(String name);
+
+	/**
+	 * Return a selection of existing contents.
+	 *
+	 * @param page
+	 * 		Page number to pull from. The index is 1-based.
+	 * @param length
+	 * 		Number of contacts to display per page.
+	 * @param query
+	 * 		String query.
+	 *
+	 * @return Future of the contacts on the page.
+	 */
+	CompletableFuture<Collection<Contact>> contactsAsync(int page, int length, String query);
+
+	/**
+	 * Return a selection of existing contacts, continuing from a prior page.
+	 *
+	 * @param cursor
+	 * 		Cursor from {@link ContactPage#getNext()} of the prior page.
+	 * 		May be {@code null} to start from the first contact.
+	 * @param length
+	 * 		Number of contacts to display per page.
+	 * @param query
+	 * 		String query.
+	 *
+	 * @return Future of the contacts on the page, with a cursor to the following page.
+	 * Completed with an {@link IllegalArgumentException} if the cursor is malformed.
+	 */
+	CompletableFuture<ContactPage> contactsAfterAsync(String cursor, int length, String query);
+
+	/**
+	 * Return a selection of the contacts matching structured filters, continuing from a prior page.
+	 *
+	 * @param query
+	 * 		Filters the contacts must match.
+	 * @param cursor
+	 * 		Cursor from {@link ContactPage#getNext()} of the prior page.
+	 * 		May be {@code null} to start from the first contact.
+	 * @param length
+	 * 		Number of contacts to display per page.
+	 *
+	 * @return Future of the matching contacts on the page, with a cursor to the following page.
+	 * Completed with an {@link IllegalArgumentException} if the cursor is malformed.
+	 */
+	CompletableFuture<ContactPage> searchAsync(ContactQuery query, String cursor, int length);
+
+	/**
+	 * Suggest contacts while their name or address is being typed.
+	 *
+	 * @param prefix
+	 * 		Text typed so far. Each of its words matches the start of a word in the contact's name or address.
+	 * @param limit
+	 * 		Maximum number of suggestions.
+	 *
+	 * @return Future of the names of matching contacts, those matching by name first.
+	 */
+	CompletableFuture<List<String>> suggestAsync(String prefix, int limit);
+
+	/**
+	 * Update an existing content by providing a model of the new contact information.
+	 *
+	 * @param contact
+	 * 		A minimal contact that will have its information copied to the existing contact by the
+	 * 		same identifier.
+	 *
+	 * @return Future of the old contact,
+	 * or completed with a {@link MissingContactException} if no contact by the given name exists.
+	 */
+	default CompletableFuture<Contact> updateAsync(Contact contact) {
+		return updateAsync(contact, current -> true);
+	}
+
+	/**
+	 * Update an existing contact, only if its current information meets a precondition.
+	 * The precondition is tested against the same read of the contact the update replaces,
+	 * so no other update can slip in between.
+	 *
+	 * @param contact
+	 * 		A minimal contact that will have its information copied to the existing contact by the
+	 * 		same identifier.
+	 * @param precondition
+	 * 		Test of the current contact.
+	 *
+	 * @return Future of the old contact,
+	 * or completed with a {@link MissingContactException} if no contact by the given name exists,
+	 * or with a {@link PreconditionFailedException} if the current contact does not meet the precondition.
+	 */
+	CompletableFuture<Contact> updateAsync(Contact contact, Predicate<Contact> precondition);
+
+	/**
+	 * Fetch a contact by their unique name.
+	 *
+	 * @param name
+	 * 		Name of contact to fetch.
+	 *
+	 * @return Future of the contact information,
+	 * or completed with a {@link MissingContactException} if no contact by the given name exists.
+	 */
+	CompletableFuture<Contact> getAsync(String name);
+
+	/**
+	 * Fetch many contacts by their unique names at once.
+	 *
+	 * @param names
+	 * 		Names of contacts to fetch.
+	 *
+	 * @return Future of contacts by name. Names with no matching contact are absent.
+	 */
+	CompletableFuture<Map<String, Contact>> getAllAsync(Collection<String> names);
+}
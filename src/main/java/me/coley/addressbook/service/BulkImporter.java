@@ -0,0 +1,123 @@
+package me.coley.addressbook.service;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactResult;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static me.coley.addressbook.util.Json.fromJson;
+
+/**
+ * Reads a JSON array of contacts from a stream and hands them to a {@link ContactService} in
+ * batches, so the whole payload never has to be held in memory at once.
+ */
+public class BulkImporter {
+	private final ContactService service;
+	private final int batchSize;
+
+	/**
+	 * Constructs an importer.
+	 *
+	 * @param service
+	 * 		Service to add contacts to.
+	 * @param batchSize
+	 * 		Number of contacts to read before passing them to {@link ContactService#addAll}.
+	 */
+	public BulkImporter(ContactService service, int batchSize) {
+		this.service = service;
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * Read and add all contacts from the given JSON array.
+	 * Contacts that cannot be read, or fail validation, are reported as failures
+	 * without affecting the other contacts.
+	 * <br>
+	 * Malformed JSON ends the import, since no further contacts can be found in it. The contacts before it
+	 * are still added, as earlier batches already are, and the error is reported as a last failure without
+	 * a name. That way the results still show which contacts were imported.
+	 *
+	 * @param reader
+	 * 		Source of the JSON array of contacts.
+	 *
+	 * @return Results for each contact, in the same order as the array.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the content is not a JSON array.
+	 * @throws IOException
+	 * 		When the stream could not be read.
+	 */
+	public List<ContactResult> run(Reader reader) throws IllegalArgumentException, IOException {
+		List<ContactResult> results = new ArrayList<>();
+		// Contacts waiting to be added, and their positions in the results
+		List<Contact> pending = new ArrayList<>(batchSize);
+		List<Integer> slots = new ArrayList<>(batchSize);
+		JsonReader json = new JsonReader(reader);
+		try {
+			json.beginArray();
+		} catch(MalformedJsonException | IllegalStateException ex) {
+			throw new IllegalArgumentException("Bulk content must be a JSON array of contacts");
+		}
+		try {
+			read(json, pending, slots, results);
+		} catch(MalformedJsonException | JsonParseException | IllegalStateException ex) {
+			flush(pending, slots, results);
+			results.add(ContactResult.failure(null, ex));
+			return results;
+		}
+		flush(pending, slots, results);
+		return results;
+	}
+
+	private void read(JsonReader json, List<Contact> pending, List<Integer> slots, List<ContactResult> results)
+			throws IOException {
+		while(json.hasNext()) {
+			JsonElement element = JsonParser.parseReader(json);
+			try {
+				pending.add(fromJson(element, Contact.class));
+				slots.add(results.size());
+				results.add(null);
+			} catch(RuntimeException ex) {
+				// Missing fields, invalid phone numbers, unknown types, etc.
+				results.add(ContactResult.failure(nameOf(element), ex));
+			}
+			if (pending.size() >= batchSize)
+				flush(pending, slots, results);
+		}
+		json.endArray();
+	}
+
+	private void flush(List<Contact> pending, List<Integer> slots, List<ContactResult> results) {
+		if (pending.isEmpty())
+			return;
+		List<ContactResult> added = service.addAll(pending);
+		for(int i = 0; i < added.size(); i++)
+			results.set(slots.get(i), added.get(i));
+		pending.clear();
+		slots.clear();
+	}
+
+	/**
+	 * @param element
+	 * 		Json of a contact that could not be read.
+	 *
+	 * @return Name of the contact, if one could be found.
+	 */
+	private static String nameOf(JsonElement element) {
+		if (!element.isJsonObject())
+			return null;
+		JsonObject object = element.getAsJsonObject();
+		if (object.has("name") && object.get("name").isJsonPrimitive())
+			return object.get("name").getAsString();
+		return null;
+	}
+}
@@ -2,14 +2,29 @@ package me.coley.addressbook.service;
 
 import me.coley.addressbook.exception.DuplicateContactException;
 import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.exception.PreconditionFailedException;
 import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactPage;
+import me.coley.addressbook.model.ContactQuery;
+import me.coley.addressbook.model.ContactResult;
+import me.coley.addressbook.util.Futures;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Contact functionality outline.
+ * <br>
+ * The {@link AsyncContactService non-blocking calls} default to running the blocking calls on the calling
+ * thread. Implementations that can wait for results without holding a thread should override them.
  */
-public interface ContactService {
+public interface ContactService extends AsyncContactService {
 	/**
 	 * Add a contact.
 	 *
@@ -21,6 +36,28 @@ public interface ContactService {
 	 */
 	void add(Contact contact) throws DuplicateContactException;
 
+	/**
+	 * Add many contacts at once. A failure to add one contact does not prevent the others from
+	 * being added.
+	 *
+	 * @param contacts
+	 * 		Contacts to add.
+	 *
+	 * @return Results for each contact, in the same order as the given contacts.
+	 */
+	default List<ContactResult> addAll(Collection<Contact> contacts) {
+		List<ContactResult> results = new ArrayList<>(contacts.size());
+		for(Contact contact : contacts) {
+			try {
+				add(contact);
+				results.add(ContactResult.success(contact.getName()));
+			} catch(DuplicateContactException | RuntimeException ex) {
+				results.add(ContactResult.failure(contact.getName(), ex));
+			}
+		}
+		return results;
+	}
+
 	/**
 	 * Delete an existing contact.
 	 *
@@ -56,6 +93,67 @@ public interface ContactService {
 	 */
 	Collection<Contact> contacts(int page, int length, String query);
 
+	/**
+	 * Return a selection of existing contacts, continuing from a prior page.
+	 * Unlike {@link #contacts(int, int, String)} the cost of fetching a page does not grow
+	 * with how far into the contacts the page is.
+	 *
+	 * @param cursor
+	 * 		Cursor from {@link ContactPage#getNext()} of the prior page.
+	 * 		May be {@code null} to start from the first contact.
+	 * @param length
+	 * 		Number of contacts to display per page.
+	 * @param query
+	 * 		String query.
+	 *
+	 * @return Contacts on the page, with a cursor to the following page.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the cursor is malformed.
+	 */
+	ContactPage contactsAfter(String cursor, int length, String query) throws IllegalArgumentException;
+
+	/**
+	 * Return a selection of the contacts matching structured filters, continuing from a prior page.
+	 * Preferred over query strings, since every filter maps to a cheap lookup.
+	 *
+	 * @param query
+	 * 		Filters the contacts must match.
+	 * @param cursor
+	 * 		Cursor from {@link ContactPage#getNext()} of the prior page.
+	 * 		May be {@code null} to start from the first contact.
+	 * @param length
+	 * 		Number of contacts to display per page.
+	 *
+	 * @return Matching contacts on the page, with a cursor to the following page.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the cursor is malformed.
+	 */
+	ContactPage search(ContactQuery query, String cursor, int length) throws IllegalArgumentException;
+
+	/**
+	 * Suggest contacts while their name or address is being typed.
+	 *
+	 * @param prefix
+	 * 		Text typed so far. Each of its words matches the start of a word in the contact's name or address.
+	 * @param limit
+	 * 		Maximum number of suggestions.
+	 *
+	 * @return Names of matching contacts, those matching by name first.
+	 */
+	List<String> suggest(String prefix, int limit);
+
+	/**
+	 * Visit every contact matching the query, without loading them all into memory at once.
+	 *
+	 * @param query
+	 * 		String query. May be {@code null} to visit all contacts.
+	 * @param action
+	 * 		Action to run on each contact.
+	 */
+	void forEach(String query, Consumer<Contact> action);
+
 	/**
 	 * Update an existing content by providing a model of the new contact information.
 	 *
@@ -68,7 +166,29 @@ public interface ContactService {
 	 * @throws MissingContactException
 	 * 		When no matching contact by the given minimal contact's identifier can be found.
 	 */
-	Contact update(Contact contact) throws MissingContactException;
+	default Contact update(Contact contact) throws MissingContactException {
+		return update(contact, current -> true);
+	}
+
+	/**
+	 * Update an existing contact, only if its current information meets a precondition.
+	 * The precondition is tested against the same read of the contact the update replaces,
+	 * so no other update can slip in between.
+	 *
+	 * @param contact
+	 * 		A minimal contact that will have its information copied to the existing contact by the
+	 * 		same identifier.
+	 * @param precondition
+	 * 		Test of the current contact.
+	 *
+	 * @return Old contact.
+	 *
+	 * @throws MissingContactException
+	 * 		When no matching contact by the given minimal contact's identifier can be found.
+	 * @throws PreconditionFailedException
+	 * 		When the current contact does not meet the precondition.
+	 */
+	Contact update(Contact contact, Predicate<Contact> precondition) throws MissingContactException;
 
 	/**
 	 * Fetch a contact by their unique name.
@@ -82,4 +202,80 @@ public interface ContactService {
 	 * 		When no contact by the given name could be found.
 	 */
 	Contact get(String name) throws MissingContactException;
+
+	/**
+	 * Fetch many contacts by their unique names at once.
+	 *
+	 * @param names
+	 * 		Names of contacts to fetch.
+	 *
+	 * @return Contacts by name. Names with no matching contact are absent.
+	 */
+	default Map<String, Contact> getAll(Collection<String> names) {
+		Map<String, Contact> found = new LinkedHashMap<>();
+		for(String name : names) {
+			try {
+				found.put(name, get(name));
+			} catch(MissingContactException ex) {
+				// Absent from the result
+			}
+		}
+		return found;
+	}
+
+	@Override
+	default CompletableFuture<Void> addAsync(Contact contact) {
+		return Futures.supply(() -> {
+			add(contact);
+			return null;
+		});
+	}
+
+	@Override
+	default CompletableFuture<Void> deleteAsync(String name) {
+		return Futures.supply(() -> {
+			delete(name);
+			return null;
+		});
+	}
+
+	@Override
+	default CompletableFuture<Boolean> existsAsync(String name) {
+		return Futures.supply(() -> exists(name));
+	}
+
+	@Override
+	default CompletableFuture<Collection<Contact>> contactsAsync(int page, int length, String query) {
+		return Futures.supply(() -> contacts(page, length, query));
+	}
+
+	@Override
+	default CompletableFuture<ContactPage> contactsAfterAsync(String cursor, int length, String query) {
+		return Futures.supply(() -> contactsAfter(cursor, length, query));
+	}
+
+	@Override
+	default CompletableFuture<ContactPage> searchAsync(ContactQuery query, String cursor, int length) {
+		return Futures.supply(() -> search(query, cursor, length));
+	}
+
+	@Override
+	default CompletableFuture<List<String>> suggestAsync(String prefix, int limit) {
+		return Futures.supply(() -> suggest(prefix, limit));
+	}
+
+	@Override
+	default CompletableFuture<Contact> updateAsync(Contact contact, Predicate<Contact> precondition) {
+		return Futures.supply(() -> update(contact, precondition));
+	}
+
+	@Override
+	default CompletableFuture<Contact> getAsync(String name) {
+		return Futures.supply(() -> get(name));
+	}
+
+	@Override
+	default CompletableFuture<Map<String, Contact>> getAllAsync(Collection<String> names) {
+		return Futures.supply(() -> getAll(names));
+	}
 }
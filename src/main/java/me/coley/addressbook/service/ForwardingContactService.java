@@ -0,0 +1,144 @@
+package me.coley.addressbook.service;
+
+import me.coley.addressbook.exception.DuplicateContactException;
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactPage;
+import me.coley.addressbook.model.ContactQuery;
+import me.coley.addressbook.model.ContactResult;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A contact service that passes all calls on to another service, blocking and non-blocking alike.
+ * Decorators extend this and override only the calls they add behavior to.
+ * <br>
+ * A decorator that changes a blocking call must override its non-blocking counterpart too,
+ * otherwise the non-blocking call bypasses it.
+ */
+public abstract class ForwardingContactService implements ContactService {
+	protected final ContactService delegate;
+
+	/**
+	 * @param delegate
+	 * 		Service to pass calls on to.
+	 */
+	protected ForwardingContactService(ContactService delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void add(Contact contact) throws DuplicateContactException {
+		delegate.add(contact);
+	}
+
+	@Override
+	public List<ContactResult> addAll(Collection<Contact> contacts) {
+		return delegate.addAll(contacts);
+	}
+
+	@Override
+	public void delete(String name) throws MissingContactException {
+		delegate.delete(name);
+	}
+
+	@Override
+	public boolean exists(String name) {
+		return delegate.exists(name);
+	}
+
+	@Override
+	public Collection<Contact> contacts(int page, int length, String query) {
+		return delegate.contacts(page, length, query);
+	}
+
+	@Override
+	public ContactPage contactsAfter(String cursor, int length, String query) throws IllegalArgumentException {
+		return delegate.contactsAfter(cursor, length, query);
+	}
+
+	@Override
+	public ContactPage search(ContactQuery query, String cursor, int length) throws IllegalArgumentException {
+		return delegate.search(query, cursor, length);
+	}
+
+	@Override
+	public List<String> suggest(String prefix, int limit) {
+		return delegate.suggest(prefix, limit);
+	}
+
+	@Override
+	public void forEach(String query, Consumer<Contact> action) {
+		delegate.forEach(query, action);
+	}
+
+	@Override
+	public Contact update(Contact contact, Predicate<Contact> precondition) throws MissingContactException {
+		return delegate.update(contact, precondition);
+	}
+
+	@Override
+	public Contact get(String name) throws MissingContactException {
+		return delegate.get(name);
+	}
+
+	@Override
+	public Map<String, Contact> getAll(Collection<String> names) {
+		return delegate.getAll(names);
+	}
+
+	@Override
+	public CompletableFuture<Void> addAsync(Contact contact) {
+		return delegate.addAsync(contact);
+	}
+
+	@Override
+	public CompletableFuture<Void> deleteAsync(String name) {
+		return delegate.deleteAsync(name);
+	}
+
+	@Override
+	public CompletableFuture<Boolean> existsAsync(String name) {
+		return delegate.existsAsync(name);
+	}
+
+	@Override
+	public CompletableFuture<Collection<Contact>> contactsAsync(int page, int length, String query) {
+		return delegate.contactsAsync(page, length, query);
+	}
+
+	@Override
+	public CompletableFuture<ContactPage> contactsAfterAsync(String cursor, int length, String query) {
+		return delegate.contactsAfterAsync(cursor, length, query);
+	}
+
+	@Override
+	public CompletableFuture<ContactPage> searchAsync(ContactQuery query, String cursor, int length) {
+		return delegate.searchAsync(query, cursor, length);
+	}
+
+	@Override
+	public CompletableFuture<List<String>> suggestAsync(String prefix, int limit) {
+		return delegate.suggestAsync(prefix, limit);
+	}
+
+	@Override
+	public CompletableFuture<Contact> updateAsync(Contact contact, Predicate<Contact> precondition) {
+		return delegate.updateAsync(contact, precondition);
+	}
+
+	@Override
+	public CompletableFuture<Contact> getAsync(String name) {
+		return delegate.getAsync(name);
+	}
+
+	@Override
+	public CompletableFuture<Map<String, Contact>> getAllAsync(Collection<String> names) {
+		return delegate.getAllAsync(names);
+	}
+}
@@ -0,0 +1,112 @@
+package me.coley.addressbook.service.impl;
+
+import me.coley.addressbook.Options;
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.service.ContactService;
+import me.coley.addressbook.service.ForwardingContactService;
+import me.coley.addressbook.util.Futures;
+import me.coley.addressbook.util.MicroBatcher;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A contact service that gathers lookups arriving close together into one multi-get, in front of
+ * another service. Each lookup waits up to the batch window for others to join it, trading that
+ * much latency for fewer round-trips under load.
+ * <br>
+ * Both {@link #get(String)} and {@link #exists(String)} are served by the multi-get.
+ */
+public class BatchingContactService extends ForwardingContactService implements AutoCloseable {
+	private final MicroBatcher<String, Contact> batcher;
+
+	/**
+	 * Constructs a batching wrapper around a contact service.
+	 *
+	 * @param delegate
+	 * 		Service to pass other calls on to.
+	 * @param loader
+	 * 		Fetches many contacts in one request. Names with no matching contact are absent from the result.
+	 * @param options
+	 * 		Program arguments, specifying the batch window and size.
+	 */
+	public BatchingContactService(ContactService delegate,
+								  Function<Set<String>, CompletableFuture<Map<String, Contact>>> loader,
+								  Options options) {
+		this(delegate, new MicroBatcher<>(loader, options.getMultiGetWindow(), TimeUnit.MILLISECONDS,
+				options.getMultiGetSize()));
+	}
+
+	/**
+	 * Constructs a batching wrapper around a contact service.
+	 *
+	 * @param delegate
+	 * 		Service to pass other calls on to.
+	 * @param batcher
+	 * 		Batcher of contact lookups.
+	 */
+	public BatchingContactService(ContactService delegate, MicroBatcher<String, Contact> batcher) {
+		super(delegate);
+		this.batcher = batcher;
+	}
+
+	@Override
+	public boolean exists(String name) {
+		return load(name) != null;
+	}
+
+	@Override
+	public CompletableFuture<Boolean> existsAsync(String name) {
+		return batcher.load(name).thenApply(Objects::nonNull);
+	}
+
+	@Override
+	public Contact get(String name) throws MissingContactException {
+		Contact contact = load(name);
+		if (contact == null)
+			throw new MissingContactException(name, "Cannot retrieve due to no matching contact");
+		return contact;
+	}
+
+	@Override
+	public CompletableFuture<Contact> getAsync(String name) {
+		return batcher.load(name).thenCompose(contact -> contact == null ?
+				Futures.failed(new MissingContactException(name, "Cannot retrieve due to no matching contact")) :
+				CompletableFuture.completedFuture(contact));
+	}
+
+	/**
+	 * @return Batcher of contact lookups, exposing the batch size distribution.
+	 */
+	public MicroBatcher<String, Contact> getBatcher() {
+		return batcher;
+	}
+
+	@Override
+	public void close() {
+		batcher.close();
+	}
+
+	/**
+	 * @param name
+	 * 		Name of contact to lookup.
+	 *
+	 * @return Contact, or {@code null} if it does not exist.
+	 */
+	private Contact load(String name) {
+		try {
+			return batcher.load(name).join();
+		} catch(CompletionException ex) {
+			// Rethrow what the batch failed with, rather than the wrapper
+			if (ex.getCause() instanceof RuntimeException)
+				throw (RuntimeException) ex.getCause();
+			throw ex;
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package me.coley.addressbook.service.impl;
+
+/**
+ * Blocking call to a contact service that may throw a checked exception.
+ *
+ * @param <T>
+ * 		Type of call result.
+ * @param <X>
+ * 		Type of checked exception the call may throw.
+ */
+interface BlockingCall<T, X extends Exception> {
+	/**
+	 * @return Result of the call.
+	 *
+	 * @throws X
+	 * 		When the call fails.
+	 */
+	T call() throws X;
+}
@@ -0,0 +1,279 @@
+package me.coley.addressbook.service.impl;
+
+import me.coley.addressbook.Options;
+import me.coley.addressbook.exception.DuplicateContactException;
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactResult;
+import me.coley.addressbook.model.Phone;
+import me.coley.addressbook.service.ContactService;
+import me.coley.addressbook.service.ForwardingContactService;
+import me.coley.addressbook.util.BoundedCache;
+import me.coley.addressbook.util.Futures;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * A contact service that keeps recently fetched contacts in memory, in front of another service.
+ * Lookups of contacts that do not exist are cached too, for a shorter time.
+ * <br>
+ * Cached contacts are shared between callers, and must not be modified.
+ */
+public class CachingContactService extends ForwardingContactService {
+	// Rough per-object overhead used when estimating the size of a contact
+	private static final int OBJECT_BYTES = 16;
+	private final BoundedCache<String, Optional<Contact>> cache;
+	private final long ttl;
+	private final long missTtl;
+
+	/**
+	 * Constructs a caching wrapper around a contact service.
+	 *
+	 * @param delegate
+	 * 		Service to cache lookups of.
+	 * @param options
+	 * 		Program arguments, specifying the cache bounds and time-to-live.
+	 */
+	public CachingContactService(ContactService delegate, Options options) {
+		this(delegate, new BoundedCache<>(options.getCacheSize(), options.getCacheBytes(),
+				CachingContactService::weigh), options.getCacheTtl(), options.getCacheMissTtl());
+	}
+
+	/**
+	 * Constructs a caching wrapper around a contact service.
+	 *
+	 * @param delegate
+	 * 		Service to cache lookups of.
+	 * @param cache
+	 * 		Cache to hold contacts in. Empty values mark contacts that do not exist.
+	 * @param ttl
+	 * 		Time in milliseconds that contacts are cached for.
+	 * @param missTtl
+	 * 		Time in milliseconds that missing contacts are cached for.
+	 */
+	public CachingContactService(ContactService delegate, BoundedCache<String, Optional<Contact>> cache,
+								 long ttl, long missTtl) {
+		super(delegate);
+		this.cache = cache;
+		this.ttl = ttl;
+		this.missTtl = missTtl;
+	}
+
+	@Override
+	public void add(Contact contact) throws DuplicateContactException {
+		try {
+			delegate.add(contact);
+		} finally {
+			invalidate(contact.getName());
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> addAsync(Contact contact) {
+		return delegate.addAsync(contact).whenComplete((result, error) -> invalidate(contact.getName()));
+	}
+
+	@Override
+	public List<ContactResult> addAll(Collection<Contact> contacts) {
+		try {
+			return delegate.addAll(contacts);
+		} finally {
+			contacts.forEach(contact -> invalidate(contact.getName()));
+		}
+	}
+
+	@Override
+	public void delete(String name) throws MissingContactException {
+		try {
+			delegate.delete(name);
+		} finally {
+			invalidate(name);
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> deleteAsync(String name) {
+		return delegate.deleteAsync(name).whenComplete((result, error) -> invalidate(name));
+	}
+
+	@Override
+	public boolean exists(String name) {
+		Optional<Contact> cached = cache.get(name);
+		if (cached != null)
+			return cached.isPresent();
+		long stamp = cache.stamp();
+		boolean exists = delegate.exists(name);
+		if (!exists)
+			cache.put(name, Optional.empty(), missTtl, TimeUnit.MILLISECONDS, stamp);
+		return exists;
+	}
+
+	@Override
+	public CompletableFuture<Boolean> existsAsync(String name) {
+		Optional<Contact> cached = cache.get(name);
+		if (cached != null)
+			return CompletableFuture.completedFuture(cached.isPresent());
+		long stamp = cache.stamp();
+		return delegate.existsAsync(name).whenComplete((exists, error) -> {
+			if (exists != null && !exists)
+				cache.put(name, Optional.empty(), missTtl, TimeUnit.MILLISECONDS, stamp);
+		});
+	}
+
+	@Override
+	public Contact update(Contact contact, Predicate<Contact> precondition) throws MissingContactException {
+		try {
+			return delegate.update(contact, precondition);
+		} finally {
+			invalidate(contact.getName());
+		}
+	}
+
+	@Override
+	public Contact get(String name) throws MissingContactException {
+		Optional<Contact> cached = cache.get(name);
+		if (cached != null) {
+			if (cached.isPresent())
+				return cached.get();
+			throw new MissingContactException(name, "Cannot retrieve due to no matching contact");
+		}
+		long stamp = cache.stamp();
+		try {
+			Contact contact = delegate.get(name);
+			cache.put(name, Optional.of(contact), ttl, TimeUnit.MILLISECONDS, stamp);
+			return contact;
+		} catch(MissingContactException ex) {
+			cache.put(name, Optional.empty(), missTtl, TimeUnit.MILLISECONDS, stamp);
+			throw ex;
+		}
+	}
+
+	@Override
+	public CompletableFuture<Contact> updateAsync(Contact contact, Predicate<Contact> precondition) {
+		return delegate.updateAsync(contact, precondition)
+				.whenComplete((result, error) -> invalidate(contact.getName()));
+	}
+
+	@Override
+	public CompletableFuture<Contact> getAsync(String name) {
+		Optional<Contact> cached = cache.get(name);
+		if (cached != null) {
+			if (cached.isPresent())
+				return CompletableFuture.completedFuture(cached.get());
+			return Futures.failed(new MissingContactException(name, "Cannot retrieve due to no matching contact"));
+		}
+		long stamp = cache.stamp();
+		return delegate.getAsync(name).whenComplete((contact, error) -> {
+			if (contact != null)
+				cache.put(name, Optional.of(contact), ttl, TimeUnit.MILLISECONDS, stamp);
+			else if (Futures.unwrap(error) instanceof MissingContactException)
+				cache.put(name, Optional.empty(), missTtl, TimeUnit.MILLISECONDS, stamp);
+		});
+	}
+
+	@Override
+	public Map<String, Contact> getAll(Collection<String> names) {
+		Map<String, Contact> found = new LinkedHashMap<>();
+		List<String> uncached = lookupCached(names, found);
+		if (uncached.isEmpty())
+			return found;
+		long stamp = cache.stamp();
+		Map<String, Contact> fetched = delegate.getAll(uncached);
+		storeAll(uncached, fetched, stamp);
+		found.putAll(fetched);
+		return found;
+	}
+
+	@Override
+	public CompletableFuture<Map<String, Contact>> getAllAsync(Collection<String> names) {
+		Map<String, Contact> found = new LinkedHashMap<>();
+		List<String> uncached = lookupCached(names, found);
+		if (uncached.isEmpty())
+			return CompletableFuture.completedFuture(found);
+		long stamp = cache.stamp();
+		return delegate.getAllAsync(uncached).thenApply(fetched -> {
+			storeAll(uncached, fetched, stamp);
+			found.putAll(fetched);
+			return found;
+		});
+	}
+
+	/**
+	 * @return Backing cache, exposing the hit, miss and eviction counts.
+	 */
+	public BoundedCache<String, Optional<Contact>> getCache() {
+		return cache;
+	}
+
+	/**
+	 * @param names
+	 * 		Names of contacts to lookup.
+	 * @param found
+	 * 		Map to put cached contacts in.
+	 *
+	 * @return Names that are not cached, to be fetched.
+	 */
+	private List<String> lookupCached(Collection<String> names, Map<String, Contact> found) {
+		List<String> uncached = new ArrayList<>();
+		for(String name : names) {
+			Optional<Contact> cached = cache.get(name);
+			if (cached == null)
+				uncached.add(name);
+			else
+				cached.ifPresent(contact -> found.put(name, contact));
+		}
+		return uncached;
+	}
+
+	/**
+	 * Cache the results of a multi-get, including the names that were not found.
+	 *
+	 * @param names
+	 * 		Names that were fetched.
+	 * @param fetched
+	 * 		Contacts that were found, by name.
+	 * @param stamp
+	 * 		Cache write stamp from before the fetch started.
+	 */
+	private void storeAll(Collection<String> names, Map<String, Contact> fetched, long stamp) {
+		for(String name : names) {
+			Contact contact = fetched.get(name);
+			if (contact != null)
+				cache.put(name, Optional.of(contact), ttl, TimeUnit.MILLISECONDS, stamp);
+			else
+				cache.put(name, Optional.empty(), missTtl, TimeUnit.MILLISECONDS, stamp);
+		}
+	}
+
+	/**
+	 * @param name
+	 * 		Name of contact that was written to.
+	 */
+	private void invalidate(String name) {
+		cache.invalidate(name);
+	}
+
+	/**
+	 * @param value
+	 * 		Cached lookup result.
+	 *
+	 * @return Estimated size of the value in bytes.
+	 */
+	private static long weigh(Optional<Contact> value) {
+		if (!value.isPresent())
+			return OBJECT_BYTES;
+		Contact contact = value.get();
+		long size = 3 * OBJECT_BYTES + 2L * contact.getName().length() + 2L * contact.getAddress().length();
+		for(Phone phone : contact.getNumbers())
+			size += 2 * OBJECT_BYTES + 2L * phone.getNumber().length();
+		return size;
+	}
+}
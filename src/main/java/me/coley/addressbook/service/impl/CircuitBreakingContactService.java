@@ -0,0 +1,502 @@
+package me.coley.addressbook.service.impl;
+
+import me.coley.addressbook.Options;
+import me.coley.addressbook.exception.ContactException;
+import me.coley.addressbook.exception.DuplicateContactException;
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.exception.PreconditionFailedException;
+import me.coley.addressbook.exception.ServiceUnavailableException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactPage;
+import me.coley.addressbook.model.ContactQuery;
+import me.coley.addressbook.model.ContactResult;
+import me.coley.addressbook.service.ContactService;
+import me.coley.addressbook.service.ForwardingContactService;
+import me.coley.addressbook.util.BoundedCache;
+import me.coley.addressbook.util.CircuitBreaker;
+import me.coley.addressbook.util.Futures;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A contact service that stops calling another service while it is failing, see {@link CircuitBreaker}.
+ * Calls made while the breaker is open fail right away with a
+ * {@link ServiceUnavailableException}.
+ * <br>
+ * Contacts read and written through the service are also kept as stale copies, much longer than any
+ * cache would keep them. Lookups that fail because the backend is unavailable can be
+ * {@link #withStaleFallback(CompletableFuture, String, LongConsumer) answered from these copies}.
+ */
+public class CircuitBreakingContactService extends ForwardingContactService {
+	private final CircuitBreaker breaker;
+	private final BoundedCache<String, StaleCopy> stale;
+	private final LongAdder staleServed = new LongAdder();
+	private final long staleTtl;
+	private final LongSupplier ticker;
+
+	/**
+	 * Constructs a circuit breaking wrapper around a contact service.
+	 *
+	 * @param delegate
+	 * 		Service to guard.
+	 * @param options
+	 * 		Program arguments, specifying the breaker thresholds and the stale copy bound and time-to-live.
+	 */
+	public CircuitBreakingContactService(ContactService delegate, Options options) {
+		this(delegate, new CircuitBreaker(options.getBreakerWindow(), options.getBreakerFailureRate(),
+						options.getBreakerSlowCall(), options.getBreakerSlowRate(), options.getBreakerOpenTime()),
+				new BoundedCache<>(options.getStaleSize(), Long.MAX_VALUE, copy -> 1), options.getStaleTtl(),
+				System::nanoTime);
+	}
+
+	/**
+	 * Constructs a circuit breaking wrapper around a contact service.
+	 *
+	 * @param delegate
+	 * 		Service to guard.
+	 * @param breaker
+	 * 		Breaker to guard calls with.
+	 * @param stale
+	 * 		Cache to hold stale copies in.
+	 * @param staleTtl
+	 * 		Time in milliseconds that stale copies are kept for.
+	 * @param ticker
+	 * 		Source of the current time, in nanoseconds, for the age of stale copies.
+	 */
+	public CircuitBreakingContactService(ContactService delegate, CircuitBreaker breaker,
+										 BoundedCache<String, StaleCopy> stale, long staleTtl, LongSupplier ticker) {
+		super(delegate);
+		this.breaker = breaker;
+		this.stale = stale;
+		this.staleTtl = staleTtl;
+		this.ticker = ticker;
+	}
+
+	@Override
+	public void add(Contact contact) throws DuplicateContactException {
+		call(() -> {
+			delegate.add(contact);
+			return null;
+		});
+		keep(contact);
+	}
+
+	@Override
+	public CompletableFuture<Void> addAsync(Contact contact) {
+		return callAsync(() -> delegate.addAsync(contact)).whenComplete((result, error) -> {
+			if (error == null)
+				keep(contact);
+		});
+	}
+
+	@Override
+	public List<ContactResult> addAll(Collection<Contact> contacts) {
+		try {
+			return call(() -> delegate.addAll(contacts));
+		} finally {
+			contacts.forEach(contact -> stale.invalidate(contact.getName()));
+		}
+	}
+
+	@Override
+	public void delete(String name) throws MissingContactException {
+		try {
+			call(() -> {
+				delegate.delete(name);
+				return null;
+			});
+		} finally {
+			stale.invalidate(name);
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> deleteAsync(String name) {
+		return callAsync(() -> delegate.deleteAsync(name))
+				.whenComplete((result, error) -> stale.invalidate(name));
+	}
+
+	@Override
+	public boolean exists(String name) {
+		return call(() -> delegate.exists(name));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> existsAsync(String name) {
+		return callAsync(() -> delegate.existsAsync(name));
+	}
+
+	@Override
+	public Collection<Contact> contacts(int page, int length, String query) {
+		return call(() -> delegate.contacts(page, length, query));
+	}
+
+	@Override
+	public CompletableFuture<Collection<Contact>> contactsAsync(int page, int length, String query) {
+		return callAsync(() -> delegate.contactsAsync(page, length, query));
+	}
+
+	@Override
+	public ContactPage contactsAfter(String cursor, int length, String query) throws IllegalArgumentException {
+		return call(() -> delegate.contactsAfter(cursor, length, query));
+	}
+
+	@Override
+	public CompletableFuture<ContactPage> contactsAfterAsync(String cursor, int length, String query) {
+		return callAsync(() -> delegate.contactsAfterAsync(cursor, length, query));
+	}
+
+	@Override
+	public ContactPage search(ContactQuery query, String cursor, int length) throws IllegalArgumentException {
+		return call(() -> delegate.search(query, cursor, length));
+	}
+
+	@Override
+	public CompletableFuture<ContactPage> searchAsync(ContactQuery query, String cursor, int length) {
+		return callAsync(() -> delegate.searchAsync(query, cursor, length));
+	}
+
+	@Override
+	public List<String> suggest(String prefix, int limit) {
+		return call(() -> delegate.suggest(prefix, limit));
+	}
+
+	@Override
+	public CompletableFuture<List<String>> suggestAsync(String prefix, int limit) {
+		return callAsync(() -> delegate.suggestAsync(prefix, limit));
+	}
+
+	/**
+	 * Only the start of the stream is guarded, up to the first contact or the end of an empty stream.
+	 * The rest of it takes as long as the data does, so its duration is not recorded, and a half-open probe is
+	 * not held for all of it. Failures of the action, such as a client that disconnected, are not recorded either,
+	 * while backend failures after the first contact count as a failed call of their own.
+	 */
+	@Override
+	public void forEach(String query, Consumer<Contact> action) {
+		long start = breaker.start();
+		boolean[] recorded = {false};
+		RuntimeException[] actionFailure = {null};
+		try {
+			delegate.forEach(query, contact -> {
+				if (!recorded[0]) {
+					recorded[0] = true;
+					breaker.stop(start, false);
+				}
+				try {
+					action.accept(contact);
+				} catch(RuntimeException ex) {
+					actionFailure[0] = ex;
+					throw ex;
+				}
+			});
+		} catch(RuntimeException | Error ex) {
+			if (!recorded[0]) {
+				recorded[0] = true;
+				breaker.stop(start, isFailure(ex));
+			} else if (ex != actionFailure[0] && isFailure(ex)) {
+				failed();
+			}
+			throw ex;
+		}
+		if (!recorded[0])
+			breaker.stop(start, false);
+	}
+
+	@Override
+	public Contact update(Contact contact, Predicate<Contact> precondition) throws MissingContactException {
+		Contact old = call(() -> delegate.update(contact, precondition));
+		keep(contact);
+		return old;
+	}
+
+	@Override
+	public CompletableFuture<Contact> updateAsync(Contact contact, Predicate<Contact> precondition) {
+		return callAsync(() -> delegate.updateAsync(contact, precondition)).whenComplete((old, error) -> {
+			if (error == null)
+				keep(contact);
+		});
+	}
+
+	@Override
+	public Contact get(String name) throws MissingContactException {
+		long stamp = stale.stamp();
+		try {
+			Contact contact = call(() -> delegate.get(name));
+			keep(contact, stamp);
+			return contact;
+		} catch(MissingContactException ex) {
+			stale.invalidate(name);
+			throw ex;
+		}
+	}
+
+	@Override
+	public CompletableFuture<Contact> getAsync(String name) {
+		long stamp = stale.stamp();
+		return callAsync(() -> delegate.getAsync(name)).whenComplete((contact, error) -> {
+			if (contact != null)
+				keep(contact, stamp);
+			else if (Futures.unwrap(error) instanceof MissingContactException)
+				stale.invalidate(name);
+		});
+	}
+
+	@Override
+	public Map<String, Contact> getAll(Collection<String> names) {
+		long stamp = stale.stamp();
+		Map<String, Contact> found = call(() -> delegate.getAll(names));
+		keepAll(names, found, stamp);
+		return found;
+	}
+
+	@Override
+	public CompletableFuture<Map<String, Contact>> getAllAsync(Collection<String> names) {
+		long stamp = stale.stamp();
+		return callAsync(() -> delegate.getAllAsync(names)).whenComplete((found, error) -> {
+			if (found != null)
+				keepAll(names, found, stamp);
+		});
+	}
+
+	/**
+	 * @param lookup
+	 * 		Future of a lookup of the contact, through any service wrapping this one.
+	 * @param name
+	 * 		Name of the contact.
+	 * @param onStale
+	 * 		Called with the age in seconds of the stale copy, when one is used.
+	 *
+	 * @return Future of the contact, completed with a stale copy if the lookup failed because the backend
+	 * is unavailable. Otherwise completed as the lookup is.
+	 */
+	public CompletableFuture<Contact> withStaleFallback(CompletableFuture<Contact> lookup, String name,
+														LongConsumer onStale) {
+		return lookup.handle((contact, error) -> {
+			if (error == null)
+				return CompletableFuture.completedFuture(contact);
+			StaleCopy copy = isFailure(error) ? stale.get(name) : null;
+			if (copy == null)
+				return Futures.<Contact>failed(error);
+			staleServed.increment();
+			onStale.accept(copy.getAge(ticker.getAsLong()));
+			return CompletableFuture.completedFuture(copy.getContact());
+		}).thenCompose(future -> future);
+	}
+
+	/**
+	 * @param lookup
+	 * 		Future of a lookup of the contacts, through any service wrapping this one.
+	 * @param names
+	 * 		Names of the contacts.
+	 * @param onStale
+	 * 		Called with the age in seconds of the oldest stale copy, when stale copies are used.
+	 *
+	 * @return Future of the contacts, completed with stale copies if the lookup failed because the backend
+	 * is unavailable and there is a stale copy of every contact. Otherwise completed as the lookup is.
+	 */
+	public CompletableFuture<Map<String, Contact>> withStaleFallback(CompletableFuture<Map<String, Contact>> lookup,
+																	 Collection<String> names, LongConsumer onStale) {
+		return lookup.handle((found, error) -> {
+			if (error == null)
+				return CompletableFuture.completedFuture(found);
+			if (!isFailure(error))
+				return Futures.<Map<String, Contact>>failed(error);
+			// A name without a copy may or may not exist, so it cannot be answered either way
+			Map<String, Contact> copies = new LinkedHashMap<>();
+			long now = ticker.getAsLong();
+			long age = 0;
+			for(String name : names) {
+				StaleCopy copy = stale.get(name);
+				if (copy == null)
+					return Futures.<Map<String, Contact>>failed(error);
+				copies.put(name, copy.getContact());
+				age = Math.max(age, copy.getAge(now));
+			}
+			staleServed.increment();
+			onStale.accept(age);
+			return CompletableFuture.completedFuture(copies);
+		}).thenCompose(future -> future);
+	}
+
+	/**
+	 * @return Breaker guarding the calls, exposing its state and refused call count.
+	 */
+	public CircuitBreaker getBreaker() {
+		return breaker;
+	}
+
+	/**
+	 * @return Number of lookups answered from stale copies.
+	 */
+	public long getStaleServedCount() {
+		return staleServed.sum();
+	}
+
+	/**
+	 * @param call
+	 * 		Blocking call to guard.
+	 * @param <T>
+	 * 		Type of call result.
+	 * @param <X>
+	 * 		Type of checked exception the call may throw.
+	 *
+	 * @return Result of the call.
+	 *
+	 * @throws X
+	 * 		When the call fails.
+	 */
+	private <T, X extends Exception> T call(BlockingCall<T, X> call) throws X {
+		long start = breaker.start();
+		Throwable error = null;
+		try {
+			return call.call();
+		} catch(Throwable ex) {
+			error = ex;
+			throw ex;
+		} finally {
+			breaker.stop(start, isFailure(error));
+		}
+	}
+
+	/**
+	 * @param call
+	 * 		Non-blocking call to guard.
+	 * @param <T>
+	 * 		Type of call result.
+	 *
+	 * @return Future of the call result, completed after its outcome is recorded.
+	 */
+	private <T> CompletableFuture<T> callAsync(Supplier<CompletableFuture<T>> call) {
+		long start;
+		try {
+			start = breaker.start();
+		} catch(RuntimeException ex) {
+			return Futures.failed(ex);
+		}
+		CompletableFuture<T> future;
+		try {
+			future = call.get();
+		} catch(RuntimeException ex) {
+			future = Futures.failed(ex);
+		}
+		return future.whenComplete((result, error) -> breaker.stop(start, isFailure(error)));
+	}
+
+	/**
+	 * Record a failed call, unless the breaker already refuses calls.
+	 */
+	private void failed() {
+		try {
+			breaker.stop(breaker.start(), true);
+		} catch(ServiceUnavailableException ex) {
+			// Already open
+		}
+	}
+
+	/**
+	 * @param contact
+	 * 		Contact that was written.
+	 */
+	private void keep(Contact contact) {
+		stale.put(contact.getName(), copy(contact), staleTtl, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Keep a stale copy of a looked up contact, unless a write happened while it was being looked up.
+	 *
+	 * @param contact
+	 * 		Contact that was looked up.
+	 * @param stamp
+	 * 		Stale copy write stamp from before the lookup started.
+	 */
+	private void keep(Contact contact, long stamp) {
+		stale.put(contact.getName(), copy(contact), staleTtl, TimeUnit.MILLISECONDS, stamp);
+	}
+
+	/**
+	 * Keep stale copies of the results of a multi-get, and drop those of the names that were not found.
+	 *
+	 * @param names
+	 * 		Names that were fetched.
+	 * @param found
+	 * 		Contacts that were found, by name.
+	 * @param stamp
+	 * 		Stale copy write stamp from before the fetch started.
+	 */
+	private void keepAll(Collection<String> names, Map<String, Contact> found, long stamp) {
+		for(String name : names) {
+			Contact contact = found.get(name);
+			if (contact != null)
+				keep(contact, stamp);
+			else
+				stale.invalidate(name);
+		}
+	}
+
+	private StaleCopy copy(Contact contact) {
+		return new StaleCopy(contact, ticker.getAsLong());
+	}
+
+	/**
+	 * @param error
+	 * 		Failure of a call, or {@code null} if it succeeded.
+	 *
+	 * @return {@code true} if the failure signals the backend is unhealthy. Missing contacts, duplicates,
+	 * failed preconditions and bad arguments are answers from a healthy backend.
+	 */
+	private static boolean isFailure(Throwable error) {
+		if (error == null)
+			return false;
+		Throwable cause = Futures.unwrap(error);
+		return !(cause instanceof ContactException || cause instanceof PreconditionFailedException ||
+				cause instanceof IllegalArgumentException || cause instanceof NullPointerException);
+	}
+
+	/**
+	 * Last known state of a contact, kept for when the backend is unavailable.
+	 */
+	public static final class StaleCopy {
+		private final Contact contact;
+		private final long storedAt;
+
+		/**
+		 * @param contact
+		 * 		Contact as last read or written.
+		 * @param storedAt
+		 * 		Time the copy was stored, in nanoseconds.
+		 */
+		public StaleCopy(Contact contact, long storedAt) {
+			this.contact = contact;
+			this.storedAt = storedAt;
+		}
+
+		/**
+		 * @return Contact as last read or written.
+		 */
+		public Contact getContact() {
+			return contact;
+		}
+
+		/**
+		 * @param now
+		 * 		Current time, in nanoseconds.
+		 *
+		 * @return Age of the copy, in whole seconds.
+		 */
+		public long getAge(long now) {
+			return TimeUnit.NANOSECONDS.toSeconds(now - storedAt);
+		}
+	}
+}
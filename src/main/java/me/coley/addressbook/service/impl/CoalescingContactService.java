@@ -0,0 +1,195 @@
+package me.coley.addressbook.service.impl;
+
+import me.coley.addressbook.exception.DuplicateContactException;
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactResult;
+import me.coley.addressbook.service.ContactService;
+import me.coley.addressbook.service.ForwardingContactService;
+import me.coley.addressbook.util.Futures;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A contact service that coalesces concurrent lookups of the same contact, in front of another service.
+ * While a lookup of a name is in flight, further lookups of that name wait for it and share its result,
+ * or the exception it failed with, instead of sending their own request.
+ * <br>
+ * Writes through this service drop the in-flight lookups of the written name, so lookups that start
+ * after a write never share a result read before it.
+ */
+public class CoalescingContactService extends ForwardingContactService {
+	private final ConcurrentMap<String, CompletableFuture<Contact>> gets = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, CompletableFuture<Boolean>> exists = new ConcurrentHashMap<>();
+	// Number of lookups that shared another lookup's result
+	private final AtomicLong coalesced = new AtomicLong();
+
+	/**
+	 * Constructs a coalescing wrapper around a contact service.
+	 *
+	 * @param delegate
+	 * 		Service to coalesce lookups to.
+	 */
+	public CoalescingContactService(ContactService delegate) {
+		super(delegate);
+	}
+
+	@Override
+	public void add(Contact contact) throws DuplicateContactException {
+		try {
+			delegate.add(contact);
+		} finally {
+			forget(contact.getName());
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> addAsync(Contact contact) {
+		return delegate.addAsync(contact).whenComplete((result, error) -> forget(contact.getName()));
+	}
+
+	@Override
+	public List<ContactResult> addAll(Collection<Contact> contacts) {
+		try {
+			return delegate.addAll(contacts);
+		} finally {
+			contacts.forEach(contact -> forget(contact.getName()));
+		}
+	}
+
+	@Override
+	public void delete(String name) throws MissingContactException {
+		try {
+			delegate.delete(name);
+		} finally {
+			forget(name);
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> deleteAsync(String name) {
+		return delegate.deleteAsync(name).whenComplete((result, error) -> forget(name));
+	}
+
+	@Override
+	public boolean exists(String name) {
+		try {
+			return coalesce(exists, name, () -> Futures.supply(() -> delegate.exists(name))).join();
+		} catch(CompletionException ex) {
+			throw rethrow(ex);
+		}
+	}
+
+	@Override
+	public CompletableFuture<Boolean> existsAsync(String name) {
+		return coalesce(exists, name, () -> delegate.existsAsync(name));
+	}
+
+	@Override
+	public Contact update(Contact contact, Predicate<Contact> precondition) throws MissingContactException {
+		try {
+			return delegate.update(contact, precondition);
+		} finally {
+			forget(contact.getName());
+		}
+	}
+
+	@Override
+	public CompletableFuture<Contact> updateAsync(Contact contact, Predicate<Contact> precondition) {
+		return delegate.updateAsync(contact, precondition).whenComplete((result, error) -> forget(contact.getName()));
+	}
+
+	@Override
+	public Contact get(String name) throws MissingContactException {
+		try {
+			return coalesce(gets, name, () -> Futures.supply(() -> delegate.get(name))).join();
+		} catch(CompletionException ex) {
+			if (ex.getCause() instanceof MissingContactException)
+				throw (MissingContactException) ex.getCause();
+			throw rethrow(ex);
+		}
+	}
+
+	@Override
+	public CompletableFuture<Contact> getAsync(String name) {
+		return coalesce(gets, name, () -> delegate.getAsync(name));
+	}
+
+	/**
+	 * @return Number of lookups that shared the result of another lookup already in flight.
+	 */
+	public long getCoalescedCount() {
+		return coalesced.get();
+	}
+
+	/**
+	 * Join the lookup of a name already in flight, or start one.
+	 *
+	 * @param inFlight
+	 * 		Lookups in flight, by name.
+	 * @param name
+	 * 		Name of contact to lookup.
+	 * @param lookup
+	 * 		Starts the lookup when none is in flight.
+	 * @param <T>
+	 * 		Type of lookup result.
+	 *
+	 * @return Future of the lookup result, shared by all callers that joined it.
+	 */
+	private <T> CompletableFuture<T> coalesce(ConcurrentMap<String, CompletableFuture<T>> inFlight,
+											  String name, Supplier<CompletableFuture<T>> lookup) {
+		CompletableFuture<T> shared = new CompletableFuture<>();
+		CompletableFuture<T> existing = inFlight.putIfAbsent(name, shared);
+		if (existing != null) {
+			coalesced.incrementAndGet();
+			return existing;
+		}
+		CompletableFuture<T> result;
+		try {
+			result = lookup.get();
+		} catch(RuntimeException ex) {
+			result = Futures.failed(ex);
+		}
+		result.whenComplete((value, error) -> {
+			// Removed before completing, so callers arriving after completion start a fresh lookup
+			inFlight.remove(name, shared);
+			if (error != null)
+				shared.completeExceptionally(Futures.unwrap(error));
+			else
+				shared.complete(value);
+		});
+		return shared;
+	}
+
+	/**
+	 * @param name
+	 * 		Name of contact that was written to.
+	 */
+	private void forget(String name) {
+		gets.remove(name);
+		exists.remove(name);
+	}
+
+	/**
+	 * @param ex
+	 * 		Failure of a shared lookup.
+	 *
+	 * @return Unchecked cause of the failure, to be thrown.
+	 */
+	private static RuntimeException rethrow(CompletionException ex) {
+		Throwable cause = ex.getCause();
+		if (cause instanceof RuntimeException)
+			return (RuntimeException) cause;
+		if (cause instanceof Error)
+			throw (Error) cause;
+		return ex;
+	}
+}
@@ -0,0 +1,183 @@
+package me.coley.addressbook.service.impl;
+
+import me.coley.addressbook.Options;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
+
+/**
+ * Settings and mapping of the ElasticSearch index contacts are stored in.
+ * <ul>
+ * <li>{@code name}: keyword, for exact lookups and sorting, with a {@code name.text} sub-field for
+ * case-insensitive term search, and a {@code name.prefix} sub-field of edge n-grams for suggestions</li>
+ * <li>{@code address}: text, indexed as edge n-grams so prefixes of each word match</li>
+ * <li>{@code numbers}: object of keywords. Nested documents would cost a hidden document per number,
+ * and cannot be reached by query strings.</li>
+ * </ul>
+ * Fields not listed are kept in the source, but not indexed.
+ */
+final class ContactIndex {
+	// Sort field, unique per contact
+	static final String SORT_FIELD = "name";
+	// Keyword sub-field that dynamic mapping adds to each text field,
+	// in indices created before the explicit mapping existed
+	static final String LEGACY_KEYWORD_FIELD = "keyword";
+	// Edge n-grams of the name, matching any start of a word in the name
+	static final String PREFIX_FIELD = "name.prefix";
+	private static final String EDGE_NGRAM = "edge_ngram";
+	private static final String PREFIX_SEARCH = "prefix_search";
+	private static final int MIN_GRAM = 2;
+	private static final int MAX_GRAM = 15;
+
+	private ContactIndex() {}
+
+	/**
+	 * @param options
+	 * 		Program arguments, specifying the shard, replica and refresh settings.
+	 *
+	 * @return Index settings.
+	 *
+	 * @throws IOException
+	 * 		When the settings could not be built.
+	 */
+	static XContentBuilder settings(Options options) throws IOException {
+		return jsonBuilder().startObject()
+				.field("index.number_of_shards", options.getElasticShards())
+				.field("index.number_of_replicas", options.getElasticReplicas())
+				.field("index.refresh_interval", options.getElasticRefreshInterval())
+				// Unqualified query terms search these, rather than every field
+				.array("index.query.default_field", "name.text", "address", "numbers.number")
+				.startObject("analysis")
+					.startObject("filter")
+						.startObject(EDGE_NGRAM)
+							.field("type", "edge_ngram")
+							.field("min_gram", MIN_GRAM)
+							.field("max_gram", MAX_GRAM)
+						.endObject()
+						.startObject(PREFIX_SEARCH)
+							.field("type", "truncate")
+							.field("length", MAX_GRAM)
+						.endObject()
+					.endObject()
+					.startObject("analyzer")
+						.startObject(EDGE_NGRAM)
+							.field("type", "custom")
+							.field("tokenizer", "standard")
+							.array("filter", "lowercase", EDGE_NGRAM)
+						.endObject()
+						// Searched words longer than the longest n-gram are cut down to it, so they still match
+						.startObject(PREFIX_SEARCH)
+							.field("type", "custom")
+							.field("tokenizer", "standard")
+							.array("filter", "lowercase", PREFIX_SEARCH)
+						.endObject()
+					.endObject()
+				.endObject()
+				.endObject();
+	}
+
+	/**
+	 * @return Mapping of the contact document.
+	 *
+	 * @throws IOException
+	 * 		When the mapping could not be built.
+	 */
+	static XContentBuilder mapping() throws IOException {
+		return jsonBuilder().startObject()
+				.field("dynamic", false)
+				.startObject("properties")
+					.startObject("name")
+						.field("type", "keyword")
+						.startObject("fields")
+							.startObject("text")
+								.field("type", "text")
+							.endObject()
+							.startObject("prefix")
+								.field("type", "text")
+								.field("analyzer", EDGE_NGRAM)
+								.field("search_analyzer", PREFIX_SEARCH)
+							.endObject()
+						.endObject()
+					.endObject()
+					.startObject("address")
+						.field("type", "text")
+						// Only the indexed terms are split up, searches match them as typed
+						.field("analyzer", EDGE_NGRAM)
+						.field("search_analyzer", PREFIX_SEARCH)
+					.endObject()
+					.startObject("numbers")
+						.startObject("properties")
+							.startObject("number")
+								.field("type", "keyword")
+							.endObject()
+							.startObject("type")
+								.field("type", "keyword")
+							.endObject()
+						.endObject()
+					.endObject()
+				.endObject()
+				.endObject();
+	}
+
+	/**
+	 * An existing mapping is compatible when the fields that are searched and sorted on have the
+	 * types of the explicit mapping. Other differences, such as extra fields, are tolerated.
+	 *
+	 * @param mapping
+	 * 		Existing mapping of the contact document.
+	 *
+	 * @return {@code true} if the mapping is compatible.
+	 */
+	static boolean isCompatible(Map<String, Object> mapping) {
+		Map<String, Object> properties = child(mapping, "properties");
+		Map<String, Object> numbers = child(child(properties, "numbers"), "properties");
+		return "keyword".equals(type(properties, "name")) &&
+				"text".equals(type(properties, "address")) &&
+				"keyword".equals(type(numbers, "number")) &&
+				"keyword".equals(type(numbers, "type"));
+	}
+
+	/**
+	 * Indices created before suggestions were added have a compatible mapping, but lack the
+	 * {@link #PREFIX_FIELD prefix field}.
+	 *
+	 * @param mapping
+	 * 		Existing mapping of the contact document.
+	 *
+	 * @return {@code true} if the mapping has the name prefix field.
+	 */
+	static boolean hasPrefixField(Map<String, Object> mapping) {
+		Map<String, Object> name = child(child(mapping, "properties"), "name");
+		return "text".equals(type(child(name, "fields"), "prefix"));
+	}
+
+	/**
+	 * @param properties
+	 * 		Mapped properties.
+	 * @param field
+	 * 		Name of field.
+	 *
+	 * @return Type of the field, or {@code null} if it is not mapped.
+	 */
+	private static Object type(Map<String, Object> properties, String field) {
+		return child(properties, field).get("type");
+	}
+
+	/**
+	 * @param map
+	 * 		Parsed JSON object.
+	 * @param key
+	 * 		Key of child object.
+	 *
+	 * @return Child object, empty if absent or not an object.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> child(Map<String, Object> map, String key) {
+		Object value = map.get(key);
+		return value instanceof Map ? (Map<String, Object>) value : Collections.emptyMap();
+	}
+}
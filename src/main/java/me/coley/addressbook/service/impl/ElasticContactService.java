@@ -4,36 +4,77 @@ import me.coley.addressbook.Options;
 import me.coley.addressbook.exception.DuplicateContactException;
 import me.coley.addressbook.exception.ElasticException;
 import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.exception.PreconditionFailedException;
 import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactPage;
+import me.coley.addressbook.model.ContactQuery;
+import me.coley.addressbook.model.ContactResult;
 import me.coley.addressbook.service.ContactService;
+import me.coley.addressbook.util.Cursor;
+import me.coley.addressbook.util.Futures;
+import com.carrotsearch.hppc.cursors.ObjectCursor;
 import org.apache.http.HttpHost;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.mapping.get.GetMappingsRequest;
+import org.elasticsearch.action.admin.indices.mapping.get.GetMappingsResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.ClearScrollRequest;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.Operator;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.seqno.SequenceNumbers;
 import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static me.coley.addressbook.util.Json.*;
 
@@ -42,9 +83,21 @@ import static me.coley.addressbook.util.Json.*;
  */
 public class ElasticContactService implements ContactService, AutoCloseable {
 	private static final Logger LOG = LoggerFactory.getLogger(ElasticContactService.class);
+	private static final int UPDATE_ATTEMPTS = 3;
+	private static final int SCROLL_SIZE = 500;
+	// Contacts matching by name rank above those only matching by address
+	private static final float SUGGEST_NAME_BOOST = 2;
+	private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
 	private final RestHighLevelClient client;
+	// Refreshes the client's nodes from the cluster, null when disabled
+	private final Sniffer sniffer;
 	private final String index;
 	private final Options options;
+	// Set when the existing index was not created with the explicit mapping,
+	// exact matches and sorting then fall back to the keyword sub-fields of dynamic mapping
+	private volatile boolean legacyMapping;
+	// Set when the existing index has the name prefix field, otherwise suggestions fall back to prefix queries
+	private volatile boolean prefixField = true;
 
 	/**
 	 * Constructs an ElasticSearch-backed implementation of {@link ContactService}.
@@ -57,53 +110,106 @@ public class ElasticContactService implements ContactService, AutoCloseable {
 	public ElasticContactService(String index, Options options) {
 		this.index = index;
 		this.options = options;
-		this.client = createClient();
+		// Node failures trigger an early sniff, when sniffing is enabled
+		SniffOnFailureListener failureListener = options.getElasticSniffInterval() > 0 ?
+				new SniffOnFailureListener() : null;
+		this.client = createClient(failureListener);
+		this.sniffer = failureListener == null ? null : createSniffer(failureListener);
 	}
 
 	@Override
 	public void add(Contact contact) throws DuplicateContactException {
-		// Verify contact does not already exist
-		if(exists(contact.getName()))
-			throw new DuplicateContactException(contact.getName(), "Cannot add due to existing contact with same identity");
 		try {
-			// Create request
-			IndexRequest request = new IndexRequest(index);
-			request.id(contact.getName());
-			request.source(toJson(contact), XContentType.JSON);
-			if (options.getElasticVersion().startsWith("6"))
-				request.type("contact");
 			// Handle response
-			IndexResponse response = client.index(request, RequestOptions.DEFAULT);
+			IndexResponse response = client.index(createRequest(contact), RequestOptions.DEFAULT);
 			if (response.status() == RestStatus.CREATED)
 				LOG.info("Added contact: '{}'", contact.getName());
 			else
 				throw new ElasticException("Failed to index: " + contact.getName() + " - " + response.toString());
+		} catch(ElasticsearchException ex) {
+			if (ex.status() == RestStatus.CONFLICT)
+				throw new DuplicateContactException(contact.getName(), "Cannot add due to existing contact with same identity");
+			throw new ElasticException(ex.getMessage());
 		} catch(IOException ex) {
 			throw new ElasticException(ex.getMessage());
 		}
 	}
 
+	@Override
+	public CompletableFuture<Void> addAsync(Contact contact) {
+		return call((ActionListener<IndexResponse> listener) ->
+				client.indexAsync(createRequest(contact), RequestOptions.DEFAULT, listener),
+				response -> {
+					if (response.status() != RestStatus.CREATED)
+						throw new ElasticException("Failed to index: " + contact.getName() + " - " + response.toString());
+					LOG.info("Added contact: '{}'", contact.getName());
+					return null;
+				}, ex -> {
+					if (hasStatus(ex, RestStatus.CONFLICT))
+						return new DuplicateContactException(contact.getName(), "Cannot add due to existing contact with same identity");
+					return new ElasticException(ex.getMessage());
+				});
+	}
+
+	@Override
+	public List<ContactResult> addAll(Collection<Contact> contacts) {
+		List<ContactResult> results = new ArrayList<>(contacts.size());
+		List<Contact> batch = new ArrayList<>();
+		BulkRequest request = new BulkRequest();
+		for(Contact contact : contacts) {
+			request.add(createRequest(contact));
+			batch.add(contact);
+			// Send off the batch once it reaches the count or size limit
+			if (request.numberOfActions() >= options.getBulkSize() ||
+					request.estimatedSizeInBytes() >= options.getBulkBytes()) {
+				results.addAll(bulk(request, batch));
+				request = new BulkRequest();
+				batch.clear();
+			}
+		}
+		if (!batch.isEmpty())
+			results.addAll(bulk(request, batch));
+		return results;
+	}
+
 	@Override
 	public void delete(String name) throws MissingContactException {
-		// Verify contact already exists
-		if(!exists(name))
-			throw new MissingContactException(name, "Cannot remove due to no matching contact");
 		try {
 			// Handle response
-			DeleteRequest request = new DeleteRequest(index);
-			if (options.getElasticVersion().startsWith("6"))
-				request.type("contact");
-			request.id(name);
-			DeleteResponse response = client.delete(request, RequestOptions.DEFAULT);
+			DeleteResponse response = client.delete(deleteRequest(name), RequestOptions.DEFAULT);
 			if (response.getResult() == DocWriteResponse.Result.DELETED)
 				LOG.info("Removed contact: '{}'", name);
+			else if (response.getResult() == DocWriteResponse.Result.NOT_FOUND)
+				throw new MissingContactException(name, "Cannot remove due to no matching contact");
 			else
 				throw new ElasticException("Failed to delete: " + name + " - " + response.toString());
+		} catch(ElasticsearchException ex) {
+			if (ex.status() == RestStatus.NOT_FOUND)
+				throw new MissingContactException(name, "Cannot remove due to no matching contact");
+			throw new ElasticException(ex.getMessage());
 		} catch(IOException ex) {
 			throw new ElasticException(ex.getMessage());
 		}
 	}
 
+	@Override
+	public CompletableFuture<Void> deleteAsync(String name) {
+		return call((ActionListener<DeleteResponse> listener) ->
+				client.deleteAsync(deleteRequest(name), RequestOptions.DEFAULT, listener),
+				response -> {
+					if (response.getResult() == DocWriteResponse.Result.NOT_FOUND)
+						throw new MissingContactException(name, "Cannot remove due to no matching contact");
+					if (response.getResult() != DocWriteResponse.Result.DELETED)
+						throw new ElasticException("Failed to delete: " + name + " - " + response.toString());
+					LOG.info("Removed contact: '{}'", name);
+					return null;
+				}, ex -> {
+					if (hasStatus(ex, RestStatus.NOT_FOUND))
+						return new MissingContactException(name, "Cannot remove due to no matching contact");
+					return new ElasticException(ex.getMessage());
+				});
+	}
+
 	@Override
 	public boolean exists(String name) {
 		try {
@@ -115,90 +221,259 @@ public class ElasticContactService implements ContactService, AutoCloseable {
 		}
 	}
 
+	@Override
+	public CompletableFuture<Boolean> existsAsync(String name) {
+		GetRequest request = new GetRequest(index);
+		request.id(name);
+		return call((ActionListener<Boolean> listener) ->
+				client.existsAsync(request, RequestOptions.DEFAULT, listener),
+				exists -> exists,
+				ex -> new ElasticException(ex.getMessage()));
+	}
+
 	@Override
 	public Collection<Contact> contacts(int page, int length, String query) {
-		// Validate page
-		if(page <= 0)
-			throw new IllegalStateException("Provided invalid page: " + page);
-		int start = (page - 1) * length;
+		try {
+			SearchResponse response = client.search(pageRequest(page, length, query), RequestOptions.DEFAULT);
+			return toContacts(response);
+		} catch(IOException ex) {
+			throw new ElasticException(ex.getMessage());
+		}
+	}
+
+	@Override
+	public CompletableFuture<Collection<Contact>> contactsAsync(int page, int length, String query) {
+		SearchRequest request;
+		try {
+			request = pageRequest(page, length, query);
+		} catch(IllegalStateException | IllegalArgumentException ex) {
+			return Futures.failed(ex);
+		}
+		return call((ActionListener<SearchResponse> listener) ->
+				client.searchAsync(request, RequestOptions.DEFAULT, listener),
+				ElasticContactService::toContacts,
+				ex -> new ElasticException(ex.getMessage()));
+	}
+
+	@Override
+	public ContactPage contactsAfter(String cursor, int length, String query) throws IllegalArgumentException {
+		try {
+			SearchResponse response = client.search(cursorRequest(cursor, length, QueryGuard.toQuery(query)), RequestOptions.DEFAULT);
+			return toPage(response, length);
+		} catch(ElasticsearchException | IOException ex) {
+			throw new ElasticException(ex.getMessage());
+		}
+	}
+
+	@Override
+	public CompletableFuture<ContactPage> contactsAfterAsync(String cursor, int length, String query) {
+		SearchRequest request;
+		try {
+			request = cursorRequest(cursor, length, QueryGuard.toQuery(query));
+		} catch(IllegalArgumentException ex) {
+			return Futures.failed(ex);
+		}
+		return call((ActionListener<SearchResponse> listener) ->
+				client.searchAsync(request, RequestOptions.DEFAULT, listener),
+				response -> toPage(response, length),
+				ex -> new ElasticException(ex.getMessage()));
+	}
+
+	@Override
+	public ContactPage search(ContactQuery query, String cursor, int length) throws IllegalArgumentException {
+		try {
+			SearchResponse response = client.search(cursorRequest(cursor, length, searchQuery(query)),
+					RequestOptions.DEFAULT);
+			return toPage(response, length);
+		} catch(ElasticsearchException | IOException ex) {
+			throw new ElasticException(ex.getMessage());
+		}
+	}
+
+	@Override
+	public CompletableFuture<ContactPage> searchAsync(ContactQuery query, String cursor, int length) {
+		SearchRequest request;
+		try {
+			request = cursorRequest(cursor, length, searchQuery(query));
+		} catch(IllegalArgumentException ex) {
+			return Futures.failed(ex);
+		}
+		return call((ActionListener<SearchResponse> listener) ->
+				client.searchAsync(request, RequestOptions.DEFAULT, listener),
+				response -> toPage(response, length),
+				ex -> new ElasticException(ex.getMessage()));
+	}
+
+	@Override
+	public List<String> suggest(String prefix, int limit) {
+		try {
+			return toNames(client.search(suggestRequest(prefix, limit), RequestOptions.DEFAULT));
+		} catch(ElasticsearchException | IOException ex) {
+			throw new ElasticException(ex.getMessage());
+		}
+	}
+
+	@Override
+	public CompletableFuture<List<String>> suggestAsync(String prefix, int limit) {
+		SearchRequest request = suggestRequest(prefix, limit);
+		return call((ActionListener<SearchResponse> listener) ->
+				client.searchAsync(request, RequestOptions.DEFAULT, listener),
+				ElasticContactService::toNames,
+				ex -> new ElasticException(ex.getMessage()));
+	}
+
+	@Override
+	public void forEach(String query, Consumer<Contact> action) {
+		String scrollId = null;
 		try {
 			// Create request
+			//  - scroll in index order, which is the cheapest order for ElasticSearch to walk
 			SearchRequest request = new SearchRequest(index);
-			request.allowPartialSearchResults(true);
+			request.scroll(SCROLL_KEEP_ALIVE);
 			SearchSourceBuilder builder = new SearchSourceBuilder();
-			if (query == null)
-				builder.query(QueryBuilders.matchAllQuery());
-			else
-				builder.query(QueryBuilders.queryStringQuery(query));
-			builder.from(start);
-			builder.size(length);
+			builder.query(QueryGuard.toQuery(query));
+			builder.sort(FieldSortBuilder.DOC_FIELD_NAME);
+			builder.size(SCROLL_SIZE);
 			request.source(builder);
-			// Handle response
+			// Handle responses, one batch at a time
 			SearchResponse response = client.search(request, RequestOptions.DEFAULT);
-			List<Contact> contacts = new ArrayList<>();
-			response.getHits().forEach(hit -> contacts.add(fromJson(hit.getSourceAsString(), Contact.class)));
-			return contacts;
-		} catch(IOException ex) {
+			scrollId = response.getScrollId();
+			while(response.getHits().getHits().length > 0) {
+				for(SearchHit hit : response.getHits())
+					action.accept(fromJson(hit.getSourceAsString(), Contact.class));
+				SearchScrollRequest next = new SearchScrollRequest(scrollId);
+				next.scroll(SCROLL_KEEP_ALIVE);
+				response = client.scroll(next, RequestOptions.DEFAULT);
+				scrollId = response.getScrollId();
+			}
+		} catch(ElasticsearchException | IOException ex) {
 			throw new ElasticException(ex.getMessage());
+		} finally {
+			if (scrollId != null)
+				clearScroll(scrollId);
 		}
 	}
 
 	@Override
-	public Contact update(Contact contact) throws MissingContactException {
-		// Verify contact already exists
-		if(!exists(contact.getName()))
-			throw new MissingContactException(contact.getName(), "Cannot update due to no matching contact");
-		try {
-			Contact old = get(contact.getName());
-			UpdateRequest request = new UpdateRequest();
-			request.index(index);
-			request.id(contact.getName());
-			if (options.getElasticVersion().startsWith("6"))
-				request.type("contact");
-			request.doc(toJson(contact), XContentType.JSON);
-			UpdateResponse response = client.update(request, RequestOptions.DEFAULT);
-			// Handle response & return updated contact
-			if(response.status() == RestStatus.OK) {
-				LOG.info("Updated contact: '{}'", contact.getName());
-				return old;
-			} else
-				throw new ElasticException("Failed to update: " + contact.getName() + " - " + response.toString());
-		} catch(IOException ex) {
-			throw new ElasticException(ex.getMessage());
+	public Contact update(Contact contact, Predicate<Contact> precondition) throws MissingContactException {
+		String name = contact.getName();
+		// ElasticSearch cannot hand back the replaced source from an update, so we read the current
+		// document and make the update conditional on it being unchanged. Concurrent writers between
+		// the two requests cause a conflict, in which case we retry with a fresh read.
+		for (int attempt = 1; ; attempt++) {
+			GetResponse current = fetch(name, "Cannot update due to no matching contact");
+			Contact old = fromJson(current.getSourceAsString(), Contact.class);
+			check(old, precondition);
+			try {
+				UpdateResponse response = client.update(updateRequest(contact, current), RequestOptions.DEFAULT);
+				// Handle response & return updated contact
+				if(response.status() == RestStatus.OK) {
+					LOG.info("Updated contact: '{}'", name);
+					return old;
+				} else
+					throw new ElasticException("Failed to update: " + name + " - " + response.toString());
+			} catch(ElasticsearchException ex) {
+				if (ex.status() == RestStatus.NOT_FOUND)
+					throw new MissingContactException(name, "Cannot update due to no matching contact");
+				if (ex.status() == RestStatus.CONFLICT && attempt < UPDATE_ATTEMPTS)
+					continue;
+				throw new ElasticException(ex.getMessage());
+			} catch(IOException ex) {
+				throw new ElasticException(ex.getMessage());
+			}
 		}
 	}
 
+	@Override
+	public CompletableFuture<Contact> updateAsync(Contact contact, Predicate<Contact> precondition) {
+		return updateAsync(contact, precondition, 1);
+	}
+
 	@Override
 	public Contact get(String name) throws MissingContactException {
-		// Verify contact already exists
-		if(!exists(name))
-			throw new MissingContactException(name, "Cannot retrieve due to no matching contact");
+		// Handle response & return source as type
+		GetResponse response = fetch(name, "Cannot retrieve due to no matching contact");
+		return fromJson(response.getSourceAsString(), Contact.class);
+	}
+
+	@Override
+	public CompletableFuture<Contact> getAsync(String name) {
+		return fetchAsync(name, "Cannot retrieve due to no matching contact")
+				.thenApply(response -> fromJson(response.getSourceAsString(), Contact.class));
+	}
+
+	@Override
+	public Map<String, Contact> getAll(Collection<String> names) {
+		if (names.isEmpty())
+			return new HashMap<>();
 		try {
-			// Handle response & return source as type
-			GetRequest request = new GetRequest(index);
-			request.id(name);
-			GetResponse response = client.get(request, RequestOptions.DEFAULT);
-			return fromJson(response.getSourceAsString(), Contact.class);
-		} catch(IOException ex) {
+			return toContacts(client.mget(multiGetRequest(names), RequestOptions.DEFAULT));
+		} catch(ElasticsearchException | IOException ex) {
 			throw new ElasticException(ex.getMessage());
 		}
 	}
 
+	@Override
+	public CompletableFuture<Map<String, Contact>> getAllAsync(Collection<String> names) {
+		if (names.isEmpty())
+			return CompletableFuture.completedFuture(new HashMap<>());
+		return call((ActionListener<MultiGetResponse> listener) ->
+				client.mgetAsync(multiGetRequest(names), RequestOptions.DEFAULT, listener),
+				ElasticContactService::toContacts,
+				ex -> new ElasticException(ex.getMessage()));
+	}
+
 	@Override
 	public void close() throws IOException {
+		if (sniffer != null)
+			sniffer.close();
 		client.close();
 	}
 
 	/**
-	 * Clear all values from the {@link #getIndex() target index}.
+	 * Create the {@link #getIndex() target index} with the explicit {@link ContactIndex settings and mapping},
+	 * unless it already exists. An existing index is left as it is. If its mapping is not compatible,
+	 * such as one created by dynamic mapping, contacts are sorted on the dynamically mapped name instead.
+	 * If it lacks the name prefix field, names are suggested with prefix queries on the name instead.
+	 *
+	 * @throws IOException
+	 * 		When the server could not verify the current index exists,
+	 * 		or when the server fails to create the index.
+	 */
+	public void bootstrap() throws IOException {
+		if (!client.indices().exists(new GetIndexRequest(index), RequestOptions.DEFAULT)) {
+			try {
+				createIndex();
+				LOG.info("Created index: '{}'", index);
+				legacyMapping = false;
+				prefixField = true;
+				return;
+			} catch(ElasticsearchException ex) {
+				// Another server may have created it in the meantime, in which case its mapping is checked below
+				if (!String.valueOf(ex.getMessage()).contains("type=resource_already_exists_exception"))
+					throw new ElasticException(ex.getMessage());
+			}
+		}
+		List<Map<String, Object>> mappings = mappings();
+		legacyMapping = mappings.stream().noneMatch(ContactIndex::isCompatible);
+		prefixField = !legacyMapping && mappings.stream().allMatch(ContactIndex::hasPrefixField);
+		if (legacyMapping)
+			LOG.warn("Index '{}' does not use the explicit contact mapping, reindex it for faster queries", index);
+		else if (!prefixField)
+			LOG.warn("Index '{}' has no name prefix field, reindex it for faster suggestions", index);
+	}
+
+	/**
+	 * Clear all values from the {@link #getIndex() target index}, and {@link #bootstrap() create it} anew.
 	 *
 	 * @throws IOException
 	 * 		When the server could not verify the current index exists,
-	 * 		or when the server fails to delete the current index.
+	 * 		or when the server fails to delete or create the current index.
 	 */
 	public void clear() throws IOException {
 		if(client.indices().exists(new GetIndexRequest(index), RequestOptions.DEFAULT))
 			client.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+		bootstrap();
 	}
 
 	/**
@@ -209,12 +484,613 @@ public class ElasticContactService implements ContactService, AutoCloseable {
 	}
 
 	/**
+	 * Create the {@link #getIndex() target index}. Uses the typed index API, deprecated in the 6.8 client,
+	 * since ElasticSearch 6 documents are stored under the {@code contact} type, which the typeless API
+	 * cannot name.
+	 *
+	 * @throws IOException
+	 * 		When the server could not be reached.
+	 */
+	@SuppressWarnings("deprecation")
+	private void createIndex() throws IOException {
+		CreateIndexRequest request = new CreateIndexRequest(index);
+		request.settings(ContactIndex.settings(options));
+		request.mapping(options.getElasticVersion().startsWith("6") ? "contact" : "_doc", ContactIndex.mapping());
+		client.indices().create(request, RequestOptions.DEFAULT);
+	}
+
+	/**
+	 * @return Mappings of the existing {@link #getIndex() target index}. Read with the typed index API,
+	 * like {@link #createIndex()}, so the mappings of ElasticSearch 6 indices keep their type.
+	 *
+	 * @throws IOException
+	 * 		When the server could not be reached.
+	 */
+	@SuppressWarnings("deprecation")
+	private List<Map<String, Object>> mappings() throws IOException {
+		GetMappingsRequest request = new GetMappingsRequest().indices(index);
+		GetMappingsResponse response = client.indices().getMapping(request, RequestOptions.DEFAULT);
+		// Keyed by concrete index then type, the target index may be an alias
+		List<Map<String, Object>> mappings = new ArrayList<>();
+		for(ObjectCursor<ImmutableOpenMap<String, MappingMetaData>> types : response.mappings().values())
+			for(ObjectCursor<MappingMetaData> mapping : types.value.values())
+				mappings.add(mapping.value.sourceAsMap());
+		return mappings;
+	}
+
+	/**
+	 * Release the server-side context of a scroll.
+	 *
+	 * @param scrollId
+	 * 		Identifier of the scroll.
+	 */
+	private void clearScroll(String scrollId) {
+		try {
+			ClearScrollRequest request = new ClearScrollRequest();
+			request.addScrollId(scrollId);
+			client.clearScroll(request, RequestOptions.DEFAULT);
+		} catch(ElasticsearchException | IOException ex) {
+			// The context expires on its own after the keep-alive anyway
+			LOG.warn("Failed to clear scroll: {}", ex.getMessage());
+		}
+	}
+
+	/**
+	 * Non-blocking counterpart of {@link #update(Contact, Predicate)}.
+	 *
+	 * @param contact
+	 * 		Contact with the new information.
+	 * @param precondition
+	 * 		Test of the current contact.
+	 * @param attempt
+	 * 		Attempt number, starting at {@code 1}.
+	 *
+	 * @return Future of the old contact.
+	 */
+	private CompletableFuture<Contact> updateAsync(Contact contact, Predicate<Contact> precondition, int attempt) {
+		String name = contact.getName();
+		return fetchAsync(name, "Cannot update due to no matching contact").thenCompose(current -> {
+			Contact old = fromJson(current.getSourceAsString(), Contact.class);
+			check(old, precondition);
+			CompletableFuture<Contact> updated = call(
+					(ActionListener<UpdateResponse> listener) ->
+							client.updateAsync(updateRequest(contact, current), RequestOptions.DEFAULT, listener),
+					response -> {
+						if (response.status() != RestStatus.OK)
+							throw new ElasticException("Failed to update: " + name + " - " + response.toString());
+						LOG.info("Updated contact: '{}'", name);
+						return old;
+					}, ex -> {
+						if (hasStatus(ex, RestStatus.NOT_FOUND))
+							return new MissingContactException(name, "Cannot update due to no matching contact");
+						// Conflicts are passed on as-is, so they can be retried below
+						if (hasStatus(ex, RestStatus.CONFLICT))
+							return ex;
+						return new ElasticException(ex.getMessage());
+					});
+			return updated.handle((result, error) -> {
+				if (error == null)
+					return CompletableFuture.completedFuture(result);
+				Throwable cause = Futures.unwrap(error);
+				if (cause instanceof ElasticsearchException) {
+					if (attempt < UPDATE_ATTEMPTS)
+						return updateAsync(contact, precondition, attempt + 1);
+					cause = new ElasticException(cause.getMessage());
+				}
+				return Futures.<Contact>failed(cause);
+			}).thenCompose(future -> future);
+		});
+	}
+
+	/**
+	 * @param page
+	 * 		Page number to pull from. The index is 1-based.
+	 * @param length
+	 * 		Number of contacts to display per page.
+	 * @param query
+	 * 		String query.
+	 *
+	 * @return Search request for the page.
+	 *
+	 * @throws IllegalStateException
+	 * 		When the page number is not positive.
+	 */
+	private SearchRequest pageRequest(int page, int length, String query) {
+		// Validate page
+		if(page <= 0)
+			throw new IllegalStateException("Provided invalid page: " + page);
+		int start = (page - 1) * length;
+		SearchRequest request = new SearchRequest(index);
+		request.allowPartialSearchResults(true);
+		SearchSourceBuilder builder = new SearchSourceBuilder();
+		builder.query(QueryGuard.toQuery(query));
+		builder.from(start);
+		builder.size(length);
+		request.source(builder);
+		return request;
+	}
+
+	/**
+	 * @param cursor
+	 * 		Cursor of the prior page, or {@code null} for the first page.
+	 * @param length
+	 * 		Number of contacts to display per page.
+	 * @param query
+	 * 		Query the contacts must match.
+	 *
+	 * @return Search request for the page following the cursor.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the cursor is malformed.
+	 */
+	private SearchRequest cursorRequest(String cursor, int length, QueryBuilder query) {
+		// Sorted on the unique name, so the last name of a page marks where the next one begins
+		SearchRequest request = new SearchRequest(index);
+		request.allowPartialSearchResults(true);
+		SearchSourceBuilder builder = new SearchSourceBuilder();
+		builder.query(query);
+		builder.sort(keyword(ContactIndex.SORT_FIELD));
+		if (cursor != null)
+			builder.searchAfter(Cursor.decode(cursor));
+		builder.size(length);
+		request.source(builder);
+		return request;
+	}
+
+	/**
+	 * @param prefix
+	 * 		Text typed so far.
+	 * @param limit
+	 * 		Maximum number of suggestions.
+	 *
+	 * @return Search request for the contacts with words starting with each word of the prefix,
+	 * in their name or address.
+	 */
+	private SearchRequest suggestRequest(String prefix, int limit) {
+		SearchRequest request = new SearchRequest(index);
+		request.allowPartialSearchResults(true);
+		SearchSourceBuilder builder = new SearchSourceBuilder();
+		QueryBuilder name = prefixField ?
+				QueryBuilders.matchQuery(ContactIndex.PREFIX_FIELD, prefix).operator(Operator.AND) :
+				QueryBuilders.prefixQuery(keyword("name"), prefix);
+		builder.query(QueryBuilders.boolQuery()
+				.should(name.boost(SUGGEST_NAME_BOOST))
+				.should(QueryBuilders.matchQuery("address", prefix).operator(Operator.AND)));
+		builder.sort(SortBuilders.scoreSort());
+		builder.sort(keyword(ContactIndex.SORT_FIELD));
+		// Names are the document ids, so no source needs to be loaded, and no hits need counting
+		builder.fetchSource(false);
+		builder.trackTotalHits(false);
+		builder.size(limit);
+		request.source(builder);
+		return request;
+	}
+
+	/**
+	 * @param query
+	 * 		Structured filters.
+	 *
+	 * @return Query matching all filters. Each filter is a single term, prefix, or match lookup.
+	 */
+	private QueryBuilder searchQuery(ContactQuery query) {
+		// Filter context, since results are sorted on the name rather than by score
+		BoolQueryBuilder bool = QueryBuilders.boolQuery();
+		if (query.getName() != null)
+			bool.filter(QueryBuilders.termQuery(keyword("name"), query.getName()));
+		if (query.getNamePrefix() != null)
+			bool.filter(QueryBuilders.prefixQuery(keyword("name"), query.getNamePrefix()));
+		if (query.getNumber() != null)
+			bool.filter(QueryBuilders.termQuery(keyword("numbers.number"), query.getNumber()));
+		if (query.getType() != null)
+			bool.filter(QueryBuilders.termQuery(keyword("numbers.type"), query.getType().name()));
+		if (query.getAddress() != null)
+			bool.filter(QueryBuilders.matchQuery("address", query.getAddress()).operator(Operator.AND));
+		return bool;
+	}
+
+	/**
+	 * @param field
+	 * 		Field mapped as a keyword by the explicit mapping.
+	 *
+	 * @return Name of the field to use for exact matches and sorting in the current index.
+	 */
+	private String keyword(String field) {
+		return legacyMapping ? field + '.' + ContactIndex.LEGACY_KEYWORD_FIELD : field;
+	}
+
+	/**
+	 * @param name
+	 * 		Name of contact to remove.
+	 *
+	 * @return Delete request for the contact.
+	 */
+	private DeleteRequest deleteRequest(String name) {
+		DeleteRequest request = new DeleteRequest(index);
+		if (options.getElasticVersion().startsWith("6"))
+			request.type("contact");
+		request.id(name);
+		return request;
+	}
+
+	/**
+	 * @param current
+	 * 		Currently stored contact.
+	 * @param precondition
+	 * 		Test of the current contact.
+	 *
+	 * @throws PreconditionFailedException
+	 * 		When the current contact does not meet the precondition.
+	 */
+	private static void check(Contact current, Predicate<Contact> precondition) {
+		if (!precondition.test(current))
+			throw new PreconditionFailedException("Cannot update due to changes to contact: " + current.getName());
+	}
+
+	/**
+	 * @param contact
+	 * 		Contact with the new information.
+	 * @param current
+	 * 		Currently stored document of the contact.
+	 *
+	 * @return Update request, conditional on the stored document being unchanged since it was read.
+	 */
+	private UpdateRequest updateRequest(Contact contact, GetResponse current) {
+		UpdateRequest request = new UpdateRequest();
+		request.index(index);
+		request.id(contact.getName());
+		if (options.getElasticVersion().startsWith("6"))
+			request.type("contact");
+		if (current.getSeqNo() != SequenceNumbers.UNASSIGNED_SEQ_NO) {
+			request.setIfSeqNo(current.getSeqNo());
+			request.setIfPrimaryTerm(current.getPrimaryTerm());
+		}
+		request.doc(toJson(contact), XContentType.JSON);
+		return request;
+	}
+
+	/**
+	 * @param contact
+	 * 		Contact to index.
+	 *
+	 * @return Create-only index request, so ElasticSearch rejects existing contacts for us.
+	 */
+	private IndexRequest createRequest(Contact contact) {
+		IndexRequest request = new IndexRequest(index);
+		request.id(contact.getName());
+		request.opType(DocWriteRequest.OpType.CREATE);
+		request.source(toJson(contact), XContentType.JSON);
+		if (options.getElasticVersion().startsWith("6"))
+			request.type("contact");
+		return request;
+	}
+
+	/**
+	 * Send a batch of create requests and map each item's outcome back to its contact.
+	 *
+	 * @param request
+	 * 		Bulk request containing a create request per contact in the batch.
+	 * @param batch
+	 * 		Contacts in the batch, in the same order as the requests.
+	 *
+	 * @return Results for each contact in the batch.
+	 */
+	private List<ContactResult> bulk(BulkRequest request, List<Contact> batch) {
+		List<ContactResult> results = new ArrayList<>(batch.size());
+		try {
+			BulkResponse response = client.bulk(request, RequestOptions.DEFAULT);
+			BulkItemResponse[] items = response.getItems();
+			for(int i = 0; i < items.length; i++) {
+				BulkItemResponse item = items[i];
+				String name = batch.get(i).getName();
+				if (!item.isFailed())
+					results.add(ContactResult.success(name));
+				else if (item.status() == RestStatus.CONFLICT)
+					results.add(ContactResult.failure(name,
+							new DuplicateContactException(name, "Cannot add due to existing contact with same identity")));
+				else
+					results.add(ContactResult.failure(name,
+							new ElasticException("Failed to index: " + name + " - " + item.getFailureMessage())));
+			}
+			LOG.info("Bulk added {} contacts, {} failed", batch.size(),
+					results.stream().filter(result -> !result.isSuccess()).count());
+		} catch(ElasticsearchException | IOException ex) {
+			// The whole batch was rejected, but later batches may still go through
+			for(Contact contact : batch)
+				results.add(ContactResult.failure(contact.getName(), new ElasticException(ex.getMessage())));
+		}
+		return results;
+	}
+
+	/**
+	 * Fetch the stored document of a contact in a single request.
+	 *
+	 * @param name
+	 * 		Name of contact to fetch.
+	 * @param missingMessage
+	 * 		Message to use if the contact does not exist.
+	 *
+	 * @return Response containing the contact's source and sequence information.
+	 *
+	 * @throws MissingContactException
+	 * 		When no contact by the given name could be found.
+	 */
+	private GetResponse fetch(String name, String missingMessage) throws MissingContactException {
+		try {
+			GetRequest request = new GetRequest(index);
+			request.id(name);
+			GetResponse response = client.get(request, RequestOptions.DEFAULT);
+			if (!response.isExists())
+				throw new MissingContactException(name, missingMessage);
+			return response;
+		} catch(ElasticsearchException ex) {
+			// Thrown as 404 when the index itself does not exist yet
+			if (ex.status() == RestStatus.NOT_FOUND)
+				throw new MissingContactException(name, missingMessage);
+			throw new ElasticException(ex.getMessage());
+		} catch(IOException ex) {
+			throw new ElasticException(ex.getMessage());
+		}
+	}
+
+	/**
+	 * Non-blocking counterpart of {@link #fetch(String, String)}.
+	 *
+	 * @param name
+	 * 		Name of contact to fetch.
+	 * @param missingMessage
+	 * 		Message to use if the contact does not exist.
+	 *
+	 * @return Future of the response containing the contact's source and sequence information.
+	 */
+	private CompletableFuture<GetResponse> fetchAsync(String name, String missingMessage) {
+		GetRequest request = new GetRequest(index);
+		request.id(name);
+		return call((ActionListener<GetResponse> listener) ->
+				client.getAsync(request, RequestOptions.DEFAULT, listener),
+				response -> {
+					if (!response.isExists())
+						throw new MissingContactException(name, missingMessage);
+					return response;
+				}, ex -> {
+					// Thrown as 404 when the index itself does not exist yet
+					if (hasStatus(ex, RestStatus.NOT_FOUND))
+						return new MissingContactException(name, missingMessage);
+					return new ElasticException(ex.getMessage());
+				});
+	}
+
+	/**
+	 * Send a request with one of the client's non-blocking calls.
+	 *
+	 * @param request
+	 * 		Sends the request, notifying the given listener of the outcome.
+	 * @param onResponse
+	 * 		Maps the response to the result. May throw to fail the future.
+	 * @param onFailure
+	 * 		Maps failures of the request to the exception to fail the future with.
+	 * @param <R>
+	 * 		Response type.
+	 * @param <T>
+	 * 		Result type.
+	 *
+	 * @return Future of the result, completed on the client's I/O thread.
+	 */
+	private static <R, T> CompletableFuture<T> call(Consumer<ActionListener<R>> request,
+													ResponseHandler<R, T> onResponse,
+													Function<Exception, Exception> onFailure) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		ActionListener<R> listener = new ActionListener<R>() {
+			@Override
+			public void onResponse(R response) {
+				try {
+					future.complete(onResponse.handle(response));
+				} catch(Exception ex) {
+					future.completeExceptionally(ex);
+				}
+			}
+
+			@Override
+			public void onFailure(Exception ex) {
+				future.completeExceptionally(onFailure.apply(ex));
+			}
+		};
+		try {
+			request.accept(listener);
+		} catch(RuntimeException ex) {
+			listener.onFailure(ex);
+		}
+		return future;
+	}
+
+	/**
+	 * @param ex
+	 * 		Failure of a request.
+	 * @param status
+	 * 		Status to check for.
+	 *
+	 * @return {@code true} if ElasticSearch responded to the request with the given status.
+	 */
+	private static boolean hasStatus(Exception ex, RestStatus status) {
+		return ex instanceof ElasticsearchException && ((ElasticsearchException) ex).status() == status;
+	}
+
+	/**
+	 * @param names
+	 * 		Names of contacts to fetch.
+	 *
+	 * @return Request fetching each of the contacts.
+	 */
+	private MultiGetRequest multiGetRequest(Collection<String> names) {
+		MultiGetRequest request = new MultiGetRequest();
+		for(String name : names)
+			request.add(new MultiGetRequest.Item(index, null, name));
+		return request;
+	}
+
+	/**
+	 * @param response
+	 * 		Multi-get response.
+	 *
+	 * @return Contacts by name, for the names that exist.
+	 *
+	 * @throws ElasticException
+	 * 		When fetching any of the contacts failed.
+	 */
+	private static Map<String, Contact> toContacts(MultiGetResponse response) {
+		Map<String, Contact> contacts = new HashMap<>();
+		for(MultiGetItemResponse item : response) {
+			if (item.isFailed()) {
+				// Fails when the index itself does not exist yet. Item failures are parsed without
+				// their status, so the type is only known from the message.
+				Exception failure = item.getFailure().getFailure();
+				if (String.valueOf(failure.getMessage()).contains("type=index_not_found_exception"))
+					continue;
+				throw new ElasticException(failure.getMessage());
+			}
+			GetResponse get = item.getResponse();
+			if (get.isExists())
+				contacts.put(get.getId(), fromJson(get.getSourceAsString(), Contact.class));
+		}
+		return contacts;
+	}
+
+	/**
+	 * @param response
+	 * 		Search response.
+	 *
+	 * @return Contacts of the search hits.
+	 */
+	private static List<Contact> toContacts(SearchResponse response) {
+		List<Contact> contacts = new ArrayList<>();
+		response.getHits().forEach(hit -> contacts.add(fromJson(hit.getSourceAsString(), Contact.class)));
+		return contacts;
+	}
+
+	/**
+	 * @param response
+	 * 		Search response of a {@link #suggestRequest(String, int) suggestion request}.
+	 *
+	 * @return Names of the contacts of the search hits.
+	 */
+	private static List<String> toNames(SearchResponse response) {
+		SearchHit[] hits = response.getHits().getHits();
+		List<String> names = new ArrayList<>(hits.length);
+		for(SearchHit hit : hits)
+			names.add(hit.getId());
+		return names;
+	}
+
+	/**
+	 * @param response
+	 * 		Search response of a {@link #cursorRequest(String, int, QueryBuilder) cursor request}.
+	 * @param length
+	 * 		Requested page length.
+	 *
+	 * @return Contacts of the search hits, with a cursor to the following page if the page is full.
+	 */
+	private static ContactPage toPage(SearchResponse response, int length) {
+		SearchHit[] hits = response.getHits().getHits();
+		List<Contact> contacts = new ArrayList<>(hits.length);
+		for(SearchHit hit : hits)
+			contacts.add(fromJson(hit.getSourceAsString(), Contact.class));
+		String next = null;
+		if (hits.length > 0 && hits.length == length)
+			next = Cursor.encode(hits[hits.length - 1].getSortValues());
+		return new ContactPage(contacts, next);
+	}
+
+	/**
+	 * @param failureListener
+	 * 		Listener to notify when a node fails. May be {@code null}.
+	 *
 	 * @return Build the ElasticSearch REST client.
 	 */
-	private RestHighLevelClient createClient() {
-		return new RestHighLevelClient(
-				RestClient.builder(
-						new HttpHost("localhost", options.getElasticPort(), "http"),
-						new HttpHost("localhost", options.getElasticPort() + 1, "http")));
+	private RestHighLevelClient createClient(RestClient.FailureListener failureListener) {
+		int socketTimeout = options.getElasticSocketTimeout();
+		long keepAlive = options.getElasticKeepAlive();
+		HttpHost[] hosts = hosts();
+		// Each attempt is bounded by the socket timeout, so a slow node fails over to the next one.
+		// Failing over stops at the client's own retry timeout of 30 seconds, the time endpoints wait for a response.
+		RestClientBuilder builder = RestClient.builder(hosts)
+				.setRequestConfigCallback(config -> config
+						.setConnectTimeout(options.getElasticConnectTimeout())
+						.setSocketTimeout(socketTimeout))
+				.setHttpClientConfigCallback(http -> {
+					// The per node limit keeps a slow node from holding every connection
+					http.setMaxConnTotal(options.getElasticMaxConnections())
+						.setMaxConnPerRoute(options.getElasticMaxConnectionsPerNode());
+					if (keepAlive > 0)
+						http.setKeepAliveStrategy((response, context) -> keepAlive);
+					return http;
+				});
+		if (failureListener != null)
+			builder.setFailureListener(failureListener);
+		return new RestHighLevelClient(builder);
+	}
+
+	/**
+	 * @return ElasticSearch nodes from the {@link Options#getElasticHosts() host list}.
+	 * Defaults to localhost on the ElasticSearch port and the port after it.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When a host is malformed.
+	 */
+	private HttpHost[] hosts() {
+		List<String> names = options.getElasticHosts();
+		if (names == null || names.isEmpty())
+			return new HttpHost[] {
+					new HttpHost("localhost", options.getElasticPort(), "http"),
+					new HttpHost("localhost", options.getElasticPort() + 1, "http")};
+		HttpHost[] hosts = new HttpHost[names.size()];
+		for(int i = 0; i < hosts.length; i++) {
+			HttpHost host = HttpHost.create(names.get(i).trim());
+			// Hosts without a port use the ElasticSearch port
+			if (host.getPort() < 0)
+				host = new HttpHost(host.getHostName(), options.getElasticPort(), host.getSchemeName());
+			hosts[i] = host;
+		}
+		return hosts;
+	}
+
+	/**
+	 * @param failureListener
+	 * 		Listener the client notifies when a node fails, which triggers an early refresh.
+	 *
+	 * @return Sniffer refreshing the client's nodes from the cluster
+	 * every {@link Options#getElasticSniffInterval() sniff interval}.
+	 */
+	private Sniffer createSniffer(SniffOnFailureListener failureListener) {
+		RestClient lowLevel = client.getLowLevelClient();
+		// Sniffed nodes use the scheme of the configured nodes
+		ElasticsearchNodesSniffer.Scheme scheme = "https".equals(lowLevel.getNodes().get(0).getHost().getSchemeName()) ?
+				ElasticsearchNodesSniffer.Scheme.HTTPS : ElasticsearchNodesSniffer.Scheme.HTTP;
+		Sniffer sniffer = Sniffer.builder(lowLevel)
+				.setSniffIntervalMillis(options.getElasticSniffInterval())
+				.setNodesSniffer(new ElasticsearchNodesSniffer(lowLevel,
+						ElasticsearchNodesSniffer.DEFAULT_SNIFF_REQUEST_TIMEOUT, scheme))
+				.build();
+		failureListener.setSniffer(sniffer);
+		return sniffer;
+	}
+
+	/**
+	 * Maps a response to a result.
+	 *
+	 * @param <R>
+	 * 		Response type.
+	 * @param <T>
+	 * 		Result type.
+	 */
+	private interface ResponseHandler<R, T> {
+		/**
+		 * @param response
+		 * 		Response to map.
+		 *
+		 * @return Result of the response.
+		 *
+		 * @throws Exception
+		 * 		When the response represents a failure.
+		 */
+		T handle(R response) throws Exception;
 	}
 }
@@ -0,0 +1,453 @@
+package me.coley.addressbook.service.impl;
+
+import me.coley.addressbook.exception.DuplicateContactException;
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.exception.PreconditionFailedException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactPage;
+import me.coley.addressbook.model.ContactQuery;
+import me.coley.addressbook.model.Phone;
+import me.coley.addressbook.service.ContactService;
+import me.coley.addressbook.util.Cursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * A contact service where the contact information is only stored in memory.
+ * Queries support a subset of the ElasticSearch query string syntax, see {@link QueryParser}.
+ * <br>
+ * Reads do not lock. Writes are serialized so the secondary indexes stay consistent with the contacts.
+ */
+public class InMemoryContactService implements ContactService {
+	private static final Logger LOG = LoggerFactory.getLogger(InMemoryContactService.class);
+	// Contacts, sorted by name for paging
+	private final NavigableMap<String, Contact> contacts = new ConcurrentSkipListMap<>();
+	// Secondary indexes, from lower-case tokens to contact names
+	//  - sorted so that prefixes can be looked up as ranges
+	private final NavigableMap<String, Set<String>> nameTokens = new ConcurrentSkipListMap<>();
+	private final NavigableMap<String, Set<String>> addressTokens = new ConcurrentSkipListMap<>();
+	private final NavigableMap<String, Set<String>> numberTokens = new ConcurrentSkipListMap<>();
+	private final Map<Phone.Type, Set<String>> types = new EnumMap<>(Phone.Type.class);
+	private final Object writeLock = new Object();
+
+	/**
+	 * Constructs an empty in-memory implementation of {@link ContactService}.
+	 */
+	public InMemoryContactService() {
+		for(Phone.Type type : Phone.Type.values())
+			types.put(type, ConcurrentHashMap.newKeySet());
+	}
+
+	@Override
+	public void add(Contact contact) throws DuplicateContactException {
+		Contact copy = copy(contact);
+		synchronized(writeLock) {
+			if (contacts.putIfAbsent(copy.getName(), copy) != null)
+				throw new DuplicateContactException(contact.getName(), "Cannot add due to existing contact with same identity");
+			index(copy);
+		}
+		LOG.info("Added contact: '{}'", contact.getName());
+	}
+
+	@Override
+	public void delete(String name) throws MissingContactException {
+		synchronized(writeLock) {
+			Contact old = contacts.remove(name);
+			if (old == null)
+				throw new MissingContactException(name, "Cannot remove due to no matching contact");
+			unindex(old);
+		}
+		LOG.info("Removed contact: '{}'", name);
+	}
+
+	@Override
+	public boolean exists(String name) {
+		return contacts.containsKey(name);
+	}
+
+	@Override
+	public Collection<Contact> contacts(int page, int length, String query) {
+		// Validate page
+		if(page <= 0)
+			throw new IllegalStateException("Provided invalid page: " + page);
+		long start = (long) (page - 1) * length;
+		List<Contact> results = new ArrayList<>(length);
+		Iterator<Contact> it = matching(query, null);
+		for(long i = 0; i < start && it.hasNext(); i++)
+			it.next();
+		while(results.size() < length && it.hasNext())
+			results.add(it.next());
+		return results;
+	}
+
+	@Override
+	public ContactPage contactsAfter(String cursor, int length, String query) throws IllegalArgumentException {
+		return page(matching(query, after(cursor)), length);
+	}
+
+	@Override
+	public ContactPage search(ContactQuery query, String cursor, int length) throws IllegalArgumentException {
+		return page(matching(query, after(cursor)), length);
+	}
+
+	@Override
+	public List<String> suggest(String prefix, int limit) {
+		List<String> tokens = tokenize(prefix);
+		if (tokens.isEmpty())
+			return Collections.emptyList();
+		// Name matches first, then address matches, each sorted by name
+		Set<String> suggestions = new LinkedHashSet<>();
+		for(Set<String> matches : Arrays.asList(findPrefixes(nameTokens, tokens), findPrefixes(addressTokens, tokens))) {
+			Iterator<String> it = new TreeSet<>(matches).iterator();
+			while(suggestions.size() < limit && it.hasNext())
+				suggestions.add(it.next());
+		}
+		return new ArrayList<>(suggestions);
+	}
+
+	@Override
+	public void forEach(String query, Consumer<Contact> action) {
+		matching(query, null).forEachRemaining(action);
+	}
+
+	@Override
+	public Contact update(Contact contact, Predicate<Contact> precondition) throws MissingContactException {
+		Contact copy = copy(contact);
+		Contact old;
+		synchronized(writeLock) {
+			old = contacts.get(contact.getName());
+			if (old == null)
+				throw new MissingContactException(contact.getName(), "Cannot update due to no matching contact");
+			if (!precondition.test(old))
+				throw new PreconditionFailedException("Cannot update due to changes to contact: " + contact.getName());
+			contacts.put(copy.getName(), copy);
+			unindex(old);
+			index(copy);
+		}
+		LOG.info("Updated contact: '{}'", contact.getName());
+		return old;
+	}
+
+	@Override
+	public Contact get(String name) throws MissingContactException {
+		Contact contact = contacts.get(name);
+		if (contact == null)
+			throw new MissingContactException(name, "Cannot retrieve due to no matching contact");
+		return contact;
+	}
+
+	/**
+	 * Remove all contacts.
+	 */
+	public void clear() {
+		synchronized(writeLock) {
+			contacts.clear();
+			nameTokens.clear();
+			addressTokens.clear();
+			numberTokens.clear();
+			types.values().forEach(Set::clear);
+		}
+	}
+
+	/**
+	 * @param cursor
+	 * 		Cursor of the prior page, or {@code null} for the first page.
+	 *
+	 * @return Name to start after, or {@code null} to start from the first contact.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the cursor is malformed.
+	 */
+	private static String after(String cursor) throws IllegalArgumentException {
+		return cursor == null ? null : String.valueOf(Cursor.decode(cursor)[0]);
+	}
+
+	/**
+	 * @param it
+	 * 		Matching contacts, sorted by name.
+	 * @param length
+	 * 		Number of contacts to display per page.
+	 *
+	 * @return Page of the first contacts, with a cursor to the following page.
+	 */
+	private static ContactPage page(Iterator<Contact> it, int length) {
+		List<Contact> results = new ArrayList<>(length);
+		while(results.size() < length && it.hasNext())
+			results.add(it.next());
+		String next = null;
+		if (!results.isEmpty() && results.size() == length)
+			next = Cursor.encode(new Object[]{results.get(results.size() - 1).getName()});
+		return new ContactPage(results, next);
+	}
+
+	/**
+	 * @param query
+	 * 		String query. May be {@code null} to match all contacts.
+	 * @param after
+	 * 		Name to start after. May be {@code null} to start from the first contact.
+	 *
+	 * @return Contacts matching the query, sorted by name.
+	 */
+	private Iterator<Contact> matching(String query, String after) {
+		if (query == null)
+			return (after == null ? contacts : contacts.tailMap(after, false)).values().iterator();
+		return resolve(new TreeSet<>(QueryParser.evaluate(query, this::find)), after);
+	}
+
+	/**
+	 * @param query
+	 * 		Structured filters.
+	 * @param after
+	 * 		Name to start after. May be {@code null} to start from the first contact.
+	 *
+	 * @return Contacts matching all filters, sorted by name.
+	 */
+	private Iterator<Contact> matching(ContactQuery query, String after) {
+		// Narrowed by each filter in turn, null until the first filter
+		Set<String> names = null;
+		if (query.getName() != null)
+			names = restrict(names, contacts.containsKey(query.getName()) ?
+					Collections.singleton(query.getName()) : Collections.emptySet());
+		if (query.getNamePrefix() != null) {
+			String prefix = query.getNamePrefix();
+			names = restrict(names, contacts.subMap(prefix, true, prefix + Character.MAX_VALUE, false).keySet());
+		}
+		if (query.getNumber() != null)
+			names = restrict(names, findTokens(numberTokens, numberTokens(query.getNumber()), false));
+		if (query.getType() != null)
+			names = restrict(names, types.get(query.getType()));
+		if (query.getAddress() != null)
+			names = restrict(names, findPrefixes(addressTokens, tokenize(query.getAddress())));
+		if (names == null)
+			return (after == null ? contacts : contacts.tailMap(after, false)).values().iterator();
+		return resolve(new TreeSet<>(names), after);
+	}
+
+	/**
+	 * @param names
+	 * 		Names matched so far, or {@code null} if no filter has been applied.
+	 * @param matches
+	 * 		Names matching the next filter.
+	 *
+	 * @return Names matching both.
+	 */
+	private static Set<String> restrict(Set<String> names, Set<String> matches) {
+		if (names == null)
+			return new HashSet<>(matches);
+		names.retainAll(matches);
+		return names;
+	}
+
+	/**
+	 * @param names
+	 * 		Names of matching contacts.
+	 * @param after
+	 * 		Name to start after. May be {@code null} to start from the first contact.
+	 *
+	 * @return Contacts by the names that still exist.
+	 */
+	private Iterator<Contact> resolve(NavigableSet<String> names, String after) {
+		// Resolve the names, then look up the ones that are still around
+		Iterator<String> nameIt = (after == null ? names : names.tailSet(after, false)).iterator();
+		return new Iterator<Contact>() {
+			private Contact next = advance();
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public Contact next() {
+				Contact current = next;
+				next = advance();
+				return current;
+			}
+
+			private Contact advance() {
+				while(nameIt.hasNext()) {
+					Contact contact = contacts.get(nameIt.next());
+					if (contact != null)
+						return contact;
+				}
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Look up the contacts matching a single query term.
+	 *
+	 * @param field
+	 * 		Field to search, or {@code null} to search all fields.
+	 * @param term
+	 * 		Term to search for.
+	 * @param prefix
+	 *        {@code true} if the term is a prefix of the values to find.
+	 * @param phrase
+	 *        {@code true} if all tokens of the term must match.
+	 *
+	 * @return Names of matching contacts.
+	 */
+	private Set<String> find(String field, String term, boolean prefix, boolean phrase) {
+		if (field == null) {
+			Set<String> names = new HashSet<>();
+			for(String f : new String[]{"name", "address", "numbers.number", "numbers.type"})
+				names.addAll(find(f, term, prefix, phrase));
+			return names;
+		}
+		switch(field) {
+			case "name":
+				return findTokens(nameTokens, tokenize(term), prefix);
+			case "address":
+				return findTokens(addressTokens, tokenize(term), prefix);
+			case "numbers":
+			case "numbers.number":
+				return findTokens(numberTokens, numberTokens(term), prefix);
+			case "numbers.type":
+				Set<String> names = new HashSet<>();
+				for(Phone.Type type : Phone.Type.values())
+					if (prefix ? type.name().startsWith(term.toUpperCase()) : type.name().equalsIgnoreCase(term))
+						names.addAll(types.get(type));
+				return names;
+			default:
+				throw new IllegalArgumentException("Unsupported field in query: " + field);
+		}
+	}
+
+	/**
+	 * @param index
+	 * 		Index to search.
+	 * @param tokens
+	 * 		Tokens that must all match.
+	 * @param prefix
+	 *        {@code true} if the last token is a prefix.
+	 *
+	 * @return Names of contacts matching all tokens.
+	 */
+	private static Set<String> findTokens(NavigableMap<String, Set<String>> index, List<String> tokens, boolean prefix) {
+		Set<String> names = null;
+		for(int i = 0; i < tokens.size(); i++) {
+			String token = tokens.get(i);
+			Set<String> matches = new HashSet<>();
+			if (prefix && i == tokens.size() - 1)
+				index.subMap(token, true, token + Character.MAX_VALUE, false).values().forEach(matches::addAll);
+			else
+				matches.addAll(index.getOrDefault(token, Collections.emptySet()));
+			if (names == null)
+				names = matches;
+			else
+				names.retainAll(matches);
+		}
+		return names == null ? new HashSet<>() : names;
+	}
+
+	/**
+	 * @param index
+	 * 		Index to search.
+	 * @param tokens
+	 * 		Tokens that must all match.
+	 *
+	 * @return Names of contacts with a token starting with each of the given tokens,
+	 * as with the edge n-grams of the ElasticSearch mapping.
+	 */
+	private static Set<String> findPrefixes(NavigableMap<String, Set<String>> index, List<String> tokens) {
+		Set<String> names = null;
+		for(String token : tokens)
+			names = restrict(names, findTokens(index, Collections.singletonList(token), true));
+		return names == null ? new HashSet<>() : names;
+	}
+
+	private void index(Contact contact) {
+		String name = contact.getName();
+		tokenize(name).forEach(token -> nameTokens.computeIfAbsent(token, k -> ConcurrentHashMap.newKeySet()).add(name));
+		tokenize(contact.getAddress()).forEach(token ->
+				addressTokens.computeIfAbsent(token, k -> ConcurrentHashMap.newKeySet()).add(name));
+		for(Phone phone : contact.getNumbers()) {
+			numberTokens(phone.getNumber()).forEach(token ->
+					numberTokens.computeIfAbsent(token, k -> ConcurrentHashMap.newKeySet()).add(name));
+			types.get(phone.getType()).add(name);
+		}
+	}
+
+	private void unindex(Contact contact) {
+		String name = contact.getName();
+		tokenize(name).forEach(token -> remove(nameTokens, token, name));
+		tokenize(contact.getAddress()).forEach(token -> remove(addressTokens, token, name));
+		for(Phone phone : contact.getNumbers()) {
+			numberTokens(phone.getNumber()).forEach(token -> remove(numberTokens, token, name));
+			types.get(phone.getType()).remove(name);
+		}
+	}
+
+	private static void remove(Map<String, Set<String>> index, String token, String name) {
+		Set<String> names = index.get(token);
+		if (names != null && names.remove(name) && names.isEmpty())
+			index.remove(token);
+	}
+
+	/**
+	 * @param text
+	 * 		Text to split.
+	 *
+	 * @return Lower-case alphanumeric tokens of the text.
+	 */
+	private static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<>();
+		int start = -1;
+		for(int i = 0; i <= text.length(); i++) {
+			boolean alphanumeric = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+			if (alphanumeric && start < 0)
+				start = i;
+			else if (!alphanumeric && start >= 0) {
+				tokens.add(text.substring(start, i).toLowerCase());
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * @param number
+	 * 		Phone number, or part of one.
+	 *
+	 * @return The number with and without splitters, and each of its digit groups.
+	 */
+	private static List<String> numberTokens(String number) {
+		List<String> tokens = tokenize(number);
+		if (tokens.size() > 1) {
+			// Full number, so it can be found regardless of the format it was searched in
+			tokens.add(String.join("", tokens));
+		}
+		return tokens;
+	}
+
+	/**
+	 * @param contact
+	 * 		Contact to copy.
+	 *
+	 * @return Copy that is not affected by later changes to the given contact.
+	 */
+	private static Contact copy(Contact contact) {
+		return new Contact(contact.getName(), new ArrayList<>(contact.getNumbers()), contact.getAddress());
+	}
+}
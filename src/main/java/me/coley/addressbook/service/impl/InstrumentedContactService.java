@@ -0,0 +1,236 @@
+package me.coley.addressbook.service.impl;
+
+import me.coley.addressbook.exception.DuplicateContactException;
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.metrics.Metrics;
+import me.coley.addressbook.metrics.OperationMetrics;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactPage;
+import me.coley.addressbook.model.ContactQuery;
+import me.coley.addressbook.model.ContactResult;
+import me.coley.addressbook.service.ContactService;
+import me.coley.addressbook.service.ForwardingContactService;
+import me.coley.addressbook.util.Futures;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A contact service that records the count, latency and failures of each call to another service.
+ * Placed directly in front of the backend, it measures the time spent waiting on the backend.
+ * Non-blocking calls are timed until their future completes.
+ */
+public class InstrumentedContactService extends ForwardingContactService {
+	private final OperationMetrics add;
+	private final OperationMetrics addAll;
+	private final OperationMetrics delete;
+	private final OperationMetrics exists;
+	private final OperationMetrics contacts;
+	private final OperationMetrics contactsAfter;
+	private final OperationMetrics search;
+	private final OperationMetrics suggest;
+	private final OperationMetrics forEach;
+	private final OperationMetrics update;
+	private final OperationMetrics get;
+	private final OperationMetrics getAll;
+
+	/**
+	 * Constructs an instrumented wrapper around a contact service.
+	 *
+	 * @param delegate
+	 * 		Service to time the calls of.
+	 * @param metrics
+	 * 		Registry to record the call metrics in.
+	 */
+	public InstrumentedContactService(ContactService delegate, Metrics metrics) {
+		super(delegate);
+		// Looked up once, rather than on every call
+		add = metrics.backend("add");
+		addAll = metrics.backend("addAll");
+		delete = metrics.backend("delete");
+		exists = metrics.backend("exists");
+		contacts = metrics.backend("contacts");
+		contactsAfter = metrics.backend("contactsAfter");
+		search = metrics.backend("search");
+		suggest = metrics.backend("suggest");
+		forEach = metrics.backend("forEach");
+		update = metrics.backend("update");
+		get = metrics.backend("get");
+		getAll = metrics.backend("getAll");
+	}
+
+	@Override
+	public void add(Contact contact) throws DuplicateContactException {
+		time(add, () -> {
+			delegate.add(contact);
+			return null;
+		});
+	}
+
+	@Override
+	public CompletableFuture<Void> addAsync(Contact contact) {
+		return timeAsync(add, () -> delegate.addAsync(contact));
+	}
+
+	@Override
+	public List<ContactResult> addAll(Collection<Contact> contacts) {
+		return time(addAll, () -> delegate.addAll(contacts));
+	}
+
+	@Override
+	public void delete(String name) throws MissingContactException {
+		time(delete, () -> {
+			delegate.delete(name);
+			return null;
+		});
+	}
+
+	@Override
+	public CompletableFuture<Void> deleteAsync(String name) {
+		return timeAsync(delete, () -> delegate.deleteAsync(name));
+	}
+
+	@Override
+	public boolean exists(String name) {
+		return time(exists, () -> delegate.exists(name));
+	}
+
+	@Override
+	public CompletableFuture<Boolean> existsAsync(String name) {
+		return timeAsync(exists, () -> delegate.existsAsync(name));
+	}
+
+	@Override
+	public Collection<Contact> contacts(int page, int length, String query) {
+		return time(contacts, () -> delegate.contacts(page, length, query));
+	}
+
+	@Override
+	public CompletableFuture<Collection<Contact>> contactsAsync(int page, int length, String query) {
+		return timeAsync(contacts, () -> delegate.contactsAsync(page, length, query));
+	}
+
+	@Override
+	public ContactPage contactsAfter(String cursor, int length, String query) throws IllegalArgumentException {
+		return time(contactsAfter, () -> delegate.contactsAfter(cursor, length, query));
+	}
+
+	@Override
+	public CompletableFuture<ContactPage> contactsAfterAsync(String cursor, int length, String query) {
+		return timeAsync(contactsAfter, () -> delegate.contactsAfterAsync(cursor, length, query));
+	}
+
+	@Override
+	public ContactPage search(ContactQuery query, String cursor, int length) throws IllegalArgumentException {
+		return time(search, () -> delegate.search(query, cursor, length));
+	}
+
+	@Override
+	public CompletableFuture<ContactPage> searchAsync(ContactQuery query, String cursor, int length) {
+		return timeAsync(search, () -> delegate.searchAsync(query, cursor, length));
+	}
+
+	@Override
+	public List<String> suggest(String prefix, int limit) {
+		return time(suggest, () -> delegate.suggest(prefix, limit));
+	}
+
+	@Override
+	public CompletableFuture<List<String>> suggestAsync(String prefix, int limit) {
+		return timeAsync(suggest, () -> delegate.suggestAsync(prefix, limit));
+	}
+
+	@Override
+	public void forEach(String query, Consumer<Contact> action) {
+		time(forEach, () -> {
+			delegate.forEach(query, action);
+			return null;
+		});
+	}
+
+	@Override
+	public Contact update(Contact contact, Predicate<Contact> precondition) throws MissingContactException {
+		return time(update, () -> delegate.update(contact, precondition));
+	}
+
+	@Override
+	public CompletableFuture<Contact> updateAsync(Contact contact, Predicate<Contact> precondition) {
+		return timeAsync(update, () -> delegate.updateAsync(contact, precondition));
+	}
+
+	@Override
+	public Contact get(String name) throws MissingContactException {
+		return time(get, () -> delegate.get(name));
+	}
+
+	@Override
+	public CompletableFuture<Contact> getAsync(String name) {
+		return timeAsync(get, () -> delegate.getAsync(name));
+	}
+
+	@Override
+	public Map<String, Contact> getAll(Collection<String> names) {
+		return time(getAll, () -> delegate.getAll(names));
+	}
+
+	@Override
+	public CompletableFuture<Map<String, Contact>> getAllAsync(Collection<String> names) {
+		return timeAsync(getAll, () -> delegate.getAllAsync(names));
+	}
+
+	/**
+	 * @param operation
+	 * 		Metrics to record the call in.
+	 * @param call
+	 * 		Blocking call to time.
+	 * @param <T>
+	 * 		Type of call result.
+	 * @param <X>
+	 * 		Type of checked exception the call may throw.
+	 *
+	 * @return Result of the call.
+	 *
+	 * @throws X
+	 * 		When the call fails.
+	 */
+	private static <T, X extends Exception> T time(OperationMetrics operation, BlockingCall<T, X> call) throws X {
+		long start = operation.start();
+		Throwable error = null;
+		try {
+			return call.call();
+		} catch(Throwable ex) {
+			error = ex;
+			throw ex;
+		} finally {
+			operation.stop(start, error);
+		}
+	}
+
+	/**
+	 * @param operation
+	 * 		Metrics to record the call in.
+	 * @param call
+	 * 		Non-blocking call to time.
+	 * @param <T>
+	 * 		Type of call result.
+	 *
+	 * @return Future of the call result, completed after the call is recorded.
+	 */
+	private static <T> CompletableFuture<T> timeAsync(OperationMetrics operation,
+													  Supplier<CompletableFuture<T>> call) {
+		long start = operation.start();
+		CompletableFuture<T> future;
+		try {
+			future = call.get();
+		} catch(RuntimeException ex) {
+			future = Futures.failed(ex);
+		}
+		return future.whenComplete((result, error) ->
+				operation.stop(start, error == null ? null : Futures.unwrap(error)));
+	}
+}
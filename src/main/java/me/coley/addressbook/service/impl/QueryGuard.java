@@ -0,0 +1,142 @@
+package me.coley.addressbook.service.impl;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+
+/**
+ * Cost guard for query strings passed to ElasticSearch. Some query string syntax walks every term of
+ * the index, stalling the cluster for all other requests. Such queries are rejected before being sent:
+ * <ul>
+ * <li>Regular expressions: {@code /jo.*n/}</li>
+ * <li>Leading wildcards: {@code *mith}, {@code name:?ob}</li>
+ * <li>Queries longer than {@value #MAX_LENGTH} characters, with more than {@value #MAX_TERMS} terms,
+ * or with groups nested deeper than {@value #MAX_DEPTH}</li>
+ * </ul>
+ * Fuzzy terms are allowed, but must match the first character exactly, which bounds the terms they expand to.
+ */
+final class QueryGuard {
+	static final int MAX_LENGTH = 1024;
+	static final int MAX_TERMS = 32;
+	// Shared with the in-memory parser, which recurses once per group
+	static final int MAX_DEPTH = 16;
+	private static final int FUZZY_PREFIX_LENGTH = 1;
+
+	private QueryGuard() {}
+
+	/**
+	 * @param query
+	 * 		String query. May be {@code null} to match all contacts.
+	 *
+	 * @return ElasticSearch query for the string query.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the query uses expensive syntax, or is too large.
+	 */
+	static QueryBuilder toQuery(String query) throws IllegalArgumentException {
+		if (query == null)
+			return QueryBuilders.matchAllQuery();
+		check(query);
+		return QueryBuilders.queryStringQuery(query)
+				.allowLeadingWildcard(false)
+				.fuzzyPrefixLength(FUZZY_PREFIX_LENGTH);
+	}
+
+	/**
+	 * @param query
+	 * 		String query.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the query uses expensive syntax, or is too large or deeply nested.
+	 */
+	static void check(String query) throws IllegalArgumentException {
+		if (query.length() > MAX_LENGTH)
+			throw new IllegalArgumentException("Query is too long, at most " + MAX_LENGTH + " characters are allowed");
+		int terms = 0;
+		int depth = 0;
+		int i = 0;
+		while(i < query.length()) {
+			char c = query.charAt(i);
+			if (c == '(' && ++depth > MAX_DEPTH)
+				throw new IllegalArgumentException("Query is nested too deeply, at most " + MAX_DEPTH +
+						" levels of groups are allowed");
+			if (Character.isWhitespace(c) || c == '(' || c == ')') {
+				if (c == ')')
+					depth--;
+				i++;
+			} else if (c == '"') {
+				// Phrases are analyzed as plain text, so only need counting
+				i = closingQuote(query, i) + 1;
+				terms++;
+			} else {
+				int start = i;
+				while(i < query.length() && !Character.isWhitespace(query.charAt(i)) &&
+						"()\"".indexOf(query.charAt(i)) < 0)
+					i += query.charAt(i) == '\\' ? 2 : 1;
+				String token = query.substring(start, Math.min(i, query.length()));
+				checkTerm(token);
+				// Operators and field names on their own, such as "name:(...)", are not terms
+				if (!isOperator(token) && !token.endsWith(":"))
+					terms++;
+			}
+		}
+		if (terms > MAX_TERMS)
+			throw new IllegalArgumentException("Query has too many terms, at most " + MAX_TERMS + " are allowed");
+	}
+
+	/**
+	 * @param token
+	 * 		Unquoted term of a query, possibly with a field and operator prefix.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the term is a regular expression, or starts with a wildcard.
+	 */
+	private static void checkTerm(String token) throws IllegalArgumentException {
+		int start = 0;
+		for(int i = 0; i < token.length(); i++) {
+			char c = token.charAt(i);
+			if (c == '\\')
+				i++;
+			else if (c == '/')
+				throw new IllegalArgumentException("Regular expressions are not allowed in queries: " + token);
+			else if (c == ':')
+				start = i + 1;
+		}
+		while(start < token.length() && "+-!".indexOf(token.charAt(start)) >= 0)
+			start++;
+		if (start < token.length() && (token.charAt(start) == '*' || token.charAt(start) == '?'))
+			throw new IllegalArgumentException("Leading wildcards are not allowed in queries: " + token);
+	}
+
+	/**
+	 * @param query
+	 * 		String query.
+	 * @param open
+	 * 		Index of an opening quote.
+	 *
+	 * @return Index of the matching closing quote, or the last index if the phrase is not terminated.
+	 */
+	private static int closingQuote(String query, int open) {
+		for(int i = open + 1; i < query.length(); i++) {
+			char c = query.charAt(i);
+			if (c == '\\')
+				i++;
+			else if (c == '"')
+				return i;
+		}
+		return query.length() - 1;
+	}
+
+	private static boolean isOperator(String token) {
+		switch(token) {
+			case "AND":
+			case "OR":
+			case "NOT":
+			case "&&":
+			case "||":
+			case "TO":
+				return true;
+			default:
+				return false;
+		}
+	}
+}
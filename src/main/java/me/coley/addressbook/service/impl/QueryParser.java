@@ -0,0 +1,160 @@
+package me.coley.addressbook.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parser for the subset of the ElasticSearch query string syntax supported by
+ * {@link InMemoryContactService}:
+ * <ul>
+ * <li>Terms: {@code Bob}, quoted phrases: {@code "Bob Smith"}, and trailing wildcards: {@code Bo*}</li>
+ * <li>Fields: {@code name:Bob}, also applied to groups: {@code name:(Bob OR Robert)}</li>
+ * <li>Operators: {@code AND}, {@code OR}, and grouping with parentheses.
+ * Adjacent terms default to {@code OR}.</li>
+ * </ul>
+ * The query is evaluated while it is parsed, resolving each term to the set of matching contact names.
+ * Groups may be nested at most {@value QueryGuard#MAX_DEPTH} deep, bounding the recursion of the parser.
+ */
+class QueryParser {
+	private final List<String> tokens;
+	private final TermLookup lookup;
+	private int position;
+	private int depth;
+
+	private QueryParser(List<String> tokens, TermLookup lookup) {
+		this.tokens = tokens;
+		this.lookup = lookup;
+	}
+
+	/**
+	 * @param query
+	 * 		Query string.
+	 * @param lookup
+	 * 		Resolves single terms to matching contact names.
+	 *
+	 * @return Names of contacts matching the query.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the query uses unsupported or malformed syntax.
+	 */
+	static Set<String> evaluate(String query, TermLookup lookup) throws IllegalArgumentException {
+		QueryParser parser = new QueryParser(tokenize(query), lookup);
+		Set<String> result = parser.or(null);
+		if (parser.position < parser.tokens.size())
+			throw new IllegalArgumentException("Unexpected '" + parser.tokens.get(parser.position) + "' in query: " + query);
+		return result;
+	}
+
+	private Set<String> or(String field) {
+		Set<String> result = and(field);
+		while(hasNext() && !peek().equals(")")) {
+			// Explicit or implicit OR
+			if (peek().equals("OR"))
+				position++;
+			result.addAll(and(field));
+		}
+		return result;
+	}
+
+	private Set<String> and(String field) {
+		Set<String> result = primary(field);
+		while(hasNext() && peek().equals("AND")) {
+			position++;
+			result.retainAll(primary(field));
+		}
+		return result;
+	}
+
+	private Set<String> primary(String field) {
+		if (!hasNext())
+			throw new IllegalArgumentException("Unexpected end of query");
+		String token = tokens.get(position++);
+		if (token.equals("(")) {
+			if (++depth > QueryGuard.MAX_DEPTH)
+				throw new IllegalArgumentException("Query is nested too deeply, at most " + QueryGuard.MAX_DEPTH +
+						" levels of groups are allowed");
+			Set<String> result = or(field);
+			if (!hasNext() || !tokens.get(position++).equals(")"))
+				throw new IllegalArgumentException("Missing ')' in query");
+			depth--;
+			return result;
+		}
+		if (token.equals(")") || token.equals("AND") || token.equals("OR") || token.equals("NOT"))
+			throw new IllegalArgumentException("Unexpected '" + token + "' in query");
+		if (token.endsWith(":")) {
+			if (field != null)
+				throw new IllegalArgumentException("Nested field in query: " + token);
+			return primary(token.substring(0, token.length() - 1));
+		}
+		if (token.startsWith("\""))
+			return lookup.find(field, token.substring(1, token.length() - 1), false, true);
+		if (token.indexOf('?') >= 0 || token.indexOf('*') >= 0 && token.indexOf('*') != token.length() - 1)
+			throw new IllegalArgumentException("Only trailing wildcards are supported: " + token);
+		if (token.endsWith("*"))
+			return lookup.find(field, token.substring(0, token.length() - 1), true, false);
+		return lookup.find(field, token, false, false);
+	}
+
+	private boolean hasNext() {
+		return position < tokens.size();
+	}
+
+	private String peek() {
+		return tokens.get(position);
+	}
+
+	/**
+	 * @param query
+	 * 		Query string.
+	 *
+	 * @return Tokens of the query. Fields keep their trailing {@code ':'} and phrases keep their quotes.
+	 */
+	private static List<String> tokenize(String query) {
+		List<String> tokens = new ArrayList<>();
+		int i = 0;
+		while(i < query.length()) {
+			char c = query.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '(' || c == ')') {
+				tokens.add(String.valueOf(c));
+				i++;
+			} else if (c == '"') {
+				int end = query.indexOf('"', i + 1);
+				if (end < 0)
+					throw new IllegalArgumentException("Unterminated phrase in query: " + query);
+				tokens.add(query.substring(i, end + 1));
+				i = end + 1;
+			} else {
+				int start = i;
+				while(i < query.length() && !Character.isWhitespace(query.charAt(i)) &&
+						"()\"".indexOf(query.charAt(i)) < 0) {
+					if (query.charAt(i++) == ':')
+						break;
+				}
+				tokens.add(query.substring(start, i));
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Resolves single terms of a query.
+	 */
+	interface TermLookup {
+		/**
+		 * @param field
+		 * 		Field to search, or {@code null} to search all fields.
+		 * @param term
+		 * 		Term to search for.
+		 * @param prefix
+		 *        {@code true} if the term is a prefix of the values to find.
+		 * @param phrase
+		 *        {@code true} if the term is a quoted phrase.
+		 *
+		 * @return Modifiable set of names of matching contacts.
+		 */
+		Set<String> find(String field, String term, boolean prefix, boolean phrase);
+	}
+}
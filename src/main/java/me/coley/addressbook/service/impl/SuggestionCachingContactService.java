@@ -0,0 +1,165 @@
+package me.coley.addressbook.service.impl;
+
+import me.coley.addressbook.Options;
+import me.coley.addressbook.exception.DuplicateContactException;
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactResult;
+import me.coley.addressbook.service.ContactService;
+import me.coley.addressbook.service.ForwardingContactService;
+import me.coley.addressbook.util.BoundedCache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * A contact service that keeps the suggestions for recently typed prefixes in memory, in front of another service.
+ * Every user typing a name starts with the same few letters, so the shortest prefixes are both the most
+ * requested and the most expensive to match. Those stay cached, while rarer prefixes are evicted.
+ * <br>
+ * Any write clears all cached suggestions, since a single contact may appear under many prefixes.
+ */
+public class SuggestionCachingContactService extends ForwardingContactService {
+	// Rough per-object overhead used when estimating the size of a suggestion list
+	private static final int OBJECT_BYTES = 16;
+	private final BoundedCache<String, List<String>> cache;
+	private final long ttl;
+
+	/**
+	 * Constructs a suggestion caching wrapper around a contact service.
+	 *
+	 * @param delegate
+	 * 		Service to cache suggestions of.
+	 * @param options
+	 * 		Program arguments, specifying the cache bounds and time-to-live.
+	 */
+	public SuggestionCachingContactService(ContactService delegate, Options options) {
+		this(delegate, new BoundedCache<>(options.getSuggestCacheSize(), options.getSuggestCacheBytes(),
+				SuggestionCachingContactService::weigh), options.getSuggestCacheTtl());
+	}
+
+	/**
+	 * Constructs a suggestion caching wrapper around a contact service.
+	 *
+	 * @param delegate
+	 * 		Service to cache suggestions of.
+	 * @param cache
+	 * 		Cache to hold suggestions in.
+	 * @param ttl
+	 * 		Time in milliseconds that suggestions are cached for.
+	 */
+	public SuggestionCachingContactService(ContactService delegate, BoundedCache<String, List<String>> cache,
+										   long ttl) {
+		super(delegate);
+		this.cache = cache;
+		this.ttl = ttl;
+	}
+
+	@Override
+	public void add(Contact contact) throws DuplicateContactException {
+		try {
+			delegate.add(contact);
+		} finally {
+			invalidate();
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> addAsync(Contact contact) {
+		return delegate.addAsync(contact).whenComplete((result, error) -> invalidate());
+	}
+
+	@Override
+	public List<ContactResult> addAll(Collection<Contact> contacts) {
+		try {
+			return delegate.addAll(contacts);
+		} finally {
+			invalidate();
+		}
+	}
+
+	@Override
+	public void delete(String name) throws MissingContactException {
+		try {
+			delegate.delete(name);
+		} finally {
+			invalidate();
+		}
+	}
+
+	@Override
+	public CompletableFuture<Void> deleteAsync(String name) {
+		return delegate.deleteAsync(name).whenComplete((result, error) -> invalidate());
+	}
+
+	@Override
+	public Contact update(Contact contact, Predicate<Contact> precondition) throws MissingContactException {
+		try {
+			return delegate.update(contact, precondition);
+		} finally {
+			invalidate();
+		}
+	}
+
+	@Override
+	public CompletableFuture<Contact> updateAsync(Contact contact, Predicate<Contact> precondition) {
+		return delegate.updateAsync(contact, precondition).whenComplete((result, error) -> invalidate());
+	}
+
+	@Override
+	public List<String> suggest(String prefix, int limit) {
+		String key = key(prefix, limit);
+		List<String> cached = cache.get(key);
+		if (cached != null)
+			return cached;
+		long stamp = cache.stamp();
+		List<String> suggestions = delegate.suggest(prefix, limit);
+		cache.put(key, Collections.unmodifiableList(suggestions), ttl, TimeUnit.MILLISECONDS, stamp);
+		return suggestions;
+	}
+
+	@Override
+	public CompletableFuture<List<String>> suggestAsync(String prefix, int limit) {
+		String key = key(prefix, limit);
+		List<String> cached = cache.get(key);
+		if (cached != null)
+			return CompletableFuture.completedFuture(cached);
+		long stamp = cache.stamp();
+		return delegate.suggestAsync(prefix, limit).whenComplete((suggestions, error) -> {
+			if (suggestions != null)
+				cache.put(key, Collections.unmodifiableList(suggestions), ttl, TimeUnit.MILLISECONDS, stamp);
+		});
+	}
+
+	/**
+	 * @return Backing cache, exposing the hit, miss and eviction counts.
+	 */
+	public BoundedCache<String, List<String>> getCache() {
+		return cache;
+	}
+
+	private void invalidate() {
+		cache.invalidateAll();
+	}
+
+	private static String key(String prefix, int limit) {
+		return limit + ":" + prefix;
+	}
+
+	/**
+	 * @param suggestions
+	 * 		Cached suggestions.
+	 *
+	 * @return Estimated size of the suggestions in bytes.
+	 */
+	private static long weigh(List<String> suggestions) {
+		long size = 2 * OBJECT_BYTES;
+		for(String name : suggestions)
+			size += OBJECT_BYTES + 2L * name.length();
+		return size;
+	}
+}
@@ -0,0 +1,183 @@
+package me.coley.addressbook.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Gson reader that takes each token from a Jackson parser, so the Gson type adapters, and the validation
+ * in the model constructors they call, read binary formats such as CBOR the same way as JSON.
+ */
+class BinaryJsonReader extends JsonReader {
+	private final JsonParser parser;
+	// Current token, not yet consumed. Null when the next token has not been read yet
+	private com.fasterxml.jackson.core.JsonToken current;
+	private boolean ended;
+
+	/**
+	 * @param parser
+	 * 		Parser to read tokens from.
+	 */
+	BinaryJsonReader(JsonParser parser) {
+		super(new UnsupportedReader());
+		this.parser = parser;
+	}
+
+	@Override
+	public void beginArray() throws IOException {
+		expect(JsonToken.BEGIN_ARRAY);
+	}
+
+	@Override
+	public void endArray() throws IOException {
+		expect(JsonToken.END_ARRAY);
+	}
+
+	@Override
+	public void beginObject() throws IOException {
+		expect(JsonToken.BEGIN_OBJECT);
+	}
+
+	@Override
+	public void endObject() throws IOException {
+		expect(JsonToken.END_OBJECT);
+	}
+
+	@Override
+	public boolean hasNext() throws IOException {
+		JsonToken token = peek();
+		return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+	}
+
+	@Override
+	public JsonToken peek() throws IOException {
+		if (current == null && !ended) {
+			current = parser.nextToken();
+			ended = current == null;
+		}
+		if (ended)
+			return JsonToken.END_DOCUMENT;
+		switch(current) {
+			case START_OBJECT:
+				return JsonToken.BEGIN_OBJECT;
+			case END_OBJECT:
+				return JsonToken.END_OBJECT;
+			case START_ARRAY:
+				return JsonToken.BEGIN_ARRAY;
+			case END_ARRAY:
+				return JsonToken.END_ARRAY;
+			case FIELD_NAME:
+				return JsonToken.NAME;
+			case VALUE_NUMBER_INT:
+			case VALUE_NUMBER_FLOAT:
+				return JsonToken.NUMBER;
+			case VALUE_TRUE:
+			case VALUE_FALSE:
+				return JsonToken.BOOLEAN;
+			case VALUE_NULL:
+				return JsonToken.NULL;
+			default:
+				return JsonToken.STRING;
+		}
+	}
+
+	@Override
+	public String nextName() throws IOException {
+		expect(JsonToken.NAME);
+		return parser.getCurrentName();
+	}
+
+	@Override
+	public String nextString() throws IOException {
+		JsonToken token = peek();
+		if (token != JsonToken.STRING && token != JsonToken.NUMBER)
+			throw unexpected(JsonToken.STRING, token);
+		current = null;
+		return parser.getText();
+	}
+
+	@Override
+	public boolean nextBoolean() throws IOException {
+		expect(JsonToken.BOOLEAN);
+		return parser.getBooleanValue();
+	}
+
+	@Override
+	public void nextNull() throws IOException {
+		expect(JsonToken.NULL);
+	}
+
+	@Override
+	public double nextDouble() throws IOException {
+		return Double.parseDouble(nextNumber());
+	}
+
+	@Override
+	public long nextLong() throws IOException {
+		return Long.parseLong(nextNumber());
+	}
+
+	@Override
+	public int nextInt() throws IOException {
+		return Integer.parseInt(nextNumber());
+	}
+
+	@Override
+	public void skipValue() throws IOException {
+		peek();
+		if (!ended)
+			parser.skipChildren();
+		current = null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		parser.close();
+	}
+
+	@Override
+	public String getPath() {
+		return parser.getParsingContext().toString();
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " at " + getPath();
+	}
+
+	private String nextNumber() throws IOException {
+		JsonToken token = peek();
+		if (token != JsonToken.NUMBER && token != JsonToken.STRING)
+			throw unexpected(JsonToken.NUMBER, token);
+		current = null;
+		// Parsed from text, so numbers given as strings are read as the JSON reader reads them
+		return parser.getText();
+	}
+
+	private void expect(JsonToken expected) throws IOException {
+		JsonToken token = peek();
+		if (token != expected)
+			throw unexpected(expected, token);
+		current = null;
+	}
+
+	private IllegalStateException unexpected(JsonToken expected, JsonToken actual) {
+		return new IllegalStateException("Expected " + expected + " but was " + actual + " at " + getPath());
+	}
+
+	/**
+	 * Stand-in for the text source the base reader requires, which is never read from.
+	 */
+	private static class UnsupportedReader extends Reader {
+		@Override
+		public int read(char[] buffer, int offset, int length) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void close() {}
+	}
+}
@@ -0,0 +1,167 @@
+package me.coley.addressbook.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Gson writer that passes each token on to a Jackson generator, so the Gson type adapters can write
+ * binary formats such as CBOR without building the JSON first.
+ */
+class BinaryJsonWriter extends JsonWriter {
+	private final JsonGenerator generator;
+	// Name of the next value, held back in case the value is null and nulls are not written
+	private String deferredName;
+
+	/**
+	 * @param generator
+	 * 		Generator to write tokens to.
+	 */
+	BinaryJsonWriter(JsonGenerator generator) {
+		super(new UnsupportedWriter());
+		this.generator = generator;
+	}
+
+	@Override
+	public JsonWriter beginArray() throws IOException {
+		writeDeferredName();
+		generator.writeStartArray();
+		return this;
+	}
+
+	@Override
+	public JsonWriter endArray() throws IOException {
+		generator.writeEndArray();
+		return this;
+	}
+
+	@Override
+	public JsonWriter beginObject() throws IOException {
+		writeDeferredName();
+		generator.writeStartObject();
+		return this;
+	}
+
+	@Override
+	public JsonWriter endObject() throws IOException {
+		generator.writeEndObject();
+		return this;
+	}
+
+	@Override
+	public JsonWriter name(String name) throws IOException {
+		if (name == null)
+			throw new NullPointerException("name == null");
+		if (deferredName != null)
+			throw new IllegalStateException("Name already given: " + deferredName);
+		deferredName = name;
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(String value) throws IOException {
+		if (value == null)
+			return nullValue();
+		writeDeferredName();
+		generator.writeString(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter jsonValue(String value) {
+		throw new UnsupportedOperationException("Raw JSON cannot be written to a binary format");
+	}
+
+	@Override
+	public JsonWriter nullValue() throws IOException {
+		if (deferredName != null && !getSerializeNulls()) {
+			// Skip the name along with the value, as the JSON writer does
+			deferredName = null;
+			return this;
+		}
+		writeDeferredName();
+		generator.writeNull();
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(boolean value) throws IOException {
+		writeDeferredName();
+		generator.writeBoolean(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(Boolean value) throws IOException {
+		if (value == null)
+			return nullValue();
+		return value(value.booleanValue());
+	}
+
+	@Override
+	public JsonWriter value(double value) throws IOException {
+		writeDeferredName();
+		generator.writeNumber(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(long value) throws IOException {
+		writeDeferredName();
+		generator.writeNumber(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(Number value) throws IOException {
+		if (value == null)
+			return nullValue();
+		writeDeferredName();
+		if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)
+			generator.writeNumber(value.longValue());
+		else if (value instanceof BigInteger)
+			generator.writeNumber((BigInteger) value);
+		else if (value instanceof BigDecimal)
+			generator.writeNumber((BigDecimal) value);
+		else
+			generator.writeNumber(value.doubleValue());
+		return this;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		generator.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		generator.close();
+	}
+
+	private void writeDeferredName() throws IOException {
+		if (deferredName != null) {
+			generator.writeFieldName(deferredName);
+			deferredName = null;
+		}
+	}
+
+	/**
+	 * Stand-in for the text destination the base writer requires, which is never written to.
+	 */
+	private static class UnsupportedWriter extends Writer {
+		@Override
+		public void write(char[] buffer, int offset, int length) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void flush() {}
+
+		@Override
+		public void close() {}
+	}
+}
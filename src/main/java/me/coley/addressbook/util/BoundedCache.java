@@ -0,0 +1,358 @@
+package me.coley.addressbook.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Least-recently-used cache, bounded by both the number of entries and their estimated size.
+ * Each entry expires after its own time-to-live.
+ * <br>
+ * Keys are spread over segments, each with its own lock and an equal share of the bounds, so lookups of
+ * different keys rarely wait on each other. Small caches have a single segment, and so are exactly
+ * least-recently-used.
+ * <br>
+ * Writes, which are {@link #put(Object, Object, long, TimeUnit) puts} and invalidations, are stamped per key.
+ * A value read from a backing store is cached with {@link #put(Object, Object, long, TimeUnit, long)} and the
+ * {@link #stamp() stamp} from before the read, so a read that raced with a write to the same key does not cache
+ * what it read. Writes to other keys do not affect it. Removed keys keep their stamp for as long as the segment
+ * has room for them, after which the segment conservatively assumes they were written at the latest stamp it
+ * forgot.
+ *
+ * @param <K>
+ * 		Key type.
+ * @param <V>
+ * 		Value type.
+ */
+public class BoundedCache<K, V> {
+	// Most segments a cache is split into, and fewest entries worth a segment of their own
+	private static final int MAX_SEGMENTS = 16;
+	private static final int MIN_SEGMENT_ENTRIES = 64;
+	private final Segment[] segments;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+	private final AtomicLong writes = new AtomicLong();
+	private final ToLongFunction<V> weigher;
+	private final LongSupplier ticker;
+
+	/**
+	 * Constructs a cache.
+	 *
+	 * @param maxEntries
+	 * 		Maximum number of entries.
+	 * @param maxBytes
+	 * 		Maximum estimated size of all values, in bytes.
+	 * @param weigher
+	 * 		Function estimating the size of a value, in bytes.
+	 */
+	public BoundedCache(int maxEntries, long maxBytes, ToLongFunction<V> weigher) {
+		this(maxEntries, maxBytes, weigher, System::nanoTime);
+	}
+
+	/**
+	 * Constructs a cache.
+	 *
+	 * @param maxEntries
+	 * 		Maximum number of entries.
+	 * @param maxBytes
+	 * 		Maximum estimated size of all values, in bytes.
+	 * @param weigher
+	 * 		Function estimating the size of a value, in bytes.
+	 * @param ticker
+	 * 		Source of the current time, in nanoseconds.
+	 */
+	@SuppressWarnings("unchecked")
+	public BoundedCache(int maxEntries, long maxBytes, ToLongFunction<V> weigher, LongSupplier ticker) {
+		this.weigher = weigher;
+		this.ticker = ticker;
+		int entries = Math.max(0, maxEntries);
+		int count = 1;
+		while(count < MAX_SEGMENTS && entries / (count * 2) >= MIN_SEGMENT_ENTRIES)
+			count *= 2;
+		// Bounds are shared out evenly, the remainder going to the first segments
+		segments = (Segment[]) new BoundedCache.Segment[count];
+		for(int i = 0; i < count; i++)
+			segments[i] = new Segment(entries / count + (i < entries % count ? 1 : 0),
+					maxBytes / count + (i < maxBytes % count ? 1 : 0));
+	}
+
+	/**
+	 * @param key
+	 * 		Key to look up.
+	 *
+	 * @return Cached value, or {@code null} if there is no live entry for the key.
+	 */
+	public V get(K key) {
+		return segment(key).get(key);
+	}
+
+	/**
+	 * @return Write stamp, to take before reading a value to cache from a backing store.
+	 */
+	public long stamp() {
+		return writes.get();
+	}
+
+	/**
+	 * Cache a value read from a backing store, unless the key was written while it was being read.
+	 *
+	 * @param key
+	 * 		Key of the value.
+	 * @param value
+	 * 		Value to cache.
+	 * @param ttl
+	 * 		Time the value stays valid for.
+	 * @param unit
+	 * 		Unit of the time-to-live.
+	 * @param stamp
+	 * 		{@link #stamp() Write stamp} from before the value was read.
+	 *
+	 * @return {@code true} if the key was not written since the stamp was taken, so the value was cached.
+	 */
+	public boolean put(K key, V value, long ttl, TimeUnit unit, long stamp) {
+		return segment(key).put(key, value, ttl, unit, stamp);
+	}
+
+	/**
+	 * Cache a value that was just written, evicting the least recently used entries if the cache is full.
+	 * Values larger than a segment's share of the cache are not stored.
+	 *
+	 * @param key
+	 * 		Key of the value.
+	 * @param value
+	 * 		Value to cache.
+	 * @param ttl
+	 * 		Time the value stays valid for.
+	 * @param unit
+	 * 		Unit of the time-to-live.
+	 */
+	public void put(K key, V value, long ttl, TimeUnit unit) {
+		segment(key).put(key, value, ttl, unit);
+	}
+
+	/**
+	 * @param key
+	 * 		Key of the entry to remove.
+	 */
+	public void invalidate(K key) {
+		segment(key).invalidate(key);
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public void invalidateAll() {
+		long written = writes.incrementAndGet();
+		for(Segment segment : segments)
+			segment.clear(written);
+	}
+
+	/**
+	 * @return Number of entries, including expired entries that have not been cleaned up yet.
+	 */
+	public int size() {
+		int size = 0;
+		for(Segment segment : segments)
+			size += segment.size();
+		return size;
+	}
+
+	/**
+	 * @return Estimated size of all values, in bytes.
+	 */
+	public long bytes() {
+		long bytes = 0;
+		for(Segment segment : segments)
+			bytes += segment.bytes();
+		return bytes;
+	}
+
+	/**
+	 * @return Number of lookups that found a live entry.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return Number of lookups that found no live entry.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return Number of entries removed to keep the cache within its bounds.
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return Number of entries removed because their time-to-live passed.
+	 */
+	public long getExpirationCount() {
+		return expirations.sum();
+	}
+
+	private Segment segment(K key) {
+		int hash = key.hashCode();
+		return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+	}
+
+	/**
+	 * Part of the cache, holding the keys that hash to it.
+	 */
+	private class Segment {
+		// Access-ordered, so iteration starts at the least recently used entry
+		private final LinkedHashMap<K, Entry<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+		// Write stamps of keys without an entry, oldest first
+		private final LinkedHashMap<K, Long> removed = new LinkedHashMap<>();
+		private final int maxEntries;
+		private final long maxBytes;
+		private long bytes;
+		// Latest write stamp of any key that is no longer remembered
+		private long floor;
+
+		private Segment(int maxEntries, long maxBytes) {
+			this.maxEntries = maxEntries;
+			this.maxBytes = maxBytes;
+		}
+
+		private synchronized V get(K key) {
+			Entry<V> entry = map.get(key);
+			if (entry == null) {
+				misses.increment();
+				return null;
+			}
+			if (entry.expiresAt - ticker.getAsLong() <= 0) {
+				map.remove(key);
+				forget(key, entry);
+				expirations.increment();
+				misses.increment();
+				return null;
+			}
+			hits.increment();
+			return entry.value;
+		}
+
+		private synchronized boolean put(K key, V value, long ttl, TimeUnit unit, long stamp) {
+			long written = written(key);
+			if (written > stamp)
+				return false;
+			store(key, value, ttl, unit, written);
+			return true;
+		}
+
+		private synchronized void put(K key, V value, long ttl, TimeUnit unit) {
+			store(key, value, ttl, unit, writes.incrementAndGet());
+		}
+
+		private synchronized void invalidate(K key) {
+			Entry<V> entry = map.remove(key);
+			if (entry != null)
+				bytes -= entry.weight;
+			remember(key, writes.incrementAndGet());
+		}
+
+		private synchronized void clear(long written) {
+			map.clear();
+			removed.clear();
+			bytes = 0;
+			floor = Math.max(floor, written);
+		}
+
+		private synchronized int size() {
+			return map.size();
+		}
+
+		private synchronized long bytes() {
+			return bytes;
+		}
+
+		/**
+		 * @param key
+		 * 		Key to check.
+		 *
+		 * @return Stamp of the latest write to the key, or a later stamp if the key is no longer remembered.
+		 */
+		private long written(K key) {
+			Entry<V> entry = map.get(key);
+			if (entry != null)
+				return entry.written;
+			Long written = removed.get(key);
+			return written != null ? written : floor;
+		}
+
+		private void store(K key, V value, long ttl, TimeUnit unit, long written) {
+			long weight = weigher.applyAsLong(value);
+			Entry<V> old = map.remove(key);
+			if (old != null)
+				bytes -= old.weight;
+			removed.remove(key);
+			if (weight > maxBytes || maxEntries <= 0) {
+				remember(key, written);
+				return;
+			}
+			map.put(key, new Entry<>(value, weight, ticker.getAsLong() + unit.toNanos(ttl), written));
+			bytes += weight;
+			// Evict from the least recently used end until within bounds
+			Iterator<Map.Entry<K, Entry<V>>> it = map.entrySet().iterator();
+			while((map.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+				Map.Entry<K, Entry<V>> eldest = it.next();
+				it.remove();
+				forget(eldest.getKey(), eldest.getValue());
+				evictions.increment();
+			}
+		}
+
+		/**
+		 * Drops an entry already removed from the map, keeping the stamp of its key.
+		 */
+		private void forget(K key, Entry<V> entry) {
+			bytes -= entry.weight;
+			remember(key, entry.written);
+		}
+
+		/**
+		 * Keeps the stamp of a key without an entry, forgetting the oldest stamps beyond the segment's bounds.
+		 */
+		private void remember(K key, long written) {
+			removed.remove(key);
+			removed.put(key, written);
+			Iterator<Long> it = removed.values().iterator();
+			while(removed.size() > maxEntries && it.hasNext()) {
+				floor = Math.max(floor, it.next());
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Cached value and its bookkeeping.
+	 *
+	 * @param <V>
+	 * 		Value type.
+	 */
+	private static class Entry<V> {
+		private final V value;
+		private final long weight;
+		private final long expiresAt;
+		// Stamp of the latest write to the key
+		private final long written;
+
+		private Entry(V value, long weight, long expiresAt, long written) {
+			this.value = value;
+			this.weight = weight;
+			this.expiresAt = expiresAt;
+			this.written = written;
+		}
+	}
+}
@@ -0,0 +1,195 @@
+package me.coley.addressbook.util;
+
+import me.coley.addressbook.exception.ServiceUnavailableException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Stops calls to a failing backend, so callers fail fast rather than each waiting on a dead connection.
+ * <ul>
+ * <li>{@link State#CLOSED Closed}: calls pass, and the outcome of the last calls is kept in a sliding window.
+ * Once the window is full, and the share of failed or slow calls in it reaches its threshold, the breaker opens.</li>
+ * <li>{@link State#OPEN Open}: calls are refused for the open duration.</li>
+ * <li>{@link State#HALF_OPEN Half-open}: a few probe calls are let through. If they all succeed in time the
+ * breaker closes, otherwise it opens again.</li>
+ * </ul>
+ * Calls started before the last change of state do not count towards the new state, so a burst of calls
+ * that failed together only opens the breaker once.
+ */
+public class CircuitBreaker {
+	// Calls let through while half-open, all of which must succeed to close again
+	private static final int PROBES = 3;
+	// Outcome flags of a call
+	private static final byte FAILED = 1;
+	private static final byte SLOW = 2;
+	private final LongAdder rejected = new LongAdder();
+	private final int window;
+	private final int failureRate;
+	private final long slowCall;
+	private final int slowRate;
+	private final long openTime;
+	private final LongSupplier ticker;
+	// Outcomes of the last calls while closed, each a combination of FAILED and SLOW. Guarded by this
+	private final byte[] outcomes;
+	private int next;
+	private int recorded;
+	private int failures;
+	private int slowCalls;
+	private State state = State.CLOSED;
+	private long changedAt;
+	private int probes;
+	private int probeSuccesses;
+
+	/**
+	 * Constructs a circuit breaker.
+	 *
+	 * @param window
+	 * 		Number of recent calls the failure and slow call rates are taken over.
+	 * @param failureRate
+	 * 		Percentage of failed calls in the window that opens the breaker.
+	 * @param slowCall
+	 * 		Time in milliseconds after which a call counts as slow.
+	 * @param slowRate
+	 * 		Percentage of slow calls in the window that opens the breaker.
+	 * @param openTime
+	 * 		Time in milliseconds the breaker stays open before probing the backend.
+	 */
+	public CircuitBreaker(int window, int failureRate, long slowCall, int slowRate, long openTime) {
+		this(window, failureRate, slowCall, slowRate, openTime, System::nanoTime);
+	}
+
+	/**
+	 * Constructs a circuit breaker.
+	 *
+	 * @param window
+	 * 		Number of recent calls the failure and slow call rates are taken over.
+	 * @param failureRate
+	 * 		Percentage of failed calls in the window that opens the breaker.
+	 * @param slowCall
+	 * 		Time in milliseconds after which a call counts as slow.
+	 * @param slowRate
+	 * 		Percentage of slow calls in the window that opens the breaker.
+	 * @param openTime
+	 * 		Time in milliseconds the breaker stays open before probing the backend.
+	 * @param ticker
+	 * 		Source of the current time, in nanoseconds.
+	 */
+	public CircuitBreaker(int window, int failureRate, long slowCall, int slowRate, long openTime,
+						  LongSupplier ticker) {
+		if (window < 1)
+			throw new IllegalArgumentException("Window must hold at least 1 call");
+		this.window = window;
+		this.failureRate = failureRate;
+		this.slowCall = TimeUnit.MILLISECONDS.toNanos(slowCall);
+		this.slowRate = slowRate;
+		this.openTime = TimeUnit.MILLISECONDS.toNanos(openTime);
+		this.ticker = ticker;
+		this.outcomes = new byte[window];
+		this.changedAt = ticker.getAsLong();
+	}
+
+	/**
+	 * Let a call through. Every call let through must be {@link #stop(long, boolean) stopped}.
+	 *
+	 * @return Start time, to pass to {@link #stop(long, boolean)}.
+	 *
+	 * @throws ServiceUnavailableException
+	 * 		When the breaker is open, or all probes are already taken.
+	 */
+	public synchronized long start() throws ServiceUnavailableException {
+		long now = ticker.getAsLong();
+		if (state == State.OPEN && now - changedAt >= openTime)
+			transition(State.HALF_OPEN, now);
+		if (state == State.OPEN || (state == State.HALF_OPEN && probes >= PROBES)) {
+			rejected.increment();
+			long remaining = state == State.OPEN ? openTime - (now - changedAt) : 0;
+			// Rounded up, so clients do not retry before the breaker probes again
+			long retryAfter = Math.max(1, (TimeUnit.NANOSECONDS.toMillis(remaining) + 999) / 1000);
+			throw new ServiceUnavailableException("Backend is unavailable, retry later", retryAfter);
+		}
+		if (state == State.HALF_OPEN)
+			probes++;
+		return now;
+	}
+
+	/**
+	 * Record the outcome of a call.
+	 *
+	 * @param start
+	 * 		Start time of the call.
+	 * @param failed
+	 * 		{@code true} if the call failed in a way that signals the backend is unhealthy.
+	 */
+	public synchronized void stop(long start, boolean failed) {
+		long now = ticker.getAsLong();
+		if (start - changedAt < 0)
+			return;
+		boolean slow = now - start > slowCall;
+		if (state == State.HALF_OPEN) {
+			if (failed || slow)
+				transition(State.OPEN, now);
+			else if (++probeSuccesses >= PROBES)
+				transition(State.CLOSED, now);
+		} else if (state == State.CLOSED) {
+			record((byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0)));
+			if (recorded == window &&
+					(failures * 100 >= failureRate * window || slowCalls * 100 >= slowRate * window))
+				transition(State.OPEN, now);
+		}
+	}
+
+	/**
+	 * @return Current state. An open breaker past its open duration reports open until the next call probes.
+	 */
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * @return Total calls refused.
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	private void record(byte outcome) {
+		if (recorded == window) {
+			byte evicted = outcomes[next];
+			if ((evicted & FAILED) != 0)
+				failures--;
+			if ((evicted & SLOW) != 0)
+				slowCalls--;
+		} else {
+			recorded++;
+		}
+		outcomes[next] = outcome;
+		next = (next + 1) % window;
+		if ((outcome & FAILED) != 0)
+			failures++;
+		if ((outcome & SLOW) != 0)
+			slowCalls++;
+	}
+
+	private void transition(State state, long now) {
+		this.state = state;
+		changedAt = now;
+		probes = 0;
+		probeSuccesses = 0;
+		// A closed breaker starts over, so the failures that opened it do not open it again
+		next = 0;
+		recorded = 0;
+		failures = 0;
+		slowCalls = 0;
+	}
+
+	/**
+	 * State of a circuit breaker.
+	 */
+	public enum State {
+		CLOSED,
+		OPEN,
+		HALF_OPEN
+	}
+}
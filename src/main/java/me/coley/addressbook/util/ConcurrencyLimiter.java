@@ -0,0 +1,252 @@
+package me.coley.addressbook.util;
+
+import me.coley.addressbook.exception.ServiceUnavailableException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive limit on the requests in flight, so an overloaded backend sheds requests quickly rather than
+ * queueing them until they all time out.
+ * <br>
+ * The limit is found by additive increase, multiplicative decrease: every request completing within the
+ * latency target grows the limit by {@code 1 / limit}, about one per full round of requests, while a slow or
+ * failed request multiplies it by {@value #BACKOFF}. Requests over the limit wait in a bounded queue, and are
+ * refused once the queue is full or their wait runs out.
+ * <br>
+ * A waiting request parks the thread that called {@link #start(Priority)}, which is a server thread for
+ * requests, async or not, since they are admitted before their route runs. Keep the queue well below the size
+ * of the server's thread pool, and the wait short, or waiting requests take the threads admitted ones need.
+ * <br>
+ * {@link Priority#LOW Low priority} requests may only fill part of the limit, and never wait. As the limit
+ * shrinks they are refused first, leaving the remaining capacity to high priority requests.
+ */
+public class ConcurrencyLimiter {
+	private static final double BACKOFF = 0.9;
+	// Share of the limit that low priority requests may fill
+	private static final double LOW_PRIORITY_SHARE = 0.5;
+	private static final int MIN_LIMIT = 2;
+	// Seconds a refused client is told to wait, the limit adapts well within that
+	private static final long RETRY_AFTER = 1;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition released = lock.newCondition();
+	private final LongAdder rejected = new LongAdder();
+	private final int maxLimit;
+	private final long latencyTarget;
+	private final int maxQueue;
+	private final long maxWait;
+	private final LongSupplier ticker;
+	// Guarded by lock
+	private double limit;
+	private int inFlight;
+	private int queued;
+	private long lastDecrease;
+
+	/**
+	 * Constructs a limiter.
+	 *
+	 * @param initialLimit
+	 * 		Requests in flight allowed at the start, before the limit adapts.
+	 * @param maxLimit
+	 * 		Upper bound on the limit.
+	 * @param latencyTarget
+	 * 		Time in milliseconds a request may take before it counts as a sign of overload.
+	 * @param maxQueue
+	 * 		Maximum number of requests waiting for capacity.
+	 * @param maxWait
+	 * 		Time in milliseconds a request may wait for capacity.
+	 */
+	public ConcurrencyLimiter(int initialLimit, int maxLimit, long latencyTarget, int maxQueue, long maxWait) {
+		this(initialLimit, maxLimit, latencyTarget, maxQueue, maxWait, System::nanoTime);
+	}
+
+	/**
+	 * Constructs a limiter.
+	 *
+	 * @param initialLimit
+	 * 		Requests in flight allowed at the start, before the limit adapts.
+	 * @param maxLimit
+	 * 		Upper bound on the limit.
+	 * @param latencyTarget
+	 * 		Time in milliseconds a request may take before it counts as a sign of overload.
+	 * @param maxQueue
+	 * 		Maximum number of requests waiting for capacity.
+	 * @param maxWait
+	 * 		Time in milliseconds a request may wait for capacity.
+	 * @param ticker
+	 * 		Source of the current time, in nanoseconds.
+	 */
+	public ConcurrencyLimiter(int initialLimit, int maxLimit, long latencyTarget, int maxQueue, long maxWait,
+							  LongSupplier ticker) {
+		if (initialLimit < MIN_LIMIT || maxLimit < initialLimit)
+			throw new IllegalArgumentException("Limits must be at least " + MIN_LIMIT +
+					", and the initial limit must not exceed the maximum");
+		this.limit = initialLimit;
+		this.maxLimit = maxLimit;
+		this.latencyTarget = TimeUnit.MILLISECONDS.toNanos(latencyTarget);
+		this.maxQueue = maxQueue;
+		this.maxWait = TimeUnit.MILLISECONDS.toNanos(maxWait);
+		this.ticker = ticker;
+		this.lastDecrease = ticker.getAsLong();
+	}
+
+	/**
+	 * Admit a request, waiting for capacity on the calling thread if needed. Every admitted request must be
+	 * {@link #stop(long, boolean) stopped} or {@link #release() released}.
+	 *
+	 * @param priority
+	 * 		Priority of the request.
+	 *
+	 * @return Start time, to pass to {@link #stop(long, boolean)}.
+	 *
+	 * @throws ServiceUnavailableException
+	 * 		When the request is refused.
+	 */
+	public long start(Priority priority) throws ServiceUnavailableException {
+		lock.lock();
+		try {
+			if (inFlight < capacity(priority))
+				return admit();
+			// Low priority requests never wait, so they cannot hold up the queue for high priority ones
+			if (priority == Priority.LOW || queued >= maxQueue)
+				throw reject();
+			queued++;
+			try {
+				long remaining = maxWait;
+				while(inFlight >= capacity(priority)) {
+					if (remaining <= 0)
+						throw reject();
+					remaining = released.awaitNanos(remaining);
+				}
+				return admit();
+			} catch(InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw reject();
+			} finally {
+				queued--;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Complete an admitted request, adapting the limit to how it went.
+	 *
+	 * @param start
+	 * 		Start time of the request.
+	 * @param overloaded
+	 * 		{@code true} if the request failed in a way that signals overload, such as a backend timeout.
+	 */
+	public void stop(long start, boolean overloaded) {
+		long now = ticker.getAsLong();
+		lock.lock();
+		try {
+			if (overloaded || now - start > latencyTarget) {
+				// Requests admitted before the last decrease ran under the old limit, so a burst of slow requests
+				// only decreases the limit once
+				if (start - lastDecrease >= 0) {
+					limit = Math.max(MIN_LIMIT, limit * BACKOFF);
+					lastDecrease = now;
+				}
+			} else if (inFlight * 2 >= limit) {
+				// Only grown while half used, otherwise a quiet server would grow the limit without bound
+				limit = Math.min(maxLimit, limit + 1 / limit);
+			}
+			inFlight--;
+			released.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Complete an admitted request without adapting the limit, for requests whose duration depends on
+	 * the amount of data they handle rather than on load, such as streamed exports.
+	 */
+	public void release() {
+		lock.lock();
+		try {
+			inFlight--;
+			released.signal();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Current limit on requests in flight.
+	 */
+	public int getLimit() {
+		lock.lock();
+		try {
+			return (int) limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Admitted requests that have not been stopped.
+	 */
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Requests waiting for capacity.
+	 */
+	public int getQueued() {
+		lock.lock();
+		try {
+			return queued;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return Total requests refused.
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	private long admit() {
+		inFlight++;
+		return ticker.getAsLong();
+	}
+
+	private ServiceUnavailableException reject() {
+		rejected.increment();
+		return new ServiceUnavailableException("Server is over capacity, retry later", RETRY_AFTER);
+	}
+
+	private int capacity(Priority priority) {
+		int capacity = (int) limit;
+		// Always at least one, so low priority requests can still run and show the backend has recovered
+		return priority == Priority.LOW ? Math.max(1, (int) (capacity * LOW_PRIORITY_SHARE)) : capacity;
+	}
+
+	/**
+	 * Priority of a request when capacity runs short.
+	 */
+	public enum Priority {
+		/**
+		 * Cheap requests, such as lookups by name and writes, which may use the whole limit.
+		 */
+		HIGH,
+		/**
+		 * Expensive requests, such as listing and searching, which are refused first.
+		 */
+		LOW
+	}
+}
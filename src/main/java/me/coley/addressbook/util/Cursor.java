@@ -0,0 +1,47 @@
+package me.coley.addressbook.util;
+
+import com.google.gson.JsonParseException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static me.coley.addressbook.util.Json.fromJson;
+import static me.coley.addressbook.util.Json.toJson;
+
+/**
+ * Opaque pagination cursor utilities. A cursor holds the sort values of the last item of a page,
+ * so the next page can start directly after it.
+ */
+public class Cursor {
+	/**
+	 * @param sortValues
+	 * 		Sort values of the last item on a page.
+	 *
+	 * @return Cursor pointing after the item.
+	 */
+	public static String encode(Object[] sortValues) {
+		byte[] json = toJson(sortValues).getBytes(StandardCharsets.UTF_8);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+	}
+
+	/**
+	 * @param cursor
+	 * 		Cursor given by {@link #encode(Object[])}.
+	 *
+	 * @return Sort values of the item the cursor points after.
+	 *
+	 * @throws IllegalArgumentException
+	 * 		When the cursor is malformed.
+	 */
+	public static Object[] decode(String cursor) throws IllegalArgumentException {
+		try {
+			byte[] json = Base64.getUrlDecoder().decode(cursor);
+			Object[] values = fromJson(new String(json, StandardCharsets.UTF_8), Object[].class);
+			if (values == null || values.length == 0)
+				throw new IllegalArgumentException("Invalid cursor: " + cursor);
+			return values;
+		} catch(JsonParseException ex) {
+			throw new IllegalArgumentException("Invalid cursor: " + cursor);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package me.coley.addressbook.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * {@link CompletableFuture} utilities.
+ */
+public class Futures {
+	/**
+	 * Run a blocking call on the current thread, and wrap its outcome in a future.
+	 *
+	 * @param call
+	 * 		Call to run.
+	 * @param <T>
+	 * 		Type of call result.
+	 *
+	 * @return Future completed with the call's result, or completed exceptionally with what it threw.
+	 */
+	public static <T> CompletableFuture<T> supply(Callable<T> call) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			future.complete(call.call());
+		} catch(Exception ex) {
+			future.completeExceptionally(ex);
+		}
+		return future;
+	}
+
+	/**
+	 * @param error
+	 * 		Failure to complete the future with.
+	 * @param <T>
+	 * 		Type of future result.
+	 *
+	 * @return Future completed exceptionally with the given failure.
+	 */
+	public static <T> CompletableFuture<T> failed(Throwable error) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		future.completeExceptionally(error);
+		return future;
+	}
+
+	/**
+	 * @param error
+	 * 		Failure passed to a future's callback.
+	 *
+	 * @return The failure that was originally thrown, without the wrapping added by chained futures.
+	 */
+	public static Throwable unwrap(Throwable error) {
+		while((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null)
+			error = error.getCause();
+		return error;
+	}
+}
@@ -1,14 +1,28 @@
 package me.coley.addressbook.util;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSerializer;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import me.coley.addressbook.exception.ContactException;
 import me.coley.addressbook.model.Contact;
 import me.coley.addressbook.model.Phone;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,32 +31,18 @@ import java.util.List;
  */
 public class Json {
 	private static final Gson gson;
+	private static final Gson prettyGson;
 	static  {
 		GsonBuilder builder = new GsonBuilder();
-		// Register type for phone
+		// Register types for phone and contact
 		//  - need to specify using the given constructor so arguments can be validated & normalized
-		builder.registerTypeAdapter(Phone.class, (JsonDeserializer<Phone>) (json, type, context) -> {
-			JsonObject jsonObject = json.getAsJsonObject();
-			String phoneType   = jsonObject.has("type")   ? jsonObject.get("type").getAsString()   : null;
-			String phoneNumber = jsonObject.has("number") ? jsonObject.get("number").getAsString() : null;
-			return new Phone(phoneNumber, Phone.Type.valueOf(phoneType));
-		});
-		// Register type for contact
-		//  - need to specify using the given constructor so arguments can be validated
-		builder.registerTypeAdapter(Contact.class, (JsonDeserializer<Contact>) (json, type, context) -> {
-			JsonObject jsonObject = json.getAsJsonObject();
-			String contactName = jsonObject.has("name") ? jsonObject.get("name").getAsString() : null;
-			String contactAddress = jsonObject.has("address") ? jsonObject.get("address").getAsString() : null;
-			List<Phone> contactNumbers = new ArrayList<>();
-			if (jsonObject.has("numbers")) {
-				jsonObject.get("numbers").getAsJsonArray()
-						.forEach(element -> contactNumbers.add(fromJson(element.toString(), Phone.class)));
-			}
-			return new Contact(contactName, contactNumbers, contactAddress);
-		});
-		// Register type for contact
-		//  - need to specify using the given constructor so arguments can be validated
-		builder.registerTypeAdapter(Exception.class, (JsonSerializer<Exception>) (ex, type, context) -> {
+		//  - streamed token by token, so no intermediate tree is built for each contact
+		builder.registerTypeAdapter(Phone.class, new PhoneAdapter().nullSafe());
+		builder.registerTypeAdapter(Contact.class, new ContactAdapter().nullSafe());
+		// Register type for exceptions
+		//  - registered for the hierarchy so the runtime type of failure causes never falls back to
+		//    reflection, which cannot access Throwable's fields on newer JDKs
+		builder.registerTypeHierarchyAdapter(Exception.class, (JsonSerializer<Exception>) (ex, type, context) -> {
 			JsonObject jsonObject = new JsonObject();
 			jsonObject.addProperty("type", ex.getClass().getName());
 			jsonObject.addProperty("message", ex.getMessage());
@@ -50,11 +50,13 @@ public class Json {
 				jsonObject.addProperty("identity", ((ContactException) ex).getName());
 			return jsonObject;
 		});
-		gson = builder.setPrettyPrinting().create();
+		// Compact output for anything sent over the wire, pretty-printing is opt-in
+		gson = builder.create();
+		prettyGson = builder.setPrettyPrinting().create();
 	}
 
 	/**
-	 * Converts the given object to JSON text.
+	 * Converts the given object to compact JSON text.
 	 *
 	 * @param object
 	 * 		Object to convert.
@@ -65,6 +67,88 @@ public class Json {
 		return gson.toJson(object);
 	}
 
+	/**
+	 * Converts the given object to indented JSON text.
+	 *
+	 * @param object
+	 * 		Object to convert.
+	 *
+	 * @return Json representation of object.
+	 */
+	public static String toPrettyJson(Object object) {
+		return prettyGson.toJson(object);
+	}
+
+	/**
+	 * Writes the given object as JSON, without building the text in memory first.
+	 *
+	 * @param object
+	 * 		Object to convert.
+	 * @param writer
+	 * 		Destination of the JSON.
+	 * @param pretty
+	 *        {@code true} to indent the JSON, {@code false} for compact JSON.
+	 *
+	 * @throws IOException
+	 * 		When the writer could not be written to.
+	 */
+	public static void write(Object object, Writer writer, boolean pretty) throws IOException {
+		try {
+			(pretty ? prettyGson : gson).toJson(object, writer);
+		} catch(JsonIOException ex) {
+			throw new IOException(ex.getMessage(), ex.getCause());
+		}
+	}
+
+	/**
+	 * Writes the given object in the given format, without building the content in memory first.
+	 *
+	 * @param object
+	 * 		Object to convert.
+	 * @param out
+	 * 		Destination of the content. Is flushed, but not closed.
+	 * @param format
+	 * 		Format to write.
+	 * @param pretty
+	 *        {@code true} to indent JSON, {@code false} for compact JSON. Binary formats are always compact.
+	 *
+	 * @throws IOException
+	 * 		When the stream could not be written to.
+	 */
+	public static void write(Object object, OutputStream out, WireFormat format, boolean pretty) throws IOException {
+		if (format == WireFormat.JSON) {
+			// Buffered, since the JSON is written in many small pieces and the encoder is slow for each one
+			Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+			write(object, writer, pretty);
+			writer.flush();
+			return;
+		}
+		JsonGenerator generator = format.getFactory().createGenerator(out);
+		try {
+			// Same type adapters as JSON, with the tokens encoded by the generator instead
+			gson.toJson(object, object == null ? Object.class : object.getClass(), new BinaryJsonWriter(generator));
+		} catch(JsonIOException ex) {
+			throw new IOException(ex.getMessage(), ex.getCause());
+		}
+		generator.flush();
+	}
+
+	/**
+	 * Writes the given object as a single line of JSON, followed by a line break.
+	 *
+	 * @param object
+	 * 		Object to convert.
+	 * @param writer
+	 * 		Destination of the JSON line.
+	 *
+	 * @throws IOException
+	 * 		When the writer could not be written to.
+	 */
+	public static void writeLine(Object object, Writer writer) throws IOException {
+		write(object, writer, false);
+		writer.write('\n');
+	}
+
 	/**
 	 * Converts the given JSON text to the given type.
 	 *
@@ -80,4 +164,152 @@ public class Json {
 	public static <T> T fromJson(String json, Class<T> type) {
 		return gson.fromJson(json, type);
 	}
+
+	/**
+	 * Converts the given JSON tree to the given type.
+	 *
+	 * @param json
+	 * 		Json tree respresenting an object.
+	 * @param type
+	 * 		Class type of object.
+	 * @param <T>
+	 * 		Generic type of object.
+	 *
+	 * @return Instance generated from json.
+	 */
+	public static <T> T fromJson(JsonElement json, Class<T> type) {
+		return gson.fromJson(json, type);
+	}
+
+	/**
+	 * Converts the given content to the given type.
+	 *
+	 * @param content
+	 * 		Content representing an object.
+	 * @param format
+	 * 		Format of the content.
+	 * @param type
+	 * 		Class type of object.
+	 * @param <T>
+	 * 		Generic type of object.
+	 *
+	 * @return Instance generated from the content.
+	 *
+	 * @throws JsonSyntaxException
+	 * 		When the content is malformed.
+	 */
+	public static <T> T read(byte[] content, WireFormat format, Class<T> type) throws JsonSyntaxException {
+		if (format == WireFormat.JSON)
+			return fromJson(new String(content, StandardCharsets.UTF_8), type);
+		try (JsonParser parser = format.getFactory().createParser(content)) {
+			// Same type adapters as JSON, so the model constructors validate binary content too
+			return gson.fromJson(new BinaryJsonReader(parser), type);
+		} catch(IOException ex) {
+			throw new JsonSyntaxException(ex);
+		}
+	}
+
+	/**
+	 * Streaming adapter for {@link Phone}, reading fields straight from the token stream.
+	 */
+	private static class PhoneAdapter extends TypeAdapter<Phone> {
+		@Override
+		public void write(JsonWriter out, Phone phone) throws IOException {
+			out.beginObject();
+			out.name("number").value(phone.getNumber());
+			out.name("type").value(phone.getType().name());
+			out.endObject();
+		}
+
+		@Override
+		public Phone read(JsonReader in) throws IOException {
+			String phoneNumber = null;
+			String phoneType = null;
+			in.beginObject();
+			while(in.hasNext()) {
+				switch(in.nextName()) {
+					case "number":
+						phoneNumber = nextStringOrNull(in);
+						break;
+					case "type":
+						phoneType = nextStringOrNull(in);
+						break;
+					default:
+						in.skipValue();
+						break;
+				}
+			}
+			in.endObject();
+			return new Phone(phoneNumber, Phone.Type.valueOf(phoneType));
+		}
+	}
+
+	/**
+	 * Streaming adapter for {@link Contact}, reading fields straight from the token stream.
+	 */
+	private static class ContactAdapter extends TypeAdapter<Contact> {
+		private final PhoneAdapter phoneAdapter = new PhoneAdapter();
+
+		@Override
+		public void write(JsonWriter out, Contact contact) throws IOException {
+			out.beginObject();
+			out.name("name").value(contact.getName());
+			out.name("address").value(contact.getAddress());
+			out.name("numbers").beginArray();
+			for(Phone phone : contact.getNumbers())
+				phoneAdapter.write(out, phone);
+			out.endArray();
+			out.endObject();
+		}
+
+		@Override
+		public Contact read(JsonReader in) throws IOException {
+			String contactName = null;
+			String contactAddress = null;
+			List<Phone> contactNumbers = new ArrayList<>();
+			in.beginObject();
+			while(in.hasNext()) {
+				switch(in.nextName()) {
+					case "name":
+						contactName = nextStringOrNull(in);
+						break;
+					case "address":
+						contactAddress = nextStringOrNull(in);
+						break;
+					case "numbers":
+						if (in.peek() == JsonToken.NULL) {
+							in.nextNull();
+							break;
+						}
+						in.beginArray();
+						while(in.hasNext())
+							contactNumbers.add(phoneAdapter.read(in));
+						in.endArray();
+						break;
+					default:
+						in.skipValue();
+						break;
+				}
+			}
+			in.endObject();
+			return new Contact(contactName, contactNumbers, contactAddress);
+		}
+	}
+
+	/**
+	 * @param in
+	 * 		Reader positioned at a value.
+	 *
+	 * @return The value as text, or {@code null} for a JSON null, which the model constructors then reject.
+	 *
+	 * @throws IOException
+	 * 		When the value could not be read.
+	 */
+	private static String nextStringOrNull(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		return in.nextString();
+	}
 }
@@ -0,0 +1,172 @@
+package me.coley.addressbook.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+/**
+ * Gathers single key loads into batches, so many loads share one request to the backing store.
+ * A batch is sent once it has been open for the batch window, or once it holds the maximum number
+ * of keys, whichever comes first. Loads of a key already in the open batch share its result.
+ *
+ * @param <K>
+ * 		Key type.
+ * @param <V>
+ * 		Value type.
+ */
+public class MicroBatcher<K, V> implements AutoCloseable {
+	// Batch sizes are counted in power of two buckets, the last bucket holds sizes of 2^30 and up
+	private static final int BUCKETS = 31;
+	private final Function<Set<K>, CompletableFuture<Map<K, V>>> loader;
+	private final long windowNanos;
+	private final int maxSize;
+	private final ScheduledExecutorService scheduler;
+	private final AtomicLongArray sizes = new AtomicLongArray(BUCKETS);
+	private final AtomicLong batches = new AtomicLong();
+	private final AtomicLong keys = new AtomicLong();
+	// Open batch, guarded by this
+	private Map<K, CompletableFuture<V>> open = new LinkedHashMap<>();
+
+	/**
+	 * @param loader
+	 * 		Loads a batch of keys. Keys with no value are absent from the result.
+	 * @param window
+	 * 		Time a batch is open for before it is sent.
+	 * @param unit
+	 * 		Unit of the window.
+	 * @param maxSize
+	 * 		Maximum number of keys in a batch. A full batch is sent right away.
+	 */
+	public MicroBatcher(Function<Set<K>, CompletableFuture<Map<K, V>>> loader, long window, TimeUnit unit,
+						int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("Batch size must be at least 1");
+		this.loader = loader;
+		this.windowNanos = unit.toNanos(window);
+		this.maxSize = maxSize;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "micro-batcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * @param key
+	 * 		Key to load.
+	 *
+	 * @return Future of the key's value, completed with {@code null} if the key has no value.
+	 * Completed exceptionally if its batch fails.
+	 */
+	public CompletableFuture<V> load(K key) {
+		Map<K, CompletableFuture<V>> full = null;
+		CompletableFuture<V> future;
+		synchronized(this) {
+			future = open.get(key);
+			if (future != null)
+				return future;
+			future = new CompletableFuture<>();
+			open.put(key, future);
+			if (open.size() >= maxSize) {
+				full = open;
+				open = new LinkedHashMap<>();
+			} else if (open.size() == 1) {
+				Map<K, CompletableFuture<V>> batch = open;
+				scheduler.schedule(() -> flush(batch), windowNanos, TimeUnit.NANOSECONDS);
+			}
+		}
+		// Sent outside the lock, the loader may take a moment to hand off the request
+		if (full != null)
+			send(full);
+		return future;
+	}
+
+	/**
+	 * @return Number of batches sent.
+	 */
+	public long getBatchCount() {
+		return batches.get();
+	}
+
+	/**
+	 * @return Number of keys sent, across all batches.
+	 */
+	public long getKeyCount() {
+		return keys.get();
+	}
+
+	/**
+	 * @return Distribution of batch sizes. The value at index {@code i} is the number of batches with
+	 * {@code 2^i} up to {@code 2^(i+1) - 1} keys.
+	 */
+	public long[] getBatchSizeCounts() {
+		long[] counts = new long[BUCKETS];
+		for(int i = 0; i < BUCKETS; i++)
+			counts[i] = sizes.get(i);
+		return counts;
+	}
+
+	/**
+	 * Sends the open batch and stops the batch window timer.
+	 */
+	@Override
+	public void close() {
+		Map<K, CompletableFuture<V>> batch;
+		synchronized(this) {
+			batch = open;
+			open = new LinkedHashMap<>();
+		}
+		if (!batch.isEmpty())
+			send(batch);
+		scheduler.shutdown();
+	}
+
+	/**
+	 * Send a batch when its window passes, unless it was already sent for being full.
+	 *
+	 * @param batch
+	 * 		Batch that was open when its window started.
+	 */
+	private void flush(Map<K, CompletableFuture<V>> batch) {
+		synchronized(this) {
+			if (open != batch)
+				return;
+			open = new LinkedHashMap<>();
+		}
+		send(batch);
+	}
+
+	/**
+	 * @param batch
+	 * 		Batch to load, and complete the futures of.
+	 */
+	private void send(Map<K, CompletableFuture<V>> batch) {
+		int size = batch.size();
+		batches.incrementAndGet();
+		keys.addAndGet(size);
+		sizes.incrementAndGet(Math.min(31 - Integer.numberOfLeadingZeros(size), BUCKETS - 1));
+		CompletableFuture<Map<K, V>> result;
+		try {
+			result = loader.apply(Collections.unmodifiableSet(batch.keySet()));
+		} catch(RuntimeException ex) {
+			result = Futures.failed(ex);
+		}
+		result.whenComplete((values, error) -> {
+			Throwable cause = error == null ? null : Futures.unwrap(error);
+			batch.forEach((key, future) -> {
+				if (cause != null)
+					future.completeExceptionally(cause);
+				else
+					future.complete(values.get(key));
+			});
+		});
+	}
+}
@@ -1,5 +1,8 @@
 package me.coley.addressbook.util;
 
+import java.io.IOException;
+import java.io.OutputStream;
+
 import static me.coley.addressbook.util.Json.toJson;
 
 /**
@@ -9,6 +12,7 @@ public class ResponseWrapper {
 	private final boolean success;
 	private final Exception failCause;
 	private final Object data;
+	private final String next;
 
 	/**
 	 * Constructs a response wrapper containing information about the prior request.
@@ -20,11 +24,15 @@ public class ResponseWrapper {
 	 * @param data
 	 * 		Response object. May be {@code null} if the request was not a
 	 * 		success, or there is no value to return.
+	 * @param next
+	 * 		Cursor to the following page of data. May be {@code null} if the data is not paged,
+	 * 		or there are no more pages.
 	 */
-	private ResponseWrapper(boolean success, Exception failCause, Object data) {
+	private ResponseWrapper(boolean success, Exception failCause, Object data, String next) {
 		this.success = success;
 		this.failCause = failCause;
 		this.data = data;
+		this.next = next;
 	}
 
 	/**
@@ -36,7 +44,21 @@ public class ResponseWrapper {
 	 * @return Success response.
 	 */
 	public static ResponseWrapper success(Object data) {
-		return new ResponseWrapper(true, null, data);
+		return new ResponseWrapper(true, null, data, null);
+	}
+
+	/**
+	 * Create a success response for a page of data.
+	 *
+	 * @param data
+	 * 		Response object to include.
+	 * @param next
+	 * 		Cursor to the following page. May be {@code null} if there are no more pages.
+	 *
+	 * @return Success response.
+	 */
+	public static ResponseWrapper success(Object data, String next) {
+		return new ResponseWrapper(true, null, data, next);
 	}
 
 	/**
@@ -48,7 +70,7 @@ public class ResponseWrapper {
 	 * @return Failure response.
 	 */
 	public static ResponseWrapper failure(Exception reason) {
-		return new ResponseWrapper(false, reason, null);
+		return new ResponseWrapper(false, reason, null, null);
 	}
 
 	/**
@@ -74,6 +96,46 @@ public class ResponseWrapper {
 		return data;
 	}
 
+	/**
+	 * @return Cursor to the following page of data. May be {@code null} if the data is not paged,
+	 * or there are no more pages.
+	 */
+	public String getNext() {
+		return next;
+	}
+
+	/**
+	 * Writes the response as UTF-8 JSON.
+	 *
+	 * @param out
+	 * 		Stream to write to. Is flushed, but not closed.
+	 * @param pretty
+	 *        {@code true} to indent the JSON, {@code false} for compact JSON.
+	 *
+	 * @throws IOException
+	 * 		When the stream could not be written to.
+	 */
+	public void writeTo(OutputStream out, boolean pretty) throws IOException {
+		writeTo(out, WireFormat.JSON, pretty);
+	}
+
+	/**
+	 * Writes the response in the given format.
+	 *
+	 * @param out
+	 * 		Stream to write to. Is flushed, but not closed.
+	 * @param format
+	 * 		Format to write.
+	 * @param pretty
+	 *        {@code true} to indent JSON, {@code false} for compact JSON. Binary formats are always compact.
+	 *
+	 * @throws IOException
+	 * 		When the stream could not be written to.
+	 */
+	public void writeTo(OutputStream out, WireFormat format, boolean pretty) throws IOException {
+		Json.write(this, out, format, pretty);
+	}
+
 	@Override
 	public String toString() {
 		return toJson(this);
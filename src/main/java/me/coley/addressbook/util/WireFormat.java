@@ -0,0 +1,98 @@
+package me.coley.addressbook.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Encodings of request and response content. The binary formats hold the same document structure as the JSON,
+ * but are smaller and cheaper to parse for machine clients.
+ */
+public enum WireFormat {
+	JSON("application/json", null),
+	CBOR("application/cbor", new CBORFactory()),
+	SMILE("application/x-jackson-smile", new SmileFactory());
+
+	private final String contentType;
+	private final JsonFactory factory;
+
+	WireFormat(String contentType, JsonFactory factory) {
+		this.contentType = contentType;
+		this.factory = factory;
+	}
+
+	/**
+	 * @return Media type of the format.
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * @return Factory of parsers and generators for a binary format, {@code null} for JSON.
+	 */
+	JsonFactory getFactory() {
+		return factory;
+	}
+
+	/**
+	 * @param accept
+	 * 		Value of an {@code Accept} header. May be {@code null}.
+	 *
+	 * @return Format of highest quality in the header, in the order given when tied.
+	 * JSON when no binary format is preferred.
+	 */
+	public static WireFormat negotiate(String accept) {
+		if (accept == null)
+			return JSON;
+		WireFormat best = JSON;
+		double bestQuality = 0;
+		for(String range : accept.split(",")) {
+			String[] params = range.split(";");
+			WireFormat format = of(params[0]);
+			if (format == JSON && !isJson(params[0]))
+				continue;
+			double quality = quality(params);
+			if (quality > bestQuality) {
+				best = format;
+				bestQuality = quality;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @param contentType
+	 * 		Value of a {@code Content-Type} header. May be {@code null}.
+	 *
+	 * @return Format of the content, JSON for any type that is not a binary format.
+	 */
+	public static WireFormat of(String contentType) {
+		if (contentType == null)
+			return JSON;
+		String type = contentType.split(";")[0].trim();
+		for(WireFormat format : values())
+			if (format.contentType.equalsIgnoreCase(type))
+				return format;
+		return JSON;
+	}
+
+	private static boolean isJson(String range) {
+		String type = range.trim();
+		return type.equalsIgnoreCase(JSON.contentType) || type.equals("*/*") || type.equalsIgnoreCase("application/*");
+	}
+
+	private static double quality(String[] params) {
+		for(int i = 1; i < params.length; i++) {
+			String param = params[i].trim();
+			if (param.startsWith("q=")) {
+				try {
+					return Double.parseDouble(param.substring(2));
+				} catch(NumberFormatException ex) {
+					return 0;
+				}
+			}
+		}
+		return 1;
+	}
+}
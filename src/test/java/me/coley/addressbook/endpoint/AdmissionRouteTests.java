@@ -0,0 +1,80 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.util.ConcurrencyLimiter;
+import me.coley.addressbook.util.ConcurrencyLimiter.Priority;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link AdmissionRoute}
+ */
+public class AdmissionRouteTests {
+	private Request req;
+	private Response resp;
+	private HttpServletRequest rawReq;
+	private HttpServletResponse rawResp;
+
+	@BeforeEach
+	void setup() {
+		req = mock(Request.class);
+		resp = mock(Response.class);
+		rawReq = mock(HttpServletRequest.class);
+		rawResp = mock(HttpServletResponse.class);
+		when(req.raw()).thenReturn(rawReq);
+		when(resp.raw()).thenReturn(rawResp);
+	}
+
+	@Test
+	void testRefusedWithRetryAfter() throws Exception {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 2, 60_000, 0, 0);
+		limiter.start(Priority.HIGH);
+		limiter.start(Priority.HIGH);
+		AdmissionRoute route = new AdmissionRoute((req, res) -> fail("Should not be called"), limiter, Priority.HIGH);
+		route.handle(req, resp);
+		verify(resp).status(Endpoint.SERVICE_UNAVAILABLE);
+		verify(resp).header("Retry-After", "1");
+	}
+
+	@Test
+	void testServerErrorDecreasesLimit() throws Exception {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 10, 60_000, 0, 0);
+		when(rawResp.getStatus()).thenReturn(Endpoint.INTERNAL_ERROR);
+		assertEquals("", new AdmissionRoute((req, res) -> "", limiter, Priority.HIGH).handle(req, resp));
+		assertEquals(9, limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+		// Streams do not adapt the limit
+		new AdmissionRoute((req, res) -> "", limiter, Priority.LOW, false).handle(req, resp);
+		assertEquals(9, limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	void testSuspendedReleasedOnCompletion() throws Exception {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 10, 60_000, 0, 0);
+		AsyncContext context = mock(AsyncContext.class);
+		when(rawReq.isAsyncStarted()).thenReturn(true);
+		when(rawReq.getAsyncContext()).thenReturn(context);
+		when(rawResp.getStatus()).thenReturn(200);
+		new AdmissionRoute((req, res) -> "", limiter, Priority.HIGH).handle(req, resp);
+		// Holds its place until the response completes
+		assertEquals(1, limiter.getInFlight());
+		ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+		verify(context).addListener(listener.capture());
+		listener.getValue().onComplete(mock(AsyncEvent.class));
+		assertEquals(0, limiter.getInFlight());
+	}
+}
@@ -0,0 +1,170 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.util.ResponseWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link AsyncEndpoint}
+ */
+public class AsyncEndpointTests {
+	private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+	private Request req;
+	private Response resp;
+	private HttpServletRequest rawReq;
+	private AsyncContext context;
+
+	@BeforeEach
+	void setup() throws Exception {
+		req = mock(Request.class);
+		resp = mock(Response.class);
+		rawReq = mock(HttpServletRequest.class);
+		context = mock(AsyncContext.class);
+		HttpServletResponse raw = mock(HttpServletResponse.class);
+		when(req.raw()).thenReturn(rawReq);
+		when(resp.raw()).thenReturn(raw);
+		when(rawReq.startAsync()).thenReturn(context);
+		doAnswer(invoke -> {
+			((Runnable) invoke.getArgument(0)).run();
+			return null;
+		}).when(context).start(any());
+		when(raw.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener listener) {}
+
+			@Override
+			public void write(int b) {
+				written.write(b);
+			}
+		});
+	}
+
+	@Test
+	void testCompletedFutureRespondsImmediately() {
+		ResponseWrapper wrapper = ResponseWrapper.success("done");
+		assertEquals("", new AsyncEndpoint((req, res) -> CompletableFuture.completedFuture(Reply.of(wrapper)))
+				.handle(req, resp));
+		assertEquals(wrapper.toString(), text());
+		// No need to suspend the request
+		verify(rawReq, never()).startAsync();
+	}
+
+	@Test
+	void testPendingFutureRespondsOnCompletion() {
+		CompletableFuture<Reply> future = new CompletableFuture<>();
+		assertEquals("", new AsyncEndpoint((req, res) -> future).handle(req, resp));
+		// Suspended, nothing written yet
+		verify(rawReq).startAsync();
+		assertEquals(0, written.size());
+		ResponseWrapper wrapper = ResponseWrapper.success("done");
+		future.complete(Reply.of(wrapper));
+		assertEquals(wrapper.toString(), text());
+		verify(context).complete();
+	}
+
+	@Test
+	void testRespondsOnServerThread() {
+		ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+		doNothing().when(context).start(task.capture());
+		CompletableFuture<Reply> future = new CompletableFuture<>();
+		new AsyncEndpoint((req, res) -> future).handle(req, resp);
+		// Not written by the thread completing the future
+		future.complete(Reply.of(ResponseWrapper.success("done")));
+		assertEquals(0, written.size());
+		task.getValue().run();
+		assertEquals(ResponseWrapper.success("done").toString(), text());
+		verify(context).complete();
+	}
+
+	@Test
+	void testFailedFutureMapsStatus() {
+		CompletableFuture<Reply> future = new CompletableFuture<>();
+		new AsyncEndpoint((req, res) -> future).handle(req, resp);
+		future.completeExceptionally(new MissingContactException("Bob", "Missing"));
+		verify(resp).status(Endpoint.NOT_FOUND);
+		assertTrue(text().startsWith("{\"success\":false,\"failCause\":{\"type\":\"" +
+				MissingContactException.class.getName()));
+		verify(context).complete();
+	}
+
+	@Test
+	void testThrowingRouteMapsStatus() {
+		new AsyncEndpoint((req, res) -> {
+			throw new IllegalArgumentException();
+		}).handle(req, resp);
+		verify(resp).status(Endpoint.BAD_REQUEST);
+		assertTrue(text().startsWith("{\"success\":false"));
+	}
+
+	@Test
+	void testTimeoutRespondsOnce() throws Exception {
+		CompletableFuture<Reply> future = new CompletableFuture<>();
+		new AsyncEndpoint((req, res) -> future, 1000).handle(req, resp);
+		verify(context).setTimeout(1000);
+		ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+		verify(context).addListener(listener.capture());
+		listener.getValue().onTimeout(new AsyncEvent(context));
+		verify(resp).status(AsyncEndpoint.SERVICE_UNAVAILABLE);
+		verify(resp).header("Retry-After", "1");
+		String json = text();
+		assertTrue(json.startsWith("{\"success\":false"));
+		// Late completion is ignored, including its status and headers
+		future.complete(Reply.of(ResponseWrapper.success("late")).status(Endpoint.NOT_MODIFIED).header("ETag", "\"a\""));
+		assertEquals(json, text());
+		verify(resp, never()).status(Endpoint.NOT_MODIFIED);
+		verify(resp, never()).header("ETag", "\"a\"");
+		verify(context, times(1)).complete();
+	}
+
+	@Test
+	void testReplyAppliedOnServerThread() {
+		ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+		doNothing().when(context).start(task.capture());
+		CompletableFuture<Reply> future = new CompletableFuture<>();
+		new AsyncEndpoint((req, res) -> future).handle(req, resp);
+		future.complete(new Reply().status(Endpoint.NOT_MODIFIED).header("ETag", "\"a\""));
+		// Response untouched by the thread completing the future
+		verify(resp, never()).status(Endpoint.NOT_MODIFIED);
+		verify(resp, never()).header("ETag", "\"a\"");
+		task.getValue().run();
+		verify(resp).status(Endpoint.NOT_MODIFIED);
+		verify(resp).header("ETag", "\"a\"");
+		// No content, no body
+		assertEquals(0, written.size());
+	}
+
+	private String text() {
+		return new String(written.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,98 @@
+package me.coley.addressbook.endpoint;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link AsyncJettyServerFactory}
+ */
+public class AsyncJettyServerFactoryTests {
+	private Server server;
+
+	@BeforeEach
+	void setup() throws Exception {
+		server = new AsyncJettyServerFactory(AsyncJettyServerFactory.compression(1024, 6)).create(null);
+		ServerConnector connector = new ServerConnector(server);
+		connector.setPort(0);
+		server.addConnector(connector);
+		server.setHandler(new AbstractHandler() {
+			@Override
+			public void handle(String target, Request baseRequest, HttpServletRequest request,
+							   HttpServletResponse response) throws IOException {
+				int size = Integer.parseInt(request.getParameter("size"));
+				response.setContentType("application/json");
+				for(int i = 0; i < size; i++)
+					response.getOutputStream().write('a');
+				baseRequest.setHandled(true);
+			}
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void teardown() throws Exception {
+		server.stop();
+	}
+
+	@Test
+	void testLargeResponseCompressed() throws IOException {
+		HttpURLConnection connection = open(100_000, "gzip");
+		assertEquals("gzip", connection.getContentEncoding());
+		try (InputStream in = new GZIPInputStream(connection.getInputStream())) {
+			assertEquals(100_000, read(in).length());
+		}
+	}
+
+	@Test
+	void testSmallResponseNotCompressed() throws IOException {
+		HttpURLConnection connection = open(100, "gzip");
+		assertNull(connection.getContentEncoding());
+		assertEquals(100, read(connection.getInputStream()).length());
+	}
+
+	@Test
+	void testNotCompressedUnlessAccepted() throws IOException {
+		HttpURLConnection connection = open(100_000, "identity");
+		assertNull(connection.getContentEncoding());
+		assertEquals(100_000, read(connection.getInputStream()).length());
+	}
+
+	@Test
+	void testInvalidLevel() {
+		assertThrows(IllegalArgumentException.class, () -> AsyncJettyServerFactory.compression(1024, 0));
+	}
+
+	private HttpURLConnection open(int size, String encoding) throws IOException {
+		int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+		URL url = new URL("http://localhost:" + port + "/?size=" + size);
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		connection.setRequestProperty("Accept-Encoding", encoding);
+		return connection;
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1)
+			out.write(buffer, 0, read);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
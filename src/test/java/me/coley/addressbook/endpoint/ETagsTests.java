@@ -0,0 +1,82 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.Phone;
+import me.coley.addressbook.util.ResponseWrapper;
+import org.junit.jupiter.api.Test;
+import spark.Request;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ETags}
+ */
+public class ETagsTests {
+	private static final Contact BOB = new Contact("Bob",
+			Collections.singletonList(new Phone("555-123-4567", Phone.Type.MOBILE)), "Earth");
+
+	@Test
+	void testTagFollowsContent() {
+		Contact copy = new Contact("Bob", Collections.singletonList(new Phone("555-123-4567", Phone.Type.MOBILE)), "Earth");
+		assertEquals(ETags.of(BOB), ETags.of(copy));
+		copy.setNumbers(Collections.singletonList(new Phone("555-123-4567", Phone.Type.HOME)));
+		assertNotEquals(ETags.of(BOB), ETags.of(copy));
+		// Fields do not run into each other
+		assertNotEquals(ETags.of(new Contact("ab", Collections.emptyList(), "c")),
+				ETags.of(new Contact("a", Collections.emptyList(), "bc")));
+		// Pages differ by their cursor too
+		assertNotEquals(ETags.of(Arrays.asList(BOB, copy), null), ETags.of(Arrays.asList(BOB, copy), "next"));
+		assertNotEquals(ETags.of(Arrays.asList(BOB, copy), null), ETags.of(Arrays.asList(copy, BOB), null));
+	}
+
+	@Test
+	void testIfMatch() {
+		String tag = ETags.of(BOB);
+		assertTrue(ETags.ifMatch(null, tag));
+		assertTrue(ETags.ifMatch("*", tag));
+		assertTrue(ETags.ifMatch("\"other\", " + tag, tag));
+		assertFalse(ETags.ifMatch("\"other\"", tag));
+		// Strong comparison
+		assertFalse(ETags.ifMatch("W/" + tag, tag));
+	}
+
+	@Test
+	void testTagPerFormat() {
+		Request req = mock(Request.class);
+		Reply reply = new Reply();
+		String tag = ETags.of(BOB);
+		when(req.headers("Accept")).thenReturn("application/cbor");
+		String cborTag = ETags.tag(req, reply, tag);
+		assertNotEquals(tag, cborTag);
+		assertEquals(cborTag, reply.getHeader("ETag"));
+		// Either representation names the same content when updating
+		assertTrue(ETags.ifMatch(cborTag, tag));
+	}
+
+	@Test
+	void testNotModified() {
+		Request req = mock(Request.class);
+		String tag = ETags.of(BOB);
+		// Weak comparison
+		when(req.headers("If-None-Match")).thenReturn("W/" + tag);
+		Reply reply = ETags.conditional(req, new Reply(), tag, ResponseWrapper.success(BOB));
+		assertNull(reply.getContent());
+		assertEquals(Endpoint.NOT_MODIFIED, reply.getStatus());
+		assertEquals(tag, reply.getHeader("ETag"));
+	}
+
+	@Test
+	void testModified() {
+		Request req = mock(Request.class);
+		ResponseWrapper content = ResponseWrapper.success(BOB);
+		when(req.headers("If-None-Match")).thenReturn("\"other\"");
+		Reply reply = ETags.conditional(req, new Reply(), ETags.of(BOB), content);
+		assertSame(content, reply.getContent());
+		assertEquals(0, reply.getStatus());
+	}
+}
@@ -3,6 +3,7 @@ package me.coley.addressbook.endpoint;
 import me.coley.addressbook.exception.DuplicateContactException;
 import me.coley.addressbook.exception.ElasticException;
 import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.exception.PreconditionFailedException;
 import me.coley.addressbook.model.Contact;
 import me.coley.addressbook.model.Phone;
 import me.coley.addressbook.util.ResponseWrapper;
@@ -38,6 +39,7 @@ public class EndpointTests {
 			MissingContactException.class,
 			DuplicateContactException.class,
 			IllegalArgumentException.class,
+			PreconditionFailedException.class,
 			ElasticException.class
 	})
 	void testMockThrownExceptions(Class<? extends Exception> exClass) {
@@ -0,0 +1,83 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.metrics.Metrics;
+import me.coley.addressbook.metrics.RouteMetrics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link InstrumentedRoute}
+ */
+public class InstrumentedRouteTests {
+	private final Metrics metrics = new Metrics();
+	private Request req;
+	private Response resp;
+	private HttpServletRequest rawReq;
+	private HttpServletResponse rawResp;
+
+	@BeforeEach
+	void setup() {
+		req = mock(Request.class);
+		resp = mock(Response.class);
+		rawReq = mock(HttpServletRequest.class);
+		rawResp = mock(HttpServletResponse.class);
+		when(req.raw()).thenReturn(rawReq);
+		when(resp.raw()).thenReturn(rawResp);
+		when(req.requestMethod()).thenReturn("GET");
+		when(req.matchedPath()).thenReturn("/contact/:name");
+	}
+
+	@Test
+	void testRecordsStatusAndFailure() throws Exception {
+		MissingContactException missing = new MissingContactException("Bob", "missing");
+		when(rawResp.getStatus()).thenReturn(Endpoint.NOT_FOUND);
+		when(req.attribute(Endpoint.FAILURE_ATTRIBUTE)).thenReturn(missing);
+		new InstrumentedRoute((req, res) -> "", metrics).handle(req, resp);
+		RouteMetrics route = metrics.route("GET", "/contact/:name");
+		assertEquals(1, route.getStatusCount(Endpoint.NOT_FOUND));
+		assertEquals(1, route.getErrors().get(MissingContactException.class.getName()).sum());
+		assertEquals(0, route.getInFlight());
+	}
+
+	@Test
+	void testThrownIsInternalError() {
+		IllegalStateException failure = new IllegalStateException();
+		InstrumentedRoute route = new InstrumentedRoute((req, res) -> {
+			throw failure;
+		}, metrics);
+		assertSame(failure, assertThrows(IllegalStateException.class, () -> route.handle(req, resp)));
+		assertEquals(1, metrics.route("GET", "/contact/:name").getStatusCount(Endpoint.INTERNAL_ERROR));
+	}
+
+	@Test
+	void testSuspendedRecordedOnCompletion() throws Exception {
+		AsyncContext context = mock(AsyncContext.class);
+		when(rawReq.isAsyncStarted()).thenReturn(true);
+		when(rawReq.getAsyncContext()).thenReturn(context);
+		when(rawResp.getStatus()).thenReturn(200);
+		new InstrumentedRoute((req, res) -> "", metrics).handle(req, resp);
+		RouteMetrics route = metrics.route("GET", "/contact/:name");
+		// Still in flight until the response completes
+		assertEquals(1, route.getInFlight());
+		ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+		verify(context).addListener(listener.capture());
+		listener.getValue().onComplete(mock(AsyncEvent.class));
+		assertEquals(0, route.getInFlight());
+		assertEquals(1, route.getStatusCount(200));
+	}
+}
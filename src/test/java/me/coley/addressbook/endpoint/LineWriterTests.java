@@ -0,0 +1,84 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.model.Contact;
+import org.eclipse.jetty.server.HttpChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link LineWriter}
+ */
+public class LineWriterTests {
+	private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+	private Request req;
+	private Response resp;
+	private HttpServletResponse raw;
+	private HttpChannel channel;
+
+	@BeforeEach
+	void setup() throws Exception {
+		req = mock(Request.class);
+		resp = mock(Response.class);
+		raw = mock(HttpServletResponse.class);
+		org.eclipse.jetty.server.Request base = mock(org.eclipse.jetty.server.Request.class);
+		channel = mock(HttpChannel.class);
+		when(req.raw()).thenReturn(base);
+		when(base.getHttpChannel()).thenReturn(channel);
+		when(resp.raw()).thenReturn(raw);
+		when(raw.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener listener) {}
+
+			@Override
+			public void write(int b) {
+				written.write(b);
+			}
+		});
+	}
+
+	@Test
+	void testOpensOnFirstLine() throws Exception {
+		LineWriter lines = new LineWriter(req, resp);
+		assertFalse(lines.isStarted());
+		// Nothing is sent before the first line, so a failure can still set the status
+		verify(raw, never()).getOutputStream();
+		lines.write(new Contact("Bob", Collections.emptyList(), "Earth"));
+		lines.write(new Contact("Alice", Collections.emptyList(), "Mars"));
+		assertTrue(lines.isStarted());
+		lines.close();
+		assertEquals("{\"name\":\"Bob\",\"address\":\"Earth\",\"numbers\":[]}\n" +
+				"{\"name\":\"Alice\",\"address\":\"Mars\",\"numbers\":[]}\n", written.toString(StandardCharsets.UTF_8.name()));
+		verify(resp).type(LineWriter.CONTENT_TYPE);
+	}
+
+	@Test
+	void testAbort() {
+		LineWriter lines = new LineWriter(req, resp);
+		lines.write(new Contact("Bob", Collections.emptyList(), "Earth"));
+		IllegalStateException failure = new IllegalStateException("scroll failed");
+		lines.abort(failure);
+		// The connection ends without completing the response
+		verify(channel).abort(failure);
+		verify(req).attribute(Endpoint.FAILURE_ATTRIBUTE, failure);
+	}
+}
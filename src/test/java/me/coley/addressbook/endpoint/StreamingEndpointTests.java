@@ -0,0 +1,93 @@
+package me.coley.addressbook.endpoint;
+
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.util.ResponseWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link StreamingEndpoint}
+ */
+public class StreamingEndpointTests {
+	private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+	private Request req;
+	private Response resp;
+
+	@BeforeEach
+	void setup() throws Exception {
+		req = mock(Request.class);
+		resp = mock(Response.class);
+		HttpServletResponse raw = mock(HttpServletResponse.class);
+		when(resp.raw()).thenReturn(raw);
+		when(raw.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener listener) {}
+
+			@Override
+			public void write(int b) {
+				written.write(b);
+			}
+		});
+	}
+
+	@Test
+	void testWritesCompactJson() throws Exception {
+		Contact contact = new Contact("Bob é", Collections.emptyList(), "Earth");
+		ResponseWrapper wrapper = ResponseWrapper.success(contact);
+		Route route = mock(Route.class);
+		when(route.handle(any(), any())).thenReturn(wrapper);
+		// Content goes to the stream, Spark only gets an empty body
+		assertEquals("", new StreamingEndpoint(route).handle(req, resp));
+		String json = new String(written.toByteArray(), StandardCharsets.UTF_8);
+		assertEquals(wrapper.toString(), json);
+		assertFalse(json.contains("\n"));
+	}
+
+	@Test
+	void testWritesPrettyJsonOnRequest() throws Exception {
+		when(req.queryParams("pretty")).thenReturn("");
+		Route route = mock(Route.class);
+		when(route.handle(any(), any())).thenReturn(ResponseWrapper.success(null));
+		new StreamingEndpoint(route).handle(req, resp);
+		assertTrue(new String(written.toByteArray(), StandardCharsets.UTF_8).contains("\n  \"success\": true"));
+	}
+
+	@Test
+	void testPassesOtherContent() throws Exception {
+		Route route = mock(Route.class);
+		when(route.handle(any(), any())).thenReturn("text");
+		assertEquals("text", new StreamingEndpoint(route).handle(req, resp));
+		assertEquals(0, written.size());
+	}
+
+	@Test
+	void testErrorsAreStreamed() throws Exception {
+		Route route = mock(Route.class);
+		when(route.handle(any(), any())).thenThrow(IllegalArgumentException.class);
+		new StreamingEndpoint(route).handle(req, resp);
+		String json = new String(written.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue(json.startsWith("{\"success\":false,\"failCause\":{\"type\":\"java.lang.IllegalArgumentException\""));
+	}
+}
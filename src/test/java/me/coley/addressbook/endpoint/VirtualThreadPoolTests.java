@@ -0,0 +1,117 @@
+package me.coley.addressbook.endpoint;
+
+import org.eclipse.jetty.util.thread.Invocable;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for {@link VirtualThreadPool}
+ */
+public class VirtualThreadPoolTests {
+	@Test
+	void testRejectedWhenUnsupported() {
+		assumeFalse(VirtualThreadPool.isSupported());
+		assertThrows(UnsupportedOperationException.class, VirtualThreadPool::new);
+	}
+
+	@Test
+	void testOnlyBlockingTasksAreVirtual() throws Exception {
+		assumeTrue(VirtualThreadPool.isSupported());
+		VirtualThreadPool pool = new VirtualThreadPool(16);
+		pool.start();
+		try {
+			// Acceptors and selectors are plain runnables
+			assertFalse(isVirtual(pool, null));
+			assertTrue(isVirtual(pool, Invocable.InvocationType.BLOCKING));
+			assertFalse(isVirtual(pool, Invocable.InvocationType.NON_BLOCKING));
+		} finally {
+			pool.stop();
+		}
+	}
+
+	@Test
+	void testBoundsVirtualThreads() throws Exception {
+		assumeTrue(VirtualThreadPool.isSupported());
+		VirtualThreadPool pool = new VirtualThreadPool(2);
+		pool.start();
+		try {
+			CountDownLatch release = new CountDownLatch(1);
+			CountDownLatch done = new CountDownLatch(5);
+			AtomicInteger running = new AtomicInteger();
+			AtomicInteger peak = new AtomicInteger();
+			for(int i = 0; i < 5; i++)
+				pool.execute(new Task(Invocable.InvocationType.BLOCKING, () -> {
+					peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+					try {
+						release.await();
+					} catch(InterruptedException ex) {
+						Thread.currentThread().interrupt();
+					}
+					running.decrementAndGet();
+					done.countDown();
+				}));
+			Thread.sleep(100);
+			release.countDown();
+			// Waiting tasks still run once others finish
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertEquals(2, peak.get());
+		} finally {
+			pool.stop();
+		}
+	}
+
+	/**
+	 * @param pool
+	 * 		Pool to run a task on.
+	 * @param type
+	 * 		Invocation type of the task, or {@code null} for a plain runnable.
+	 *
+	 * @return {@code true} if the task ran on a virtual thread.
+	 */
+	private static boolean isVirtual(VirtualThreadPool pool, Invocable.InvocationType type) throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		AtomicBoolean virtual = new AtomicBoolean();
+		Runnable check = () -> {
+			try {
+				virtual.set((Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()));
+			} catch(ReflectiveOperationException ex) {
+				throw new IllegalStateException(ex);
+			}
+			latch.countDown();
+		};
+		pool.execute(type == null ? check : new Task(type, check));
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		return virtual.get();
+	}
+
+	/**
+	 * Task of a given invocation type, as Jetty's connections produce.
+	 */
+	private static class Task implements Runnable, Invocable {
+		private final InvocationType type;
+		private final Runnable action;
+
+		private Task(InvocationType type, Runnable action) {
+			this.type = type;
+			this.action = action;
+		}
+
+		@Override
+		public void run() {
+			action.run();
+		}
+
+		@Override
+		public InvocationType getInvocationType() {
+			return type;
+		}
+	}
+}
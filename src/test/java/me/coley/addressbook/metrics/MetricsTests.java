@@ -0,0 +1,79 @@
+package me.coley.addressbook.metrics;
+
+import me.coley.addressbook.exception.MissingContactException;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link Metrics}
+ */
+public class MetricsTests {
+	private final Metrics metrics = new Metrics();
+
+	@Test
+	void testRouteCounts() throws Exception {
+		RouteMetrics route = metrics.route("GET", "/contact/:name");
+		route.stop(route.start(), 200, null);
+		route.stop(route.start(), 200, null);
+		route.stop(route.start(), 404, new MissingContactException("Bob", "missing"));
+		String text = export();
+		assertTrue(text.contains("addressbook_requests_total{route=\"GET /contact/:name\",status=\"200\"} 2\n"));
+		assertTrue(text.contains("addressbook_requests_total{route=\"GET /contact/:name\",status=\"404\"} 1\n"));
+		assertTrue(text.contains("addressbook_request_errors_total{route=\"GET /contact/:name\"," +
+				"exception=\"me.coley.addressbook.exception.MissingContactException\"} 1\n"));
+		assertTrue(text.contains("addressbook_requests_in_flight{route=\"GET /contact/:name\"} 0\n"));
+		assertTrue(text.contains("addressbook_request_duration_seconds_count{route=\"GET /contact/:name\"} 3\n"));
+	}
+
+	@Test
+	void testInFlight() throws Exception {
+		OperationMetrics get = metrics.backend("get");
+		get.start();
+		assertTrue(export().contains("addressbook_backend_calls_in_flight{operation=\"get\"} 1\n"));
+	}
+
+	@Test
+	void testHistogramBuckets() throws Exception {
+		LatencyHistogram histogram = metrics.backend("get").getLatency();
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(3));
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(200));
+		// Beyond the tracked range, counted in the last bucket
+		histogram.record(TimeUnit.HOURS.toNanos(1));
+		String text = export();
+		String bucket = "addressbook_backend_duration_seconds_bucket{operation=\"get\",le=\"";
+		assertTrue(text.contains(bucket + "0.0025\"} 0\n"));
+		assertTrue(text.contains(bucket + "0.005\"} 1\n"));
+		assertTrue(text.contains(bucket + "0.25\"} 2\n"));
+		assertTrue(text.contains(bucket + "10\"} 2\n"));
+		assertTrue(text.contains(bucket + "+Inf\"} 3\n"));
+	}
+
+	@Test
+	void testSizes() throws Exception {
+		metrics.sizes("batch_size", "Keys per batch", () -> new long[]{1, 0, 2, 0, 0}, () -> 11);
+		String text = export();
+		assertTrue(text.contains("# TYPE addressbook_batch_size histogram\n"));
+		assertTrue(text.contains("addressbook_batch_size_bucket{le=\"1\"} 1\n"));
+		assertTrue(text.contains("addressbook_batch_size_bucket{le=\"7\"} 3\n"));
+		assertFalse(text.contains("le=\"15\""));
+		assertTrue(text.contains("addressbook_batch_size_sum 11\n"));
+		assertTrue(text.contains("addressbook_batch_size_count 3\n"));
+	}
+
+	@Test
+	void testLabelsEscaped() throws Exception {
+		RouteMetrics route = metrics.route("GET", "/a\"b\\c");
+		route.stop(route.start(), 200, null);
+		assertTrue(export().contains("route=\"GET /a\\\"b\\\\c\""));
+	}
+
+	private String export() throws Exception {
+		StringWriter writer = new StringWriter();
+		metrics.writeTo(writer);
+		return writer.toString();
+	}
+}
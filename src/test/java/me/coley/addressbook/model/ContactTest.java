@@ -63,7 +63,7 @@ class ContactTest {
 		// Json ==> Object
 		// Object ==> Json
 		assertEquals(base, converted);
-		assertEquals(json, Json.toJson(base));
+		assertEquals(json, Json.toPrettyJson(base));
 		// Check data is equal
 		assertEquals("Matt", base.getName());
 		assertEquals("Matt", converted.getName());
@@ -72,4 +72,19 @@ class ContactTest {
 		assertEquals(numbers, base.getNumbers());
 		assertEquals(numbers, converted.getNumbers());
 	}
-}
\ No newline at end of file
+
+	@Test
+	void testDeserializationValidates() {
+		// Unknown fields are skipped, numbers are normalized by the phone constructor
+		Contact contact = Json.fromJson("{\"id\":{\"a\":[1]},\"name\":\"Matt\",\"address\":\"Earth\"," +
+				"\"numbers\":[{\"type\":\"HOME\",\"number\":\"7772224444\"}]}", Contact.class);
+		assertEquals(Collections.singletonList(new Phone("777-222-4444", Phone.Type.HOME)), contact.getNumbers());
+		// Missing or null values are rejected by the constructors
+		assertThrows(NullPointerException.class, () -> Json.fromJson("{\"name\":\"Matt\"}", Contact.class));
+		assertThrows(NullPointerException.class, () -> Json.fromJson("{\"name\":null,\"address\":\"Earth\"}", Contact.class));
+		assertThrows(NullPointerException.class, () -> Json.fromJson("{\"name\":\"Matt\",\"address\":\"Earth\"," +
+				"\"numbers\":[{\"number\":\"7772224444\"}]}", Contact.class));
+		assertThrows(IllegalArgumentException.class, () -> Json.fromJson("{\"name\":\"Matt\",\"address\":\"Earth\"," +
+				"\"numbers\":[{\"number\":\"123\",\"type\":\"HOME\"}]}", Contact.class));
+	}
+}
@@ -59,7 +59,12 @@ class PhoneTests {
 			// non-numeric
 			"999-9A9-9999",
 			"A99-999-9999",
-			"999A999999"
+			"999A999999",
+			// non-ascii digits
+			"999-999-999\u0669",
+			// wrong splitters
+			"999 999 9999",
+			"999-999999-9"
 	})
 	void testNumberValidation(String number) {
 		assertThrows(IllegalArgumentException.class, () -> new Phone(number, Phone.Type.HOME));
@@ -82,7 +87,7 @@ class PhoneTests {
 		// Json ==> Object
 		// Object ==> Json
 		assertEquals(base, converted);
-		assertEquals(json, Json.toJson(base));
+		assertEquals(json, Json.toPrettyJson(base));
 		// Check data is equal
 		assertEquals(base.getType(), converted.getType());
 		assertEquals(base.getNumber(), converted.getNumber());
@@ -0,0 +1,74 @@
+package me.coley.addressbook.service;
+
+import me.coley.addressbook.exception.ElasticException;
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.service.impl.BatchingContactService;
+import me.coley.addressbook.util.Futures;
+import me.coley.addressbook.util.MicroBatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for {@link BatchingContactService}
+ */
+public class BatchingServiceTests {
+	private static final Contact BOB = new Contact("Bob", Collections.emptyList(), "Earth");
+	private final Set<String> requested = new HashSet<>();
+	private BatchingContactService service;
+
+	@AfterEach
+	void cleanup() {
+		service.close();
+	}
+
+	@Test
+	void testLookupsShareMultiGet() throws Exception {
+		service = service(names -> {
+			requested.addAll(names);
+			return CompletableFuture.completedFuture(Collections.singletonMap("Bob", BOB));
+		});
+		CompletableFuture<Contact> bob = service.getAsync("Bob");
+		CompletableFuture<Boolean> bobExists = service.existsAsync("Bob");
+		CompletableFuture<Boolean> robertExists = service.existsAsync("Robert");
+		assertSame(BOB, bob.get(5, TimeUnit.SECONDS));
+		assertTrue(bobExists.get(5, TimeUnit.SECONDS));
+		assertFalse(robertExists.get(5, TimeUnit.SECONDS));
+		assertEquals(2, service.getBatcher().getKeyCount());
+		assertEquals(1, service.getBatcher().getBatchCount());
+	}
+
+	@Test
+	void testMissingContact() {
+		service = service(names -> CompletableFuture.completedFuture(Collections.emptyMap()));
+		assertThrows(MissingContactException.class, () -> service.get("Bob"));
+		assertFalse(service.exists("Bob"));
+		ExecutionException ex = assertThrows(ExecutionException.class,
+				() -> service.getAsync("Bob").get(5, TimeUnit.SECONDS));
+		assertTrue(ex.getCause() instanceof MissingContactException);
+	}
+
+	@Test
+	void testFailedMultiGet() {
+		service = service(names -> Futures.failed(new ElasticException("down")));
+		assertThrows(ElasticException.class, () -> service.get("Bob"));
+		assertThrows(ElasticException.class, () -> service.exists("Bob"));
+	}
+
+	private static BatchingContactService service(Function<Set<String>, CompletableFuture<Map<String, Contact>>> loader) {
+		return new BatchingContactService(mock(ContactService.class),
+				new MicroBatcher<>(loader, 20, TimeUnit.MILLISECONDS, 100));
+	}
+}
@@ -0,0 +1,76 @@
+package me.coley.addressbook.service;
+
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactResult;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link BulkImporter}
+ */
+public class BulkImporterTests {
+	@Test
+	@SuppressWarnings("unchecked")
+	void testInvalidContactsKeepOrder() {
+		ContactService service = mock(ContactService.class);
+		when(service.addAll(anyCollection())).then(invoke -> ((Collection<Contact>) invoke.getArgument(0)).stream()
+				.map(contact -> ContactResult.success(contact.getName()))
+				.collect(Collectors.toList()));
+		String json = "[" +
+				"{\"name\": \"Bob\", \"address\": \"Earth\", \"numbers\": []}," +
+				"{\"name\": \"Bad\", \"address\": \"Earth\", \"numbers\": [{\"number\": \"123\", \"type\": \"HOME\"}]}," +
+				"{\"address\": \"Earth\", \"numbers\": []}," +
+				"{\"name\": \"Robert\", \"address\": \"Earth\", \"numbers\": []}" +
+				"]";
+		List<ContactResult> results = assertDoesNotThrow(() -> new BulkImporter(service, 1).run(new StringReader(json)));
+		List<String> names = new ArrayList<>();
+		results.forEach(result -> names.add(result.getName()));
+		// Invalid contacts are reported in place, valid ones are passed on in batches
+		assertEquals(4, results.size());
+		assertEquals("Bob", names.get(0));
+		assertEquals("Bad", names.get(1));
+		assertNull(names.get(2));
+		assertEquals("Robert", names.get(3));
+		assertTrue(results.get(0).isSuccess());
+		assertEquals(IllegalArgumentException.class, results.get(1).getFailCause().getClass());
+		assertEquals(NullPointerException.class, results.get(2).getFailCause().getClass());
+		assertTrue(results.get(3).isSuccess());
+		verify(service, times(2)).addAll(anyCollection());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void testMalformedJsonKeepsResults() {
+		ContactService service = mock(ContactService.class);
+		when(service.addAll(anyCollection())).then(invoke -> ((Collection<Contact>) invoke.getArgument(0)).stream()
+				.map(contact -> ContactResult.success(contact.getName()))
+				.collect(Collectors.toList()));
+		String json = "[" +
+				"{\"name\": \"Bob\", \"address\": \"Earth\", \"numbers\": []}," +
+				"{\"name\": \"Robert\", \"address\": \"Earth\", \"numbers\": []}," +
+				"{\"name\": \"Broken\", \"address\": }" +
+				"]";
+		List<ContactResult> results = assertDoesNotThrow(() -> new BulkImporter(service, 1).run(new StringReader(json)));
+		// Contacts before the error are imported, and the error is reported after them
+		assertEquals(3, results.size());
+		assertTrue(results.get(0).isSuccess());
+		assertTrue(results.get(1).isSuccess());
+		assertFalse(results.get(2).isSuccess());
+		assertNull(results.get(2).getName());
+		verify(service, times(2)).addAll(anyCollection());
+		// Not an array at all
+		assertThrows(IllegalArgumentException.class, () -> new BulkImporter(service, 1).run(new StringReader("{}")));
+	}
+}
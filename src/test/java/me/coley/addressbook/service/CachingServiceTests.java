@@ -0,0 +1,94 @@
+package me.coley.addressbook.service;
+
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.service.impl.CachingContactService;
+import me.coley.addressbook.util.BoundedCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link CachingContactService}
+ */
+public class CachingServiceTests {
+	private static final Contact BOB = new Contact("Bob", Collections.emptyList(), "Earth");
+	private ContactService backend;
+	private CachingContactService service;
+
+	@BeforeEach
+	void setup() {
+		backend = mock(ContactService.class);
+		service = new CachingContactService(backend, new BoundedCache<>(100, Long.MAX_VALUE, value -> 1),
+				60_000, 60_000);
+	}
+
+	@Test
+	void testRepeatedGetIsCached() throws Exception {
+		when(backend.get("Bob")).thenReturn(BOB);
+		assertEquals(BOB, service.get("Bob"));
+		assertEquals(BOB, service.get("Bob"));
+		assertTrue(service.exists("Bob"));
+		verify(backend, times(1)).get("Bob");
+		assertEquals(2, service.getCache().getHitCount());
+		assertEquals(1, service.getCache().getMissCount());
+	}
+
+	@Test
+	void testMissingIsCached() throws Exception {
+		when(backend.get("Bob")).thenThrow(new MissingContactException("Bob", "missing"));
+		assertThrows(MissingContactException.class, () -> service.get("Bob"));
+		assertThrows(MissingContactException.class, () -> service.get("Bob"));
+		assertFalse(service.exists("Bob"));
+		verify(backend, times(1)).get("Bob");
+	}
+
+	@Test
+	void testWritesInvalidate() throws Exception {
+		when(backend.get("Bob")).thenReturn(BOB);
+		service.get("Bob");
+		service.update(BOB);
+		service.get("Bob");
+		service.delete("Bob");
+		service.get("Bob");
+		service.add(BOB);
+		service.get("Bob");
+		verify(backend, times(4)).get("Bob");
+	}
+
+	@Test
+	void testWriteDuringLookupIsNotCached() throws Exception {
+		// The backend is updated while the lookup is in flight, so what it read may be outdated
+		when(backend.get("Bob")).then(invoke -> {
+			service.update(BOB);
+			return BOB;
+		});
+		service.get("Bob");
+		assertNull(service.getCache().get("Bob"));
+	}
+
+	@Test
+	void testGetAllFetchesOnlyUncached() throws Exception {
+		Contact robert = new Contact("Robert", Collections.emptyList(), "Mars");
+		when(backend.get("Bob")).thenReturn(BOB);
+		service.get("Bob");
+		when(backend.getAll(Arrays.asList("Robert", "Alice"))).thenReturn(Collections.singletonMap("Robert", robert));
+		Map<String, Contact> found = service.getAll(Arrays.asList("Bob", "Robert", "Alice"));
+		assertEquals(2, found.size());
+		assertEquals(BOB, found.get("Bob"));
+		assertEquals(robert, found.get("Robert"));
+		// Both the found and the missing names are cached now
+		assertEquals(found, service.getAll(Arrays.asList("Bob", "Robert", "Alice")));
+		assertThrows(MissingContactException.class, () -> service.get("Alice"));
+		verify(backend, times(1)).getAll(Arrays.asList("Robert", "Alice"));
+	}
+}
@@ -0,0 +1,125 @@
+package me.coley.addressbook.service;
+
+import me.coley.addressbook.exception.ElasticException;
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.exception.ServiceUnavailableException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.service.impl.CircuitBreakingContactService;
+import me.coley.addressbook.util.BoundedCache;
+import me.coley.addressbook.util.CircuitBreaker;
+import me.coley.addressbook.util.Futures;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link CircuitBreakingContactService}
+ */
+public class CircuitBreakingServiceTests {
+	private static final Contact BOB = new Contact("Bob", Collections.emptyList(), "Earth");
+	private final AtomicLong time = new AtomicLong();
+	private ContactService backend;
+	private CircuitBreakingContactService service;
+
+	@BeforeEach
+	void setup() {
+		backend = mock(ContactService.class);
+		service = new CircuitBreakingContactService(backend, new CircuitBreaker(2, 50, 60_000, 100, 5_000, time::get),
+				new BoundedCache<>(100, Long.MAX_VALUE, copy -> 1, time::get), 60_000, time::get);
+	}
+
+	@Test
+	void testOpenBreakerFailsFast() throws Exception {
+		when(backend.getAsync("Bob")).thenReturn(Futures.failed(new ElasticException("timeout")));
+		fail(service.getAsync("Bob"));
+		fail(service.getAsync("Bob"));
+		ExecutionException ex = assertThrows(ExecutionException.class, () -> service.getAsync("Bob").get());
+		assertTrue(ex.getCause() instanceof ServiceUnavailableException);
+		assertThrows(ServiceUnavailableException.class, () -> service.exists("Bob"));
+		verify(backend, never()).exists("Bob");
+	}
+
+	@Test
+	void testClientErrorsDoNotOpen() throws Exception {
+		when(backend.getAsync("Bob")).thenReturn(Futures.failed(new MissingContactException("Bob", "missing")));
+		for(int i = 0; i < 4; i++)
+			fail(service.getAsync("Bob"));
+		assertEquals(CircuitBreaker.State.CLOSED, service.getBreaker().getState());
+	}
+
+	@Test
+	void testStaleFallback() throws Exception {
+		when(backend.getAsync("Bob")).thenReturn(CompletableFuture.completedFuture(BOB));
+		service.getAsync("Bob").get();
+		time.addAndGet(TimeUnit.SECONDS.toNanos(30));
+		AtomicLong age = new AtomicLong(-1);
+		CompletableFuture<Contact> down = Futures.failed(new ServiceUnavailableException("down", 1));
+		assertSame(BOB, service.withStaleFallback(down, "Bob", age::set).get());
+		assertEquals(30, age.get());
+		// Every name needs a copy
+		CompletableFuture<Map<String, Contact>> downAll = Futures.failed(new ElasticException("down"));
+		assertEquals(Collections.singletonMap("Bob", BOB),
+				service.withStaleFallback(downAll, Collections.singleton("Bob"), age::set).get());
+		assertThrows(ExecutionException.class,
+				() -> service.withStaleFallback(downAll, Arrays.asList("Bob", "Alice"), age::set).get());
+		// Client errors are not answered from copies
+		CompletableFuture<Contact> missing = Futures.failed(new MissingContactException("Bob", "missing"));
+		assertThrows(ExecutionException.class, () -> service.withStaleFallback(missing, "Bob", age::set).get());
+		assertEquals(2, service.getStaleServedCount());
+	}
+
+	@Test
+	void testDeleteDropsCopy() throws Exception {
+		service.add(BOB);
+		service.delete("Bob");
+		CompletableFuture<Contact> down = Futures.failed(new ElasticException("down"));
+		assertThrows(ExecutionException.class, () -> service.withStaleFallback(down, "Bob", age -> {}).get());
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void testExportOnlyGuardsBackend() {
+		// Each export takes far longer than the slow call threshold, once it has started
+		doAnswer(invoke -> {
+			Consumer<Contact> action = invoke.getArgument(1);
+			action.accept(BOB);
+			time.addAndGet(TimeUnit.MINUTES.toNanos(5));
+			action.accept(BOB);
+			return null;
+		}).when(backend).forEach(any(), any());
+		for(int i = 0; i < 4; i++)
+			service.forEach(null, contact -> {});
+		// Clients that disconnect are not a backend failure
+		for(int i = 0; i < 4; i++)
+			assertThrows(UncheckedIOException.class, () -> service.forEach(null, contact -> {
+				throw new UncheckedIOException(new IOException("Broken pipe"));
+			}));
+		assertEquals(CircuitBreaker.State.CLOSED, service.getBreaker().getState());
+		doThrow(new ElasticException("down")).when(backend).forEach(any(), any());
+		assertThrows(ElasticException.class, () -> service.forEach(null, contact -> {}));
+		assertEquals(CircuitBreaker.State.OPEN, service.getBreaker().getState());
+	}
+
+	private static void fail(CompletableFuture<?> future) {
+		assertThrows(ExecutionException.class, future::get);
+	}
+}
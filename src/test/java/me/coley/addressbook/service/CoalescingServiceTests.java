@@ -0,0 +1,142 @@
+package me.coley.addressbook.service;
+
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.service.impl.CoalescingContactService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link CoalescingContactService}
+ */
+public class CoalescingServiceTests {
+	private static final Contact BOB = new Contact("Bob", Collections.emptyList(), "Earth");
+	private static final int CALLERS = 8;
+	private final CountDownLatch release = new CountDownLatch(1);
+	private ContactService backend;
+	private CoalescingContactService service;
+
+	@BeforeEach
+	void setup() {
+		backend = mock(ContactService.class);
+		service = new CoalescingContactService(backend);
+	}
+
+	@Test
+	void testConcurrentGetsShareRequest() throws Exception {
+		when(backend.get("Bob")).then(invoke -> {
+			release.await();
+			return BOB;
+		});
+		for(Future<Object> result : concurrently(() -> service.get("Bob")))
+			assertSame(BOB, result.get());
+		verify(backend, times(1)).get("Bob");
+	}
+
+	@Test
+	void testConcurrentGetsShareFailure() throws Exception {
+		MissingContactException missing = new MissingContactException("Bob", "missing");
+		when(backend.get("Bob")).then(invoke -> {
+			release.await();
+			throw missing;
+		});
+		for(Future<Object> result : concurrently(() -> {
+			try {
+				return service.get("Bob");
+			} catch(MissingContactException ex) {
+				return ex;
+			}
+		}))
+			assertSame(missing, result.get());
+		verify(backend, times(1)).get("Bob");
+	}
+
+	@Test
+	void testConcurrentExistsShareRequest() throws Exception {
+		when(backend.exists("Bob")).then(invoke -> {
+			release.await();
+			return true;
+		});
+		for(Future<Object> result : concurrently(() -> service.exists("Bob")))
+			assertEquals(true, result.get());
+		verify(backend, times(1)).exists("Bob");
+	}
+
+	@Test
+	void testAsyncGetsShareRequest() throws Exception {
+		CompletableFuture<Contact> pending = new CompletableFuture<>();
+		when(backend.getAsync("Bob")).thenReturn(pending);
+		CompletableFuture<Contact> first = service.getAsync("Bob");
+		CompletableFuture<Contact> second = service.getAsync("Bob");
+		assertFalse(first.isDone());
+		pending.complete(BOB);
+		assertSame(BOB, first.get());
+		assertSame(BOB, second.get());
+		verify(backend, times(1)).getAsync("Bob");
+		assertEquals(1, service.getCoalescedCount());
+	}
+
+	@Test
+	void testSequentialGetsAreNotShared() throws Exception {
+		when(backend.get("Bob")).thenReturn(BOB);
+		service.get("Bob");
+		service.get("Bob");
+		verify(backend, times(2)).get("Bob");
+		assertEquals(0, service.getCoalescedCount());
+	}
+
+	@Test
+	void testWriteDropsInFlightLookup() throws Exception {
+		when(backend.getAsync("Bob")).thenReturn(new CompletableFuture<>());
+		service.getAsync("Bob");
+		// A lookup after the write must not share the one started before it
+		service.update(BOB);
+		service.getAsync("Bob");
+		verify(backend, times(2)).getAsync("Bob");
+	}
+
+	/**
+	 * Run a call from several threads at once, releasing the backend once all but the first
+	 * are waiting on the first.
+	 *
+	 * @param call
+	 * 		Call to run.
+	 *
+	 * @return Results of each thread's call.
+	 */
+	private List<Future<Object>> concurrently(Callable<Object> call) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+		try {
+			List<Future<Object>> results = new ArrayList<>();
+			for(int i = 0; i < CALLERS; i++)
+				results.add(executor.submit(call));
+			long deadline = System.currentTimeMillis() + 5_000;
+			while(service.getCoalescedCount() < CALLERS - 1 && System.currentTimeMillis() < deadline)
+				Thread.sleep(1);
+			assertEquals(CALLERS - 1, service.getCoalescedCount());
+			release.countDown();
+			for(Future<Object> result : results)
+				result.get(5, TimeUnit.SECONDS);
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package me.coley.addressbook.service;
+
+import com.sun.net.httpserver.HttpServer;
+import me.coley.addressbook.Options;
+import me.coley.addressbook.exception.ElasticException;
+import me.coley.addressbook.service.impl.ElasticContactService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link ElasticContactService} connection options, against stub HTTP servers
+ * that answer document existence checks.
+ */
+public class ElasticClientTests {
+	private final List<Stub> stubs = new ArrayList<>();
+
+	@AfterEach
+	void cleanup() {
+		for(Stub stub : stubs)
+			stub.server.stop(0);
+	}
+
+	@Test
+	void testRequestsSpreadAcrossHosts() throws Exception {
+		Stub first = stub(0);
+		Stub second = stub(0);
+		try (ElasticContactService service = service(options(first, second))) {
+			for(int i = 0; i < 10; i++)
+				assertTrue(service.exists("Bob"));
+		}
+		assertEquals(10, first.requests.get() + second.requests.get());
+		assertTrue(first.requests.get() > 0);
+		assertTrue(second.requests.get() > 0);
+	}
+
+	@Test
+	void testHostWithoutPortUsesElasticPort() throws Exception {
+		Stub stub = stub(0);
+		Options options = new Options();
+		options.setElasticPort(stub.port());
+		options.setElasticHosts(Arrays.asList("localhost"));
+		try (ElasticContactService service = service(options)) {
+			assertTrue(service.exists("Bob"));
+		}
+		assertEquals(1, stub.requests.get());
+	}
+
+	@Test
+	void testMalformedHostRejected() {
+		Options options = new Options();
+		options.setElasticHosts(Arrays.asList("localhost:port"));
+		assertThrows(IllegalArgumentException.class, () -> service(options));
+	}
+
+	@Test
+	void testSocketTimeout() throws Exception {
+		Stub slow = stub(2_000);
+		Options options = options(slow);
+		options.setElasticSocketTimeout(200);
+		try (ElasticContactService service = service(options)) {
+			long start = System.nanoTime();
+			assertThrows(ElasticException.class, () -> service.exists("Bob"));
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_500);
+		}
+	}
+
+	@Test
+	void testSlowNodeFailsOver() throws Exception {
+		Stub slow = stub(2_000);
+		Stub fast = stub(0);
+		Options options = options(slow, fast);
+		options.setElasticSocketTimeout(200);
+		try (ElasticContactService service = service(options)) {
+			// Requests that hit the slow node time out, and are retried on the fast one
+			for(int i = 0; i < 4; i++)
+				assertTrue(service.exists("Bob"));
+		}
+		assertEquals(4, fast.requests.get());
+	}
+
+	@Test
+	void testConnectionsPerNodeLimited() throws Exception {
+		Stub slow = stub(200);
+		Options options = options(slow);
+		options.setElasticMaxConnectionsPerNode(2);
+		try (ElasticContactService service = service(options)) {
+			List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+			for(int i = 0; i < 8; i++)
+				futures.add(service.existsAsync("Bob"));
+			for(CompletableFuture<Boolean> future : futures)
+				assertTrue(future.get(10, TimeUnit.SECONDS));
+		}
+		assertEquals(8, slow.requests.get());
+		assertEquals(2, slow.maxConcurrent.get());
+	}
+
+	@Test
+	void testSniffsNodes() throws Exception {
+		Stub stub = stub(0);
+		Options options = options(stub);
+		options.setElasticSniffInterval(60_000);
+		try (ElasticContactService service = service(options)) {
+			// The first sniff runs when the service is created
+			assertTrue(stub.sniffed.await(5, TimeUnit.SECONDS));
+			assertTrue(service.exists("Bob"));
+		}
+	}
+
+	private Stub stub(long delay) throws IOException {
+		Stub stub = new Stub(delay);
+		stubs.add(stub);
+		return stub;
+	}
+
+	private static Options options(Stub... stubs) {
+		Options options = new Options();
+		List<String> hosts = new ArrayList<>();
+		for(Stub stub : stubs)
+			hosts.add("localhost:" + stub.port());
+		options.setElasticHosts(hosts);
+		return options;
+	}
+
+	private static ElasticContactService service(Options options) {
+		return new ElasticContactService("test", options);
+	}
+
+	/**
+	 * HTTP server that reports every document as existing, and itself as the only node.
+	 */
+	private static class Stub {
+		private final AtomicInteger requests = new AtomicInteger();
+		private final AtomicInteger concurrent = new AtomicInteger();
+		private final AtomicInteger maxConcurrent = new AtomicInteger();
+		private final CountDownLatch sniffed = new CountDownLatch(1);
+		private final HttpServer server;
+
+		private Stub(long delay) throws IOException {
+			server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+			server.setExecutor(Executors.newCachedThreadPool());
+			server.createContext("/test/", exchange -> {
+				requests.incrementAndGet();
+				maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(delay);
+					// Counted as done before responding, the client may reuse the connection right away
+					concurrent.decrementAndGet();
+					exchange.sendResponseHeaders(200, -1);
+				} catch(InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				} finally {
+					exchange.close();
+				}
+			});
+			server.createContext("/_nodes/http", exchange -> {
+				byte[] body = ("{\"nodes\":{\"stub\":{\"version\":\"6.8.6\",\"roles\":[\"master\",\"data\"]," +
+						"\"http\":{\"publish_address\":\"localhost:" + port() + "\"}}}}").getBytes(StandardCharsets.UTF_8);
+				exchange.getResponseHeaders().add("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+				sniffed.countDown();
+			});
+			server.start();
+		}
+
+		private int port() {
+			return server.getAddress().getPort();
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package me.coley.addressbook.service;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import me.coley.addressbook.Options;
+import me.coley.addressbook.model.ContactQuery;
+import me.coley.addressbook.model.Phone;
+import me.coley.addressbook.service.impl.ElasticContactService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the {@link ElasticContactService} index bootstrap and the searches it sends, against a stub HTTP server.
+ */
+public class ElasticIndexTests {
+	private static final String EXPLICIT_MAPPING = "{\"test\":{\"mappings\":{\"contact\":{\"properties\":{" +
+			"\"name\":{\"type\":\"keyword\",\"fields\":{\"text\":{\"type\":\"text\"}," +
+			"\"prefix\":{\"type\":\"text\",\"analyzer\":\"edge_ngram\"}}}," +
+			"\"address\":{\"type\":\"text\"}," +
+			"\"numbers\":{\"properties\":{\"number\":{\"type\":\"keyword\"},\"type\":{\"type\":\"keyword\"}}}}}}}}";
+	// Explicit mapping from before suggestions were added
+	private static final String UNPREFIXED_MAPPING = "{\"test\":{\"mappings\":{\"contact\":{\"properties\":{" +
+			"\"name\":{\"type\":\"keyword\",\"fields\":{\"text\":{\"type\":\"text\"}}}," +
+			"\"address\":{\"type\":\"text\"}," +
+			"\"numbers\":{\"properties\":{\"number\":{\"type\":\"keyword\"},\"type\":{\"type\":\"keyword\"}}}}}}}}";
+	private static final String DYNAMIC_MAPPING = "{\"test\":{\"mappings\":{\"contact\":{\"properties\":{" +
+			"\"name\":{\"type\":\"text\",\"fields\":{\"keyword\":{\"type\":\"keyword\",\"ignore_above\":256}}}," +
+			"\"address\":{\"type\":\"text\",\"fields\":{\"keyword\":{\"type\":\"keyword\",\"ignore_above\":256}}}}}}}}";
+	private static final String EMPTY_SEARCH = "{\"took\":1,\"timed_out\":false," +
+			"\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0}," +
+			"\"hits\":{\"total\":0,\"max_score\":null,\"hits\":[]}}";
+	private static final String SUGGEST_SEARCH = "{\"took\":1,\"timed_out\":false," +
+			"\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0}," +
+			"\"hits\":{\"total\":-1,\"max_score\":null,\"hits\":[" +
+			"{\"_index\":\"test\",\"_type\":\"contact\",\"_id\":\"Bob\",\"_score\":2.0,\"sort\":[2.0,\"Bob\"]}," +
+			"{\"_index\":\"test\",\"_type\":\"contact\",\"_id\":\"Bobby\",\"_score\":1.0,\"sort\":[1.0,\"Bobby\"]}]}}";
+	// Last request body by method
+	private final Map<String, String> bodies = new ConcurrentHashMap<>();
+	private HttpServer server;
+	private volatile String mapping;
+	private volatile String search = EMPTY_SEARCH;
+
+	@BeforeEach
+	void setup() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+	}
+
+	@AfterEach
+	void cleanup() {
+		server.stop(0);
+	}
+
+	@Test
+	void testCreatesIndexWithMapping() throws Exception {
+		Options options = options();
+		options.setElasticShards(3);
+		options.setElasticRefreshInterval("30s");
+		try (ElasticContactService service = new ElasticContactService("test", options)) {
+			service.bootstrap();
+		}
+		JsonObject created = new JsonParser().parse(bodies.get("PUT")).getAsJsonObject();
+		// The client sends the settings as nested objects
+		JsonObject settings = created.getAsJsonObject("settings").getAsJsonObject("index");
+		assertEquals(3, settings.get("number_of_shards").getAsInt());
+		assertEquals("30s", settings.get("refresh_interval").getAsString());
+		JsonObject properties = created.getAsJsonObject("mappings").getAsJsonObject("contact")
+				.getAsJsonObject("properties");
+		assertEquals("keyword", properties.getAsJsonObject("name").get("type").getAsString());
+		assertEquals("edge_ngram", properties.getAsJsonObject("address").get("analyzer").getAsString());
+		assertEquals("edge_ngram", properties.getAsJsonObject("name").getAsJsonObject("fields")
+				.getAsJsonObject("prefix").get("analyzer").getAsString());
+		assertEquals("keyword", properties.getAsJsonObject("numbers").getAsJsonObject("properties")
+				.getAsJsonObject("number").get("type").getAsString());
+	}
+
+	@Test
+	void testCompatibleIndexLeftAlone() throws Exception {
+		mapping = EXPLICIT_MAPPING;
+		try (ElasticContactService service = new ElasticContactService("test", options())) {
+			service.bootstrap();
+			service.contactsAfter(null, 10, null);
+		}
+		assertFalse(bodies.containsKey("PUT"));
+		assertTrue(bodies.get("POST").contains("{\"name\":{\"order\":\"asc\"}}"));
+	}
+
+	@Test
+	void testDynamicIndexSortsOnLegacyField() throws Exception {
+		mapping = DYNAMIC_MAPPING;
+		try (ElasticContactService service = new ElasticContactService("test", options())) {
+			service.bootstrap();
+			service.contactsAfter(null, 10, null);
+		}
+		assertFalse(bodies.containsKey("PUT"));
+		assertTrue(bodies.get("POST").contains("{\"name.keyword\":{\"order\":\"asc\"}}"));
+	}
+
+	@Test
+	void testSearchCompilesFilters() throws Exception {
+		mapping = EXPLICIT_MAPPING;
+		try (ElasticContactService service = new ElasticContactService("test", options())) {
+			service.bootstrap();
+			service.search(new ContactQuery(null, "Bo", "5551234567", Phone.Type.HOME, "main"), null, 10);
+		}
+		JsonObject bool = new JsonParser().parse(bodies.get("POST")).getAsJsonObject()
+				.getAsJsonObject("query").getAsJsonObject("bool");
+		String filters = bool.get("filter").toString();
+		assertTrue(filters.contains("{\"prefix\":{\"name\":{\"value\":\"Bo\""));
+		assertTrue(filters.contains("{\"term\":{\"numbers.number\":{\"value\":\"555-123-4567\""));
+		assertTrue(filters.contains("{\"term\":{\"numbers.type\":{\"value\":\"HOME\""));
+		assertTrue(filters.contains("{\"match\":{\"address\":{\"query\":\"main\",\"operator\":\"AND\""));
+		assertFalse(bool.has("must"));
+	}
+
+	@Test
+	void testExpensiveQueriesRejected() throws Exception {
+		mapping = EXPLICIT_MAPPING;
+		try (ElasticContactService service = new ElasticContactService("test", options())) {
+			service.bootstrap();
+			bodies.clear();
+			assertThrows(IllegalArgumentException.class, () -> service.contacts(1, 10, "*mith"));
+			assertThrows(IllegalArgumentException.class, () -> service.contactsAfter(null, 10, "name:?ob"));
+			assertThrows(IllegalArgumentException.class, () -> service.contactsAfter(null, 10, "+address:/ma.*n/"));
+			assertThrows(IllegalArgumentException.class, () -> service.contactsAfter(null, 10,
+					String.join(" OR ", Collections.nCopies(40, "bob"))));
+			assertThrows(IllegalArgumentException.class, () -> service.contactsAfter(null, 10,
+					String.join("", Collections.nCopies(20, "(")) + "bob" + String.join("", Collections.nCopies(20, ")"))));
+			assertFalse(bodies.containsKey("POST"));
+			// Escaped and trailing wildcards are cheap
+			service.contactsAfter(null, 10, "name:Bo* AND address:\\/main");
+		}
+		assertTrue(bodies.get("POST").contains("\"allow_leading_wildcard\":false"));
+	}
+
+	@Test
+	void testSuggestLoadsOnlyNames() throws Exception {
+		mapping = EXPLICIT_MAPPING;
+		search = SUGGEST_SEARCH;
+		try (ElasticContactService service = new ElasticContactService("test", options())) {
+			service.bootstrap();
+			assertEquals(Arrays.asList("Bob", "Bobby"), service.suggest("bo", 5));
+		}
+		JsonObject request = new JsonParser().parse(bodies.get("POST")).getAsJsonObject();
+		assertEquals(5, request.get("size").getAsInt());
+		assertFalse(request.get("_source").getAsBoolean());
+		assertTrue(request.get("query").toString().contains("\"match\":{\"name.prefix\":{\"query\":\"bo\""));
+	}
+
+	@Test
+	void testSuggestWithoutPrefixField() throws Exception {
+		mapping = UNPREFIXED_MAPPING;
+		try (ElasticContactService service = new ElasticContactService("test", options())) {
+			service.bootstrap();
+			service.suggest("Bo", 5);
+		}
+		String query = new JsonParser().parse(bodies.get("POST")).getAsJsonObject().get("query").toString();
+		assertFalse(query.contains("name.prefix"));
+		assertTrue(query.contains("{\"prefix\":{\"name\":{\"value\":\"Bo\""));
+	}
+
+	private Options options() {
+		Options options = new Options();
+		options.setElasticHosts(Collections.singletonList("localhost:" + server.getAddress().getPort()));
+		return options;
+	}
+
+	/**
+	 * Answers index existence, creation, mapping and search requests.
+	 * The index exists when a mapping is set.
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		String method = exchange.getRequestMethod();
+		String path = exchange.getRequestURI().getPath();
+		bodies.put(method, read(exchange.getRequestBody()));
+		try {
+			if (method.equals("HEAD"))
+				exchange.sendResponseHeaders(mapping != null ? 200 : 404, -1);
+			else if (method.equals("PUT"))
+				respond(exchange, "{\"acknowledged\":true,\"shards_acknowledged\":true,\"index\":\"test\"}");
+			else if (path.endsWith("/_mapping"))
+				respond(exchange, mapping);
+			else if (path.endsWith("/_search"))
+				respond(exchange, search);
+			else
+				exchange.sendResponseHeaders(400, -1);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private static void respond(HttpExchange exchange, String json) throws IOException {
+		byte[] body = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for(int read; (read = in.read(buffer)) != -1; )
+			out.write(buffer, 0, read);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,34 @@
+package me.coley.addressbook.service;
+
+import me.coley.addressbook.model.Contact;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ForwardingContactService}
+ */
+public class ForwardingServiceTests {
+	@Test
+	void testForwardsAsyncCalls() throws Exception {
+		ContactService delegate = mock(ContactService.class);
+		Contact bob = new Contact("Bob", Collections.emptyList(), "Earth");
+		when(delegate.getAsync("Bob")).thenReturn(CompletableFuture.completedFuture(bob));
+		when(delegate.contactsAsync(0, 10, null)).thenReturn(CompletableFuture.completedFuture(Collections.emptyList()));
+		ContactService forwarding = new ForwardingContactService(delegate) {};
+		assertSame(bob, forwarding.getAsync("Bob").get());
+		assertTrue(forwarding.contactsAsync(0, 10, null).get().isEmpty());
+		// Not run through the blocking calls on the calling thread
+		verify(delegate, never()).get(anyString());
+		verify(delegate, never()).contacts(any(int.class), any(int.class), any());
+	}
+}
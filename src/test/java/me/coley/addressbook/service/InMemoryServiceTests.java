@@ -0,0 +1,266 @@
+package me.coley.addressbook.service;
+
+import me.coley.addressbook.exception.DuplicateContactException;
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.exception.PreconditionFailedException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactPage;
+import me.coley.addressbook.model.ContactQuery;
+import me.coley.addressbook.model.ContactResult;
+import me.coley.addressbook.model.Phone;
+import me.coley.addressbook.service.impl.InMemoryContactService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link InMemoryContactService}.
+ */
+public class InMemoryServiceTests {
+	private static final String ADDRESS = "3rd rock from the sun";
+	private InMemoryContactService service;
+
+	@BeforeEach
+	void setup() {
+		service = new InMemoryContactService();
+	}
+
+	@Test
+	void testErrorOnDuplicate() {
+		Contact contact = new Contact("Bob", Collections.emptyList(), ADDRESS);
+		// First addition succeeds
+		assertDoesNotThrow(() -> service.add(contact));
+		// Second addition fails
+		assertThrows(DuplicateContactException.class, () -> service.add(contact));
+	}
+
+	@Test
+	void testAddAll() {
+		Contact bob = new Contact("Bob", Collections.emptyList(), ADDRESS);
+		Contact robert = new Contact("Robert", Collections.emptyList(), ADDRESS);
+		assertDoesNotThrow(() -> service.add(bob));
+		// Only the existing contact fails, the rest of the batch goes through
+		List<ContactResult> results = service.addAll(Arrays.asList(bob, robert));
+		assertEquals(2, results.size());
+		assertFalse(results.get(0).isSuccess());
+		assertEquals(DuplicateContactException.class, results.get(0).getFailCause().getClass());
+		assertTrue(results.get(1).isSuccess());
+		assertTrue(service.exists("Robert"));
+	}
+
+	@Test
+	void testExists() {
+		Contact contact = new Contact("Bob", Collections.emptyList(), ADDRESS);
+		// Does not exist
+		assertFalse(service.exists("Bob"));
+		// Add
+		assertDoesNotThrow(() -> service.add(contact));
+		// Exists now
+		assertTrue(service.exists("Bob"));
+	}
+
+	@Test
+	void testGetAll() {
+		Contact bob = new Contact("Bob", Collections.emptyList(), ADDRESS);
+		assertDoesNotThrow(() -> service.add(bob));
+		// Missing names are left out rather than failing the lookup
+		Map<String, Contact> found = service.getAll(Arrays.asList("Bob", "Robert"));
+		assertEquals(1, found.size());
+		assertEquals(bob, found.get("Bob"));
+	}
+
+	@Test
+	void testDelete() {
+		Contact contact = new Contact("Bob", Collections.emptyList(), ADDRESS);
+		// Cannot delete what is not there
+		assertThrows(MissingContactException.class, () -> service.delete("Bob"));
+		// Add
+		assertDoesNotThrow(() -> service.add(contact));
+		// Deletion should now succeed, and the contact is no longer searchable
+		assertDoesNotThrow(() -> service.delete("Bob"));
+		assertTrue(service.contacts(1, 100, "name:Bob").isEmpty());
+	}
+
+	@Test
+	void testSearch() {
+		// Add 10 dummy contacts
+		for(int i = 0; i < 10; i++)
+			assertDoesNotThrow(() -> service.add(new Contact(UUID.randomUUID().toString(),
+					Collections.emptyList(), ADDRESS)));
+		// Add a few non-dummy contacts
+		Contact bobby = new Contact("Bobby", Collections.emptyList(), ADDRESS);
+		Contact robert = new Contact("Robert", Collections.emptyList(), ADDRESS);
+		assertDoesNotThrow(() -> {
+			service.add(new Contact("Bob", Collections.emptyList(), ADDRESS));
+			service.add(bobby);
+			service.add(robert);
+		});
+		// Use search to fetch Robert and Bobby
+		Collection<Contact> expected = new HashSet<>(Arrays.asList(bobby, robert));
+		Collection<Contact> contacts = new HashSet<>(service.contacts(1, 100, "name:(Robert) OR (Bobby)"));
+		assertEquals(expected, contacts);
+	}
+
+	@Test
+	void testQuerySyntax() {
+		Contact bob = new Contact("Bob Smith", Collections.singletonList(new Phone("555-123-4567", Phone.Type.MOBILE)),
+				"12 Main Street");
+		Contact alice = new Contact("Alice Smith", Collections.singletonList(new Phone("555-987-6543", Phone.Type.HOME)),
+				"34 Side Street");
+		assertDoesNotThrow(() -> {
+			service.add(bob);
+			service.add(alice);
+		});
+		assertEquals(Arrays.asList(alice, bob), service.contacts(1, 10, "smith"));
+		assertEquals(Collections.singletonList(bob), service.contacts(1, 10, "smith AND main"));
+		assertEquals(Collections.singletonList(bob), service.contacts(1, 10, "name:\"bob smith\""));
+		assertEquals(Collections.singletonList(alice), service.contacts(1, 10, "name:Al*"));
+		assertEquals(Collections.singletonList(bob), service.contacts(1, 10, "address:(main AND street)"));
+		assertEquals(Collections.singletonList(bob), service.contacts(1, 10, "numbers.number:5551234567"));
+		assertEquals(Collections.singletonList(alice), service.contacts(1, 10, "numbers.number:987"));
+		assertEquals(Collections.singletonList(alice), service.contacts(1, 10, "numbers.type:home"));
+		// Unsupported syntax is rejected rather than silently ignored
+		assertThrows(IllegalArgumentException.class, () -> service.contacts(1, 10, "*mith"));
+		assertThrows(IllegalArgumentException.class, () -> service.contacts(1, 10, "name:(bob"));
+		assertThrows(IllegalArgumentException.class, () -> service.contacts(1, 10, "email:bob"));
+		// Deep nesting is refused before it can exhaust the stack
+		String deep = String.join("", Collections.nCopies(2500, "(")) + "bob" +
+				String.join("", Collections.nCopies(2500, ")"));
+		assertThrows(IllegalArgumentException.class, () -> service.contacts(1, 10, deep));
+		assertEquals(Collections.singletonList(bob), service.contacts(1, 10, "((((bob))))"));
+	}
+
+	@Test
+	void testStructuredSearch() {
+		Contact bob = new Contact("Bob Smith", Arrays.asList(new Phone("555-123-4567", Phone.Type.MOBILE),
+				new Phone("555-222-3333", Phone.Type.HOME)), "12 Main Street");
+		Contact bobby = new Contact("Bobby", Collections.singletonList(new Phone("555-987-6543", Phone.Type.HOME)),
+				"34 Side Street");
+		Contact robert = new Contact("Robert", Collections.emptyList(), "56 Main Road");
+		assertTrue(service.addAll(Arrays.asList(bob, bobby, robert)).stream().allMatch(ContactResult::isSuccess));
+		assertEquals(Collections.singletonList(bobby), search(new ContactQuery("Bobby", null, null, null, null)));
+		assertEquals(Arrays.asList(bob, bobby), search(new ContactQuery(null, "Bob", null, null, null)));
+		assertEquals(Collections.singletonList(bob), search(new ContactQuery(null, null, "5551234567", null, null)));
+		assertEquals(Arrays.asList(bob, bobby), search(new ContactQuery(null, null, null, Phone.Type.HOME, null)));
+		// Address words match the start of words, and must all match
+		assertEquals(Arrays.asList(bob, robert), search(new ContactQuery(null, null, null, null, "mai")));
+		assertEquals(Collections.singletonList(robert), search(new ContactQuery(null, null, null, null, "main ro")));
+		// Filters combine
+		assertEquals(Collections.singletonList(bob), search(new ContactQuery(null, "Bob", null, null, "main")));
+		assertTrue(search(new ContactQuery("Bob", null, null, null, null)).isEmpty());
+		assertEquals(Arrays.asList(bob, bobby, robert), search(new ContactQuery(null, null, null, null, null)));
+		// Paging by cursor
+		ContactPage first = service.search(new ContactQuery(null, null, null, null, null), null, 2);
+		assertEquals(Arrays.asList(bob, bobby), first.getContacts());
+		assertEquals(Collections.singletonList(robert),
+				service.search(new ContactQuery(null, null, null, null, null), first.getNext(), 2).getContacts());
+		// Filters are checked up front
+		assertThrows(IllegalArgumentException.class, () -> new ContactQuery(null, "", null, null, null));
+		assertThrows(IllegalArgumentException.class, () -> new ContactQuery(null, null, "123", null, null));
+		assertThrows(IllegalArgumentException.class, () -> new ContactQuery(null, null, null, null, "a b c d e f g h i j k"));
+	}
+
+	private List<Contact> search(ContactQuery query) {
+		return service.search(query, null, 10).getContacts();
+	}
+
+	@Test
+	void testSuggest() {
+		Contact bob = new Contact("Bob Smith", Collections.emptyList(), "12 Main Street");
+		Contact alice = new Contact("Alice Jones", Collections.emptyList(), "34 Bobcat Road");
+		Contact bobby = new Contact("Bobby", Collections.emptyList(), "56 Side Street");
+		assertTrue(service.addAll(Arrays.asList(bob, alice, bobby)).stream().allMatch(ContactResult::isSuccess));
+		// Name matches come first, each word of the prefix matches the start of a word
+		assertEquals(Arrays.asList("Bob Smith", "Bobby", "Alice Jones"), service.suggest("bo", 10));
+		assertEquals(Collections.singletonList("Bob Smith"), service.suggest("bob sm", 10));
+		assertEquals(Arrays.asList("Bob Smith", "Bobby"), service.suggest("BO", 2));
+		assertEquals(Collections.singletonList("Bob Smith"), service.suggest("main", 10));
+		assertTrue(service.suggest("zed", 10).isEmpty());
+		assertTrue(service.suggest("  ", 10).isEmpty());
+	}
+
+	@Test
+	void testPaging() {
+		for(int i = 0; i < 25; i++)
+			assertDoesNotThrow(() -> service.add(new Contact(UUID.randomUUID().toString(),
+					Collections.emptyList(), ADDRESS)));
+		assertEquals(10, service.contacts(1, 10, null).size());
+		assertEquals(5, service.contacts(3, 10, null).size());
+		assertTrue(service.contacts(4, 10, null).isEmpty());
+		assertThrows(IllegalStateException.class, () -> service.contacts(0, 10, null));
+	}
+
+	@Test
+	void testCursorPaging() {
+		List<Contact> contacts = new ArrayList<>();
+		for(int i = 0; i < 25; i++)
+			contacts.add(new Contact(UUID.randomUUID().toString(), Collections.emptyList(), ADDRESS));
+		assertTrue(service.addAll(contacts).stream().allMatch(ContactResult::isSuccess));
+		// Walk all pages by following the cursors
+		Collection<Contact> visited = new HashSet<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			ContactPage page = service.contactsAfter(cursor, 10, "rock");
+			page.getContacts().forEach(contact -> assertTrue(visited.add(contact)));
+			cursor = page.getNext();
+			pages++;
+		} while(cursor != null);
+		assertEquals(3, pages);
+		assertEquals(new HashSet<>(contacts), visited);
+	}
+
+	@Test
+	void testForEach() {
+		List<Contact> contacts = new ArrayList<>();
+		for(int i = 0; i < 1200; i++)
+			contacts.add(new Contact(UUID.randomUUID().toString(), Collections.emptyList(), ADDRESS));
+		assertTrue(service.addAll(contacts).stream().allMatch(ContactResult::isSuccess));
+		// Every contact is visited exactly once
+		Collection<Contact> visited = new HashSet<>();
+		service.forEach(null, contact -> assertTrue(visited.add(contact)));
+		assertEquals(1200, visited.size());
+	}
+
+	@Test
+	void testUpdate() {
+		Contact contact = new Contact("Bob", Collections.emptyList(), ADDRESS);
+		// Cannot update what is not there
+		assertThrows(MissingContactException.class, () -> service.update(contact));
+		// Add
+		assertDoesNotThrow(() -> service.add(contact));
+		// Update should now succeed
+		Contact contactUpdated = new Contact("Bob", Collections.singletonList(new Phone("444-333-4444", Phone.Type.MOBILE)), ADDRESS);
+		assertDoesNotThrow(() -> {
+			// Pop off updated value
+			Contact old = service.update(contactUpdated);
+			assertTrue(old.getNumbers().isEmpty());
+		});
+		// Verify value has been set, and the indexes follow it
+		assertDoesNotThrow(() -> assertEquals(1, service.get("Bob").getNumbers().size()));
+		assertEquals(1, service.contacts(1, 10, "numbers.type:mobile").size());
+	}
+
+	@Test
+	void testConditionalUpdate() {
+		Contact contact = new Contact("Bob", Collections.emptyList(), ADDRESS);
+		assertDoesNotThrow(() -> service.add(contact));
+		Contact contactUpdated = new Contact("Bob", Collections.emptyList(), "Mars");
+		// Refused when the current contact fails the precondition, and left unchanged
+		assertThrows(PreconditionFailedException.class,
+				() -> service.update(contactUpdated, current -> current.getAddress().equals("Mars")));
+		assertDoesNotThrow(() -> assertEquals(ADDRESS, service.get("Bob").getAddress()));
+		assertDoesNotThrow(() -> service.update(contactUpdated, current -> current.getAddress().equals(ADDRESS)));
+		assertDoesNotThrow(() -> assertEquals("Mars", service.get("Bob").getAddress()));
+	}
+}
@@ -5,6 +5,8 @@ import me.coley.addressbook.Server;
 import me.coley.addressbook.exception.DuplicateContactException;
 import me.coley.addressbook.exception.MissingContactException;
 import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.ContactPage;
+import me.coley.addressbook.model.ContactResult;
 import me.coley.addressbook.model.Phone;
 import me.coley.addressbook.service.impl.ElasticContactService;
 import org.apache.http.HttpHost;
@@ -18,10 +20,13 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import pl.allegro.tech.embeddedelasticsearch.EmbeddedElastic;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -86,6 +91,20 @@ public class ServiceTests {
 		assertThrows(DuplicateContactException.class, () -> service.add(contact));
 	}
 
+	@Test
+	void testAddAll() {
+		Contact bob = new Contact("Bob", Collections.emptyList(), ADDRESS);
+		Contact robert = new Contact("Robert", Collections.emptyList(), ADDRESS);
+		assertDoesNotThrow(() -> service.add(bob));
+		// Only the existing contact fails, the rest of the batch goes through
+		List<ContactResult> results = service.addAll(Arrays.asList(bob, robert));
+		assertEquals(2, results.size());
+		assertFalse(results.get(0).isSuccess());
+		assertEquals(DuplicateContactException.class, results.get(0).getFailCause().getClass());
+		assertTrue(results.get(1).isSuccess());
+		assertDoesNotThrow(() -> assertTrue(service.exists("Robert")));
+	}
+
 	@Test
 	void testExists() {
 		Contact contact = new Contact("Bob", Collections.emptyList(), ADDRESS);
@@ -97,6 +116,21 @@ public class ServiceTests {
 		assertDoesNotThrow(() -> assertTrue(service.exists("Bob")));
 	}
 
+	@Test
+	void testGetAll() {
+		Contact bob = new Contact("Bob", Collections.emptyList(), ADDRESS);
+		Contact robert = new Contact("Robert", Collections.emptyList(), ADDRESS);
+		assertDoesNotThrow(() -> {
+			service.add(bob);
+			service.add(robert);
+		});
+		// Missing contacts are left out of the result
+		Map<String, Contact> contacts = service.getAll(Arrays.asList("Bob", "Robert", "Bobby"));
+		assertEquals(2, contacts.size());
+		assertEquals(bob, contacts.get("Bob"));
+		assertEquals(robert, contacts.get("Robert"));
+	}
+
 	@Test
 	void testDelete() {
 		Contact contact = new Contact("Bob", Collections.emptyList(), ADDRESS);
@@ -130,6 +164,41 @@ public class ServiceTests {
 		assertEquals(expected, contacts);
 	}
 
+	@Test
+	void testCursorPaging() {
+		List<Contact> contacts = new ArrayList<>();
+		for(int i = 0; i < 25; i++)
+			contacts.add(new Contact(UUID.randomUUID().toString(), Collections.emptyList(), ADDRESS));
+		assertTrue(service.addAll(contacts).stream().allMatch(ContactResult::isSuccess));
+		delay(2000);
+		// Walk all pages by following the cursors
+		Collection<Contact> visited = new HashSet<>();
+		String cursor = null;
+		int pages = 0;
+		do {
+			ContactPage page = service.contactsAfter(cursor, 10, null);
+			page.getContacts().forEach(contact -> assertTrue(visited.add(contact)));
+			cursor = page.getNext();
+			pages++;
+		} while(cursor != null);
+		assertEquals(3, pages);
+		assertEquals(new HashSet<>(contacts), visited);
+	}
+
+	@Test
+	void testForEach() {
+		// Add more contacts than fit in a single scroll batch
+		List<Contact> contacts = new ArrayList<>();
+		for(int i = 0; i < 1200; i++)
+			contacts.add(new Contact(UUID.randomUUID().toString(), Collections.emptyList(), ADDRESS));
+		assertTrue(service.addAll(contacts).stream().allMatch(ContactResult::isSuccess));
+		delay(2000);
+		// Every contact is visited exactly once
+		Collection<Contact> visited = new HashSet<>();
+		service.forEach(null, contact -> assertTrue(visited.add(contact)));
+		assertEquals(1200, visited.size());
+	}
+
 	@Test
 	void testUpdate() {
 		Contact contact = new Contact("Bob", Collections.emptyList(), ADDRESS);
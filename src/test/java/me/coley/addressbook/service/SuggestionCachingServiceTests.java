@@ -0,0 +1,70 @@
+package me.coley.addressbook.service;
+
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.service.impl.SuggestionCachingContactService;
+import me.coley.addressbook.util.BoundedCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link SuggestionCachingContactService}
+ */
+public class SuggestionCachingServiceTests {
+	private static final Contact BOB = new Contact("Bob", Collections.emptyList(), "Earth");
+	private static final List<String> NAMES = Arrays.asList("Bob", "Bobby");
+	private ContactService backend;
+	private SuggestionCachingContactService service;
+
+	@BeforeEach
+	void setup() {
+		backend = mock(ContactService.class);
+		service = new SuggestionCachingContactService(backend, new BoundedCache<>(100, Long.MAX_VALUE, value -> 1),
+				60_000);
+	}
+
+	@Test
+	void testRepeatedPrefixIsCached() throws Exception {
+		when(backend.suggestAsync("bo", 10)).thenReturn(CompletableFuture.completedFuture(NAMES));
+		assertEquals(NAMES, service.suggestAsync("bo", 10).get());
+		assertEquals(NAMES, service.suggestAsync("bo", 10).get());
+		verify(backend, times(1)).suggestAsync("bo", 10);
+		// Each limit is cached separately
+		when(backend.suggest("bo", 1)).thenReturn(Collections.singletonList("Bob"));
+		assertEquals(Collections.singletonList("Bob"), service.suggest("bo", 1));
+		assertEquals(1, service.getCache().getHitCount());
+	}
+
+	@Test
+	void testWritesInvalidate() throws Exception {
+		when(backend.suggest("bo", 10)).thenReturn(NAMES);
+		service.suggest("bo", 10);
+		service.add(BOB);
+		service.suggest("bo", 10);
+		service.update(BOB);
+		service.suggest("bo", 10);
+		service.delete("Bob");
+		service.suggest("bo", 10);
+		verify(backend, times(4)).suggest("bo", 10);
+	}
+
+	@Test
+	void testWriteDuringLookupIsNotCached() throws Exception {
+		when(backend.suggest("bo", 10)).then(invoke -> {
+			service.add(BOB);
+			return NAMES;
+		});
+		service.suggest("bo", 10);
+		assertEquals(0, service.getCache().size());
+	}
+}
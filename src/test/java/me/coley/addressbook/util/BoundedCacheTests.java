@@ -0,0 +1,107 @@
+package me.coley.addressbook.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for {@link BoundedCache}
+ */
+public class BoundedCacheTests {
+	@Test
+	void testEntryBound() {
+		BoundedCache<String, String> cache = new BoundedCache<>(2, Long.MAX_VALUE, String::length);
+		cache.put("a", "a", 1, TimeUnit.MINUTES);
+		cache.put("b", "b", 1, TimeUnit.MINUTES);
+		// Touch "a" so "b" is the least recently used
+		assertEquals("a", cache.get("a"));
+		cache.put("c", "c", 1, TimeUnit.MINUTES);
+		assertNull(cache.get("b"));
+		assertEquals("a", cache.get("a"));
+		assertEquals("c", cache.get("c"));
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	void testByteBound() {
+		BoundedCache<String, String> cache = new BoundedCache<>(100, 10, String::length);
+		cache.put("a", "12345", 1, TimeUnit.MINUTES);
+		cache.put("b", "12345", 1, TimeUnit.MINUTES);
+		assertEquals(10, cache.bytes());
+		cache.put("c", "1", 1, TimeUnit.MINUTES);
+		assertNull(cache.get("a"));
+		assertEquals(6, cache.bytes());
+		// Too large to ever fit
+		cache.put("d", "12345678901", 1, TimeUnit.MINUTES);
+		assertNull(cache.get("d"));
+	}
+
+	@Test
+	void testExpiry() {
+		AtomicLong time = new AtomicLong();
+		BoundedCache<String, String> cache = new BoundedCache<>(100, Long.MAX_VALUE, String::length, time::get);
+		cache.put("a", "a", 10, TimeUnit.NANOSECONDS);
+		time.set(9);
+		assertEquals("a", cache.get("a"));
+		time.set(10);
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.size());
+		assertEquals(1, cache.getExpirationCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	void testStampedPut() {
+		BoundedCache<String, String> cache = new BoundedCache<>(100, Long.MAX_VALUE, String::length);
+		long stamp = cache.stamp();
+		assertTrue(cache.put("a", "a", 1, TimeUnit.MINUTES, stamp));
+		// Reads do not count as writes
+		assertTrue(cache.put("b", "b", 1, TimeUnit.MINUTES, stamp));
+		// Writes to other keys do not race with the read
+		cache.invalidate("c");
+		cache.put("d", "d", 1, TimeUnit.MINUTES);
+		assertTrue(cache.put("a", "a2", 1, TimeUnit.MINUTES, stamp));
+		assertEquals("a2", cache.get("a"));
+		// A write to the same key does
+		cache.put("a", "new", 1, TimeUnit.MINUTES);
+		assertFalse(cache.put("a", "old", 1, TimeUnit.MINUTES, stamp));
+		assertEquals("new", cache.get("a"));
+		// Including a removal
+		assertFalse(cache.put("c", "old", 1, TimeUnit.MINUTES, stamp));
+		assertNull(cache.get("c"));
+		// As does removing everything
+		stamp = cache.stamp();
+		cache.invalidateAll();
+		assertFalse(cache.put("b", "old", 1, TimeUnit.MINUTES, stamp));
+		assertTrue(cache.put("b", "b", 1, TimeUnit.MINUTES, cache.stamp()));
+	}
+
+	@Test
+	void testForgottenStamps() {
+		BoundedCache<String, String> cache = new BoundedCache<>(1, Long.MAX_VALUE, String::length);
+		long stamp = cache.stamp();
+		cache.invalidate("a");
+		// Forgets "a" to make room, and then cannot tell whether any forgotten key was written
+		cache.invalidate("b");
+		assertFalse(cache.put("a", "old", 1, TimeUnit.MINUTES, stamp));
+		assertFalse(cache.put("c", "old", 1, TimeUnit.MINUTES, stamp));
+		assertTrue(cache.put("c", "c", 1, TimeUnit.MINUTES, cache.stamp()));
+	}
+
+	@Test
+	void testSegmentedBounds() {
+		BoundedCache<Integer, String> cache = new BoundedCache<>(1024, Long.MAX_VALUE, String::length);
+		for(int i = 0; i < 10_000; i++)
+			cache.put(i, "v", 1, TimeUnit.MINUTES);
+		assertEquals(1024, cache.size());
+		assertEquals(1024, cache.bytes());
+		assertEquals(10_000 - 1024, cache.getEvictionCount());
+	}
+}
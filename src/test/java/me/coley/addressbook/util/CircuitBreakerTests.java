@@ -0,0 +1,85 @@
+package me.coley.addressbook.util;
+
+import me.coley.addressbook.exception.ServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link CircuitBreaker}
+ */
+public class CircuitBreakerTests {
+	private final AtomicLong time = new AtomicLong();
+	private final CircuitBreaker breaker = new CircuitBreaker(4, 50, 1000, 100, 5000, time::get);
+
+	@Test
+	void testOpensOnFailureRate() {
+		breaker.stop(breaker.start(), false);
+		breaker.stop(breaker.start(), true);
+		breaker.stop(breaker.start(), false);
+		// Window is not full yet
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		breaker.stop(breaker.start(), true);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		ServiceUnavailableException ex = assertThrows(ServiceUnavailableException.class, breaker::start);
+		assertEquals(5, ex.getRetryAfter());
+		assertEquals(1, breaker.getRejectedCount());
+	}
+
+	@Test
+	void testOpensOnSlowCalls() {
+		for(int i = 0; i < 4; i++) {
+			long start = breaker.start();
+			time.addAndGet(TimeUnit.SECONDS.toNanos(2));
+			breaker.stop(start, false);
+		}
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	void testHalfOpenProbes() {
+		open();
+		time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		long[] probes = {breaker.start(), breaker.start(), breaker.start()};
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		// Only a few probes at once
+		assertThrows(ServiceUnavailableException.class, breaker::start);
+		for(long probe : probes)
+			breaker.stop(probe, false);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	@Test
+	void testFailedProbeReopens() {
+		open();
+		time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		long probe = breaker.start();
+		long other = breaker.start();
+		time.incrementAndGet();
+		breaker.stop(probe, true);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		// Started before the breaker opened again, so does not count
+		breaker.stop(other, false);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+
+	@Test
+	void testCallsFromBeforeOpeningIgnored() {
+		long late = breaker.start();
+		time.incrementAndGet();
+		open();
+		time.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		breaker.start();
+		breaker.stop(late, true);
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+	}
+
+	private void open() {
+		for(int i = 0; i < 4; i++)
+			breaker.stop(breaker.start(), true);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+	}
+}
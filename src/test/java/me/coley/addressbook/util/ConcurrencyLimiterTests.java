@@ -0,0 +1,98 @@
+package me.coley.addressbook.util;
+
+import me.coley.addressbook.exception.ServiceUnavailableException;
+import me.coley.addressbook.util.ConcurrencyLimiter.Priority;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link ConcurrencyLimiter}
+ */
+public class ConcurrencyLimiterTests {
+	@Test
+	void testLowPriorityShedFirst() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 10, 1000, 0, 0);
+		limiter.start(Priority.LOW);
+		limiter.start(Priority.LOW);
+		// Low priority requests only get half of the limit
+		assertThrows(ServiceUnavailableException.class, () -> limiter.start(Priority.LOW));
+		limiter.start(Priority.HIGH);
+		limiter.start(Priority.HIGH);
+		assertThrows(ServiceUnavailableException.class, () -> limiter.start(Priority.HIGH));
+		assertEquals(4, limiter.getInFlight());
+		assertEquals(2, limiter.getRejectedCount());
+	}
+
+	@Test
+	void testSlowRequestsDecreaseOnce() {
+		AtomicLong time = new AtomicLong();
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 10, 1000, 0, 0, time::get);
+		long a = limiter.start(Priority.HIGH);
+		long b = limiter.start(Priority.HIGH);
+		time.set(TimeUnit.SECONDS.toNanos(2));
+		limiter.stop(a, false);
+		// Admitted before the decrease, so does not decrease again
+		limiter.stop(b, false);
+		assertEquals(9, limiter.getLimit());
+		limiter.stop(limiter.start(Priority.HIGH), true);
+		assertEquals(8, limiter.getLimit());
+		assertEquals(0, limiter.getInFlight());
+	}
+
+	@Test
+	void testFastRequestsIncreaseToMax() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 6, 60_000, 0, 0);
+		for(int round = 0; round < 100; round++) {
+			long[] starts = new long[limiter.getLimit()];
+			for(int i = 0; i < starts.length; i++)
+				starts[i] = limiter.start(Priority.HIGH);
+			for(long start : starts)
+				limiter.stop(start, false);
+		}
+		assertEquals(6, limiter.getLimit());
+	}
+
+	@Test
+	void testIdleDoesNotIncrease() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 100, 60_000, 0, 0);
+		for(int i = 0; i < 100; i++)
+			limiter.stop(limiter.start(Priority.HIGH), false);
+		assertEquals(4, limiter.getLimit());
+	}
+
+	@Test
+	void testQueuedUntilReleased() throws Exception {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 2, 60_000, 1, 60_000);
+		long start = limiter.start(Priority.HIGH);
+		limiter.start(Priority.HIGH);
+		CompletableFuture<Long> queued = CompletableFuture.supplyAsync(() -> limiter.start(Priority.HIGH));
+		while(limiter.getQueued() == 0)
+			Thread.sleep(1);
+		// Queue is full
+		assertThrows(ServiceUnavailableException.class, () -> limiter.start(Priority.HIGH));
+		assertFalse(queued.isDone());
+		limiter.stop(start, false);
+		queued.get(10, TimeUnit.SECONDS);
+		assertEquals(2, limiter.getInFlight());
+		assertEquals(0, limiter.getQueued());
+	}
+
+	@Test
+	void testQueueWaitRunsOut() {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 2, 60_000, 1, 10);
+		limiter.start(Priority.HIGH);
+		limiter.start(Priority.HIGH);
+		ServiceUnavailableException ex = assertThrows(ServiceUnavailableException.class,
+				() -> limiter.start(Priority.HIGH));
+		assertTrue(ex.getRetryAfter() > 0);
+		assertEquals(0, limiter.getQueued());
+		// Released without adapting the limit
+		limiter.release();
+		limiter.start(Priority.HIGH);
+	}
+}
@@ -0,0 +1,32 @@
+package me.coley.addressbook.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for {@link Cursor}
+ */
+public class CursorTests {
+	@Test
+	void testRoundTrip() {
+		Object[] values = {"Bob", "Robert \"Bobby\" Tables"};
+		assertArrayEquals(values, Cursor.decode(Cursor.encode(values)));
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {
+			// not base64
+			"!!!",
+			// base64, but not json
+			"Qm9i",
+			// base64 of an empty array
+			"W10"
+	})
+	void testMalformed(String cursor) {
+		assertThrows(IllegalArgumentException.class, () -> Cursor.decode(cursor));
+	}
+}
@@ -0,0 +1,97 @@
+package me.coley.addressbook.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link MicroBatcher}
+ */
+public class MicroBatcherTests {
+	private final List<Set<String>> batches = new ArrayList<>();
+	private MicroBatcher<String, String> batcher;
+
+	@AfterEach
+	void cleanup() {
+		batcher.close();
+	}
+
+	@Test
+	void testWindowGathersLoads() throws Exception {
+		batcher = new MicroBatcher<>(this::upperCase, 50, TimeUnit.MILLISECONDS, 100);
+		CompletableFuture<String> a = batcher.load("a");
+		CompletableFuture<String> b = batcher.load("b");
+		assertFalse(a.isDone());
+		assertEquals("A", a.get(5, TimeUnit.SECONDS));
+		assertEquals("B", b.get(5, TimeUnit.SECONDS));
+		assertEquals(1, batches.size());
+		assertEquals(new HashSet<>(Arrays.asList("a", "b")), batches.get(0));
+	}
+
+	@Test
+	void testFullBatchSentImmediately() throws Exception {
+		batcher = new MicroBatcher<>(this::upperCase, 1, TimeUnit.HOURS, 2);
+		CompletableFuture<String> a = batcher.load("a");
+		CompletableFuture<String> b = batcher.load("b");
+		// Completed without waiting for the window
+		assertEquals("A", a.getNow(null));
+		assertEquals("B", b.getNow(null));
+		assertFalse(batcher.load("c").isDone());
+	}
+
+	@Test
+	void testSameKeyShared() {
+		batcher = new MicroBatcher<>(this::upperCase, 1, TimeUnit.HOURS, 100);
+		assertSame(batcher.load("a"), batcher.load("a"));
+	}
+
+	@Test
+	void testMissingKeyIsNull() throws Exception {
+		batcher = new MicroBatcher<>(keys -> CompletableFuture.completedFuture(new HashMap<>()),
+				1, TimeUnit.MILLISECONDS, 100);
+		assertNull(batcher.load("a").get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testFailureFansOut() {
+		IllegalStateException failure = new IllegalStateException();
+		batcher = new MicroBatcher<>(keys -> Futures.failed(failure), 1, TimeUnit.MILLISECONDS, 100);
+		CompletableFuture<String> a = batcher.load("a");
+		CompletableFuture<String> b = batcher.load("b");
+		assertSame(failure, assertThrows(ExecutionException.class, () -> a.get(5, TimeUnit.SECONDS)).getCause());
+		assertSame(failure, assertThrows(ExecutionException.class, () -> b.get(5, TimeUnit.SECONDS)).getCause());
+	}
+
+	@Test
+	void testBatchSizeDistribution() {
+		batcher = new MicroBatcher<>(this::upperCase, 1, TimeUnit.HOURS, 3);
+		// One batch of 3, then one of 1 sent on close
+		for(String key : Arrays.asList("a", "b", "c", "d"))
+			batcher.load(key);
+		batcher.close();
+		long[] counts = batcher.getBatchSizeCounts();
+		assertEquals(1, counts[0]);
+		assertEquals(1, counts[1]);
+		assertEquals(2, batcher.getBatchCount());
+		assertEquals(4, batcher.getKeyCount());
+	}
+
+	private CompletableFuture<Map<String, String>> upperCase(Set<String> keys) {
+		batches.add(new HashSet<>(keys));
+		Map<String, String> values = new HashMap<>();
+		keys.forEach(key -> values.put(key, key.toUpperCase()));
+		return CompletableFuture.completedFuture(values);
+	}
+}
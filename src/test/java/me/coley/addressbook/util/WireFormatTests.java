@@ -0,0 +1,97 @@
+package me.coley.addressbook.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonSyntaxException;
+import me.coley.addressbook.exception.MissingContactException;
+import me.coley.addressbook.model.Contact;
+import me.coley.addressbook.model.Phone;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for {@link WireFormat}, and reading and writing it with {@link Json}
+ */
+public class WireFormatTests {
+	private static final Contact BOB = new Contact("Bob", Arrays.asList(new Phone("555-123-4567", Phone.Type.MOBILE),
+			new Phone("555-222-3333", Phone.Type.HOME)), "Earth");
+
+	@Test
+	void testNegotiate() {
+		assertEquals(WireFormat.JSON, WireFormat.negotiate(null));
+		assertEquals(WireFormat.JSON, WireFormat.negotiate("*/*"));
+		assertEquals(WireFormat.JSON, WireFormat.negotiate("text/html"));
+		assertEquals(WireFormat.CBOR, WireFormat.negotiate("application/cbor"));
+		assertEquals(WireFormat.SMILE, WireFormat.negotiate("application/x-jackson-smile, application/cbor"));
+		// Quality decides before order
+		assertEquals(WireFormat.CBOR, WireFormat.negotiate("application/json;q=0.5, application/cbor"));
+		assertEquals(WireFormat.JSON, WireFormat.negotiate("application/cbor;q=0.5, */*"));
+		assertEquals(WireFormat.JSON, WireFormat.negotiate("application/cbor;q=0"));
+	}
+
+	@Test
+	void testOf() {
+		assertEquals(WireFormat.JSON, WireFormat.of(null));
+		assertEquals(WireFormat.JSON, WireFormat.of("application/json; charset=UTF-8"));
+		assertEquals(WireFormat.CBOR, WireFormat.of("application/cbor"));
+		assertEquals(WireFormat.SMILE, WireFormat.of("Application/X-Jackson-Smile"));
+	}
+
+	@ParameterizedTest
+	@EnumSource(WireFormat.class)
+	void testRoundTrip(WireFormat format) throws IOException {
+		Contact read = Json.read(write(BOB, format), format, Contact.class);
+		assertEquals(Json.toJson(BOB), Json.toJson(read));
+		String[] names = Json.read(write(new String[]{"Bob", "Alice"}, format), format, String[].class);
+		assertArrayEquals(new String[]{"Bob", "Alice"}, names);
+	}
+
+	@ParameterizedTest
+	@EnumSource(value = WireFormat.class, names = {"CBOR", "SMILE"})
+	void testResponsesMatchJson(WireFormat format) throws IOException {
+		// Nulls are left out, and exceptions are written by their adapter, the same as in JSON
+		ResponseWrapper failure = ResponseWrapper.failure(new MissingContactException("Bob", "missing"));
+		assertEquals(Json.toJson(failure), toJson(write(failure, format), format));
+		ResponseWrapper page = ResponseWrapper.success(Collections.singletonList(BOB), "next");
+		assertEquals(Json.toJson(page), toJson(write(page, format), format));
+	}
+
+	@ParameterizedTest
+	@EnumSource(value = WireFormat.class, names = {"CBOR", "SMILE"})
+	void testValidated(WireFormat format) throws IOException {
+		// Same model validation as JSON
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (JsonGenerator generator = format.getFactory().createGenerator(out)) {
+			generator.writeStartObject();
+			generator.writeStringField("name", "Bob");
+			generator.writeStringField("address", "Earth");
+			generator.writeArrayFieldStart("numbers");
+			generator.writeStartObject();
+			generator.writeStringField("number", "not a number");
+			generator.writeStringField("type", "MOBILE");
+			generator.writeEndObject();
+			generator.writeEndArray();
+			generator.writeEndObject();
+		}
+		assertThrows(IllegalArgumentException.class, () -> Json.read(out.toByteArray(), format, Contact.class));
+		assertThrows(JsonSyntaxException.class, () -> Json.read(new byte[]{1, 2, 3}, format, Contact.class));
+	}
+
+	private static byte[] write(Object object, WireFormat format) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Json.write(object, out, format, false);
+		return out.toByteArray();
+	}
+
+	private static String toJson(byte[] content, WireFormat format) {
+		return Json.toJson(Json.read(content, format, JsonElement.class));
+	}
+}